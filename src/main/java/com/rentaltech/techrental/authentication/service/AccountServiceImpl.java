@@ -5,7 +5,9 @@ import com.rentaltech.techrental.authentication.model.Role;
 import com.rentaltech.techrental.authentication.model.dto.CreateUserRequestDto;
 import com.rentaltech.techrental.authentication.model.dto.LoginDto;
 import com.rentaltech.techrental.authentication.repository.AccountRepository;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.security.JwtTokenProvider;
+import com.rentaltech.techrental.security.TokenRevocationService;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.customer.model.CustomerStatus;
 import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
@@ -38,6 +40,12 @@ public class AccountServiceImpl implements AccountService {
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private IdentityContext identityContext;
+
     @Autowired
     private VerificationEmailService verificationEmailService;
 
@@ -176,12 +184,18 @@ public class AccountServiceImpl implements AccountService {
 
     @Override
     public Account updateAccount(Account account) {
-        return accountRepository.save(account);
+        Account saved = accountRepository.save(account);
+        // Role/trạng thái nằm trong JWT nên token cũ phải bị thu hồi.
+        tokenRevocationService.revokeAccount(saved.getAccountId());
+        identityContext.evictAccount(saved.getAccountId());
+        return saved;
     }
 
     @Override
     public void deleteAccount(Long accountId) {
         accountRepository.deleteById(accountId);
+        tokenRevocationService.revokeAccount(accountId);
+        identityContext.evictAccount(accountId);
     }
     
     /**
@@ -260,6 +274,7 @@ public class AccountServiceImpl implements AccountService {
         account.setResetPasswordCode(null);
         account.setResetPasswordExpiry(null);
         accountRepository.save(account);
+        tokenRevocationService.revokeAccount(account.getAccountId());
     }
 
     private void setResetPasswordCodeAndSendEmail(Account account) {
@@ -156,6 +156,30 @@ public class DatabaseMigrationInitializer implements ApplicationRunner {
                 log.debug("Could not add NOT NULL to usage_count (may not exist or already set): {}", e.getMessage());
             }
 
+            // Partial index cho truy vấn dựng lại hàng đợi hạn chót (OverdueTaskTracker): chỉ task còn mở
+            try {
+                jdbcTemplate.execute(
+                        "CREATE INDEX IF NOT EXISTS idx_task_open_planned_end ON \"Task\" (planned_end, task_id) " +
+                        "WHERE status IN ('PENDING', 'IN_PROGRESS') AND planned_end IS NOT NULL"
+                );
+            } catch (Exception e) {
+                log.debug("Could not create idx_task_open_planned_end: {}", e.getMessage());
+            }
+
+            // notification.type được Hibernate tạo kèm CHECK theo enum lúc tạo bảng; ddl update không cập nhật khi thêm loại mới (TASK_OVERDUE)
+            try {
+                jdbcTemplate.execute("ALTER TABLE notification DROP CONSTRAINT IF EXISTS notification_type_check");
+            } catch (Exception e) {
+                log.debug("Could not drop notification_type_check: {}", e.getMessage());
+            }
+
+            // Tương tự cho delivery_status khi thêm DISPATCHING (sweeper nhận bản ghi trước khi gửi lại)
+            try {
+                jdbcTemplate.execute("ALTER TABLE notification DROP CONSTRAINT IF EXISTS notification_delivery_status_check");
+            } catch (Exception e) {
+                log.debug("Could not drop notification_delivery_status_check: {}", e.getMessage());
+            }
+
             log.info("Database migration completed successfully");
         } catch (Exception e) {
             log.warn("Database migration failed (this is OK if columns don't exist yet): {}", e.getMessage());
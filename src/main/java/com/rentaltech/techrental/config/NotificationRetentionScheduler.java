@@ -0,0 +1,52 @@
+package com.rentaltech.techrental.config;
+
+import com.rentaltech.techrental.webapi.customer.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+@Slf4j
+@Component
+public class NotificationRetentionScheduler {
+
+    private final NotificationService notificationService;
+    private final int retentionDays;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public NotificationRetentionScheduler(NotificationService notificationService,
+                                          @Value("${notification.retention.days:90}") int retentionDays,
+                                          @Value("${notification.retention.batch-size:5000}") int batchSize,
+                                          @Value("${notification.retention.max-batches:200}") int maxBatches) {
+        this.notificationService = notificationService;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * Chuyển thông báo cũ sang notification_archive theo từng lô, mỗi lô một transaction ngắn.
+     */
+    @Scheduled(cron = "${notification.retention.cron:0 30 3 * * *}")
+    public void archiveOldNotifications() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int total = 0;
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                int moved = notificationService.archiveNotificationsBefore(cutoff, batchSize);
+                total += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to archive notifications older than {}: {}", cutoff, ex.getMessage(), ex);
+        }
+        if (total > 0) {
+            log.info("Archived {} notifications older than {}", total, cutoff);
+        }
+    }
+}
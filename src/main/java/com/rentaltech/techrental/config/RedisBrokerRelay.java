@@ -0,0 +1,107 @@
+package com.rentaltech.techrental.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Chuyển tiếp message server gửi (SimpMessagingTemplate → brokerChannel) qua Redis pub/sub để subscriber
+ * ở mọi node đều nhận được.
+ * <p>
+ * Message gốc vẫn đi tiếp tới simple broker cục bộ như bình thường, đồng thời được publish lên Redis kèm id của node gửi.
+ * Các node khác nhận lại từ Redis và đưa vào simple broker của mình với header đánh dấu đã relay; node gửi bỏ qua
+ * bản relay của chính nó. Không chặn message ở interceptor vì {@code send} trả về false sẽ làm
+ * {@code SimpMessagingTemplate} ném {@code MessageDeliveryException}. Nếu Redis lỗi thì chỉ giao cục bộ.
+ */
+@Slf4j
+public class RedisBrokerRelay implements ChannelInterceptor, MessageListener {
+
+    static final String RELAYED_HEADER = "techrent-relayed";
+
+    record Envelope(String origin, String destination, String contentType, String payload) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectProvider<MessageChannel> brokerChannel;
+    private final String channel;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public RedisBrokerRelay(StringRedisTemplate redisTemplate, ObjectProvider<MessageChannel> brokerChannel, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.brokerChannel = brokerChannel;
+        this.channel = channel;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel messageChannel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || accessor.getDestination() == null
+                || Boolean.TRUE.equals(message.getHeaders().get(RELAYED_HEADER))) {
+            return message;
+        }
+        try {
+            MimeType contentType = accessor.getContentType();
+            Envelope envelope = new Envelope(
+                    nodeId,
+                    accessor.getDestination(),
+                    contentType != null ? contentType.toString() : null,
+                    Base64.getEncoder().encodeToString(payloadBytes(message.getPayload())));
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (Exception ex) {
+            log.warn("Không thể relay message tới {} qua Redis, chỉ giao cục bộ: {}", accessor.getDestination(), ex.getMessage());
+        }
+        return message;
+    }
+
+    @Override
+    public void onMessage(Message redisMessage, byte[] pattern) {
+        try {
+            Envelope envelope = objectMapper.readValue(redisMessage.getBody(), Envelope.class);
+            if (nodeId.equals(envelope.origin())) {
+                // Đã giao cục bộ lúc gửi
+                return;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(envelope.destination());
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            accessor.setLeaveMutable(true);
+            MessageHeaders headers = accessor.getMessageHeaders();
+            MessageChannel target = brokerChannel.getIfAvailable();
+            if (target != null) {
+                target.send(MessageBuilder.createMessage(Base64.getDecoder().decode(envelope.payload()), headers));
+            }
+        } catch (Exception ex) {
+            log.warn("Không thể giao message relay từ Redis: {}", ex.getMessage());
+        }
+    }
+
+    private static byte[] payloadBytes(Object payload) {
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        return String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,37 @@
+package com.rentaltech.techrental.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageChannel;
+
+/**
+ * Bật khi {@code websocket.broker.mode=redis}: message STOMP do server gửi đi được phát qua Redis pub/sub.
+ */
+@Configuration
+@ConditionalOnProperty(name = "websocket.broker.mode", havingValue = "redis")
+public class RedisBrokerRelayConfig {
+
+    @Bean
+    public RedisBrokerRelay redisBrokerRelay(StringRedisTemplate stringRedisTemplate,
+                                             @Qualifier("brokerChannel") ObjectProvider<MessageChannel> brokerChannel,
+                                             @Value("${websocket.broker.redis-channel:techrent:stomp}") String channel) {
+        return new RedisBrokerRelay(stringRedisTemplate, brokerChannel, channel);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer stompRelayListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                     RedisBrokerRelay redisBrokerRelay) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(redisBrokerRelay, new ChannelTopic(redisBrokerRelay.getChannel()));
+        return container;
+    }
+}
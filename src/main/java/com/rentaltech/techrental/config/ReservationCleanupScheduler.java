@@ -14,9 +14,11 @@ public class ReservationCleanupScheduler {
     private final ReservationService reservationService;
 
     /**
-     * Periodically mark overdue reservations as expired so availability stays fresh.
+     * Safety net only: reservations are expired on time by ReservationExpiryWheel; this sweep catches
+     * anything the wheel missed (e.g. writes from another node or a failed batch).
      */
-    @Scheduled(fixedDelay = 5 * 60 * 1000L)
+    @Scheduled(fixedDelayString = "${reservation.expiry.sweep-delay-ms:1800000}",
+            initialDelayString = "${reservation.expiry.sweep-delay-ms:1800000}")
     public void expireStaleReservations() {
         try {
             reservationService.expireReservations();
@@ -1,6 +1,7 @@
 package com.rentaltech.techrental.device.controller;
 
 import com.rentaltech.techrental.common.util.ResponseUtil;
+import com.rentaltech.techrental.rentalorder.service.AvailabilityResultCache;
 import com.rentaltech.techrental.rentalorder.service.BookingCalendarService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,9 +13,13 @@ import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/devices/models")
@@ -23,7 +28,10 @@ import java.time.LocalDateTime;
 public class DeviceAvailabilityController {
 
     private final BookingCalendarService bookingCalendarService;
+    private final AvailabilityResultCache availabilityResultCache;
     public static final long AVAILABILITY_MARGIN_DAYS = 2L;
+    private static final long MAX_TIMELINE_DAYS = 90L;
+    private static final int MAX_BATCH_MODEL_IDS = 100;
 
     @GetMapping("/{deviceModelId}/availability")
     @Operation(summary = "Số lượng thiết bị còn trống theo model", description = "Trả về số thiết bị của một model có thể sử dụng trong khoảng thời gian yêu cầu")
@@ -52,6 +60,89 @@ public class DeviceAvailabilityController {
         );
     }
 
+    @GetMapping("/availability/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Thống kê cache khả dụng", description = "Số lần hit/miss/evict/invalidate của cache kết quả tra cứu khả dụng")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về thống kê cache"),
+            @ApiResponse(responseCode = "403", description = "Không có quyền truy cập"),
+            @ApiResponse(responseCode = "500", description = "Lỗi hệ thống")
+    })
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseUtil.createSuccessResponse(
+                "Thống kê cache khả dụng",
+                "Bộ đếm của cache kết quả tra cứu khả dụng",
+                availabilityResultCache.stats(),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/availability")
+    @Operation(summary = "Số lượng thiết bị còn trống cho nhiều model", description = "Trả về số thiết bị còn trống của nhiều model (tối đa 100 model) trong cùng một khoảng thời gian, dùng cho trang danh mục")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về thông tin khả dụng theo từng model"),
+            @ApiResponse(responseCode = "400", description = "Khoảng thời gian hoặc tham số không hợp lệ"),
+            @ApiResponse(responseCode = "500", description = "Lỗi hệ thống")
+    })
+    public ResponseEntity<?> getBatchAvailability(@RequestParam("deviceModelIds") List<Long> deviceModelIds,
+                                                  @RequestParam("start") LocalDateTime start,
+                                                  @RequestParam("end") LocalDateTime end) {
+        if (deviceModelIds.size() > MAX_BATCH_MODEL_IDS) {
+            throw new IllegalArgumentException("Chỉ được tra cứu tối đa " + MAX_BATCH_MODEL_IDS + " model mỗi lần");
+        }
+        LocalDateTime marginStart = start.minusDays(AVAILABILITY_MARGIN_DAYS);
+        LocalDateTime marginEnd = end.plusDays(AVAILABILITY_MARGIN_DAYS);
+        Map<Long, Long> availableByModel = bookingCalendarService.getAvailableCounts(deviceModelIds, marginStart, marginEnd);
+        List<AvailabilityResponse> body = availableByModel.entrySet().stream()
+                .map(entry -> AvailabilityResponse.builder()
+                        .deviceModelId(entry.getKey())
+                        .start(start)
+                        .end(end)
+                        .available(entry.getValue())
+                        .build())
+                .toList();
+        return ResponseUtil.createSuccessResponse(
+                "Khả dụng theo danh sách model",
+                "Số lượng thiết bị còn trống của từng model trong khoảng thời gian yêu cầu",
+                body,
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/{deviceModelId}/availability/timeline")
+    @Operation(summary = "Lịch khả dụng theo ngày/giờ của model", description = "Trả về mảng số thiết bị còn trống cho từng ngày hoặc từng giờ trong khoảng thời gian (tối đa 90 ngày), giúp khách chọn ngày mà không cần kiểm tra nhiều lần")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về lịch khả dụng"),
+            @ApiResponse(responseCode = "400", description = "Khoảng thời gian hoặc tham số không hợp lệ"),
+            @ApiResponse(responseCode = "500", description = "Lỗi hệ thống")
+    })
+    public ResponseEntity<?> getAvailabilityTimeline(@PathVariable Long deviceModelId,
+                                                     @RequestParam("start") LocalDateTime start,
+                                                     @RequestParam("end") LocalDateTime end,
+                                                     @RequestParam(value = "granularity", defaultValue = "DAY") TimelineGranularity granularity) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Thời gian kết thúc phải sau thời gian bắt đầu");
+        }
+        if (Duration.between(start, end).toDays() > MAX_TIMELINE_DAYS) {
+            throw new IllegalArgumentException("Khoảng thời gian tra cứu tối đa " + MAX_TIMELINE_DAYS + " ngày");
+        }
+        long[] available = bookingCalendarService.getAvailabilityTimeline(
+                deviceModelId, start, end, granularity.getStep(), Duration.ofDays(AVAILABILITY_MARGIN_DAYS));
+        var body = AvailabilityTimelineResponse.builder()
+                .deviceModelId(deviceModelId)
+                .start(start)
+                .end(end)
+                .granularity(granularity)
+                .available(available)
+                .build();
+        return ResponseUtil.createSuccessResponse(
+                "Lịch khả dụng theo model",
+                "Phần tử thứ i là số thiết bị còn trống trong khung thứ i kể từ thời điểm bắt đầu",
+                body,
+                HttpStatus.OK
+        );
+    }
+
     @GetMapping("/{deviceModelId}/availability/check")
     @Operation(summary = "Kiểm tra đáp ứng nhu cầu thiết bị", description = "Kiểm tra số lượng yêu cầu có thể đáp ứng với model và khoảng thời gian cụ thể")
     @ApiResponses({
@@ -94,6 +185,32 @@ public class DeviceAvailabilityController {
         private long available;
     }
 
+    public enum TimelineGranularity {
+        DAY(Duration.ofDays(1)),
+        HOUR(Duration.ofHours(1));
+
+        private final Duration step;
+
+        TimelineGranularity(Duration step) {
+            this.step = step;
+        }
+
+        public Duration getStep() {
+            return step;
+        }
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    private static class AvailabilityTimelineResponse {
+        private Long deviceModelId;
+        private LocalDateTime start;
+        private LocalDateTime end;
+        private TimelineGranularity granularity;
+        private long[] available;
+    }
+
     @Data
     @Builder
     @AllArgsConstructor
@@ -4,7 +4,10 @@ import com.rentaltech.techrental.device.model.AllocationConditionSnapshot;
 import com.rentaltech.techrental.device.model.AllocationSnapshotSource;
 import com.rentaltech.techrental.device.model.AllocationSnapshotType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface AllocationConditionSnapshotRepository extends JpaRepository<AllocationConditionSnapshot, Long> {
@@ -12,6 +15,13 @@ public interface AllocationConditionSnapshotRepository extends JpaRepository<All
 
     List<AllocationConditionSnapshot> findByAllocation_AllocationIdAndSnapshotType(Long allocationId, AllocationSnapshotType snapshotType);
 
+    @Query("SELECT s FROM AllocationConditionSnapshot s " +
+            "WHERE s.allocation.allocationId IN :allocationIds AND s.snapshotType = :snapshotType AND s.source = :source " +
+            "ORDER BY s.allocationConditionSnapshotId")
+    List<AllocationConditionSnapshot> findByAllocationIdsAndTypeAndSource(@Param("allocationIds") Collection<Long> allocationIds,
+                                                                          @Param("snapshotType") AllocationSnapshotType snapshotType,
+                                                                          @Param("source") AllocationSnapshotSource source);
+
     void deleteByAllocation_AllocationIdAndSnapshotTypeAndSource(Long allocationId,
                                                                  AllocationSnapshotType snapshotType,
                                                                  AllocationSnapshotSource source);
@@ -21,6 +21,13 @@ public interface AllocationRepository extends JpaRepository<Allocation, Long> {
 
     List<Allocation> findByOrderDetail_RentalOrder_OrderId(Long orderId);
 
+    @Query("SELECT a FROM Allocation a " +
+            "JOIN FETCH a.orderDetail od JOIN FETCH od.rentalOrder " +
+            "LEFT JOIN FETCH a.device d LEFT JOIN FETCH d.deviceModel dm " +
+            "LEFT JOIN FETCH dm.brand LEFT JOIN FETCH dm.deviceCategory " +
+            "WHERE od.rentalOrder.orderId IN :orderIds ORDER BY a.allocationId")
+    List<Allocation> findWithDeviceByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
     Optional<Allocation> findByOrderDetail_OrderDetailIdAndDevice_SerialNumber(Long orderDetailId, String serialNumber);
 
     Optional<Allocation> findByOrderDetail_OrderDetailIdAndDevice_DeviceId(Long orderDetailId, Long deviceId);
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +23,9 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
     // Find all devices by model for allocation selection
     List<Device> findByDeviceModel_DeviceModelId(Long deviceModelId);
 
+    @Query("SELECT d.deviceId, d.deviceModel.deviceModelId, d.status FROM Device d WHERE d.deviceModel.deviceModelId IN :deviceModelIds")
+    List<Object[]> findStatusesByModelIds(@Param("deviceModelIds") Collection<Long> deviceModelIds);
+
     // Find all devices by device category (via deviceModel.deviceCategory)
     List<Device> findByDeviceModel_DeviceCategory_DeviceCategoryId(Long deviceCategoryId);
     
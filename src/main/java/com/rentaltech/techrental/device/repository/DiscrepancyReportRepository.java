@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface DiscrepancyReportRepository extends JpaRepository<DiscrepancyReport, Long> {
@@ -16,6 +17,12 @@ public interface DiscrepancyReportRepository extends JpaRepository<DiscrepancyRe
 
     List<DiscrepancyReport> findByAllocation_OrderDetail_RentalOrder_OrderId(Long orderId);
 
+    @Query("SELECT d FROM DiscrepancyReport d " +
+            "JOIN FETCH d.allocation a JOIN FETCH a.orderDetail od " +
+            "LEFT JOIN FETCH d.conditionDefinition " +
+            "WHERE od.rentalOrder.orderId IN :orderIds ORDER BY d.discrepancyReportId")
+    List<DiscrepancyReport> findWithDefinitionByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
     long countByDiscrepancyTypeAndCreatedAtBetween(DiscrepancyType discrepancyType,
                                                    LocalDateTime start,
                                                    LocalDateTime end);
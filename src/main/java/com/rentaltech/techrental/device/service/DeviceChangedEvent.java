@@ -0,0 +1,34 @@
+package com.rentaltech.techrental.device.service;
+
+import com.rentaltech.techrental.device.model.Device;
+import com.rentaltech.techrental.device.model.DeviceStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Phát sau mỗi lần lưu hoặc xóa {@link Device} (quản lý thiết bị, QC, bàn giao, khiếu nại, bảo trì...).
+ * Dữ liệu được chụp lúc phát; bên nghe tự quyết định áp dụng sau commit.
+ */
+public record DeviceChangedEvent(Long deviceId, Long deviceModelId, DeviceStatus status, boolean removed) {
+
+    public static DeviceChangedEvent saved(Device device) {
+        return new DeviceChangedEvent(device.getDeviceId(), modelIdOf(device), device.getStatus(), false);
+    }
+
+    public static DeviceChangedEvent removed(Long deviceId) {
+        return new DeviceChangedEvent(deviceId, null, null, true);
+    }
+
+    public static List<DeviceChangedEvent> saved(Collection<Device> devices) {
+        return devices.stream()
+                .filter(Objects::nonNull)
+                .map(DeviceChangedEvent::saved)
+                .toList();
+    }
+
+    private static Long modelIdOf(Device device) {
+        return device.getDeviceModel() != null ? device.getDeviceModel().getDeviceModelId() : null;
+    }
+}
@@ -9,6 +9,7 @@ import com.rentaltech.techrental.device.repository.DeviceRepository;
 import com.rentaltech.techrental.staff.model.Staff;
 import com.rentaltech.techrental.staff.repository.StaffRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -26,6 +27,7 @@ public class DeviceConditionServiceImpl implements DeviceConditionService {
     private final DeviceRepository deviceRepository;
     private final ConditionDefinitionRepository conditionDefinitionRepository;
     private final StaffRepository staffRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -194,6 +196,7 @@ public class DeviceConditionServiceImpl implements DeviceConditionService {
         if (newStatus != null && device.getStatus() != newStatus) {
             device.setStatus(newStatus);
             deviceRepository.save(device);
+            eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
         }
     }
 }
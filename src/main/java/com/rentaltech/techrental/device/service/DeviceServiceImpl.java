@@ -12,7 +12,10 @@ import com.rentaltech.techrental.device.repository.DeviceModelRepository;
 import com.rentaltech.techrental.device.repository.DeviceRepository;
 import com.rentaltech.techrental.rentalorder.model.BookingStatus;
 import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
+import com.rentaltech.techrental.rentalorder.service.AvailabilityResultCache;
+import com.rentaltech.techrental.rentalorder.service.BookingCalendarService;
 import com.rentaltech.techrental.rentalorder.service.ReservationService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -31,19 +34,28 @@ public class DeviceServiceImpl implements DeviceService {
     private final BookingCalendarRepository bookingCalendarRepository;
     private final ReservationService reservationService;
     private final DeviceConditionService deviceConditionService;
+    private final AvailabilityResultCache availabilityResultCache;
+    private final BookingCalendarService bookingCalendarService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public DeviceServiceImpl(DeviceRepository repository,
                              DeviceModelRepository deviceModelRepository,
                              AllocationRepository allocationRepository,
                              BookingCalendarRepository bookingCalendarRepository,
                              ReservationService reservationService,
-                             DeviceConditionService deviceConditionService) {
+                             DeviceConditionService deviceConditionService,
+                             AvailabilityResultCache availabilityResultCache,
+                             BookingCalendarService bookingCalendarService,
+                             ApplicationEventPublisher eventPublisher) {
         this.repository = repository;
         this.deviceModelRepository = deviceModelRepository;
         this.allocationRepository = allocationRepository;
         this.bookingCalendarRepository = bookingCalendarRepository;
         this.reservationService = reservationService;
         this.deviceConditionService = deviceConditionService;
+        this.availabilityResultCache = availabilityResultCache;
+        this.bookingCalendarService = bookingCalendarService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -53,6 +65,7 @@ public class DeviceServiceImpl implements DeviceService {
         }
         Device entity = mapToEntity(request);
         Device saved = repository.save(entity);
+        eventPublisher.publishEvent(DeviceChangedEvent.saved(saved));
 
         // If new device is AVAILABLE, increase amountAvailable for its model
         if (saved.getStatus() == DeviceStatus.AVAILABLE && saved.getDeviceModel() != null) {
@@ -93,6 +106,25 @@ public class DeviceServiceImpl implements DeviceService {
         if (deviceModelId == null || start == null || end == null || !start.isBefore(end)) {
             return List.of();
         }
+        // Cache chỉ giữ danh sách id; thông tin thiết bị và tình trạng vẫn đọc mới mỗi lần.
+        Map<Long, Device> loadedDevices = new HashMap<>();
+        List<Long> deviceIds = availabilityResultCache.get(AvailabilityResultCache.Kind.AVAILABLE_DEVICES,
+                deviceModelId, start, end, bookingCalendarService.isTechnicianView(), () -> {
+                    List<Device> available = loadAvailableDevices(deviceModelId, start, end);
+                    available.forEach(device -> loadedDevices.put(device.getDeviceId(), device));
+                    return available.stream().map(Device::getDeviceId).toList();
+                });
+        if (deviceIds.isEmpty()) {
+            return List.of();
+        }
+        Collection<Device> devices = loadedDevices.isEmpty() ? repository.findAllById(deviceIds) : loadedDevices.values();
+        // Cùng thứ tự theo id dù kết quả lấy từ cache hay vừa tính
+        return mapDevicesWithConditions(devices.stream()
+                .sorted(Comparator.comparing(Device::getDeviceId))
+                .toList());
+    }
+
+    private List<Device> loadAvailableDevices(Long deviceModelId, LocalDateTime start, LocalDateTime end) {
         List<Device> devices = repository.findByDeviceModel_DeviceModelId(deviceModelId);
         if (devices.isEmpty()) {
             return List.of();
@@ -113,10 +145,9 @@ public class DeviceServiceImpl implements DeviceService {
         if (limit <= 0) {
             return List.of();
         }
-        List<Device> limitedDevices = freeDevices.stream()
+        return freeDevices.stream()
                 .limit(limit)
                 .toList();
-        return mapDevicesWithConditions(limitedDevices);
     }
 
     @Override
@@ -194,6 +225,7 @@ public class DeviceServiceImpl implements DeviceService {
         }
 
         Device saved = repository.save(entity);
+        eventPublisher.publishEvent(DeviceChangedEvent.saved(saved));
         return DeviceResponseDto.from(saved, deviceConditionService.getByDevice(saved.getDeviceId()));
     }
 
@@ -201,6 +233,7 @@ public class DeviceServiceImpl implements DeviceService {
     public void delete(Long id) {
         if (!repository.existsById(id)) throw new NoSuchElementException("Không tìm thấy thiết bị: " + id);
         repository.deleteById(id);
+        eventPublisher.publishEvent(DeviceChangedEvent.removed(id));
     }
 
     private List<DeviceResponseDto> mapDevicesWithConditions(List<Device> devices) {
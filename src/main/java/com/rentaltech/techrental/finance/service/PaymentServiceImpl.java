@@ -2,7 +2,6 @@ package com.rentaltech.techrental.finance.service;
 
 import com.rentaltech.techrental.authentication.model.Account;
 import com.rentaltech.techrental.authentication.model.Role;
-import com.rentaltech.techrental.authentication.repository.AccountRepository;
 import com.rentaltech.techrental.contract.model.ContractExtensionAnnex;
 import com.rentaltech.techrental.contract.model.ContractStatus;
 import com.rentaltech.techrental.contract.repository.ContractExtensionAnnexRepository;
@@ -26,18 +25,19 @@ import com.rentaltech.techrental.rentalorder.repository.RentalOrderExtensionRepo
 import com.rentaltech.techrental.rentalorder.repository.RentalOrderRepository;
 import com.rentaltech.techrental.rentalorder.service.BookingCalendarService;
 import com.rentaltech.techrental.rentalorder.service.ReservationService;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.staff.model.*;
 import com.rentaltech.techrental.staff.repository.SettlementRepository;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
-import com.rentaltech.techrental.staff.service.staffservice.StaffService;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
 import com.rentaltech.techrental.webapi.customer.service.NotificationService;
 import com.rentaltech.techrental.webapi.operator.service.ImageStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -77,11 +77,10 @@ public class PaymentServiceImpl implements PaymentService {
     private final ReservationService reservationService;
     private final BookingCalendarService bookingCalendarService;
     private final AllocationRepository allocationRepository;
-    private final AccountRepository accountRepository;
+    private final IdentityContext identityContext;
     private final SettlementRepository settlementRepository;
-    private final StaffService staffService;
-    private final SimpMessagingTemplate messagingTemplate;
     private final ImageStorageService imageStorageService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${payos.return-url:http://localhost:8080/api/v1/payos/return}")
     private String payosReturnUrl;
@@ -89,7 +88,6 @@ public class PaymentServiceImpl implements PaymentService {
     @Value("${payos.cancel-url:http://localhost:8080/api/v1/payos/cancel}")
     private String payosCancelUrl;
 
-    private static final String STAFF_NOTIFICATION_TOPIC_TEMPLATE = "/topic/staffs/%d/notifications";
 
     @Override
     @Transactional
@@ -330,6 +328,7 @@ public class PaymentServiceImpl implements PaymentService {
                 .build();
         taskRepository.save(deliveryTask);
         taskRepository.flush();
+        eventPublisher.publishEvent(TaskChangedEvent.saved(deliveryTask));
     }
 
     private void createBookingsForOrder(RentalOrder rentalOrder) {
@@ -388,10 +387,9 @@ public class PaymentServiceImpl implements PaymentService {
         RentalOrder rentalOrder = rentalOrderRepository.findById(rentalOrderId)
                 .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy đơn hàng: " + rentalOrderId));
 
-        Account requester = Optional.ofNullable(accountRepository.findByUsername(username))
+        Role requesterRole = identityContext.forUsername(username)
+                .map(IdentityContext.Identity::role)
                 .orElseThrow(() -> new AccessDeniedException("Không tìm thấy tài khoản người dùng hiện tại"));
-
-        Role requesterRole = requester.getRole();
         if (requesterRole == Role.CUSTOMER) {
             String ownerUsername = Optional.ofNullable(rentalOrder.getCustomer())
                     .map(customer -> customer.getAccount())
@@ -435,37 +433,18 @@ public class PaymentServiceImpl implements PaymentService {
         if (orderId == null) {
             return;
         }
-        List<Staff> operators = staffService.getStaffByRole(StaffRole.OPERATOR);
-        if (operators == null || operators.isEmpty()) {
-            return;
-        }
         OperatorDepositRefundNotification payload = new OperatorDepositRefundNotification(
                 orderId,
                 invoiceId,
                 "Đơn hàng #" + orderId + " đã được hoàn cọc thành công."
         );
-        operators.stream()
-                .filter(Objects::nonNull)
-                .forEach(staff -> {
-                    if (staff.getAccount() != null && staff.getAccount().getAccountId() != null) {
-                        notificationService.notifyAccount(
-                                staff.getAccount().getAccountId(),
-                                NotificationType.ORDER_COMPLETED,
-                                "Đơn hàng đã hoàn cọc",
-                                payload.message()
-                        );
-                    }
-                    Long staffId = staff.getStaffId();
-                    if (staffId == null) {
-                        return;
-                    }
-                    String destination = String.format(STAFF_NOTIFICATION_TOPIC_TEMPLATE, staffId);
-                    try {
-                        messagingTemplate.convertAndSend(destination, payload);
-                    } catch (Exception ex) {
-                        log.warn("Không thể gửi thông báo hoàn cọc tới operator {}: {}", staffId, ex.getMessage());
-                    }
-                });
+        notificationService.notifyRole(
+                StaffRole.OPERATOR,
+                NotificationType.ORDER_COMPLETED,
+                "Đơn hàng đã hoàn cọc",
+                payload.message(),
+                payload
+        );
     }
 
     private record OperatorDepositRefundNotification(Long orderId, Long invoiceId, String message) {}
@@ -549,9 +528,9 @@ public class PaymentServiceImpl implements PaymentService {
     @Override
     @Transactional
     public InvoiceResponseDto confirmDepositRefund(Long settlementId, String username, MultipartFile proofFile) {
-        Account account = Optional.ofNullable(accountRepository.findByUsername(username))
+        Role role = identityContext.forUsername(username)
+                .map(IdentityContext.Identity::role)
                 .orElseThrow(() -> new AccessDeniedException("Không tìm thấy tài khoản xác thực"));
-        Role role = account.getRole();
         if (role != Role.ADMIN && role != Role.OPERATOR && role != Role.TECHNICIAN && role != Role.CUSTOMER_SUPPORT_STAFF) {
             throw new AccessDeniedException("Không có quyền xác nhận hoàn cọc");
         }
@@ -630,6 +609,7 @@ public class PaymentServiceImpl implements PaymentService {
                 .status(TaskStatus.PENDING)
                 .build();
         taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(task));
     }
 
     @Transactional
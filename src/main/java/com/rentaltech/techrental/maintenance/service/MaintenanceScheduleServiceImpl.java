@@ -6,6 +6,7 @@ import com.rentaltech.techrental.device.model.DeviceModel;
 import com.rentaltech.techrental.device.model.DeviceStatus;
 import com.rentaltech.techrental.device.repository.DeviceCategoryRepository;
 import com.rentaltech.techrental.device.repository.DeviceRepository;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
 import com.rentaltech.techrental.maintenance.model.MaintenanceSchedule;
 import com.rentaltech.techrental.maintenance.model.MaintenanceScheduleStatus;
 import com.rentaltech.techrental.maintenance.model.dto.MaintenanceScheduleByCategoryRequestDto;
@@ -19,6 +20,7 @@ import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepositor
 import com.rentaltech.techrental.webapi.operator.service.ImageStorageService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -42,6 +44,7 @@ public class MaintenanceScheduleServiceImpl implements MaintenanceScheduleServic
     private final DeviceCategoryRepository deviceCategoryRepository;
     private final BookingCalendarRepository bookingCalendarRepository;
     private final ImageStorageService imageStorageService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final long RENTAL_CONFLICT_LOOKAHEAD_DAYS = 14L;
 
@@ -77,6 +80,7 @@ public class MaintenanceScheduleServiceImpl implements MaintenanceScheduleServic
                 validateDeviceNotRenting(device);
                 device.setStatus(DeviceStatus.UNDER_MAINTENANCE);
                 deviceRepository.save(device);
+                eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
             }
         }
 
@@ -175,6 +179,7 @@ public class MaintenanceScheduleServiceImpl implements MaintenanceScheduleServic
                     validateDeviceNotRenting(device);
                     device.setStatus(DeviceStatus.UNDER_MAINTENANCE);
                     deviceRepository.save(device);
+                    eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
                 }
             }
         }
@@ -377,6 +382,7 @@ public class MaintenanceScheduleServiceImpl implements MaintenanceScheduleServic
                 if (activeSchedules.isEmpty()) {
                     device.setStatus(DeviceStatus.AVAILABLE);
                     deviceRepository.save(device);
+                    eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
                 }
             }
         }
@@ -429,14 +435,17 @@ public class MaintenanceScheduleServiceImpl implements MaintenanceScheduleServic
                 // Đang bảo trì -> thiết bị chuyển sang UNDER_MAINTENANCE
                 device.setStatus(DeviceStatus.UNDER_MAINTENANCE);
                 deviceRepository.save(device);
+                eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
             } else if (effectiveStatus == MaintenanceScheduleStatus.COMPLETED) {
                 // Bảo trì hoàn thành -> thiết bị sẵn sàng cho thuê lại
                 device.setStatus(DeviceStatus.AVAILABLE);
                 deviceRepository.save(device);
+                eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
             } else if (effectiveStatus == MaintenanceScheduleStatus.FAILED) {
                 // Bảo trì thất bại -> thiết bị hỏng, không còn dùng cho thuê
                 device.setStatus(DeviceStatus.DAMAGED);
                 deviceRepository.save(device);
+                eventPublisher.publishEvent(DeviceChangedEvent.saved(device));
             }
         }
 
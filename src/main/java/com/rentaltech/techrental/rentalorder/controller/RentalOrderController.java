@@ -66,16 +66,58 @@ public class RentalOrderController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
-    @Operation(summary = "Danh sách đơn thuê", description = "Lấy danh sách tất cả đơn thuê cùng thông tin chi tiết")
+    @Operation(summary = "Danh sách đơn thuê", description = "Lấy danh sách đơn thuê có phân trang (mặc định đơn mới nhất trước); khách hàng chỉ thấy đơn của mình")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Trả về danh sách đơn thuê"),
             @ApiResponse(responseCode = "500", description = "Không thể truy vấn do lỗi hệ thống")
     })
-    public ResponseEntity<?> getAll() {
-        return ResponseUtil.createSuccessResponse(
-                "Danh sách tất cả đơn thuê",
-                "Danh sách tất cả đơn thuê trong hệ thống",
-                service.findAll(),
+    public ResponseEntity<?> getAll(@RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size,
+                                    @RequestParam(required = false) List<String> sort) {
+        Pageable pageable = PageableUtil.buildPageRequest(page, size, sort);
+        return ResponseUtil.createSuccessPaginationResponse(
+                "Danh sách đơn thuê",
+                "Danh sách đơn thuê theo trang",
+                service.findAll(pageable),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/summaries")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
+    @Operation(summary = "Danh sách đơn thuê rút gọn", description = "Chỉ gồm mã đơn, trạng thái, thời gian, tổng tiền và tên khách hàng; dùng cho màn hình danh sách. Khách hàng chỉ thấy đơn của mình")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về danh sách đơn thuê rút gọn"),
+            @ApiResponse(responseCode = "500", description = "Không thể truy vấn do lỗi hệ thống")
+    })
+    public ResponseEntity<?> getSummaries(@RequestParam(defaultValue = "0") int page,
+                                          @RequestParam(defaultValue = "20") int size,
+                                          @RequestParam(required = false) List<String> sort) {
+        Pageable pageable = PageableUtil.buildPageRequest(page, size, sort);
+        return ResponseUtil.createSuccessPaginationResponse(
+                "Danh sách đơn thuê rút gọn",
+                "Danh sách đơn thuê theo trang, không kèm chi tiết thiết bị",
+                service.findSummaries(pageable),
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/my")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    @Operation(summary = "Đơn thuê của tôi", description = "Danh sách đơn thuê của khách hàng đang đăng nhập, có phân trang")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về danh sách đơn thuê của khách hàng"),
+            @ApiResponse(responseCode = "403", description = "Tài khoản chưa có hồ sơ khách hàng"),
+            @ApiResponse(responseCode = "500", description = "Không thể truy vấn do lỗi hệ thống")
+    })
+    public ResponseEntity<?> getMyOrders(@RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size,
+                                         @RequestParam(required = false) List<String> sort) {
+        Pageable pageable = PageableUtil.buildPageRequest(page, size, sort);
+        return ResponseUtil.createSuccessPaginationResponse(
+                "Danh sách đơn thuê của bạn",
+                "Danh sách đơn thuê theo trang",
+                service.findMyOrders(pageable),
                 HttpStatus.OK
         );
     }
@@ -196,4 +238,35 @@ public class RentalOrderController {
                 HttpStatus.OK
         );
     }
+
+    @GetMapping("/search/cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
+    @Operation(summary = "Tìm kiếm đơn thuê theo cursor", description = "Lọc đơn thuê, sắp xếp theo thời gian tạo giảm dần; truyền nextCursor của trang trước vào tham số after để lấy trang tiếp theo")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về một trang đơn thuê và cursor của trang kế tiếp"),
+            @ApiResponse(responseCode = "400", description = "Cursor không hợp lệ"),
+            @ApiResponse(responseCode = "500", description = "Không thể tìm kiếm do lỗi hệ thống")
+    })
+    public ResponseEntity<?> searchByCursor(
+            @RequestParam(required = false) String orderStatus,
+            @RequestParam(required = false) Long orderId,
+            @RequestParam(required = false) Long customerId,
+            @RequestParam(required = false) String startDateFrom,
+            @RequestParam(required = false) String startDateTo,
+            @RequestParam(required = false) String endDateFrom,
+            @RequestParam(required = false) String endDateTo,
+            @RequestParam(required = false) String createdAtFrom,
+            @RequestParam(required = false) String createdAtTo,
+            @Parameter(description = "nextCursor của trang trước") @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Có đếm tổng số đơn khớp bộ lọc hay không") @RequestParam(defaultValue = "false") boolean includeTotal) {
+        var result = service.searchByCursor(orderStatus, orderId, customerId, startDateFrom, startDateTo, endDateFrom, endDateTo,
+                createdAtFrom, createdAtTo, after, size, includeTotal);
+        return ResponseUtil.createSuccessResponse(
+                "Kết quả tìm kiếm đơn thuê",
+                "Phân trang theo cursor (createdAt, orderId)",
+                result,
+                HttpStatus.OK
+        );
+    }
 }
@@ -12,7 +12,12 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "rental_order")
+@Table(name = "rental_order", indexes = {
+        @Index(name = "idx_rental_order_customer_created", columnList = "customer_id, created_at, order_id"),
+        @Index(name = "idx_rental_order_status_created", columnList = "order_status, created_at, order_id"),
+        @Index(name = "idx_rental_order_created", columnList = "created_at, order_id"),
+        @Index(name = "idx_rental_order_plan_start", columnList = "plan_start_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,25 @@
+package com.rentaltech.techrental.rentalorder.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả tìm kiếm theo cursor (createdAt, orderId) giảm dần.
+ * {@code totalElements} chỉ có giá trị khi client yêu cầu {@code includeTotal}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalOrderCursorPageDto {
+    private List<RentalOrderResponseDto> content;
+    private int size;
+    private int numberOfElements;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+}
@@ -0,0 +1,24 @@
+package com.rentaltech.techrental.rentalorder.model.dto;
+
+import com.rentaltech.techrental.rentalorder.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection gọn cho màn hình danh sách đơn thuê: chỉ các cột của rental_order và tên khách hàng,
+ * không nạp chi tiết đơn, thiết bị, biên bản QC hay sai lệch. Chi tiết đầy đủ vẫn dùng {@link RentalOrderResponseDto}.
+ */
+public interface RentalOrderSummary {
+    Long getOrderId();
+    OrderStatus getOrderStatus();
+    LocalDateTime getPlanStartDate();
+    LocalDateTime getPlanEndDate();
+    LocalDateTime getStartDate();
+    LocalDateTime getEndDate();
+    BigDecimal getTotalPrice();
+    BigDecimal getDepositAmount();
+    LocalDateTime getCreatedAt();
+    Long getCustomerId();
+    String getCustomerName();
+}
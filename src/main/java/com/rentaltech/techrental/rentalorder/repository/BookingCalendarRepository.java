@@ -11,6 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface BookingCalendarRepository extends JpaRepository<BookingCalendar, Long>, BookingCalendarRepositoryCustom {
@@ -19,6 +20,17 @@ public interface BookingCalendarRepository extends JpaRepository<BookingCalendar
     @Modifying
     void deleteByRentalOrder_OrderId(Long orderId);
 
+    @Query("SELECT DISTINCT d.deviceModel.deviceModelId FROM BookingCalendar b JOIN b.device d " +
+            "WHERE b.rentalOrder.orderId = :orderId")
+    List<Long> findDeviceModelIdsByOrderId(@Param("orderId") Long orderId);
+
+    @Query("SELECT b.bookingId, d.deviceId, d.deviceModel.deviceModelId, b.rentalOrder.orderId, b.startTime, b.endTime " +
+            "FROM BookingCalendar b JOIN b.device d " +
+            "WHERE d.deviceModel.deviceModelId IN :deviceModelIds AND b.status IN :statuses AND b.endTime > :endAfter")
+    List<Object[]> findIntervalsByModelIds(@Param("deviceModelIds") Collection<Long> deviceModelIds,
+                                           @Param("statuses") Collection<BookingStatus> statuses,
+                                           @Param("endAfter") LocalDateTime endAfter);
+
     @Query("SELECT CASE WHEN COUNT(b) > 0 THEN true ELSE false END FROM BookingCalendar b " +
             "WHERE b.device.deviceId IN :deviceIds AND b.rentalOrder.orderId <> :excludeOrderId " +
             "AND b.status IN :statuses AND b.startTime < :endTime AND b.endTime > :startTime")
@@ -2,12 +2,21 @@ package com.rentaltech.techrental.rentalorder.repository;
 
 import com.rentaltech.techrental.rentalorder.model.OrderDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
     List<OrderDetail> findByRentalOrder_OrderId(Long orderId);
     void deleteByRentalOrder_OrderId(Long orderId);
+
+    @Query("SELECT od FROM OrderDetail od " +
+            "JOIN FETCH od.rentalOrder " +
+            "JOIN FETCH od.deviceModel m JOIN FETCH m.brand JOIN FETCH m.deviceCategory " +
+            "WHERE od.rentalOrder.orderId IN :orderIds ORDER BY od.orderDetailId")
+    List<OrderDetail> findWithModelByOrderIds(@Param("orderIds") Collection<Long> orderIds);
 }
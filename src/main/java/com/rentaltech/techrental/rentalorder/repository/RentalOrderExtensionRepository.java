@@ -4,12 +4,19 @@ import com.rentaltech.techrental.rentalorder.model.RentalOrder;
 import com.rentaltech.techrental.rentalorder.model.RentalOrderExtension;
 import com.rentaltech.techrental.rentalorder.model.RentalOrderExtensionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RentalOrderExtensionRepository extends JpaRepository<RentalOrderExtension, Long> {
     List<RentalOrderExtension> findByRentalOrder_OrderIdOrderByExtensionStartAsc(Long rentalOrderId);
 
+    @Query("SELECT e FROM RentalOrderExtension e WHERE e.rentalOrder.orderId IN :orderIds " +
+            "ORDER BY e.extensionStart ASC, e.extensionId ASC")
+    List<RentalOrderExtension> findByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
     List<RentalOrderExtension> findByRentalOrder_OrderIdAndStatus(Long rentalOrderId, RentalOrderExtensionStatus status);
 
     boolean existsByRentalOrder(RentalOrder rentalOrder);
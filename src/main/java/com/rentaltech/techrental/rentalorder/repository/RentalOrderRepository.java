@@ -2,6 +2,7 @@ package com.rentaltech.techrental.rentalorder.repository;
 
 import com.rentaltech.techrental.rentalorder.model.OrderStatus;
 import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderSummary;
 import com.rentaltech.techrental.finance.model.InvoiceType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -18,6 +19,7 @@ import java.util.List;
 @Repository
 public interface RentalOrderRepository extends JpaRepository<RentalOrder, Long>, JpaSpecificationExecutor<RentalOrder> {
     List<RentalOrder> findByCustomer_CustomerId(Long customerCustomerId);
+    Page<RentalOrder> findByCustomer_CustomerId(Long customerId, Pageable pageable);
     List<RentalOrder> findByCustomer_CustomerIdAndOrderStatus(Long customerId, OrderStatus orderStatus);
     List<RentalOrder> findByOrderStatusAndEndDateBetween(OrderStatus orderStatus, LocalDateTime from, LocalDateTime to);
     List<RentalOrder> findByOrderStatusAndPlanEndDateBetween(OrderStatus orderStatus, LocalDateTime from, LocalDateTime to);
@@ -42,27 +44,27 @@ public interface RentalOrderRepository extends JpaRepository<RentalOrder, Long>,
     BigDecimal sumTotalPriceByInvoiceTypeAndPaymentDateRange(@Param("type") InvoiceType type,
                                                              @Param("start") LocalDateTime start,
                                                              @Param("end") LocalDateTime end);
-    @Query("""
-            SELECT ro FROM RentalOrder ro
-            WHERE ro.orderId = COALESCE(:orderId, ro.orderId)
-              AND ro.orderStatus = COALESCE(:orderStatus, ro.orderStatus)
-              AND ro.customer.customerId = COALESCE(:customerId, ro.customer.customerId)
-              AND ro.planStartDate >= COALESCE(:startDateFrom, ro.planStartDate)
-              AND ro.planStartDate <= COALESCE(:startDateTo, ro.planStartDate)
-              AND ro.planEndDate >= COALESCE(:endDateFrom, ro.planEndDate)
-              AND ro.planEndDate <= COALESCE(:endDateTo, ro.planEndDate)
-              AND ro.createdAt >= COALESCE(:createdAtFrom, ro.createdAt)
-              AND ro.createdAt <= COALESCE(:createdAtTo, ro.createdAt)
-            """)
-    Page<RentalOrder> searchRentalOrders(
-            @Param("orderId") Long orderId,
-            @Param("orderStatus") OrderStatus orderStatus,
-            @Param("customerId") Long customerId,
-            @Param("startDateFrom") LocalDateTime startDateFrom,
-            @Param("startDateTo") LocalDateTime startDateTo,
-            @Param("endDateFrom") LocalDateTime endDateFrom,
-            @Param("endDateTo") LocalDateTime endDateTo,
-            @Param("createdAtFrom") LocalDateTime createdAtFrom,
-            @Param("createdAtTo") LocalDateTime createdAtTo,
-            Pageable pageable);
+
+    @Query(value = """
+            SELECT ro.orderId AS orderId, ro.orderStatus AS orderStatus,
+                   ro.planStartDate AS planStartDate, ro.planEndDate AS planEndDate,
+                   ro.startDate AS startDate, ro.endDate AS endDate,
+                   ro.totalPrice AS totalPrice, ro.depositAmount AS depositAmount, ro.createdAt AS createdAt,
+                   c.customerId AS customerId, c.fullName AS customerName
+            FROM RentalOrder ro JOIN ro.customer c
+            """,
+            countQuery = "SELECT COUNT(ro) FROM RentalOrder ro JOIN ro.customer c")
+    Page<RentalOrderSummary> findSummaries(Pageable pageable);
+
+    @Query(value = """
+            SELECT ro.orderId AS orderId, ro.orderStatus AS orderStatus,
+                   ro.planStartDate AS planStartDate, ro.planEndDate AS planEndDate,
+                   ro.startDate AS startDate, ro.endDate AS endDate,
+                   ro.totalPrice AS totalPrice, ro.depositAmount AS depositAmount, ro.createdAt AS createdAt,
+                   c.customerId AS customerId, c.fullName AS customerName
+            FROM RentalOrder ro JOIN ro.customer c
+            WHERE c.customerId = :customerId
+            """,
+            countQuery = "SELECT COUNT(ro) FROM RentalOrder ro JOIN ro.customer c WHERE c.customerId = :customerId")
+    Page<RentalOrderSummary> findSummariesByCustomerId(@Param("customerId") Long customerId, Pageable pageable);
 }
@@ -2,7 +2,9 @@ package com.rentaltech.techrental.rentalorder.repository;
 
 import com.rentaltech.techrental.rentalorder.model.Reservation;
 import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,6 +12,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
@@ -54,6 +57,47 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
                     @Param("referenceTime") LocalDateTime referenceTime,
                     @Param("expiredStatus") ReservationStatus expiredStatus);
 
+    /**
+     * Khóa các reservation trong {@code ids} còn hiệu lực và đã quá hạn giữ chỗ, trả về đúng những id sẽ bị
+     * {@link #markExpiredByIds} cập nhật (bản ghi vừa được gia hạn/xác nhận không nằm trong kết quả).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select r.id from Reservation r
+             where r.id in :ids
+               and r.status in :statuses
+               and r.expirationTime is not null
+               and r.expirationTime <= :referenceTime
+            """)
+    List<Long> lockExpirableIds(@Param("ids") Collection<Long> ids,
+                                @Param("statuses") Collection<ReservationStatus> statuses,
+                                @Param("referenceTime") LocalDateTime referenceTime);
+
+    @Modifying(clearAutomatically = true)
+    @Query("""
+            update Reservation r
+               set r.status = :expiredStatus
+             where r.id in :ids
+               and r.status in :statuses
+               and r.expirationTime is not null
+               and r.expirationTime <= :referenceTime
+            """)
+    int markExpiredByIds(@Param("ids") Collection<Long> ids,
+                         @Param("statuses") Collection<ReservationStatus> statuses,
+                         @Param("referenceTime") LocalDateTime referenceTime,
+                         @Param("expiredStatus") ReservationStatus expiredStatus);
+
+    @Query("""
+            select r.id, r.expirationTime
+            from Reservation r
+            where r.status in :statuses
+              and r.expirationTime is not null
+            """)
+    List<Object[]> findExpiryEntries(@Param("statuses") Collection<ReservationStatus> statuses);
+
+    @Query("select distinct r.deviceModel.deviceModelId from Reservation r where r.id in :ids")
+    List<Long> findDeviceModelIdsByIds(@Param("ids") Collection<Long> ids);
+
     @Modifying(clearAutomatically = true)
     @Query("""
             update Reservation r
@@ -79,4 +123,16 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
                                @Param("expirationTime") LocalDateTime expirationTime);
 
     void deleteByOrderDetail_RentalOrder_OrderId(Long orderId);
+
+    @Query("""
+            select r.id, r.deviceModel.deviceModelId, r.orderDetail.rentalOrder.orderId,
+                   r.startTime, r.endTime, r.reservedQuantity, r.status, r.expirationTime
+            from Reservation r
+            where r.deviceModel.deviceModelId in :deviceModelIds
+              and r.status in :statuses
+            """)
+    List<Object[]> findEntriesByModelIds(@Param("deviceModelIds") Collection<Long> deviceModelIds,
+                                         @Param("statuses") Collection<ReservationStatus> statuses);
+
+    List<Reservation> findByOrderDetail_RentalOrder_OrderId(Long orderId);
 }
@@ -0,0 +1,636 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.device.model.DeviceStatus;
+import com.rentaltech.techrental.device.repository.DeviceRepository;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
+import com.rentaltech.techrental.rentalorder.model.BookingCalendar;
+import com.rentaltech.techrental.rentalorder.model.BookingStatus;
+import com.rentaltech.techrental.rentalorder.model.Reservation;
+import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
+import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
+import com.rentaltech.techrental.rentalorder.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Chỉ mục khả dụng trong bộ nhớ theo từng model thiết bị.
+ * <p>
+ * Mỗi model được nạp từ DB một lần (thiết bị, lịch BOOKED/ACTIVE, giữ chỗ PENDING_REVIEW/UNDER_REVIEW;
+ * nhiều model được nạp chung bằng ba truy vấn IN),
+ * sau đó được cập nhật sau khi transaction ghi commit. Các truy vấn khả dụng chỉ đọc từ bộ nhớ.
+ * Một model quá {@code availability.index.max-age} sẽ được nạp lại để tự sửa sai lệch
+ * từ các node khác hoặc các thao tác ghi không đi qua service.
+ * Chỉ nạp lịch kết thúc sau {@code now - availability.index.booking-lookback}; lịch đã qua bị bỏ khi model được nạp lại,
+ * nên truy vấn cho khoảng thời gian trước mốc đó không còn chính xác.
+ * Mỗi thay đổi đã commit cũng xóa kết quả tương ứng trong {@link AvailabilityResultCache}.
+ */
+@Slf4j
+@Component
+public class AvailabilityIndex {
+
+    static final Set<BookingStatus> BUSY_BOOKING_STATUSES = EnumSet.of(BookingStatus.BOOKED, BookingStatus.ACTIVE);
+    static final Set<ReservationStatus> ACTIVE_RESERVATION_STATUSES =
+            EnumSet.of(ReservationStatus.PENDING_REVIEW, ReservationStatus.UNDER_REVIEW);
+    static final Set<ReservationStatus> TECHNICIAN_RESERVATION_STATUSES = EnumSet.of(ReservationStatus.UNDER_REVIEW);
+
+    private final DeviceRepository deviceRepository;
+    private final BookingCalendarRepository bookingCalendarRepository;
+    private final ReservationRepository reservationRepository;
+    private final AvailabilityResultCache resultCache;
+    private final long maxAgeNanos;
+    private final Duration bookingLookback;
+
+    private final ConcurrentHashMap<Long, ModelSlot> slots = new ConcurrentHashMap<>();
+    // Tăng sau mỗi transaction ghi kết thúc; slot đang nạp dở sẽ không được cache nếu giá trị này đổi.
+    private final AtomicLong mutationCounter = new AtomicLong();
+
+    public AvailabilityIndex(DeviceRepository deviceRepository,
+                             BookingCalendarRepository bookingCalendarRepository,
+                             ReservationRepository reservationRepository,
+                             AvailabilityResultCache resultCache,
+                             @Value("${availability.index.max-age:PT10M}") Duration maxAge,
+                             @Value("${availability.index.booking-lookback:P1D}") Duration bookingLookback) {
+        this.deviceRepository = deviceRepository;
+        this.bookingCalendarRepository = bookingCalendarRepository;
+        this.reservationRepository = reservationRepository;
+        this.resultCache = resultCache;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.bookingLookback = bookingLookback;
+    }
+
+    public long availableCount(Long deviceModelId, LocalDateTime start, LocalDateTime end, boolean technicianView) {
+        if (deviceModelId == null) {
+            return 0L;
+        }
+        return availableCounts(List.of(deviceModelId), start, end, technicianView).getOrDefault(deviceModelId, 0L);
+    }
+
+    /**
+     * Số thiết bị khả dụng cho nhiều model; các model chưa có trong bộ nhớ được nạp chung bằng một lượt truy vấn.
+     */
+    public Map<Long, Long> availableCounts(Collection<Long> deviceModelIds, LocalDateTime start, LocalDateTime end,
+                                           boolean technicianView) {
+        if (deviceModelIds == null || deviceModelIds.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> ids = new LinkedHashSet<>(deviceModelIds);
+        ids.remove(null);
+        Map<Long, Long> result = new LinkedHashMap<>();
+        if (start == null || end == null || !start.isBefore(end)) {
+            ids.forEach(id -> result.put(id, 0L));
+            return result;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        slotsFor(ids).forEach((id, slot) -> result.put(id, slot.availableCount(start, end, technicianView, now)));
+        return result;
+    }
+
+    /**
+     * Giống {@link #availableCounts} nhưng luôn đọc trực tiếp từ DB và không cache; dùng khi đang giữ khóa
+     * admission để thấy cả các giữ chỗ vừa commit từ node khác.
+     */
+    public Map<Long, Long> availableCountsFromDatabase(Collection<Long> deviceModelIds, LocalDateTime start,
+                                                       LocalDateTime end, boolean technicianView) {
+        if (deviceModelIds == null || deviceModelIds.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> ids = new LinkedHashSet<>(deviceModelIds);
+        ids.remove(null);
+        Map<Long, Long> result = new LinkedHashMap<>();
+        if (start == null || end == null || !start.isBefore(end)) {
+            ids.forEach(id -> result.put(id, 0L));
+            return result;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, ModelSlot> loaded = loadAll(ids);
+        ids.forEach(id -> result.put(id, loaded.get(id).availableCount(start, end, technicianView, now)));
+        return result;
+    }
+
+    /**
+     * Số thiết bị khả dụng cho từng khung {@code step} trong [from, to), tính bằng một lượt quét qua các khoảng
+     * bận và giữ chỗ thay vì gọi {@link #availableCount} cho từng khung. Mỗi khung được nới thêm {@code margin}
+     * ở hai đầu, giống khoảng đệm của API kiểm tra khả dụng.
+     */
+    public long[] availabilityTimeline(Long deviceModelId, LocalDateTime from, LocalDateTime to,
+                                       Duration step, Duration margin, boolean technicianView) {
+        if (deviceModelId == null || from == null || to == null || !from.isBefore(to)
+                || step == null || step.isZero() || step.isNegative()) {
+            return new long[0];
+        }
+        Timeline timeline = new Timeline(from, to, step, margin != null ? margin : Duration.ZERO);
+        return slotsFor(Set.of(deviceModelId)).get(deviceModelId)
+                .availabilityTimeline(timeline, technicianView, LocalDateTime.now());
+    }
+
+    public void onBookingsSaved(Collection<BookingCalendar> bookings) {
+        if (bookings == null || bookings.isEmpty()) {
+            return;
+        }
+        List<BusyInterval> intervals = bookings.stream()
+                .map(BusyInterval::from)
+                .filter(Objects::nonNull)
+                .toList();
+        if (intervals.size() != bookings.size()) {
+            // Thiếu thông tin thiết bị/model để đặt đúng chỗ: nạp lại toàn bộ thay vì đoán.
+            afterCommit(() -> {
+                slots.clear();
+                return null;
+            });
+            return;
+        }
+        afterCommit(() -> {
+            Set<Long> affected = new HashSet<>();
+            intervals.forEach(interval -> {
+                affected.add(interval.deviceModelId());
+                ModelSlot slot = slots.get(interval.deviceModelId());
+                if (slot != null) {
+                    slot.putBooking(interval);
+                }
+            });
+            return affected;
+        });
+    }
+
+    /**
+     * @param deviceModelIds các model có lịch của đơn (đọc trước khi xóa); {@code null} nếu không rõ
+     */
+    public void onBookingsCleared(Long orderId, Collection<Long> deviceModelIds) {
+        if (orderId == null) {
+            return;
+        }
+        Set<Long> affected = deviceModelIds != null ? Set.copyOf(deviceModelIds) : null;
+        afterCommit(() -> {
+            slots.values().forEach(slot -> slot.removeBookingsForOrder(orderId));
+            return affected;
+        });
+    }
+
+    public void onReservationsSaved(Collection<Reservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            return;
+        }
+        List<ReservationEntry> entries = reservations.stream()
+                .map(ReservationEntry::from)
+                .filter(Objects::nonNull)
+                .toList();
+        afterCommit(() -> upsertReservations(entries));
+    }
+
+    public void onReservationsExpired(LocalDateTime referenceTime) {
+        if (referenceTime == null) {
+            return;
+        }
+        // Chạy theo lịch, không rõ model nào bị ảnh hưởng: xóa toàn bộ cache kết quả.
+        afterCommit(() -> {
+            slots.values().forEach(slot -> slot.expireReservations(referenceTime));
+            return null;
+        });
+    }
+
+    public void onReservationsExpired(Collection<Long> reservationIds, Collection<Long> deviceModelIds) {
+        if (reservationIds == null || reservationIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(reservationIds);
+        Set<Long> affected = deviceModelIds != null ? Set.copyOf(deviceModelIds) : null;
+        afterCommit(() -> {
+            slots.values().forEach(slot -> ids.forEach(slot::removeReservation));
+            return affected;
+        });
+    }
+
+    /**
+     * Chạy đồng bộ lúc phát sự kiện để đăng ký cập nhật sau commit như các thao tác ghi khác
+     * (rollback cũng làm tăng {@code mutationCounter}).
+     */
+    @EventListener
+    public void onDeviceChanged(DeviceChangedEvent event) {
+        if (event == null || event.deviceId() == null) {
+            return;
+        }
+        Long deviceId = event.deviceId();
+        Long modelId = event.deviceModelId();
+        DeviceStatus status = event.status();
+        boolean removed = event.removed();
+        afterCommit(() -> {
+            Set<Long> affected = new HashSet<>();
+            if (modelId != null) {
+                affected.add(modelId);
+            }
+            slots.forEach((slotModelId, slot) -> {
+                if (!removed && slotModelId.equals(modelId)) {
+                    slot.putDevice(deviceId, status);
+                } else if (slot.removeDevice(deviceId)) {
+                    affected.add(slotModelId);
+                }
+            });
+            return affected;
+        });
+    }
+
+    public void evict(Long deviceModelId) {
+        if (deviceModelId != null) {
+            slots.remove(deviceModelId);
+            resultCache.invalidateModels(Set.of(deviceModelId));
+        }
+        mutationCounter.incrementAndGet();
+    }
+
+    private Map<Long, ModelSlot> slotsFor(Set<Long> deviceModelIds) {
+        Map<Long, ModelSlot> result = new LinkedHashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : deviceModelIds) {
+            ModelSlot slot = slots.get(id);
+            if (slot != null && !slot.isStale(maxAgeNanos)) {
+                result.put(id, slot);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        long observedMutations = mutationCounter.get();
+        Map<Long, ModelSlot> loaded = loadAll(missing);
+        // Không cache dữ liệu đọc trong transaction ghi: có thể chứa thay đổi chưa commit.
+        if (!insideWriteTransaction() && mutationCounter.get() == observedMutations) {
+            slots.putAll(loaded);
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    private Map<Long, ModelSlot> loadAll(Set<Long> deviceModelIds) {
+        Map<Long, ModelSlot> loaded = new HashMap<>();
+        deviceModelIds.forEach(id -> loaded.put(id, new ModelSlot(id)));
+        for (Object[] row : deviceRepository.findStatusesByModelIds(deviceModelIds)) {
+            ModelSlot slot = loaded.get((Long) row[1]);
+            if (slot != null) {
+                slot.putDevice((Long) row[0], (DeviceStatus) row[2]);
+            }
+        }
+        for (Object[] row : bookingCalendarRepository.findIntervalsByModelIds(
+                deviceModelIds, BUSY_BOOKING_STATUSES, LocalDateTime.now().minus(bookingLookback))) {
+            BusyInterval interval = BusyInterval.from(row);
+            ModelSlot slot = loaded.get(interval.deviceModelId());
+            if (slot != null) {
+                slot.putBooking(interval);
+            }
+        }
+        for (Object[] row : reservationRepository.findEntriesByModelIds(deviceModelIds, ACTIVE_RESERVATION_STATUSES)) {
+            ReservationEntry entry = ReservationEntry.from(row);
+            ModelSlot slot = loaded.get(entry.deviceModelId());
+            if (slot != null) {
+                slot.putReservation(entry);
+            }
+        }
+        return loaded;
+    }
+
+    private Set<Long> upsertReservations(List<ReservationEntry> entries) {
+        Set<Long> affected = new HashSet<>();
+        entries.forEach(entry -> {
+            affected.add(entry.deviceModelId());
+            slots.forEach((slotModelId, slot) -> {
+                if (slot.removeReservation(entry.reservationId())) {
+                    affected.add(slotModelId);
+                }
+            });
+            ModelSlot slot = slots.get(entry.deviceModelId());
+            if (slot != null && ACTIVE_RESERVATION_STATUSES.contains(entry.status())) {
+                slot.putReservation(entry);
+            }
+        });
+        return affected;
+    }
+
+    /**
+     * {@code action} cập nhật các slot và trả về các model bị ảnh hưởng ({@code null} = không rõ, xóa toàn bộ)
+     * để xóa kết quả cache tương ứng.
+     */
+    private void afterCommit(Supplier<Collection<Long>> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        apply(action);
+                    } else {
+                        mutationCounter.incrementAndGet();
+                    }
+                }
+            });
+            return;
+        }
+        apply(action);
+    }
+
+    private void apply(Supplier<Collection<Long>> action) {
+        Collection<Long> affected = null;
+        try {
+            affected = action.get();
+        } catch (RuntimeException ex) {
+            log.warn("Không thể cập nhật chỉ mục khả dụng, xóa toàn bộ để nạp lại: {}", ex.getMessage(), ex);
+            slots.clear();
+        } finally {
+            mutationCounter.incrementAndGet();
+            if (affected != null) {
+                resultCache.invalidateModels(affected);
+            } else {
+                resultCache.invalidateAll();
+            }
+        }
+    }
+
+    private static boolean insideWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private record BusyInterval(Long bookingId, Long deviceId, Long deviceModelId, Long orderId,
+                                LocalDateTime start, LocalDateTime end) {
+
+        static final Comparator<BusyInterval> BY_START = Comparator
+                .comparing(BusyInterval::start)
+                .thenComparing(BusyInterval::bookingId);
+
+        static BusyInterval from(BookingCalendar booking) {
+            if (booking == null || booking.getBookingId() == null || booking.getDevice() == null
+                    || booking.getDevice().getDeviceId() == null || booking.getDevice().getDeviceModel() == null
+                    || booking.getStartTime() == null || booking.getEndTime() == null
+                    || !BUSY_BOOKING_STATUSES.contains(booking.getStatus())) {
+                return null;
+            }
+            return new BusyInterval(
+                    booking.getBookingId(),
+                    booking.getDevice().getDeviceId(),
+                    booking.getDevice().getDeviceModel().getDeviceModelId(),
+                    booking.getRentalOrder() != null ? booking.getRentalOrder().getOrderId() : null,
+                    booking.getStartTime(),
+                    booking.getEndTime());
+        }
+
+        static BusyInterval from(Object[] row) {
+            return new BusyInterval((Long) row[0], (Long) row[1], (Long) row[2], (Long) row[3],
+                    (LocalDateTime) row[4], (LocalDateTime) row[5]);
+        }
+
+        boolean overlaps(LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+            return start.isBefore(rangeEnd) && end.isAfter(rangeStart);
+        }
+    }
+
+    private record ReservationEntry(Long reservationId, Long deviceModelId, Long orderId,
+                                    LocalDateTime start, LocalDateTime end, int quantity,
+                                    ReservationStatus status, LocalDateTime expirationTime) {
+
+        static ReservationEntry from(Reservation reservation) {
+            if (reservation == null || reservation.getId() == null || reservation.getDeviceModel() == null
+                    || reservation.getStartTime() == null || reservation.getEndTime() == null) {
+                return null;
+            }
+            var detail = reservation.getOrderDetail();
+            Long orderId = detail != null && detail.getRentalOrder() != null ? detail.getRentalOrder().getOrderId() : null;
+            return new ReservationEntry(
+                    reservation.getId(),
+                    reservation.getDeviceModel().getDeviceModelId(),
+                    orderId,
+                    reservation.getStartTime(),
+                    reservation.getEndTime(),
+                    reservation.getReservedQuantity() != null ? reservation.getReservedQuantity() : 0,
+                    reservation.getStatus(),
+                    reservation.getExpirationTime());
+        }
+
+        static ReservationEntry from(Object[] row) {
+            return new ReservationEntry((Long) row[0], (Long) row[1], (Long) row[2],
+                    (LocalDateTime) row[3], (LocalDateTime) row[4],
+                    row[5] != null ? (Integer) row[5] : 0,
+                    (ReservationStatus) row[6], (LocalDateTime) row[7]);
+        }
+
+        boolean overlaps(LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+            return start.isBefore(rangeEnd) && end.isAfter(rangeStart);
+        }
+    }
+
+    /**
+     * Chia [from, to) thành các khung bằng nhau (khung cuối có thể ngắn hơn) và quy đổi một khoảng thời gian,
+     * sau khi nới {@code margin}, thành dải chỉ số khung mà nó giao nhau.
+     */
+    private record Timeline(LocalDateTime from, LocalDateTime to, Duration step, Duration margin) {
+
+        int bucketCount() {
+            return Math.toIntExact(ceilDiv(Duration.between(from, to).getSeconds(), step.getSeconds()));
+        }
+
+        /** Trả về {chỉ số đầu, chỉ số cuối} hoặc null nếu khoảng không giao với khung nào. */
+        int[] bucketRange(LocalDateTime start, LocalDateTime end) {
+            LocalDateTime expandedStart = start.minus(margin);
+            LocalDateTime expandedEnd = end.plus(margin);
+            if (!expandedStart.isBefore(to) || !expandedEnd.isAfter(from)) {
+                return null;
+            }
+            long stepSeconds = step.getSeconds();
+            long first = Math.max(0, Math.floorDiv(Duration.between(from, expandedStart).getSeconds(), stepSeconds));
+            long last = Math.min(bucketCount() - 1L,
+                    ceilDiv(Duration.between(from, expandedEnd).getSeconds(), stepSeconds) - 1);
+            return first <= last ? new int[]{(int) first, (int) last} : null;
+        }
+
+        private static long ceilDiv(long value, long divisor) {
+            return -Math.floorDiv(-value, divisor);
+        }
+    }
+
+    /**
+     * Trạng thái của một model: thiết bị, các khoảng bận sắp theo thời điểm bắt đầu cho từng thiết bị, và giữ chỗ.
+     */
+    private static final class ModelSlot {
+
+        private final Long deviceModelId;
+        private final long loadedAtNanos = System.nanoTime();
+        private final Map<Long, DeviceStatus> devices = new HashMap<>();
+        private final Map<Long, NavigableSet<BusyInterval>> busyByDevice = new HashMap<>();
+        private final Map<Long, ReservationEntry> reservations = new HashMap<>();
+
+        private ModelSlot(Long deviceModelId) {
+            this.deviceModelId = deviceModelId;
+        }
+
+        boolean isStale(long maxAgeNanos) {
+            return System.nanoTime() - loadedAtNanos > maxAgeNanos;
+        }
+
+        synchronized long availableCount(LocalDateTime start, LocalDateTime end, boolean technicianView, LocalDateTime now) {
+            if (devices.isEmpty()) {
+                return 0L;
+            }
+            long freeDevices = 0;
+            long damagedOrLostFree = 0;
+            for (Map.Entry<Long, DeviceStatus> device : devices.entrySet()) {
+                if (isBusy(device.getKey(), start, end)) {
+                    continue;
+                }
+                freeDevices++;
+                if (device.getValue() == DeviceStatus.DAMAGED || device.getValue() == DeviceStatus.LOST) {
+                    damagedOrLostFree++;
+                }
+            }
+            long reserved = 0;
+            for (ReservationEntry reservation : reservations.values()) {
+                if (!reservation.overlaps(start, end)) {
+                    continue;
+                }
+                if (technicianView) {
+                    if (TECHNICIAN_RESERVATION_STATUSES.contains(reservation.status())) {
+                        reserved += reservation.quantity();
+                    }
+                } else if (reservation.expirationTime() == null || reservation.expirationTime().isAfter(now)) {
+                    reserved += reservation.quantity();
+                }
+            }
+            return Math.max(freeDevices - reserved - damagedOrLostFree, 0);
+        }
+
+        synchronized long[] availabilityTimeline(Timeline timeline, boolean technicianView, LocalDateTime now) {
+            int buckets = timeline.bucketCount();
+            // Mảng hiệu: +x tại chỉ số đầu, -x sau chỉ số cuối; cộng dồn một lần để có giá trị từng khung.
+            long[] busyDelta = new long[buckets + 1];
+            long[] busyDamagedDelta = new long[buckets + 1];
+            long[] reservedDelta = new long[buckets + 1];
+            long damagedOrLost = 0;
+            for (Map.Entry<Long, DeviceStatus> device : devices.entrySet()) {
+                boolean damaged = device.getValue() == DeviceStatus.DAMAGED || device.getValue() == DeviceStatus.LOST;
+                if (damaged) {
+                    damagedOrLost++;
+                }
+                NavigableSet<BusyInterval> intervals = busyByDevice.get(device.getKey());
+                if (intervals == null) {
+                    continue;
+                }
+                // Gộp các khoảng bận của cùng thiết bị để mỗi khung chỉ đếm thiết bị đó một lần.
+                int mergedFirst = -1;
+                int mergedLast = -1;
+                for (BusyInterval interval : intervals) {
+                    int[] range = timeline.bucketRange(interval.start(), interval.end());
+                    if (range == null) {
+                        continue;
+                    }
+                    if (mergedFirst >= 0 && range[0] <= mergedLast + 1) {
+                        mergedLast = Math.max(mergedLast, range[1]);
+                        continue;
+                    }
+                    if (mergedFirst >= 0) {
+                        addRange(busyDelta, mergedFirst, mergedLast, 1);
+                        if (damaged) {
+                            addRange(busyDamagedDelta, mergedFirst, mergedLast, 1);
+                        }
+                    }
+                    mergedFirst = range[0];
+                    mergedLast = range[1];
+                }
+                if (mergedFirst >= 0) {
+                    addRange(busyDelta, mergedFirst, mergedLast, 1);
+                    if (damaged) {
+                        addRange(busyDamagedDelta, mergedFirst, mergedLast, 1);
+                    }
+                }
+            }
+            for (ReservationEntry reservation : reservations.values()) {
+                boolean counted = technicianView
+                        ? TECHNICIAN_RESERVATION_STATUSES.contains(reservation.status())
+                        : reservation.expirationTime() == null || reservation.expirationTime().isAfter(now);
+                int[] range = counted ? timeline.bucketRange(reservation.start(), reservation.end()) : null;
+                if (range != null) {
+                    addRange(reservedDelta, range[0], range[1], reservation.quantity());
+                }
+            }
+            long[] available = new long[buckets];
+            long busy = 0;
+            long busyDamaged = 0;
+            long reserved = 0;
+            for (int i = 0; i < buckets; i++) {
+                busy += busyDelta[i];
+                busyDamaged += busyDamagedDelta[i];
+                reserved += reservedDelta[i];
+                long free = devices.size() - busy;
+                long damagedOrLostFree = damagedOrLost - busyDamaged;
+                available[i] = Math.max(free - reserved - damagedOrLostFree, 0);
+            }
+            return available;
+        }
+
+        private static void addRange(long[] delta, int first, int last, long value) {
+            delta[first] += value;
+            delta[last + 1] -= value;
+        }
+
+        private boolean isBusy(Long deviceId, LocalDateTime start, LocalDateTime end) {
+            NavigableSet<BusyInterval> intervals = busyByDevice.get(deviceId);
+            if (intervals == null) {
+                return false;
+            }
+            for (BusyInterval interval : intervals) {
+                if (!interval.start().isBefore(end)) {
+                    return false;
+                }
+                if (interval.overlaps(start, end)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void putDevice(Long deviceId, DeviceStatus status) {
+            if (deviceId != null) {
+                devices.put(deviceId, status);
+            }
+        }
+
+        synchronized boolean removeDevice(Long deviceId) {
+            busyByDevice.remove(deviceId);
+            return devices.remove(deviceId) != null;
+        }
+
+        synchronized void putBooking(BusyInterval interval) {
+            if (!deviceModelId.equals(interval.deviceModelId())) {
+                return;
+            }
+            NavigableSet<BusyInterval> intervals = busyByDevice.computeIfAbsent(
+                    interval.deviceId(), id -> new TreeSet<>(BusyInterval.BY_START));
+            intervals.removeIf(existing -> existing.bookingId().equals(interval.bookingId()));
+            intervals.add(interval);
+        }
+
+        synchronized void removeBookingsForOrder(Long orderId) {
+            busyByDevice.values().forEach(intervals -> intervals.removeIf(interval -> orderId.equals(interval.orderId())));
+            busyByDevice.values().removeIf(Set::isEmpty);
+        }
+
+        synchronized void putReservation(ReservationEntry entry) {
+            reservations.put(entry.reservationId(), entry);
+        }
+
+        synchronized boolean removeReservation(Long reservationId) {
+            return reservations.remove(reservationId) != null;
+        }
+
+        synchronized void expireReservations(LocalDateTime referenceTime) {
+            reservations.values().removeIf(entry ->
+                    entry.expirationTime() != null && !entry.expirationTime().isAfter(referenceTime));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import lombok.Builder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả tra cứu khả dụng theo (loại truy vấn, model, khoảng thời gian, góc nhìn technician).
+ * <p>
+ * Giới hạn số phần tử theo LRU và hết hạn sau một TTL ngắn; {@link AvailabilityIndex} xóa các phần tử của model
+ * ngay khi lịch đặt, giữ chỗ hoặc trạng thái thiết bị của model đó thay đổi.
+ */
+@Component
+public class AvailabilityResultCache {
+
+    public enum Kind {
+        MODEL_COUNT,
+        AVAILABLE_DEVICES
+    }
+
+    private record Key(Kind kind, Long deviceModelId, LocalDateTime start, LocalDateTime end, boolean technicianView) {
+    }
+
+    private record Entry(Object value, long expiresAtNanos) {
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+    // Tăng mỗi lần invalidate; giá trị tính xong sau một lần invalidate sẽ không được lưu lại.
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AvailabilityResultCache(@Value("${availability.cache.max-entries:10000}") int maxEntries,
+                                   @Value("${availability.cache.ttl:PT30S}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > AvailabilityResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, Long deviceModelId, LocalDateTime start, LocalDateTime end, boolean technicianView,
+                     Supplier<T> loader) {
+        Key key = new Key(kind, deviceModelId, start, end, technicianView);
+        Entry cached = lookup(key);
+        if (cached != null) {
+            return (T) cached.value();
+        }
+        long observedEpoch = invalidationEpoch.get();
+        T value = loader.get();
+        put(key, value, observedEpoch);
+        return value;
+    }
+
+    /**
+     * Trả về các giá trị đã có trong cache; các model còn thiếu được tính một lần bằng {@code loader} rồi lưu lại.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<Long, T> getAll(Kind kind, Collection<Long> deviceModelIds, LocalDateTime start, LocalDateTime end,
+                                   boolean technicianView, Function<Set<Long>, Map<Long, T>> loader) {
+        Map<Long, T> result = new LinkedHashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : deviceModelIds) {
+            Entry cached = lookup(new Key(kind, id, start, end, technicianView));
+            if (cached != null) {
+                result.put(id, (T) cached.value());
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        long observedEpoch = invalidationEpoch.get();
+        Map<Long, T> loaded = loader.apply(missing);
+        loaded.forEach((id, value) -> put(new Key(kind, id, start, end, technicianView), value, observedEpoch));
+        result.putAll(loaded);
+        return result;
+    }
+
+    public void invalidateModels(Collection<Long> deviceModelIds) {
+        if (deviceModelIds == null || deviceModelIds.isEmpty()) {
+            return;
+        }
+        invalidationEpoch.incrementAndGet();
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> {
+                boolean match = deviceModelIds.contains(key.deviceModelId());
+                if (match) {
+                    invalidations.incrementAndGet();
+                }
+                return match;
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        invalidationEpoch.incrementAndGet();
+        synchronized (entries) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Stats.builder()
+                .hits(hits.get())
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .invalidations(invalidations.get())
+                .size(size)
+                .maxEntries(maxEntries)
+                .build();
+    }
+
+    private Entry lookup(Key key) {
+        synchronized (entries) {
+            Entry cached = entries.get(key);
+            if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            if (cached != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void put(Key key, Object value, long observedEpoch) {
+        // Giá trị tính trong transaction ghi có thể chứa thay đổi chưa commit.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        synchronized (entries) {
+            if (invalidationEpoch.get() == observedEpoch) {
+                entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    @Builder
+    public record Stats(long hits, long misses, long evictions, long invalidations, int size, int maxEntries) {
+    }
+}
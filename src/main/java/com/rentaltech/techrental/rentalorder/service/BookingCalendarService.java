@@ -2,12 +2,18 @@ package com.rentaltech.techrental.rentalorder.service;
 
 import com.rentaltech.techrental.device.model.Allocation;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface BookingCalendarService {
     void createBookingsForAllocations(List<Allocation> allocations);
     void clearBookingsForOrder(Long orderId);
     long getAvailableCountByModel(Long deviceModelId, LocalDateTime start, LocalDateTime end);
+    Map<Long, Long> getAvailableCounts(Collection<Long> deviceModelIds, LocalDateTime start, LocalDateTime end);
+    long[] getAvailabilityTimeline(Long deviceModelId, LocalDateTime start, LocalDateTime end, Duration step, Duration margin);
+    boolean isTechnicianView();
 }
 
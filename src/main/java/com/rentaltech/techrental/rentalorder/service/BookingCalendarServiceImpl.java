@@ -2,12 +2,8 @@ package com.rentaltech.techrental.rentalorder.service;
 
 import com.rentaltech.techrental.authentication.model.Role;
 import com.rentaltech.techrental.device.model.Allocation;
-import com.rentaltech.techrental.device.model.Device;
-import com.rentaltech.techrental.device.model.DeviceStatus;
-import com.rentaltech.techrental.device.repository.DeviceRepository;
 import com.rentaltech.techrental.rentalorder.model.BookingCalendar;
 import com.rentaltech.techrental.rentalorder.model.BookingStatus;
-import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
 import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
@@ -15,6 +11,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -23,8 +20,8 @@ import java.util.*;
 public class BookingCalendarServiceImpl implements BookingCalendarService {
 
     private final BookingCalendarRepository bookingCalendarRepository;
-    private final DeviceRepository deviceRepository;
-    private final ReservationService reservationService;
+    private final AvailabilityIndex availabilityIndex;
+    private final AvailabilityResultCache availabilityResultCache;
 
     @Override
     @Transactional
@@ -47,7 +44,7 @@ public class BookingCalendarServiceImpl implements BookingCalendarService {
                     .build());
         });
         if (!items.isEmpty()) {
-            bookingCalendarRepository.saveAll(items);
+            availabilityIndex.onBookingsSaved(bookingCalendarRepository.saveAll(items));
         }
     }
 
@@ -55,7 +52,9 @@ public class BookingCalendarServiceImpl implements BookingCalendarService {
     @Transactional
     public void clearBookingsForOrder(Long orderId) {
         if (orderId == null) return;
+        List<Long> deviceModelIds = bookingCalendarRepository.findDeviceModelIdsByOrderId(orderId);
         bookingCalendarRepository.deleteByRentalOrder_OrderId(orderId);
+        availabilityIndex.onBookingsCleared(orderId, deviceModelIds);
     }
 
     @Override
@@ -63,32 +62,35 @@ public class BookingCalendarServiceImpl implements BookingCalendarService {
     public long getAvailableCountByModel(Long deviceModelId, LocalDateTime start, LocalDateTime end) {
         if (deviceModelId == null || start == null || end == null) return 0L;
         if (!start.isBefore(end)) return 0L;
-        List<Device> devices = deviceRepository.findByDeviceModel_DeviceModelId(deviceModelId);
-        if (devices.isEmpty()) {
-            return 0L;
-        }
-        Set<Long> busyDeviceIds = bookingCalendarRepository.findBusyDeviceIdsByModelAndRange(
-                deviceModelId, start, end, EnumSet.of(BookingStatus.BOOKED, BookingStatus.ACTIVE)
-        );
-        long freeDevices = devices.stream()
-                .filter(device -> device.getDeviceId() != null && !busyDeviceIds.contains(device.getDeviceId()))
-                .count();
-        long damagedOrLostFree = devices.stream()
-                .filter(device -> device.getDeviceId() != null && !busyDeviceIds.contains(device.getDeviceId()))
-                .filter(device -> device.getStatus() == DeviceStatus.DAMAGED || device.getStatus() == DeviceStatus.LOST)
-                .count();
-        long reserved = reservationService.countActiveReservedQuantity(deviceModelId, start, end);
-
-        long available = freeDevices - reserved - damagedOrLostFree;
+        boolean technicianView = isTechnicianView();
+        return availabilityResultCache.get(AvailabilityResultCache.Kind.MODEL_COUNT, deviceModelId, start, end, technicianView,
+                () -> availabilityIndex.availableCount(deviceModelId, start, end, technicianView));
+    }
 
-        Role role = resolveCurrentUserRole();
-        if (role == Role.TECHNICIAN) {
-            long underReview = reservationService.countReservedQuantityByStatus(
-                    deviceModelId, start, end, EnumSet.of(ReservationStatus.UNDER_REVIEW));
-            available = freeDevices - underReview - damagedOrLostFree;
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getAvailableCounts(Collection<Long> deviceModelIds, LocalDateTime start, LocalDateTime end) {
+        if (deviceModelIds == null || deviceModelIds.isEmpty()) return Map.of();
+        if (start == null || end == null || !start.isBefore(end)) {
+            return availabilityIndex.availableCounts(deviceModelIds, start, end, false);
         }
+        Set<Long> ids = new LinkedHashSet<>(deviceModelIds);
+        ids.remove(null);
+        boolean technicianView = isTechnicianView();
+        return availabilityResultCache.getAll(AvailabilityResultCache.Kind.MODEL_COUNT, ids, start, end, technicianView,
+                missing -> availabilityIndex.availableCounts(missing, start, end, technicianView));
+    }
 
-        return Math.max(available, 0);
+    @Override
+    @Transactional(readOnly = true)
+    public long[] getAvailabilityTimeline(Long deviceModelId, LocalDateTime start, LocalDateTime end, Duration step, Duration margin) {
+        return availabilityIndex.availabilityTimeline(deviceModelId, start, end, step, margin,
+                isTechnicianView());
+    }
+
+    @Override
+    public boolean isTechnicianView() {
+        return resolveCurrentUserRole() == Role.TECHNICIAN;
     }
 
     private Role resolveCurrentUserRole() {
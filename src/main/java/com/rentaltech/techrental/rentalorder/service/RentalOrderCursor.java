@@ -0,0 +1,37 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Vị trí (createdAt, orderId) của đơn cuối trang, mã hóa base64url để client chỉ việc gửi lại nguyên chuỗi.
+ */
+record RentalOrderCursor(LocalDateTime createdAt, Long orderId) {
+
+    private static final String SEPARATOR = "|";
+
+    static RentalOrderCursor of(RentalOrder order) {
+        return new RentalOrderCursor(order.getCreatedAt(), order.getOrderId());
+    }
+
+    static RentalOrderCursor decode(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            return new RentalOrderCursor(LocalDateTime.parse(raw.substring(0, split)), Long.valueOf(raw.substring(split + 1)));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + value);
+        }
+    }
+
+    String encode() {
+        String raw = createdAt + SEPARATOR + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
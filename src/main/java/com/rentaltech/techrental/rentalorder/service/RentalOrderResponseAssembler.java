@@ -0,0 +1,134 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.device.model.*;
+import com.rentaltech.techrental.device.repository.AllocationConditionSnapshotRepository;
+import com.rentaltech.techrental.device.repository.AllocationRepository;
+import com.rentaltech.techrental.device.repository.DiscrepancyReportRepository;
+import com.rentaltech.techrental.rentalorder.model.OrderDetail;
+import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderExtensionResponseDto;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderResponseDto;
+import com.rentaltech.techrental.rentalorder.repository.OrderDetailRepository;
+import com.rentaltech.techrental.rentalorder.repository.RentalOrderExtensionRepository;
+import com.rentaltech.techrental.webapi.technician.model.dto.QCReportDeviceConditionResponseDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng {@link RentalOrderResponseDto} cho cả một trang đơn: mỗi loại dữ liệu con (chi tiết, allocation,
+ * snapshot QC, biên bản sai lệch, gia hạn) được nạp bằng đúng một truy vấn {@code IN (:orderIds)}
+ * rồi ghép lại trong bộ nhớ, thay vì truy vấn riêng cho từng đơn.
+ */
+@Component
+@RequiredArgsConstructor
+public class RentalOrderResponseAssembler {
+
+    // Giới hạn số id trong một mệnh đề IN khi dựng danh sách không phân trang (findAll).
+    static final int MAX_BATCH_SIZE = 500;
+
+    private final OrderDetailRepository orderDetailRepository;
+    private final AllocationRepository allocationRepository;
+    private final AllocationConditionSnapshotRepository allocationConditionSnapshotRepository;
+    private final DiscrepancyReportRepository discrepancyReportRepository;
+    private final RentalOrderExtensionRepository rentalOrderExtensionRepository;
+
+    @Transactional(readOnly = true)
+    public RentalOrderResponseDto assemble(RentalOrder order) {
+        if (order == null) {
+            return null;
+        }
+        return assemble(List.of(order)).get(0);
+    }
+
+    /**
+     * Giữ nguyên thứ tự của {@code orders}.
+     */
+    @Transactional(readOnly = true)
+    public List<RentalOrderResponseDto> assemble(List<RentalOrder> orders) {
+        if (orders == null || orders.isEmpty()) {
+            return List.of();
+        }
+        if (orders.size() > MAX_BATCH_SIZE) {
+            List<RentalOrderResponseDto> result = new ArrayList<>(orders.size());
+            for (int from = 0; from < orders.size(); from += MAX_BATCH_SIZE) {
+                result.addAll(assembleBatch(orders.subList(from, Math.min(from + MAX_BATCH_SIZE, orders.size()))));
+            }
+            return result;
+        }
+        return assembleBatch(orders);
+    }
+
+    private List<RentalOrderResponseDto> assembleBatch(List<RentalOrder> orders) {
+        Set<Long> orderIds = orders.stream()
+                .filter(Objects::nonNull)
+                .map(RentalOrder::getOrderId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (orderIds.isEmpty()) {
+            return orders.stream().map(order -> RentalOrderResponseDto.from(order, List.of(), List.of())).toList();
+        }
+
+        Map<Long, List<OrderDetail>> detailsByOrder = group(
+                orderDetailRepository.findWithModelByOrderIds(orderIds),
+                detail -> detail.getRentalOrder().getOrderId());
+        List<Allocation> allocations = allocationRepository.findWithDeviceByOrderIds(orderIds);
+        Map<Long, List<Allocation>> allocationsByOrder = group(
+                allocations,
+                allocation -> allocation.getOrderDetail().getRentalOrder().getOrderId());
+        Map<Long, List<AllocationConditionSnapshot>> qcSnapshotsByAllocation = allocations.isEmpty()
+                ? Map.of()
+                : group(allocationConditionSnapshotRepository.findByAllocationIdsAndTypeAndSource(
+                                allocations.stream().map(Allocation::getAllocationId).toList(),
+                                AllocationSnapshotType.BASELINE,
+                                AllocationSnapshotSource.QC_BEFORE),
+                        snapshot -> snapshot.getAllocation().getAllocationId());
+        Map<Long, List<DiscrepancyReport>> discrepanciesByOrder = group(
+                discrepancyReportRepository.findWithDefinitionByOrderIds(orderIds),
+                report -> report.getAllocation().getOrderDetail().getRentalOrder().getOrderId());
+        Map<Long, List<RentalOrderExtensionResponseDto>> extensionsByOrder = rentalOrderExtensionRepository
+                .findByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(extension -> extension.getRentalOrder().getOrderId(),
+                        Collectors.mapping(RentalOrderExtensionResponseDto::from, Collectors.toList())));
+
+        List<RentalOrderResponseDto> result = new ArrayList<>(orders.size());
+        for (RentalOrder order : orders) {
+            if (order == null) {
+                result.add(null);
+                continue;
+            }
+            Long orderId = order.getOrderId();
+            List<Allocation> orderAllocations = allocationsByOrder.getOrDefault(orderId, List.of());
+            List<Device> allocatedDevices = orderAllocations.stream()
+                    .map(Allocation::getDevice)
+                    .filter(Objects::nonNull)
+                    .toList();
+            List<QCReportDeviceConditionResponseDto> deviceConditions = orderAllocations.stream()
+                    .map(allocation -> QCReportDeviceConditionResponseDto.fromAllocation(
+                            allocation, qcSnapshotsByAllocation.getOrDefault(allocation.getAllocationId(), List.of())))
+                    .filter(Objects::nonNull)
+                    .toList();
+            RentalOrderResponseDto dto = RentalOrderResponseDto.from(
+                    order,
+                    detailsByOrder.getOrDefault(orderId, List.of()),
+                    allocatedDevices,
+                    discrepanciesByOrder.getOrDefault(orderId, List.of()),
+                    deviceConditions);
+            dto.setExtensions(extensionsByOrder.getOrDefault(orderId, List.of()));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private static <T> Map<Long, List<T>> group(List<T> items, Function<T, Long> orderIdOf) {
+        Map<Long, List<T>> grouped = new HashMap<>();
+        for (T item : items) {
+            grouped.computeIfAbsent(orderIdOf.apply(item), key -> new ArrayList<>()).add(item);
+        }
+        return grouped;
+    }
+}
@@ -1,17 +1,19 @@
 package com.rentaltech.techrental.rentalorder.service;
 
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderCursorPageDto;
 import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderExtendRequestDto;
 import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderRequestDto;
 import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderResponseDto;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
-import java.util.List;
-
 public interface RentalOrderService {
     RentalOrderResponseDto create(RentalOrderRequestDto request);
     RentalOrderResponseDto findById(Long id);
-    List<RentalOrderResponseDto> findAll();
+    Page<RentalOrderResponseDto> findAll(Pageable pageable);
+    Page<RentalOrderResponseDto> findMyOrders(Pageable pageable);
+    Page<RentalOrderSummary> findSummaries(Pageable pageable);
     Page<RentalOrderResponseDto> search(
             String orderStatus,
             Long orderId,
@@ -23,6 +25,19 @@ public interface RentalOrderService {
             String createdAtFrom,
             String createdAtTo,
             Pageable pageable);
+    RentalOrderCursorPageDto searchByCursor(
+            String orderStatus,
+            Long orderId,
+            Long customerId,
+            String startDateFrom,
+            String startDateTo,
+            String endDateFrom,
+            String endDateTo,
+            String createdAtFrom,
+            String createdAtTo,
+            String after,
+            int size,
+            boolean includeTotal);
     RentalOrderResponseDto update(Long id, RentalOrderRequestDto request);
     void delete(Long id);
     RentalOrderResponseDto confirmReturn(Long id);
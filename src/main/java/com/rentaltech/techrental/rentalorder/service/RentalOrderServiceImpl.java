@@ -1,10 +1,8 @@
 package com.rentaltech.techrental.rentalorder.service;
 
 import com.rentaltech.techrental.device.model.*;
-import com.rentaltech.techrental.device.repository.AllocationConditionSnapshotRepository;
 import com.rentaltech.techrental.device.repository.AllocationRepository;
 import com.rentaltech.techrental.device.repository.DeviceModelRepository;
-import com.rentaltech.techrental.device.repository.DiscrepancyReportRepository;
 import com.rentaltech.techrental.device.service.DeviceAllocationQueryService;
 import com.rentaltech.techrental.rentalorder.model.*;
 import com.rentaltech.techrental.rentalorder.model.dto.*;
@@ -12,30 +10,33 @@ import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepositor
 import com.rentaltech.techrental.rentalorder.repository.OrderDetailRepository;
 import com.rentaltech.techrental.rentalorder.repository.RentalOrderExtensionRepository;
 import com.rentaltech.techrental.rentalorder.repository.RentalOrderRepository;
-import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.staff.model.StaffRole;
 import com.rentaltech.techrental.staff.model.Task;
 import com.rentaltech.techrental.staff.model.TaskStatus;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
 import com.rentaltech.techrental.staff.service.PreRentalQcTaskCreator;
-import com.rentaltech.techrental.staff.service.staffservice.StaffService;
+import com.rentaltech.techrental.staff.service.taskservice.StaffCapacityLedger;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.customer.model.KYCStatus;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
 import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
 import com.rentaltech.techrental.webapi.customer.service.NotificationService;
-import com.rentaltech.techrental.webapi.technician.model.dto.QCReportDeviceConditionResponseDto;
+import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -53,7 +54,6 @@ import java.util.*;
 public class RentalOrderServiceImpl implements RentalOrderService {
 
     private static final Logger log = LoggerFactory.getLogger(RentalOrderServiceImpl.class);
-    private static final String STAFF_NOTIFICATION_TOPIC_TEMPLATE = "/topic/staffs/%d/notifications";
     private static final EnumSet<OrderStatus> CANCELLABLE_STATUSES = EnumSet.of(
             OrderStatus.PENDING_KYC,
             OrderStatus.PENDING,
@@ -61,87 +61,145 @@ public class RentalOrderServiceImpl implements RentalOrderService {
     );
     private static final LocalTime ALLOWED_START_TIME = LocalTime.of(8, 0);
     private static final LocalTime ALLOWED_END_TIME = LocalTime.of(19, 0);
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Sort CURSOR_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("orderId"));
 
     private final RentalOrderRepository rentalOrderRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final CustomerRepository customerRepository;
+    private final IdentityContext identityContext;
     private final DeviceModelRepository deviceModelRepository;
     private final PreRentalQcTaskCreator preRentalQcTaskCreator;
-    private final BookingCalendarService bookingCalendarService;
     private final BookingCalendarRepository bookingCalendarRepository;
     private final ReservationService reservationService;
+    private final ReservationAdmission reservationAdmission;
     private final TaskRepository taskRepository;
     private final TaskCategoryRepository taskCategoryRepository;
-    private final StaffService staffService;
     private final NotificationService notificationService;
-    private final SimpMessagingTemplate messagingTemplate;
     private final DeviceAllocationQueryService deviceAllocationQueryService;
     private final AllocationRepository allocationRepository;
-    private final AllocationConditionSnapshotRepository allocationConditionSnapshotRepository;
-    private final DiscrepancyReportRepository discrepancyReportRepository;
     private final RentalOrderExtensionRepository rentalOrderExtensionRepository;
+    private final RentalOrderResponseAssembler rentalOrderResponseAssembler;
+    private final StaffCapacityLedger staffCapacityLedger;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(readOnly = true)
     public Page<RentalOrderResponseDto> search(String orderStatus, Long orderId, Long customerId, String startDateFrom, String startDateTo, String endDateFrom, String endDateTo, String createdAtFrom, String createdAtTo, Pageable pageable) {
-        Long effectiveCustomerId = customerId;
-        Long authenticatedCustomerId = null;
-
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.isAuthenticated()) {
-            boolean isCustomer = auth.getAuthorities().stream()
-                    .map(GrantedAuthority::getAuthority)
-                    .anyMatch("ROLE_CUSTOMER"::equals);
-            if (isCustomer) {
-                var username = auth.getName();
-                Customer customer = customerRepository.findByAccount_Username(username)
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Không tìm thấy thông tin khách hàng cho tài khoản đang đăng nhập"));
-                authenticatedCustomerId = customer.getCustomerId();
-                effectiveCustomerId = authenticatedCustomerId;
-            }
+        Long authenticatedCustomerId = resolveAuthenticatedCustomerId();
+        Long effectiveCustomerId = authenticatedCustomerId != null ? authenticatedCustomerId : customerId;
+
+        Specification<RentalOrder> spec = buildSearchSpecification(orderId, parseOrderStatus(orderStatus), effectiveCustomerId,
+                startDateFrom, startDateTo, endDateFrom, endDateTo, createdAtFrom, createdAtTo);
+        Page<RentalOrder> orderPage = rentalOrderRepository.findAll(spec, pageable);
+        return new PageImpl<>(rentalOrderResponseAssembler.assemble(orderPage.getContent()), orderPage.getPageable(), orderPage.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RentalOrderCursorPageDto searchByCursor(String orderStatus, Long orderId, Long customerId, String startDateFrom, String startDateTo, String endDateFrom, String endDateTo, String createdAtFrom, String createdAtTo, String after, int size, boolean includeTotal) {
+        Long authenticatedCustomerId = resolveAuthenticatedCustomerId();
+        Long effectiveCustomerId = authenticatedCustomerId != null ? authenticatedCustomerId : customerId;
+        int safeSize = Math.min(size > 0 ? size : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE);
+        RentalOrderCursor cursor = RentalOrderCursor.decode(after);
+
+        Specification<RentalOrder> filters = buildSearchSpecification(orderId, parseOrderStatus(orderStatus), effectiveCustomerId,
+                startDateFrom, startDateTo, endDateFrom, endDateTo, createdAtFrom, createdAtTo);
+        // Lấy dư một phần tử để biết còn trang sau, không cần count(*).
+        List<RentalOrder> rows = rentalOrderRepository.findBy(filters.and(after(cursor)),
+                query -> query.sortBy(CURSOR_SORT).limit(safeSize + 1).all());
+        boolean hasNext = rows.size() > safeSize;
+        List<RentalOrder> content = hasNext ? rows.subList(0, safeSize) : rows;
+
+        return RentalOrderCursorPageDto.builder()
+                .content(rentalOrderResponseAssembler.assemble(content))
+                .size(safeSize)
+                .numberOfElements(content.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? RentalOrderCursor.of(content.get(content.size() - 1)).encode() : null)
+                .totalElements(includeTotal ? rentalOrderRepository.count(filters) : null)
+                .build();
+    }
+
+    /**
+     * Khách hàng chỉ được xem đơn của chính mình: trả về customerId của tài khoản đang đăng nhập nếu là CUSTOMER.
+     */
+    private Long resolveAuthenticatedCustomerId() {
+        if (!identityContext.isCustomer()) {
+            return null;
         }
+        return identityContext.currentCustomerId()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "Không tìm thấy thông tin khách hàng cho tài khoản đang đăng nhập"));
+    }
 
-        OrderStatus parsedStatus = null;
-        if (orderStatus != null && !orderStatus.isBlank()) {
-            try {
-                parsedStatus = OrderStatus.valueOf(orderStatus.toUpperCase());
-            } catch (IllegalArgumentException ignored) {
-                parsedStatus = null;
-            }
+    private OrderStatus parseOrderStatus(String orderStatus) {
+        if (orderStatus == null || orderStatus.isBlank()) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(orderStatus.toUpperCase());
+        } catch (IllegalArgumentException ignored) {
+            return null;
         }
+    }
+
+    /**
+     * Chỉ thêm điều kiện cho các bộ lọc được truyền vào để planner dùng được index của rental_order.
+     */
+    private Specification<RentalOrder> buildSearchSpecification(Long orderId, OrderStatus orderStatus, Long customerId,
+                                                                String startDateFrom, String startDateTo,
+                                                                String endDateFrom, String endDateTo,
+                                                                String createdAtFrom, String createdAtTo) {
         LocalDateTime sFrom = parseDateTime(startDateFrom);
         LocalDateTime sTo = parseDateTime(startDateTo);
         LocalDateTime eFrom = parseDateTime(endDateFrom);
         LocalDateTime eTo = parseDateTime(endDateTo);
         LocalDateTime cFrom = parseDateTime(createdAtFrom);
         LocalDateTime cTo = parseDateTime(createdAtTo);
-
-        Page<RentalOrderResponseDto> pageResult = rentalOrderRepository.searchRentalOrders(
-                        orderId,
-                        parsedStatus,
-                        effectiveCustomerId,
-                        sFrom,
-                        sTo,
-                        eFrom,
-                        eTo,
-                        cFrom,
-                        cTo,
-                        pageable)
-                .map(this::buildOrderResponseWithExtensions);
-
-        if (authenticatedCustomerId != null) {
-            Long finalCustomerId = authenticatedCustomerId;
-            List<RentalOrderResponseDto> filteredContent = pageResult.getContent().stream()
-                    .filter(dto -> finalCustomerId.equals(dto.getCustomerId()))
-                    .toList();
-            if (filteredContent.size() != pageResult.getContent().size()) {
-                int removed = pageResult.getContent().size() - filteredContent.size();
-                log.warn("Customer {} attempted to access {} rental orders not belonging to them via search endpoint", finalCustomerId, removed);
-                return new PageImpl<>(filteredContent, pageResult.getPageable(), pageResult.getTotalElements());
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (orderId != null) {
+                predicates.add(cb.equal(root.get("orderId"), orderId));
             }
-        }
+            if (orderStatus != null) {
+                predicates.add(cb.equal(root.get("orderStatus"), orderStatus));
+            }
+            if (customerId != null) {
+                predicates.add(cb.equal(root.get("customer").get("customerId"), customerId));
+            }
+            if (sFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("planStartDate"), sFrom));
+            }
+            if (sTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("planStartDate"), sTo));
+            }
+            if (eFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("planEndDate"), eFrom));
+            }
+            if (eTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("planEndDate"), eTo));
+            }
+            if (cFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), cFrom));
+            }
+            if (cTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("createdAt"), cTo));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
 
-        return pageResult;
+    private Specification<RentalOrder> after(RentalOrderCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return cb.conjunction();
+            }
+            return cb.or(
+                    cb.lessThan(root.get("createdAt"), cursor.createdAt()),
+                    cb.and(cb.equal(root.get("createdAt"), cursor.createdAt()),
+                            cb.lessThan(root.get("orderId"), cursor.orderId())));
+        };
     }
 
     @Override
@@ -216,19 +274,11 @@ public class RentalOrderServiceImpl implements RentalOrderService {
         RentalOrder order = rentalOrderRepository.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("Không tìm thấy đơn thuê: " + id));
 
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.isAuthenticated()) {
-            boolean isCustomer = auth.getAuthorities().stream()
-                    .map(GrantedAuthority::getAuthority)
-                    .anyMatch("ROLE_CUSTOMER"::equals);
-            if (isCustomer) {
-                var username = auth.getName();
-                var customerOpt = customerRepository.findByAccount_Username(username);
-                Long requesterCustomerId = customerOpt.map(Customer::getCustomerId).orElse(-1L);
-                Long ownerCustomerId = order.getCustomer() != null ? order.getCustomer().getCustomerId() : null;
-                if (ownerCustomerId == null || !ownerCustomerId.equals(requesterCustomerId)) {
-                    throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Không có quyền: đơn hàng không thuộc về bạn");
-                }
+        if (identityContext.isCustomer()) {
+            Long requesterCustomerId = identityContext.currentCustomerId().orElse(-1L);
+            Long ownerCustomerId = order.getCustomer() != null ? order.getCustomer().getCustomerId() : null;
+            if (ownerCustomerId == null || !ownerCustomerId.equals(requesterCustomerId)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Không có quyền: đơn hàng không thuộc về bạn");
             }
         }
         return buildOrderResponseWithExtensions(order);
@@ -236,25 +286,46 @@ public class RentalOrderServiceImpl implements RentalOrderService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<RentalOrderResponseDto> findAll() {
-        List<RentalOrder> orders;
-
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth != null && auth.isAuthenticated() && auth.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority).anyMatch("ROLE_CUSTOMER"::equals)) {
-            var username = auth.getName();
-            var customerOpt = customerRepository.findByAccount_Username(username);
-            if (customerOpt.isEmpty()) {
-                return List.of();
-            }
-            Long requesterCustomerId = customerOpt.get().getCustomerId();
-            orders = rentalOrderRepository.findByCustomer_CustomerId(requesterCustomerId);
-        } else {
-            orders = rentalOrderRepository.findAll();
+    public Page<RentalOrderResponseDto> findAll(Pageable pageable) {
+        if (identityContext.isCustomer()) {
+            return findMyOrders(pageable);
         }
-        return orders.stream()
-                .map(this::buildOrderResponseWithExtensions)
-                .toList();
+        return assemblePage(rentalOrderRepository.findAll(boundedPage(pageable)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<RentalOrderResponseDto> findMyOrders(Pageable pageable) {
+        Long customerId = resolveAuthenticatedCustomerId();
+        if (customerId == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Chỉ khách hàng mới xem được danh sách đơn của mình");
+        }
+        return assemblePage(rentalOrderRepository.findByCustomer_CustomerId(customerId, boundedPage(pageable)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<RentalOrderSummary> findSummaries(Pageable pageable) {
+        Long customerId = resolveAuthenticatedCustomerId();
+        if (customerId != null) {
+            return rentalOrderRepository.findSummariesByCustomerId(customerId, boundedPage(pageable));
+        }
+        return rentalOrderRepository.findSummaries(boundedPage(pageable));
+    }
+
+    private Page<RentalOrderResponseDto> assemblePage(Page<RentalOrder> orderPage) {
+        return new PageImpl<>(rentalOrderResponseAssembler.assemble(orderPage.getContent()), orderPage.getPageable(), orderPage.getTotalElements());
+    }
+
+    /**
+     * Giới hạn kích thước trang và mặc định đơn mới nhất trước, khớp index (created_at, order_id).
+     */
+    private Pageable boundedPage(Pageable pageable) {
+        if (pageable == null || pageable.isUnpaged()) {
+            return PageRequest.of(0, DEFAULT_PAGE_SIZE, CURSOR_SORT);
+        }
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : CURSOR_SORT;
+        return PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE), sort);
     }
 
     @Override
@@ -337,6 +408,7 @@ public class RentalOrderServiceImpl implements RentalOrderService {
                 .status(TaskStatus.PENDING)
                 .build();
         Task savedTask = taskRepository.save(pickupTask);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(savedTask));
 
         notifyOperatorsTaskCreated(savedTask, order);
 
@@ -430,18 +502,21 @@ public class RentalOrderServiceImpl implements RentalOrderService {
         order.setOrderStatus(OrderStatus.CANCELLED);
         List<Task> tasks = taskRepository.findByOrderId(id);
         if (!tasks.isEmpty()) {
-            boolean changed = false;
+            List<StaffCapacityLedger.TaskFootprint> released = new ArrayList<>();
             for (Task task : tasks) {
                 if (task == null || task.getStatus() == null) {
                     continue;
                 }
                 if (task.getStatus() == TaskStatus.PENDING || task.getStatus() == TaskStatus.IN_PROGRESS) {
+                    released.add(StaffCapacityLedger.TaskFootprint.of(task));
                     task.setStatus(TaskStatus.CANCELLED);
-                    changed = true;
                 }
             }
-            if (changed) {
+            if (!released.isEmpty()) {
                 taskRepository.saveAll(tasks);
+                // Task bị hủy không còn chiếm công suất ngày của nhân viên
+                released.forEach(footprint -> staffCapacityLedger.recordChange(footprint, null));
+                tasks.forEach(task -> eventPublisher.publishEvent(TaskChangedEvent.saved(task)));
             }
         }
         reservationService.cancelReservations(id);
@@ -449,21 +524,7 @@ public class RentalOrderServiceImpl implements RentalOrderService {
     }
 
     private RentalOrderResponseDto buildOrderResponseWithExtensions(RentalOrder order) {
-        if (order == null) {
-            return null;
-        }
-        List<OrderDetail> details = orderDetailRepository.findByRentalOrder_OrderId(order.getOrderId());
-        List<Device> allocatedDevices = deviceAllocationQueryService.getAllocatedDevicesForOrder(order.getOrderId());
-        List<DiscrepancyReport> discrepancies = loadOrderDiscrepancies(order.getOrderId());
-        List<QCReportDeviceConditionResponseDto> deviceConditions = loadDeviceConditions(order.getOrderId());
-        RentalOrderResponseDto dto = RentalOrderResponseDto.from(order, details, allocatedDevices, discrepancies, deviceConditions);
-        List<RentalOrderExtensionResponseDto> extensionDtos = rentalOrderExtensionRepository
-                .findByRentalOrder_OrderIdOrderByExtensionStartAsc(order.getOrderId())
-                .stream()
-                .map(RentalOrderExtensionResponseDto::from)
-                .toList();
-        dto.setExtensions(extensionDtos);
-        return dto;
+        return rentalOrderResponseAssembler.assemble(order);
     }
 
     private void validateOperatingHours(LocalDateTime dateTime, String label) {
@@ -477,147 +538,51 @@ public class RentalOrderServiceImpl implements RentalOrderService {
         }
     }
 
-    private List<DiscrepancyReport> loadOrderDiscrepancies(Long orderId) {
-        if (orderId == null) {
-            return List.of();
-        }
-        return discrepancyReportRepository.findByAllocation_OrderDetail_RentalOrder_OrderId(orderId);
-    }
-
-    private List<QCReportDeviceConditionResponseDto> loadDeviceConditions(Long orderId) {
-        if (orderId == null) {
-            return List.of();
-        }
-        List<Allocation> allocations = allocationRepository.findByOrderDetail_RentalOrder_OrderId(orderId);
-        if (allocations == null || allocations.isEmpty()) {
-            return List.of();
-        }
-        allocations.forEach(this::ensureQcBaselineSnapshotsLoaded);
-        return allocations.stream()
-                .map(QCReportDeviceConditionResponseDto::fromAllocation)
-                .filter(Objects::nonNull)
-                .toList();
-    }
-
     private void ensureCustomerOwnership(RentalOrder order, String forbiddenMessage) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || !auth.isAuthenticated()) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Không được phép");
-        }
-        boolean isCustomer = auth.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
-                .anyMatch("ROLE_CUSTOMER"::equals);
-        if (!isCustomer) {
+        IdentityContext.Identity identity = identityContext.current()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Không được phép"));
+        if (!identity.isCustomer()) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, forbiddenMessage);
         }
-        String username = auth.getName();
-        Long requesterCustomerId = customerRepository.findByAccount_Username(username)
-                .map(Customer::getCustomerId)
-                .orElse(-1L);
+        Long requesterCustomerId = identity.customerId() != null ? identity.customerId() : -1L;
         Long ownerCustomerId = order.getCustomer() != null ? order.getCustomer().getCustomerId() : null;
         if (ownerCustomerId == null || !ownerCustomerId.equals(requesterCustomerId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Đơn hàng không thuộc về bạn");
         }
     }
 
-    private void ensureQcBaselineSnapshotsLoaded(Allocation allocation) {
-        if (allocation == null) {
-            return;
-        }
-        boolean hasQcSnapshots = allocation.getBaselineSnapshots() != null
-                && allocation.getBaselineSnapshots().stream()
-                .anyMatch(snapshot -> snapshot != null && snapshot.getSource() == AllocationSnapshotSource.QC_BEFORE);
-        if (hasQcSnapshots) {
-            return;
-        }
-        Long allocationId = allocation.getAllocationId();
-        if (allocationId == null) {
-            return;
-        }
-        List<AllocationConditionSnapshot> snapshots = allocationConditionSnapshotRepository
-                .findByAllocation_AllocationIdAndSnapshotType(allocationId, AllocationSnapshotType.BASELINE)
-                .stream()
-                .filter(snapshot -> snapshot.getSource() == AllocationSnapshotSource.QC_BEFORE)
-                .toList();
-        if (snapshots.isEmpty()) {
-            return;
-        }
-        if (allocation.getBaselineSnapshots() == null) {
-            allocation.setBaselineSnapshots(new ArrayList<>());
-        }
-        allocation.getBaselineSnapshots().removeIf(snapshot ->
-                snapshot != null && snapshot.getSource() == AllocationSnapshotSource.QC_BEFORE);
-        allocation.getBaselineSnapshots().addAll(snapshots);
-    }
-
     private void notifyOperatorsOrderAndTaskCreated(RentalOrder order) {
         if (order == null || order.getOrderId() == null) {
             return;
         }
-        List<Staff> operators = staffService.getStaffByRole(StaffRole.OPERATOR);
-        if (operators == null || operators.isEmpty()) {
-            return;
-        }
         OperatorOrderNotification payload = OperatorOrderNotification.from(order);
         if (payload == null) {
             return;
         }
-        operators.stream()
-                .forEach(staff -> {
-                    if (staff.getAccount() != null && staff.getAccount().getAccountId() != null) {
-                        notificationService.notifyAccount(
-                                staff.getAccount().getAccountId(),
-                                NotificationType.ORDER_ACTIVE,
-                                "Đơn hàng vừa có nhiệm vụ mới",
-                                payload.message()
-                        );
-                    }
-                    Long staffId = staff.getStaffId();
-                    if (staffId == null) {
-                        return;
-                    }
-                    String destination = String.format(STAFF_NOTIFICATION_TOPIC_TEMPLATE, staffId);
-                    try {
-                        messagingTemplate.convertAndSend(destination, payload);
-                    } catch (Exception ex) {
-                        log.warn("Không thể gửi thông báo đơn hàng {} tới operator {}: {}", order.getOrderId(), staffId, ex.getMessage());
-                    }
-                });
+        notificationService.notifyRole(
+                StaffRole.OPERATOR,
+                NotificationType.ORDER_ACTIVE,
+                "Đơn hàng vừa có nhiệm vụ mới",
+                payload.message(),
+                payload
+        );
     }
 
     private void notifyOperatorsTaskCreated(Task task, RentalOrder order) {
         if (task == null || order == null || task.getTaskId() == null) {
             return;
         }
-        List<Staff> operators = staffService.getStaffByRole(StaffRole.OPERATOR);
-        if (operators == null || operators.isEmpty()) {
-            return;
-        }
         OperatorTaskNotification payload = OperatorTaskNotification.from(task, order);
         if (payload == null) {
             return;
         }
-        operators.stream()
-                .forEach(staff -> {
-                    if (staff.getAccount() != null && staff.getAccount().getAccountId() != null) {
-                        notificationService.notifyAccount(
-                                staff.getAccount().getAccountId(),
-                                NotificationType.ORDER_ACTIVE,
-                                "Nhiệm vụ mới cho đơn hàng",
-                                payload.message()
-                        );
-                    }
-                    Long staffId = staff.getStaffId();
-                    if (staffId == null) {
-                        return;
-                    }
-                    String destination = String.format(STAFF_NOTIFICATION_TOPIC_TEMPLATE, staffId);
-                    try {
-                        messagingTemplate.convertAndSend(destination, payload);
-                    } catch (Exception ex) {
-                        log.warn("Không thể gửi thông báo task {} tới operator {}: {}", task.getTaskId(), staffId, ex.getMessage());
-                    }
-                });
+        notificationService.notifyRole(
+                StaffRole.OPERATOR,
+                NotificationType.ORDER_ACTIVE,
+                "Nhiệm vụ mới cho đơn hàng",
+                payload.message(),
+                payload
+        );
     }
 
     private record OperatorOrderNotification(Long orderId,
@@ -689,23 +654,36 @@ public class RentalOrderServiceImpl implements RentalOrderService {
             throw new IllegalArgumentException("Cần cung cấp danh sách thiết bị trong đơn thuê");
         }
 
+        Map<Long, Long> requestedByModel = new LinkedHashMap<>();
         for (OrderDetailRequestDto d : request.getOrderDetails()) {
             if (d.getDeviceModelId() == null) {
                 throw new IllegalArgumentException("Thiếu mã model thiết bị (deviceModelId) trong chi tiết đơn thuê");
             }
-            DeviceModel model = deviceModelRepository.findById(d.getDeviceModelId())
-                    .orElseThrow(() -> new NoSuchElementException("Không tìm thấy model thiết bị với ID: " + d.getDeviceModelId()));
-
-            // Validate availability by BookingCalendar within requested time window
             if (d.getQuantity() == null) {
                 throw new IllegalArgumentException("Cần cung cấp số lượng thiết bị trong chi tiết đơn thuê");
             }
-            long available = bookingCalendarService.getAvailableCountByModel(
-                    model.getDeviceModelId(), request.getPlanStartDate(), request.getPlanEndDate()
-            );
-            if (d.getQuantity() > available) {
+            requestedByModel.merge(d.getDeviceModelId(), d.getQuantity(), Long::sum);
+        }
+        Map<Long, DeviceModel> models = new HashMap<>();
+        deviceModelRepository.findAllById(requestedByModel.keySet())
+                .forEach(model -> models.put(model.getDeviceModelId(), model));
+
+        // Validate availability within requested time window; the per-model admission lock is held until commit
+        // so the reservations saved later in this transaction cannot be oversold by a concurrent checkout.
+        Map<Long, Long> availableByModel = reservationAdmission.lockAndCountAvailable(
+                requestedByModel.keySet(), request.getPlanStartDate(), request.getPlanEndDate()
+        );
+        requestedByModel.forEach((modelId, quantity) -> {
+            if (!models.containsKey(modelId)) {
+                throw new NoSuchElementException("Không tìm thấy model thiết bị với ID: " + modelId);
+            }
+            if (quantity > availableByModel.getOrDefault(modelId, 0L)) {
                 throw new IllegalArgumentException("Số lượng thuê vượt quá số thiết bị khả dụng trong thời gian đã chọn");
             }
+        });
+
+        for (OrderDetailRequestDto d : request.getOrderDetails()) {
+            DeviceModel model = models.get(d.getDeviceModelId());
             BigDecimal linePerDay = model.getPricePerDay().multiply(BigDecimal.valueOf(d.getQuantity()));
             BigDecimal depositPerUnit = model.getDeviceValue().multiply(model.getDepositPercent());
 
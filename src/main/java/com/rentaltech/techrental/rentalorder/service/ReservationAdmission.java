@@ -0,0 +1,150 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Khóa admission theo model thiết bị: kiểm tra khả dụng và ghi giữ chỗ trở thành một bước nguyên tử.
+ * <p>
+ * Trong một JVM dùng khóa phân dải (striped) theo {@code deviceModelId}; giữa các node dùng
+ * {@code pg_try_advisory_xact_lock}. Cả hai được giữ tới khi transaction hiện tại kết thúc, nên đơn sau
+ * luôn thấy giữ chỗ của đơn trước. Các model khác nhau (khác dải) không chặn nhau.
+ * <p>
+ * Cả hai khóa dùng chung hạn {@code reservation.admission.lock-timeout}: khóa advisory được thử lại tới hạn
+ * thay vì chờ vô hạn, để một transaction chậm ở node khác không giữ dải khóa trong JVM này mãi.
+ */
+@Slf4j
+@Component
+public class ReservationAdmission {
+
+    // Namespace cho khóa advisory hai tham số, tránh đụng các khóa advisory khác trong cùng DB.
+    static final int ADVISORY_LOCK_NAMESPACE = 0x52455356;
+    private static final long ADVISORY_RETRY_MIN_MILLIS = 5;
+    private static final long ADVISORY_RETRY_MAX_MILLIS = 100;
+
+    private final AvailabilityIndex availabilityIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock[] stripes;
+    private final boolean advisoryLockEnabled;
+    private final long lockTimeoutNanos;
+
+    public ReservationAdmission(AvailabilityIndex availabilityIndex,
+                                JdbcTemplate jdbcTemplate,
+                                @Value("${reservation.admission.stripes:64}") int stripeCount,
+                                @Value("${reservation.admission.advisory-lock:true}") boolean advisoryLockEnabled,
+                                @Value("${reservation.admission.lock-timeout:PT10S}") Duration lockTimeout) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("reservation.admission.stripes phải lớn hơn 0");
+        }
+        this.availabilityIndex = availabilityIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.advisoryLockEnabled = advisoryLockEnabled;
+        this.lockTimeoutNanos = lockTimeout.toNanos();
+    }
+
+    /**
+     * Khóa các model rồi đọc số lượng khả dụng trực tiếp từ DB. Phải gọi trong transaction ghi;
+     * giữ chỗ cần được lưu trong cùng transaction đó.
+     */
+    public Map<Long, Long> lockAndCountAvailable(Collection<Long> deviceModelIds, LocalDateTime start, LocalDateTime end) {
+        lockModels(deviceModelIds);
+        return availabilityIndex.availableCountsFromDatabase(deviceModelIds, start, end, false);
+    }
+
+    public void lockModels(Collection<Long> deviceModelIds) {
+        if (deviceModelIds == null || deviceModelIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Khóa admission giữ chỗ cần được gọi trong transaction");
+        }
+        long deadline = System.nanoTime() + lockTimeoutNanos;
+        SortedSet<Long> modelIds = new TreeSet<>();
+        deviceModelIds.stream().filter(Objects::nonNull).forEach(modelIds::add);
+        if (modelIds.isEmpty()) {
+            return;
+        }
+        // Khóa theo thứ tự tăng dần để hai đơn cùng chứa nhiều model không deadlock nhau.
+        SortedSet<Integer> stripeIndexes = new TreeSet<>();
+        modelIds.forEach(id -> stripeIndexes.add(stripeOf(id)));
+        List<ReentrantLock> acquired = new ArrayList<>(stripeIndexes.size());
+        try {
+            for (Integer index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw busy();
+                }
+                acquired.add(lock);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            releaseAll(acquired);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Yêu cầu giữ chỗ bị gián đoạn, vui lòng thử lại");
+        } catch (RuntimeException ex) {
+            releaseAll(acquired);
+            throw ex;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                releaseAll(acquired);
+            }
+        });
+        if (advisoryLockEnabled) {
+            // Khóa advisory cấp transaction: Postgres tự nhả khi commit/rollback. Dải trong JVM được nhả ở
+            // afterCompletion ở trên nếu hết hạn ở bước này.
+            for (Long id : modelIds) {
+                acquireAdvisoryLock(id, deadline);
+            }
+        }
+    }
+
+    private void acquireAdvisoryLock(Long deviceModelId, long deadline) {
+        long backoffMillis = ADVISORY_RETRY_MIN_MILLIS;
+        while (!Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, ?)",
+                Boolean.class, ADVISORY_LOCK_NAMESPACE, Long.hashCode(deviceModelId)))) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw busy();
+            }
+            try {
+                Thread.sleep(Math.min(backoffMillis, remainingMillis));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Yêu cầu giữ chỗ bị gián đoạn, vui lòng thử lại");
+            }
+            backoffMillis = Math.min(backoffMillis * 2, ADVISORY_RETRY_MAX_MILLIS);
+        }
+    }
+
+    private static ResponseStatusException busy() {
+        return new ResponseStatusException(HttpStatus.CONFLICT,
+                "Thiết bị đang được nhiều khách đặt cùng lúc, vui lòng thử lại");
+    }
+
+    int stripeOf(Long deviceModelId) {
+        return Math.floorMod(Long.hashCode(deviceModelId), stripes.length);
+    }
+
+    private static void releaseAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+}
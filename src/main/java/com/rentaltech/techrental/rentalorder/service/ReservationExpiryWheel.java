@@ -0,0 +1,161 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.rentalorder.model.Reservation;
+import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
+import com.rentaltech.techrental.rentalorder.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hết hạn giữ chỗ đúng thời điểm {@code expirationTime} bằng timer wheel trong bộ nhớ.
+ * <p>
+ * Khi khởi động nạp các giữ chỗ PENDING_REVIEW/UNDER_REVIEW còn hạn; giữ chỗ mới hoặc được gia hạn được đặt lại
+ * sau khi transaction commit. Tới hạn thì cập nhật theo lô id nhỏ qua {@link ReservationService#expireReservationsByIds}.
+ * {@code ReservationCleanupScheduler} chỉ còn là lưới an toàn.
+ */
+@Slf4j
+@Component
+public class ReservationExpiryWheel {
+
+    private static final Set<ReservationStatus> ACTIVE_STATUSES =
+            EnumSet.of(ReservationStatus.PENDING_REVIEW, ReservationStatus.UNDER_REVIEW);
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_LEVELS = 4;
+
+    private final ReservationRepository reservationRepository;
+    private final ObjectProvider<ReservationService> reservationServiceProvider;
+    private final long tickMillis;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    // Hạn hiện hành theo id; timer cũ trong wheel không khớp giá trị này sẽ bị bỏ qua khi tới hạn.
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+    private final TimerWheel wheel;
+    private ScheduledExecutorService ticker;
+
+    public ReservationExpiryWheel(ReservationRepository reservationRepository,
+                                  ObjectProvider<ReservationService> reservationServiceProvider,
+                                  @Value("${reservation.expiry.tick:PT1S}") Duration tick,
+                                  @Value("${reservation.expiry.batch-size:100}") int batchSize,
+                                  @Value("${reservation.expiry.retry-delay:PT30S}") Duration retryDelay) {
+        this.reservationRepository = reservationRepository;
+        this.reservationServiceProvider = reservationServiceProvider;
+        this.tickMillis = tick.toMillis();
+        this.batchSize = Math.max(batchSize, 1);
+        this.retryDelay = retryDelay;
+        this.wheel = new TimerWheel(tickMillis, WHEEL_BITS, WHEEL_LEVELS, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Object[]> rows = reservationRepository.findExpiryEntries(ACTIVE_STATUSES);
+        rows.forEach(row -> arm((Long) row[0], (LocalDateTime) row[1]));
+        log.info("Đã nạp {} giữ chỗ vào timer wheel hết hạn", rows.size());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Đặt lại hẹn giờ theo trạng thái mới nhất của các giữ chỗ, sau khi transaction hiện tại commit.
+     * Giữ chỗ không còn active hoặc không có hạn sẽ bị hủy hẹn giờ.
+     */
+    public void schedule(Collection<Reservation> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            return;
+        }
+        Map<Long, LocalDateTime> armed = new HashMap<>();
+        List<Long> cancelled = new ArrayList<>();
+        reservations.stream()
+                .filter(reservation -> reservation != null && reservation.getId() != null)
+                .forEach(reservation -> {
+                    if (ACTIVE_STATUSES.contains(reservation.getStatus()) && reservation.getExpirationTime() != null) {
+                        armed.put(reservation.getId(), reservation.getExpirationTime());
+                    } else {
+                        cancelled.add(reservation.getId());
+                    }
+                });
+        Runnable apply = () -> {
+            cancelled.forEach(deadlines::remove);
+            armed.forEach(this::arm);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+            return;
+        }
+        apply.run();
+    }
+
+    int pendingCount() {
+        return deadlines.size();
+    }
+
+    void tick() {
+        tick(System.currentTimeMillis());
+    }
+
+    void tick(long nowMillis) {
+        List<TimerWheel.Timeout> fired;
+        synchronized (wheel) {
+            fired = wheel.advanceTo(nowMillis);
+        }
+        List<Long> due = fired.stream()
+                .filter(timeout -> deadlines.remove(timeout.id(), timeout.deadlineMillis()))
+                .map(TimerWheel.Timeout::id)
+                .sorted()
+                .toList();
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                reservationServiceProvider.getObject().expireReservationsByIds(batch);
+            } catch (RuntimeException ex) {
+                log.warn("Không thể hết hạn {} giữ chỗ, thử lại sau {}: {}", batch.size(), retryDelay, ex.getMessage(), ex);
+                long retryAt = nowMillis + retryDelay.toMillis();
+                batch.forEach(id -> arm(id, retryAt));
+            }
+        }
+    }
+
+    private void arm(Long reservationId, LocalDateTime expirationTime) {
+        arm(reservationId, expirationTime.atZone(zoneId).toInstant().toEpochMilli());
+    }
+
+    private void arm(Long reservationId, long deadlineMillis) {
+        deadlines.put(reservationId, deadlineMillis);
+        synchronized (wheel) {
+            wheel.add(reservationId, deadlineMillis);
+        }
+    }
+}
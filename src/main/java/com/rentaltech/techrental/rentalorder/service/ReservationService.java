@@ -12,6 +12,7 @@ public interface ReservationService {
     void markConfirmed(Long orderId);
     void cancelReservations(Long orderId);
     void expireReservations();
+    void expireReservationsByIds(java.util.Collection<Long> reservationIds);
     long countActiveReservedQuantity(Long deviceModelId, LocalDateTime start, LocalDateTime end);
     long countReservedQuantityByStatus(Long deviceModelId, LocalDateTime start, LocalDateTime end,
                                        java.util.Collection<com.rentaltech.techrental.rentalorder.model.ReservationStatus> statuses);
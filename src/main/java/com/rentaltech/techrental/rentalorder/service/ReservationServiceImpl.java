@@ -29,6 +29,8 @@ public class ReservationServiceImpl implements ReservationService {
             EnumSet.of(ReservationStatus.UNDER_REVIEW);
 
     private final ReservationRepository reservationRepository;
+    private final AvailabilityIndex availabilityIndex;
+    private final ReservationExpiryWheel reservationExpiryWheel;
 
     @Override
     public void createPendingReservations(RentalOrder order, List<OrderDetail> details) {
@@ -61,7 +63,9 @@ public class ReservationServiceImpl implements ReservationService {
                     .build());
         }
         if (!reservations.isEmpty()) {
-            reservationRepository.saveAll(reservations);
+            List<Reservation> saved = reservationRepository.saveAll(reservations);
+            availabilityIndex.onReservationsSaved(saved);
+            reservationExpiryWheel.schedule(saved);
         }
     }
 
@@ -88,11 +92,36 @@ public class ReservationServiceImpl implements ReservationService {
 
     @Override
     public void expireReservations() {
+        LocalDateTime referenceTime = LocalDateTime.now();
         reservationRepository.markExpired(
                 EnumSet.of(ReservationStatus.PENDING_REVIEW, ReservationStatus.UNDER_REVIEW),
-                LocalDateTime.now(),
+                referenceTime,
                 ReservationStatus.EXPIRED
         );
+        availabilityIndex.onReservationsExpired(referenceTime);
+    }
+
+    @Override
+    public void expireReservationsByIds(Collection<Long> reservationIds) {
+        if (reservationIds == null || reservationIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime referenceTime = LocalDateTime.now();
+        // Chỉ bỏ khỏi index những id thực sự hết hạn; bản ghi đã gia hạn/xác nhận sau khi hẹn giờ vẫn giữ chỗ.
+        List<Long> expirableIds = reservationRepository.lockExpirableIds(reservationIds, ACTIVE_STATUSES, referenceTime);
+        if (expirableIds.isEmpty()) {
+            return;
+        }
+        List<Long> deviceModelIds = reservationRepository.findDeviceModelIdsByIds(expirableIds);
+        int expired = reservationRepository.markExpiredByIds(
+                expirableIds,
+                ACTIVE_STATUSES,
+                referenceTime,
+                ReservationStatus.EXPIRED
+        );
+        if (expired > 0) {
+            availabilityIndex.onReservationsExpired(expirableIds, deviceModelIds);
+        }
     }
 
     @Override
@@ -137,6 +166,10 @@ public class ReservationServiceImpl implements ReservationService {
         );
         if (affected == 0 && targetStatus == ReservationStatus.CANCELLED) {
             overrideStatus(orderId, targetStatus, expirationTime);
+            return;
+        }
+        if (affected > 0) {
+            onReservationsChanged(orderId);
         }
     }
 
@@ -144,7 +177,16 @@ public class ReservationServiceImpl implements ReservationService {
         if (orderId == null) {
             return;
         }
-        reservationRepository.overrideStatusForOrder(orderId, targetStatus, expirationTime);
+        if (reservationRepository.overrideStatusForOrder(orderId, targetStatus, expirationTime) > 0) {
+            onReservationsChanged(orderId);
+        }
+    }
+
+    private void onReservationsChanged(Long orderId) {
+        // Đọc lại sau cập nhật hàng loạt để chỉ mục và hẹn giờ hết hạn dùng đúng trạng thái/hạn mới.
+        List<Reservation> reservations = reservationRepository.findByOrderDetail_RentalOrder_OrderId(orderId);
+        availabilityIndex.onReservationsSaved(reservations);
+        reservationExpiryWheel.schedule(reservations);
     }
 
     private Set<ReservationStatus> getStatusesForCurrentUser() {
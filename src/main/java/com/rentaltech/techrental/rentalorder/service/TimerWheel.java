@@ -0,0 +1,116 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Comparator;
+
+/**
+ * Timer wheel phân cấp (không thread-safe; bên gọi tự đồng bộ).
+ * <p>
+ * Mỗi tầng có {@code 2^bits} ô; tầng {@code L} có bước {@code 2^(bits*L)} tick. Phần tử được đặt vào tầng thấp nhất
+ * chứa được khoảng cách tới hạn, và được hạ tầng (cascade) khi con trỏ đi tới ô của nó. Phần tử xa hơn tầng
+ * cao nhất nằm trong hàng đợi tràn cho tới khi vào được bánh xe.
+ */
+final class TimerWheel {
+
+    record Timeout(long id, long deadlineMillis) {
+    }
+
+    private record Entry(Timeout timeout, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final ArrayDeque<Entry>[][] buckets;
+    private final PriorityQueue<Entry> overflow = new PriorityQueue<>(Comparator.comparingLong(Entry::deadlineTick));
+    private final List<Timeout> pendingDue = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickMillis, int bits, int levels, long startMillis) {
+        if (tickMillis <= 0 || bits <= 0 || levels <= 0 || (long) bits * levels >= 63) {
+            throw new IllegalArgumentException("Cấu hình timer wheel không hợp lệ");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.levels = levels;
+        this.buckets = new ArrayDeque[levels][1 << bits];
+        for (int level = 0; level < levels; level++) {
+            for (int slot = 0; slot <= mask; slot++) {
+                buckets[level][slot] = new ArrayDeque<>();
+            }
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    void add(long id, long deadlineMillis) {
+        // Làm tròn lên: không bao giờ báo tới hạn sớm hơn deadline.
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        place(new Entry(new Timeout(id, deadlineMillis), deadlineTick));
+        size++;
+    }
+
+    /**
+     * Đẩy con trỏ tới {@code nowMillis} và trả về các phần tử đã tới hạn.
+     */
+    List<Timeout> advanceTo(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<Timeout> due = new ArrayList<>(pendingDue);
+        pendingDue.clear();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            ArrayDeque<Entry> bucket = buckets[0][(int) (currentTick & mask)];
+            while (!bucket.isEmpty()) {
+                due.add(bucket.poll().timeout());
+            }
+            due.addAll(pendingDue);
+            pendingDue.clear();
+        }
+        size -= due.size();
+        return due;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade() {
+        for (int level = levels - 1; level >= 1; level--) {
+            if ((currentTick & ((1L << (bits * level)) - 1)) != 0) {
+                continue;
+            }
+            ArrayDeque<Entry> bucket = buckets[level][(int) ((currentTick >>> (bits * level)) & mask)];
+            List<Entry> moved = new ArrayList<>(bucket);
+            bucket.clear();
+            moved.forEach(this::place);
+        }
+        if ((currentTick & ((1L << (bits * levels)) - 1)) == 0) {
+            long horizon = currentTick + (1L << (bits * levels));
+            while (!overflow.isEmpty() && overflow.peek().deadlineTick() < horizon) {
+                place(overflow.poll());
+            }
+        }
+    }
+
+    private void place(Entry entry) {
+        long delta = entry.deadlineTick() - currentTick;
+        if (delta <= 0) {
+            pendingDue.add(entry.timeout());
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (delta < (1L << (bits * (level + 1)))) {
+                buckets[level][(int) ((entry.deadlineTick() >>> (bits * level)) & mask)].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+}
@@ -0,0 +1,170 @@
+package com.rentaltech.techrental.security;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.authentication.model.Role;
+import com.rentaltech.techrental.authentication.repository.AccountRepository;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Danh tính người gọi (accountId, role, customerId, staffId) dùng chung cho các service,
+ * thay cho việc mỗi service tự tra {@code findByAccount_Username}/{@code findByUsername}.
+ * <p>
+ * Kết quả được nhớ trong request hiện tại và trong một cache LRU có TTL dùng chung giữa các request.
+ * accountId/role lấy từ principal dựng từ JWT nên lần đầu chỉ tốn một truy vấn id khách hàng hoặc nhân viên.
+ */
+@Component
+public class IdentityContext {
+
+    public record Identity(Long accountId, String username, Role role, Long customerId, Long staffId) {
+
+        public boolean isCustomer() {
+            return role == Role.CUSTOMER;
+        }
+
+        public boolean hasRole(Role... roles) {
+            for (Role candidate : roles) {
+                if (candidate == role) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Entry(Identity identity, long expiresAtNanos) {
+    }
+
+    private static final String ATTRIBUTE = IdentityContext.class.getName() + ".identity";
+
+    private final AccountRepository accountRepository;
+    private final CustomerRepository customerRepository;
+    private final StaffRepository staffRepository;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public IdentityContext(AccountRepository accountRepository,
+                           CustomerRepository customerRepository,
+                           StaffRepository staffRepository,
+                           @Value("${app.identity.cache.ttl:PT5M}") Duration ttl,
+                           @Value("${app.identity.cache.max-entries:10000}") int maxEntries) {
+        this.accountRepository = accountRepository;
+        this.customerRepository = customerRepository;
+        this.staffRepository = staffRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdentityContext.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Danh tính của người dùng đang đăng nhập; rỗng nếu request chưa xác thực.
+     */
+    public Optional<Identity> current() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Object memo = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (memo instanceof Identity identity && identity.username().equals(auth.getName())) {
+                return Optional.of(identity);
+            }
+        }
+        Account principal = auth.getPrincipal() instanceof CustomUserDetails details ? details.getAccount() : null;
+        Identity identity = resolve(auth.getName(), principal);
+        if (identity != null && attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, identity, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.ofNullable(identity);
+    }
+
+    /**
+     * Danh tính theo username (cho các API nhận username từ controller), dùng chung cache với {@link #current()}.
+     */
+    public Optional<Identity> forUsername(String username) {
+        if (username == null || username.isBlank()) {
+            return Optional.empty();
+        }
+        Optional<Identity> current = current();
+        if (current.isPresent() && current.get().username().equals(username)) {
+            return current;
+        }
+        return Optional.ofNullable(resolve(username, null));
+    }
+
+    public boolean isCustomer() {
+        return current().map(Identity::isCustomer).orElse(false);
+    }
+
+    public Optional<Long> currentCustomerId() {
+        return current().map(Identity::customerId);
+    }
+
+    public Optional<Long> currentStaffId() {
+        return current().map(Identity::staffId);
+    }
+
+    /**
+     * Gọi khi role/trạng thái tài khoản đổi hoặc tài khoản bị xóa.
+     */
+    public void evictAccount(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.values().removeIf(entry -> accountId.equals(entry.identity().accountId()));
+        }
+    }
+
+    private Identity resolve(String username, Account principal) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry cached = entries.get(username);
+            if (cached != null && cached.expiresAtNanos() - now > 0) {
+                return cached.identity();
+            }
+        }
+        Account account = principal != null && principal.getAccountId() != null && principal.getRole() != null
+                ? principal
+                : accountRepository.findByUsername(username);
+        if (account == null) {
+            return null;
+        }
+        Long customerId = null;
+        Long staffId = null;
+        if (account.getRole() == Role.CUSTOMER) {
+            customerId = customerRepository.findCustomerIdByAccountId(account.getAccountId()).orElse(null);
+        } else {
+            staffId = staffRepository.findStaffIdByAccountId(account.getAccountId()).orElse(null);
+        }
+        Identity identity = new Identity(account.getAccountId(), username, account.getRole(), customerId, staffId);
+        // Tài khoản chưa có hồ sơ Customer/Staff thì không cache, để lần sau thấy ngay hồ sơ vừa tạo
+        // (createCustomer/createStaff không đi qua evictAccount).
+        if (Objects.nonNull(customerId) || Objects.nonNull(staffId)) {
+            synchronized (entries) {
+                entries.put(username, new Entry(identity, now + ttlNanos));
+            }
+        }
+        return identity;
+    }
+}
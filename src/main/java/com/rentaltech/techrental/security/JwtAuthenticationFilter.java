@@ -1,5 +1,8 @@
 package com.rentaltech.techrental.security;
 
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.authentication.model.Role;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,12 +18,16 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Date;
 
 @Component
 @AllArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final String ROLE_PREFIX = "ROLE_";
+
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -29,15 +36,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = getJwtFromRequest(request);
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromJWT(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            VerifiedToken token = StringUtils.hasText(jwt) ? verify(jwt) : null;
+            if (token != null) {
+                UserDetails userDetails = resolveUserDetails(token);
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -45,6 +53,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private VerifiedToken verify(String jwt) {
+        try {
+            return tokenProvider.parseAndVerify(jwt);
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Dựng principal trực tiếp từ claim đã ký, không truy vấn Account. Token cũ chưa có accountId/role
+     * thì mới nạp lại từ database; token đã bị thu hồi thì bỏ qua (request coi như chưa đăng nhập).
+     */
+    private UserDetails resolveUserDetails(VerifiedToken token) {
+        Long accountId = token.accountId();
+        String role = token.role();
+        if (accountId == null || !StringUtils.hasText(role)) {
+            return userDetailsService.loadUserByUsername(token.subject());
+        }
+        if (tokenRevocationService.isRevoked(accountId, token.issuedAt() != null ? Date.from(token.issuedAt()) : null)) {
+            return null;
+        }
+        Account account = Account.builder()
+                .accountId(accountId)
+                .username(token.subject())
+                .role(Role.valueOf(role.startsWith(ROLE_PREFIX) ? role.substring(ROLE_PREFIX.length()) : role))
+                .isActive(!Boolean.FALSE.equals(token.active()))
+                .build();
+        return new CustomUserDetails(account);
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
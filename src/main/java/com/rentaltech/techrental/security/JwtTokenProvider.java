@@ -1,7 +1,7 @@
 package com.rentaltech.techrental.security;
 
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -12,20 +12,40 @@ import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Component
 public class JwtTokenProvider {
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_ACCOUNT_ID = "accountId";
+    public static final String CLAIM_ACTIVE = "active";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
     @Value("${app.jwt.expiration-ms}")
     private int jwtExpirationInMs;
 
+    @Value("${app.jwt.claims-cache.max-entries:10000}")
+    private int claimsCacheMaxEntries = 10000;
+
     private Key key;
+    // JwtParser của jjwt là immutable, dùng chung cho mọi request.
+    private JwtParser parser;
+    // Token đã xác thực (khóa là chuỗi token gốc, so khớp toàn bộ), hết hạn cùng exp của token.
+    private Map<String, VerifiedToken> verifiedTokens;
 
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verifiedTokens = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > claimsCacheMaxEntries;
+            }
+        };
     }
 
     public String generateToken(Authentication authentication) {
@@ -37,7 +57,9 @@ public class JwtTokenProvider {
 
         return Jwts.builder()
                 .setSubject(userDetails.getUsername())
-                .claim("role", role)
+                .claim(CLAIM_ROLE, role)
+                .claim(CLAIM_ACCOUNT_ID, userDetails.getAccount().getAccountId())
+                .claim(CLAIM_ACTIVE, userDetails.isEnabled())
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
                 .signWith(key, SignatureAlgorithm.HS256)
@@ -45,24 +67,49 @@ public class JwtTokenProvider {
     }
 
     public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return parseAndVerify(token).subject();
+    }
+
+    /**
+     * Kiểm tra chữ ký, hạn dùng và trả về các claim cần cho xác thực trong một lần parse.
+     * Token đã xác thực trước đó được lấy từ cache cho tới khi hết hạn, bỏ qua HMAC và giải mã JSON.
+     *
+     * @throws JwtException nếu token sai chữ ký, sai định dạng hoặc đã hết hạn
+     */
+    public VerifiedToken parseAndVerify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token không được để trống");
+        }
+        long now = System.currentTimeMillis();
+        synchronized (verifiedTokens) {
+            VerifiedToken cached = verifiedTokens.get(token);
+            if (cached != null) {
+                if (!cached.isExpired(now)) {
+                    return cached;
+                }
+                verifiedTokens.remove(token);
+            }
+        }
+        VerifiedToken verified = VerifiedToken.from(parser.parseClaimsJws(token).getBody());
+        synchronized (verifiedTokens) {
+            verifiedTokens.put(token, verified);
+        }
+        return verified;
     }
 
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(authToken);
+            parseAndVerify(authToken);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             // Log the exception
         }
         return false;
     }
+
+    int cachedClaimsCount() {
+        synchronized (verifiedTokens) {
+            return verifiedTokens.size();
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.rentaltech.techrental.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thu hồi JWT theo tài khoản: mọi token phát hành trước mốc {@code revokedBefore} của tài khoản đều bị từ chối.
+ * <p>
+ * Mốc được giữ trong bộ nhớ và ghi lên Redis (nếu có) để các instance khác thấy; mỗi tài khoản chỉ đọc lại Redis
+ * sau {@code app.jwt.revocation.refresh} nên request thường không chạm tới database lẫn Redis.
+ * Mốc cũ hơn thời hạn access token không còn chặn được token nào nên được dọn định kỳ
+ * ({@code app.jwt.revocation.sweep-delay-ms}), giữ bộ nhớ tỉ lệ với số tài khoản đang hoạt động.
+ */
+@Slf4j
+@Component
+public class TokenRevocationService {
+
+    private static final String KEY_PREFIX = "auth:revoked-before:";
+
+    private record Mark(long revokedBeforeMillis, long checkedAtNanos) {
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final long tokenLifetimeMs;
+    private final long refreshNanos;
+    private final Map<Long, Mark> marks = new ConcurrentHashMap<>();
+
+    public TokenRevocationService(ObjectProvider<RedisTemplate<String, Object>> redisTemplate,
+                                  @Value("${app.jwt.expiration-ms}") long tokenLifetimeMs,
+                                  @Value("${app.jwt.revocation.refresh:PT10S}") Duration refresh) {
+        this.redisTemplate = redisTemplate.getIfAvailable();
+        this.tokenLifetimeMs = tokenLifetimeMs;
+        this.refreshNanos = refresh.toNanos();
+    }
+
+    /**
+     * Vô hiệu hóa mọi token đã phát cho tài khoản (đổi mật khẩu, đổi role, xóa tài khoản...).
+     */
+    public void revokeAccount(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        // iat của JWT tính theo giây: làm tròn xuống để token đăng nhập lại ngay sau đó vẫn hợp lệ.
+        long revokedBefore = (System.currentTimeMillis() / 1000) * 1000;
+        marks.put(accountId, new Mark(revokedBefore, System.nanoTime()));
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.opsForValue().set(KEY_PREFIX + accountId, revokedBefore, tokenLifetimeMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException ex) {
+                log.warn("Không thể ghi mốc thu hồi token lên Redis cho account {}: {}", accountId, ex.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.sweep-delay-ms:60000}",
+            initialDelayString = "${app.jwt.revocation.sweep-delay-ms:60000}")
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis(), System.nanoTime());
+    }
+
+    void evictExpired(long nowMillis, long nowNanos) {
+        long expiredBefore = nowMillis - tokenLifetimeMs;
+        // Mốc đã quá hạn token và (khi có Redis) đã tới lúc đọc lại: bỏ đi tương đương với giữ lại.
+        marks.values().removeIf(mark -> mark.revokedBeforeMillis() <= expiredBefore
+                && (redisTemplate == null || nowNanos - mark.checkedAtNanos() >= refreshNanos));
+    }
+
+    int markCount() {
+        return marks.size();
+    }
+
+    public boolean isRevoked(Long accountId, Date issuedAt) {
+        if (accountId == null || issuedAt == null) {
+            return false;
+        }
+        return issuedAt.getTime() < revokedBefore(accountId);
+    }
+
+    private long revokedBefore(Long accountId) {
+        long now = System.nanoTime();
+        Mark mark = marks.get(accountId);
+        if (mark != null && (redisTemplate == null || now - mark.checkedAtNanos() < refreshNanos)) {
+            return mark.revokedBeforeMillis();
+        }
+        if (redisTemplate == null) {
+            return 0L;
+        }
+        long revokedBefore = mark != null ? mark.revokedBeforeMillis() : 0L;
+        try {
+            Object value = redisTemplate.opsForValue().get(KEY_PREFIX + accountId);
+            if (value instanceof Number number) {
+                revokedBefore = Math.max(revokedBefore, number.longValue());
+            }
+        } catch (RuntimeException ex) {
+            log.debug("Không đọc được mốc thu hồi token từ Redis cho account {}: {}", accountId, ex.getMessage());
+        }
+        marks.put(accountId, new Mark(revokedBefore, now));
+        return revokedBefore;
+    }
+}
@@ -0,0 +1,26 @@
+package com.rentaltech.techrental.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/**
+ * Các claim cần cho xác thực, chụp lại từ JWT đã kiểm tra chữ ký. Bất biến nên có thể cache và dùng chung giữa các request.
+ */
+public record VerifiedToken(String subject, String role, Long accountId, Boolean active,
+                            Instant issuedAt, Instant expiration) {
+
+    static VerifiedToken from(Claims claims) {
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get(JwtTokenProvider.CLAIM_ROLE, String.class),
+                claims.get(JwtTokenProvider.CLAIM_ACCOUNT_ID, Long.class),
+                claims.get(JwtTokenProvider.CLAIM_ACTIVE, Boolean.class),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+    }
+
+    boolean isExpired(long nowMillis) {
+        return expiration != null && expiration.toEpochMilli() <= nowMillis;
+    }
+}
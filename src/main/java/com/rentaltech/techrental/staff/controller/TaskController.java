@@ -8,16 +8,23 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @RestController
@@ -26,6 +33,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TaskController {
 
+    private static final String CSV_HEADER = "taskId,orderId,taskCategoryId,taskCategoryName,status,plannedStart,plannedEnd,completedAt,description";
+
     private final TaskService taskService;
 
     @PostMapping
@@ -75,6 +84,100 @@ public class TaskController {
         );
     }
 
+    @GetMapping(value = "/export", produces = "text/csv")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF')")
+    @Operation(summary = "Xuất tác vụ ra CSV", description = "Xuất toàn bộ tác vụ khớp bộ lọc (cùng bộ lọc với danh sách tác vụ), đọc từ database theo từng lô")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về file CSV"),
+            @ApiResponse(responseCode = "400", description = "Trạng thái không hợp lệ"),
+            @ApiResponse(responseCode = "404", description = "Không tìm thấy TaskCategory, đơn hàng hoặc nhân viên")
+    })
+    public void exportTasks(@RequestParam(required = false) Long categoryId,
+                            @RequestParam(required = false) Long orderId,
+                            @RequestParam(required = false) Long assignedStaffId,
+                            @RequestParam(required = false) String status,
+                            Authentication authentication,
+                            HttpServletResponse response) {
+        String username = authentication != null ? authentication.getName() : null;
+        // Chỉ mở writer khi có dòng đầu tiên: lỗi bộ lọc (kiểm tra trước khi đọc) vẫn được trả về JSON như các API khác
+        CsvTaskWriter csv = new CsvTaskWriter(response);
+        taskService.exportTasks(categoryId, orderId, assignedStaffId, status, username, csv);
+        csv.finish();
+    }
+
+    private static final class CsvTaskWriter implements Consumer<Task> {
+        private final HttpServletResponse response;
+        private PrintWriter writer;
+
+        private CsvTaskWriter(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void accept(Task task) {
+            writer().println(toCsvRow(task));
+        }
+
+        void finish() {
+            writer().flush();
+        }
+
+        private PrintWriter writer() {
+            if (writer == null) {
+                try {
+                    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                    response.setContentType("text/csv");
+                    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tasks.csv\"");
+                    writer = response.getWriter();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                writer.println(CSV_HEADER);
+            }
+            return writer;
+        }
+    }
+
+    private static String toCsvRow(Task task) {
+        return String.join(",",
+                csv(task.getTaskId()),
+                csv(task.getOrderId()),
+                csv(task.getTaskCategory() != null ? task.getTaskCategory().getTaskCategoryId() : null),
+                csv(task.getTaskCategory() != null ? task.getTaskCategory().getName() : null),
+                csv(task.getStatus()),
+                csv(task.getPlannedStart()),
+                csv(task.getPlannedEnd()),
+                csv(task.getCompletedAt()),
+                csv(task.getDescription()));
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    @GetMapping("/overdue")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR')")
+    @Operation(summary = "Tác vụ quá hạn", description = "Danh sách tác vụ PENDING/IN_PROGRESS đã qua thời gian kết thúc dự kiến, hạn sớm nhất trước")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về danh sách tác vụ quá hạn")
+    })
+    public ResponseEntity<?> getOverdueTasks() {
+        List<TaskResponseDto> tasks = taskService.getOverdueTasks();
+        return ResponseUtil.createSuccessResponse(
+                "Danh sách tác vụ quá hạn",
+                "Có " + tasks.size() + " tác vụ quá hạn",
+                tasks,
+                HttpStatus.OK
+        );
+    }
+
     @GetMapping("/{taskId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF')")
     @Operation(summary = "Chi tiết tác vụ", description = "Lấy tác vụ theo ID")
@@ -295,4 +398,52 @@ public class TaskController {
         );
     }
 
+    @GetMapping("/auto-assign/preview")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR')")
+    @Operation(summary = "Xem trước gán tác vụ tự động", description = "Tính phương án gán các tác vụ PENDING chưa có người cho kỹ thuật viên (theo lịch bận và giới hạn trong ngày), không lưu thay đổi. Mặc định từ hôm nay tới 6 ngày sau.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Trả về phương án gán tác vụ"),
+            @ApiResponse(responseCode = "400", description = "Khoảng ngày không hợp lệ")
+    })
+    public ResponseEntity<?> previewAutoAssign(@RequestParam(required = false) @io.swagger.v3.oas.annotations.media.Schema(example = "2025-12-01") String fromDate,
+                                               @RequestParam(required = false) @io.swagger.v3.oas.annotations.media.Schema(example = "2025-12-07") String toDate,
+                                               Authentication authentication) {
+        String username = authentication != null ? authentication.getName() : null;
+        TaskAutoAssignmentResponseDto result = taskService.autoAssignTasks(
+                fromDate != null ? LocalDate.parse(fromDate) : null,
+                toDate != null ? LocalDate.parse(toDate) : null,
+                false,
+                username);
+        return ResponseUtil.createSuccessResponse(
+                "Phương án gán tác vụ tự động",
+                "Chưa có thay đổi nào được lưu",
+                result,
+                HttpStatus.OK
+        );
+    }
+
+    @PostMapping("/auto-assign")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR')")
+    @Operation(summary = "Gán tác vụ tự động", description = "Tính lại phương án như bản xem trước và gán tác vụ cho kỹ thuật viên, gửi thông báo cho nhân viên được gán")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Gán tác vụ tự động thành công"),
+            @ApiResponse(responseCode = "400", description = "Khoảng ngày không hợp lệ")
+    })
+    public ResponseEntity<?> applyAutoAssign(@RequestParam(required = false) @io.swagger.v3.oas.annotations.media.Schema(example = "2025-12-01") String fromDate,
+                                             @RequestParam(required = false) @io.swagger.v3.oas.annotations.media.Schema(example = "2025-12-07") String toDate,
+                                             Authentication authentication) {
+        String username = authentication != null ? authentication.getName() : null;
+        TaskAutoAssignmentResponseDto result = taskService.autoAssignTasks(
+                fromDate != null ? LocalDate.parse(fromDate) : null,
+                toDate != null ? LocalDate.parse(toDate) : null,
+                true,
+                username);
+        return ResponseUtil.createSuccessResponse(
+                "Gán tác vụ tự động thành công",
+                "Đã gán " + result.getAssignedCount() + " tác vụ, còn " + result.getUnassignedCount() + " tác vụ chưa gán được",
+                result,
+                HttpStatus.OK
+        );
+    }
+
 }
@@ -1,15 +1,13 @@
 package com.rentaltech.techrental.staff.controller;
 
-import com.rentaltech.techrental.staff.model.ChatMessage;
 import com.rentaltech.techrental.staff.model.ChatMessageSenderType;
 import com.rentaltech.techrental.staff.model.dto.ChatMessageCreateRequestDto;
-import com.rentaltech.techrental.staff.model.dto.ChatMessageResponseDto;
+import com.rentaltech.techrental.staff.service.chatservice.ChatMessageWriter;
 import com.rentaltech.techrental.staff.service.chatservice.ChatService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 @Controller
@@ -18,7 +16,7 @@ import org.springframework.stereotype.Controller;
 public class WebSocketChatController {
 
     private final ChatService chatService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatMessageWriter chatMessageWriter;
 
     @MessageMapping("/chat.send")
     public void sendMessage(@Payload ChatMessagePayload payload) {
@@ -32,11 +30,8 @@ public class WebSocketChatController {
                         .content(payload.getContent())
                         .build();
 
-        ChatMessage message = chatService.sendMessage(createDto);
-        ChatMessageResponseDto response = ChatMessageResponseDto.from(message);
-
-        // Gửi đến conversation cụ thể để cả customer và staff đều nhận được
-        messagingTemplate.convertAndSend("/topic/conversation/" + payload.getConversationId(), response);
+        // Lưu theo lô; writer broadcast sau khi commit để client nhận được messageId.
+        chatMessageWriter.submit(chatService.prepareMessage(createDto));
     }
 
 
@@ -9,7 +9,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        @Index(name = "idx_chat_message_conversation_sent", columnList = "conversation_id, sent_at"),
+        @Index(name = "idx_chat_message_conversation_unread", columnList = "conversation_id, is_read, sender_type")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,6 +30,21 @@ public class Conversation {
     @JoinColumn(name = "staff_id", referencedColumnName = "staff_id", nullable = false)
     private Staff staff;
 
+    // Watermark + bộ đếm chưa đọc cho từng phía; null ở bản ghi cũ nghĩa là chưa khởi tạo.
+    @Column(name = "customer_last_read_message_id")
+    private Long customerLastReadMessageId;
+
+    @Column(name = "staff_last_read_message_id")
+    private Long staffLastReadMessageId;
+
+    @Column(name = "customer_unread_count")
+    @Builder.Default
+    private Integer customerUnreadCount = 0;
+
+    @Column(name = "staff_unread_count")
+    @Builder.Default
+    private Integer staffUnreadCount = 0;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -9,7 +9,10 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "Task")
+@Table(name = "Task", indexes = {
+        @Index(name = "idx_task_order", columnList = "order_id"),
+        @Index(name = "idx_task_status_planned_start", columnList = "status, planned_start")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,7 +36,8 @@ public class Task {
     @JoinTable(
             name = "task_assigned_staff",
             joinColumns = @JoinColumn(name = "task_id"),
-            inverseJoinColumns = @JoinColumn(name = "staff_id")
+            inverseJoinColumns = @JoinColumn(name = "staff_id"),
+            indexes = @Index(name = "idx_task_assigned_staff_staff_task", columnList = "staff_id, task_id")
     )
     @Builder.Default
     private Set<Staff> assignedStaff = new LinkedHashSet<>();
@@ -59,6 +63,10 @@ public class Task {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    // Lần gửi TASK_OVERDUE gần nhất; chỉ ghi bằng câu UPDATE có điều kiện để mỗi hạn chót chỉ được một node báo.
+    @Column(name = "overdue_notified_at", insertable = false, updatable = false)
+    private LocalDateTime overdueNotifiedAt;
+
     @PreUpdate
     public void preUpdate() {
         if (this.status == TaskStatus.COMPLETED && this.completedAt == null) {
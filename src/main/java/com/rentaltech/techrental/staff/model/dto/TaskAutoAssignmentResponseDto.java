@@ -0,0 +1,68 @@
+package com.rentaltech.techrental.staff.model.dto;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.Task;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Value
+@Builder
+public class TaskAutoAssignmentResponseDto {
+    LocalDate fromDate;
+    LocalDate toDate;
+    boolean applied; // false = chỉ xem trước, chưa ghi database
+    int assignedCount;
+    int unassignedCount;
+    List<AssignmentDto> assignments;
+    List<UnassignedTaskDto> unassigned;
+
+    @Value
+    @Builder
+    public static class AssignmentDto {
+        Long taskId;
+        Long orderId;
+        Long taskCategoryId;
+        String taskCategoryName;
+        LocalDateTime plannedStart;
+        LocalDateTime plannedEnd;
+        Long staffId;
+        String staffName;
+
+        public static AssignmentDto from(Task task, Staff staff) {
+            return AssignmentDto.builder()
+                    .taskId(task.getTaskId())
+                    .orderId(task.getOrderId())
+                    .taskCategoryId(task.getTaskCategory() != null ? task.getTaskCategory().getTaskCategoryId() : null)
+                    .taskCategoryName(task.getTaskCategory() != null ? task.getTaskCategory().getName() : null)
+                    .plannedStart(task.getPlannedStart())
+                    .plannedEnd(task.getPlannedEnd())
+                    .staffId(staff.getStaffId())
+                    .staffName(staff.getAccount() != null ? staff.getAccount().getUsername() : null)
+                    .build();
+        }
+    }
+
+    @Value
+    @Builder
+    public static class UnassignedTaskDto {
+        Long taskId;
+        Long orderId;
+        String taskCategoryName;
+        LocalDateTime plannedStart;
+        String reason;
+
+        public static UnassignedTaskDto from(Task task, String reason) {
+            return UnassignedTaskDto.builder()
+                    .taskId(task.getTaskId())
+                    .orderId(task.getOrderId())
+                    .taskCategoryName(task.getTaskCategory() != null ? task.getTaskCategory().getName() : null)
+                    .plannedStart(task.getPlannedStart())
+                    .reason(reason)
+                    .build();
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.rentaltech.techrental.staff.repository;
 
 import com.rentaltech.techrental.staff.model.ChatMessage;
+import com.rentaltech.techrental.staff.model.ChatMessageSenderType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -13,5 +18,21 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
     Page<ChatMessage> findByConversation_ConversationIdOrderBySentAtDesc(Long conversationId, Pageable pageable);
     List<ChatMessage> findByConversation_ConversationIdAndIsReadFalse(Long conversationId);
     Long countByConversation_ConversationIdAndIsReadFalse(Long conversationId);
-}
+    long countByConversation_ConversationIdAndIsReadFalseAndSenderType(Long conversationId, ChatMessageSenderType senderType);
+
+    @Query("SELECT MAX(m.messageId) FROM ChatMessage m WHERE m.conversation.conversationId = :conversationId")
+    Long findLatestMessageId(@Param("conversationId") Long conversationId);
 
+    @Modifying
+    @Query("""
+            UPDATE ChatMessage m SET m.isRead = true, m.readAt = :readAt
+            WHERE m.conversation.conversationId = :conversationId
+              AND m.isRead = false
+              AND m.senderType = :senderType
+              AND m.messageId <= :watermark
+            """)
+    int markReadUpTo(@Param("conversationId") Long conversationId,
+                     @Param("senderType") ChatMessageSenderType senderType,
+                     @Param("watermark") Long watermark,
+                     @Param("readAt") LocalDateTime readAt);
+}
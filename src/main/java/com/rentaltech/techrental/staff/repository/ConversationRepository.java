@@ -1,9 +1,13 @@
 package com.rentaltech.techrental.staff.repository;
 
+import com.rentaltech.techrental.staff.model.ChatMessageSenderType;
 import com.rentaltech.techrental.staff.model.Conversation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,5 +19,54 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     Optional<Conversation> findByCustomer_CustomerId(Long customerId);
     List<Conversation> findByStaff_StaffId(Long staffId);
     Page<Conversation> findByStaff_StaffId(Long staffId, Pageable pageable);
-}
 
+    @Query("SELECT c.staff.staffId, COUNT(c) FROM Conversation c GROUP BY c.staff.staffId")
+    List<Object[]> countConversationsByStaff();
+
+    // Bộ đếm null (conversation cũ) giữ nguyên null tới lần mark-read đầu tiên, trong lúc đó số chưa đọc được đếm bằng SQL.
+    @Modifying
+    @Query("UPDATE Conversation c SET c.customerUnreadCount = c.customerUnreadCount + :delta WHERE c.conversationId = :conversationId")
+    int incrementCustomerUnread(@Param("conversationId") Long conversationId, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.staffUnreadCount = c.staffUnreadCount + :delta WHERE c.conversationId = :conversationId")
+    int incrementStaffUnread(@Param("conversationId") Long conversationId, @Param("delta") int delta);
+
+    // Trừ đúng số tin vừa đánh dấu đã đọc, để tin đến sau watermark (đã được cộng vào bộ đếm) không bị xóa mất.
+    // Bộ đếm null (conversation cũ) được khởi tạo bằng số tin chưa đọc còn lại, từ đó không cần đếm bằng SQL nữa.
+    @Modifying
+    @Query("UPDATE Conversation c SET c.customerUnreadCount = COALESCE(c.customerUnreadCount - :read, " +
+            "(SELECT COUNT(m) FROM ChatMessage m WHERE m.conversation = c AND m.isRead = false " +
+            "AND m.senderType = com.rentaltech.techrental.staff.model.ChatMessageSenderType.STAFF)), " +
+            "c.customerLastReadMessageId = :watermark WHERE c.conversationId = :conversationId")
+    int updateCustomerReadState(@Param("conversationId") Long conversationId,
+                                @Param("watermark") Long watermark,
+                                @Param("read") int read);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.staffUnreadCount = COALESCE(c.staffUnreadCount - :read, " +
+            "(SELECT COUNT(m) FROM ChatMessage m WHERE m.conversation = c AND m.isRead = false " +
+            "AND m.senderType = com.rentaltech.techrental.staff.model.ChatMessageSenderType.CUSTOMER)), " +
+            "c.staffLastReadMessageId = :watermark WHERE c.conversationId = :conversationId")
+    int updateStaffReadState(@Param("conversationId") Long conversationId,
+                             @Param("watermark") Long watermark,
+                             @Param("read") int read);
+
+    /**
+     * Tăng bộ đếm chưa đọc của phía nhận (phía còn lại so với người gửi).
+     */
+    default int incrementUnreadForRecipient(Long conversationId, ChatMessageSenderType senderType, int delta) {
+        return senderType == ChatMessageSenderType.CUSTOMER
+                ? incrementStaffUnread(conversationId, delta)
+                : incrementCustomerUnread(conversationId, delta);
+    }
+
+    /**
+     * Lưu watermark của người đọc và trừ {@code read} tin vừa được đánh dấu khỏi bộ đếm chưa đọc.
+     */
+    default int updateReadState(Long conversationId, ChatMessageSenderType readerType, Long watermark, int read) {
+        return readerType == ChatMessageSenderType.CUSTOMER
+                ? updateCustomerReadState(conversationId, watermark, read)
+                : updateStaffReadState(conversationId, watermark, read);
+    }
+}
@@ -3,6 +3,8 @@ package com.rentaltech.techrental.staff.repository;
 import com.rentaltech.techrental.staff.model.Staff;
 import com.rentaltech.techrental.staff.model.StaffRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,6 +16,9 @@ public interface StaffRepository extends JpaRepository<Staff, Long> {
     // Find by account
     Optional<Staff> findByAccount_AccountId(Long accountId);
     Optional<Staff> findByAccount_Username(String username);
+
+    @Query("SELECT s.staffId FROM Staff s WHERE s.account.accountId = :accountId")
+    Optional<Long> findStaffIdByAccountId(@Param("accountId") Long accountId);
     
     // Find by staff role
     List<Staff> findByStaffRole(StaffRole staffRole);
@@ -23,6 +28,10 @@ public interface StaffRepository extends JpaRepository<Staff, Long> {
     
     // Find active staff by role
     List<Staff> findByStaffRoleAndIsActiveTrue(StaffRole staffRole);
+
+    // Cặp (staffId, accountId) của nhân viên đang hoạt động theo role, dùng cho broadcast thông báo
+    @Query("SELECT s.staffId, s.account.accountId FROM Staff s WHERE s.staffRole = :staffRole AND s.isActive = true")
+    List<Object[]> findActiveRecipientsByRole(@Param("staffRole") StaffRole staffRole);
     
 
     
@@ -8,15 +8,20 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.AvailableHints;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.sqm.TemporalUnit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public class TaskCustomRepository {
@@ -24,23 +29,6 @@ public class TaskCustomRepository {
     @PersistenceContext
     private EntityManager entityManager;
 
-    public List<Task> findOverdueTasks(LocalDateTime currentDate) {
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Task> query = cb.createQuery(Task.class);
-        Root<Task> task = query.from(Task.class);
-
-        // Tạo predicates
-        Predicate plannedEndBeforeNow = cb.lessThan(task.get("plannedEnd"), currentDate);
-        Predicate statusNotCompleted = cb.notEqual(task.get("status"), TaskStatus.COMPLETED);
-
-        // Kết hợp predicates với AND
-        Predicate overdueCondition = cb.and(plannedEndBeforeNow, statusNotCompleted);
-
-        query.select(task).where(overdueCondition);
-
-        return entityManager.createQuery(query).getResultList();
-    }
-
     public long countActiveTasksByStaffAndDate(Long staffId, LocalDate targetDate, Long excludeTaskId) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Long> query = cb.createQuery(Long.class);
@@ -205,6 +193,56 @@ public class TaskCustomRepository {
         return entityManager.createQuery(query).getResultList();
     }
 
+    /**
+     * Số task active theo (staff, category) của cả một ngày, cùng điều kiện với
+     * {@link #countActiveTasksByStaffCategoryAndDate}. Dùng để nạp sổ công suất theo ngày trong một truy vấn.
+     *
+     * @return các dòng (staffId, username, taskCategoryId, categoryName, count)
+     */
+    public List<Object[]> countActiveTasksByDateGrouped(LocalDate targetDate) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Task> task = query.from(Task.class);
+
+        var staffJoin = task.join("assignedStaff");
+        var categoryJoin = task.join("taskCategory");
+        var accountJoin = staffJoin.join("account", JoinType.LEFT);
+
+        LocalDateTime startOfDay = targetDate.atStartOfDay();
+        LocalDateTime endOfDay = startOfDay.plusDays(1);
+
+        Predicate activeStatus = task.get("status").in(TaskStatus.PENDING, TaskStatus.IN_PROGRESS, TaskStatus.COMPLETED);
+
+        Predicate plannedInDay = cb.and(
+                cb.isNotNull(task.get("plannedStart")),
+                cb.greaterThanOrEqualTo(task.get("plannedStart"), startOfDay),
+                cb.lessThan(task.get("plannedStart"), endOfDay)
+        );
+
+        Predicate createdInDay = cb.and(
+                cb.isNull(task.get("plannedStart")),
+                cb.greaterThanOrEqualTo(task.get("createdAt"), startOfDay),
+                cb.lessThan(task.get("createdAt"), endOfDay)
+        );
+
+        query.multiselect(
+                staffJoin.get("staffId"),
+                cb.coalesce(accountJoin.get("username"), ""),
+                categoryJoin.get("taskCategoryId"),
+                categoryJoin.get("name"),
+                cb.countDistinct(task)
+        )
+        .where(cb.and(activeStatus, cb.or(plannedInDay, createdInDay)))
+        .groupBy(
+                staffJoin.get("staffId"),
+                accountJoin.get("username"),
+                categoryJoin.get("taskCategoryId"),
+                categoryJoin.get("name")
+        );
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
     public Page<StaffTaskCompletionStatsDto> findStaffCompletionsByPeriod(
             LocalDateTime startTime, 
             LocalDateTime endTime, 
@@ -367,33 +405,58 @@ public class TaskCustomRepository {
             dataQuery.where(cb.and(predicates.toArray(new Predicate[0])));
         }
         
-        // Sort theo plannedEnd ASC trước (sẽ được sort lại trong Java theo khoảng cách tuyệt đối)
-        // Tạm thời sort theo plannedEnd để có thứ tự ban đầu
+        // Sắp theo khoảng cách tuyệt đối từ plannedEnd tới hiện tại (gần nhất lên trước), tính ngay trong SQL:
+        // abs(extract(epoch from planned_end - :now)); task không có plannedEnd xuống cuối, cùng khoảng cách thì mới tạo lên trước.
+        HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
         Expression<LocalDateTime> plannedEndExpr = task.get("plannedEnd");
-        LocalDateTime farFuture = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
-        Expression<LocalDateTime> sortExpr = cb.coalesce(plannedEndExpr, farFuture);
-        Order orderByPlannedEnd = cb.asc(sortExpr);
-        // Secondary sort: createdAt DESC
-        dataQuery.orderBy(orderByPlannedEnd, cb.desc(task.get("createdAt")));
+        Expression<Long> distanceSeconds = hcb.abs(hcb.durationByUnit(TemporalUnit.SECOND,
+                hcb.durationBetween(hcb.literal(LocalDateTime.now()), plannedEndExpr)));
+        dataQuery.orderBy(
+                hcb.asc(distanceSeconds, false),
+                cb.desc(task.get("createdAt")),
+                cb.desc(task.get("taskId")));
         
         TypedQuery<Task> typedQuery = entityManager.createQuery(dataQuery);
         
         // Apply pagination (chỉ khi không phải unpaged)
         List<Task> content;
-        long total = countTasksWithFilters(categoryId, orderId, assignedStaffId, status);
-        
         if (pageable.isUnpaged()) {
             // Không apply pagination, lấy tất cả
             content = typedQuery.getResultList();
-        } else {
-            // Apply pagination
-            typedQuery.setFirstResult((int) pageable.getOffset());
-            typedQuery.setMaxResults(pageable.getPageSize());
-            content = typedQuery.getResultList();
+            return new PageImpl<>(content, pageable, content.size());
         }
-        
+        typedQuery.setFirstResult((int) pageable.getOffset());
+        typedQuery.setMaxResults(pageable.getPageSize());
+        content = fetchAssociations(typedQuery.getResultList());
+
+        // Trang đầu chưa đầy thì không cần query count
+        long total = pageable.getOffset() == 0 && content.size() < pageable.getPageSize()
+                ? content.size()
+                : countTasksWithFilters(categoryId, orderId, assignedStaffId, status);
         return new PageImpl<>(content, pageable, total);
     }
+
+    /**
+     * Nạp category và nhân viên được giao cho các task của một trang trong một query,
+     * tránh N+1 khi map sang DTO. Giữ nguyên thứ tự của trang.
+     */
+    private List<Task> fetchAssociations(List<Task> page) {
+        if (page.isEmpty()) {
+            return page;
+        }
+        List<Long> ids = page.stream().map(Task::getTaskId).toList();
+        entityManager.createQuery("""
+                        SELECT DISTINCT t FROM Task t
+                        LEFT JOIN FETCH t.taskCategory
+                        LEFT JOIN FETCH t.assignedStaff s
+                        LEFT JOIN FETCH s.account
+                        WHERE t.taskId IN :ids
+                        """, Task.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        // Các entity cùng persistence context nên danh sách trang đã có sẵn association.
+        return page;
+    }
     
     private long countTasksWithFilters(
             Long categoryId,
@@ -431,6 +494,38 @@ public class TaskCustomRepository {
         return entityManager.createQuery(countQuery).getSingleResult();
     }
 
+    /**
+     * Đọc task theo dạng stream cho các lần xuất dữ liệu lớn: JDBC lấy từng lô {@code fetchSize} dòng
+     * thay vì nạp hết vào bộ nhớ. Phải gọi trong transaction (PostgreSQL chỉ dùng cursor khi tắt autocommit)
+     * và đóng stream sau khi dùng.
+     */
+    public Stream<Task> streamTasks(Specification<Task> spec, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Task> query = cb.createQuery(Task.class);
+        Root<Task> task = query.from(Task.class);
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(task, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.select(task).orderBy(cb.asc(task.get("taskId")));
+
+        return entityManager.createQuery(query)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, Math.max(1, fetchSize))
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /**
+     * Bỏ task đã xử lý khỏi persistence context để stream dài không giữ lại toàn bộ entity.
+     */
+    public void detach(Task task) {
+        if (task != null) {
+            entityManager.detach(task);
+        }
+    }
+
     /**
      * Tìm pending tasks theo order và category (sử dụng JPA Criteria API)
      * Dùng cho device replacement - chỉ tạo 1 task cho tất cả complaints cùng order
@@ -3,16 +3,19 @@ package com.rentaltech.techrental.staff.repository;
 import com.rentaltech.techrental.staff.model.Task;
 import com.rentaltech.techrental.staff.model.TaskStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface TaskRepository extends JpaRepository<Task, Long> {
+public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task> {
     
     // Find tasks by category
     List<Task> findByTaskCategory_TaskCategoryId(Long taskCategoryId);
@@ -41,6 +44,69 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
                                           @Param("endTime") LocalDateTime endTime);
 
 
+    @Query("""
+            select t
+            from Task t
+            join fetch t.taskCategory
+            where t.status = com.rentaltech.techrental.staff.model.TaskStatus.PENDING
+              and t.assignedStaff is empty
+              and coalesce(t.plannedStart, t.createdAt) >= :startTime
+              and coalesce(t.plannedStart, t.createdAt) < :endTime
+            """)
+    List<Task> findUnassignedPendingTasks(@Param("startTime") LocalDateTime startTime,
+                                          @Param("endTime") LocalDateTime endTime);
+
+    // Lịch bận của nhân viên: staffId, taskId, plannedStart, plannedEnd (plannedEnd có thể null)
+    @Query("""
+            select s.staffId, t.taskId, t.plannedStart, t.plannedEnd
+            from Task t
+            join t.assignedStaff s
+            where s.staffId in :staffIds
+              and t.status in (com.rentaltech.techrental.staff.model.TaskStatus.PENDING,
+                               com.rentaltech.techrental.staff.model.TaskStatus.IN_PROGRESS)
+              and t.plannedStart is not null
+              and t.plannedStart < :endTime
+              and (t.plannedEnd > :startTime or (t.plannedEnd is null and t.plannedStart >= :openEndedFrom))
+            """)
+    List<Object[]> findBusyIntervalsForStaff(@Param("staffIds") Collection<Long> staffIds,
+                                             @Param("startTime") LocalDateTime startTime,
+                                             @Param("endTime") LocalDateTime endTime,
+                                             @Param("openEndedFrom") LocalDateTime openEndedFrom);
+
+    // Hạn chót của task còn mở; khớp partial index idx_task_open_planned_end (tạo ở DatabaseMigrationInitializer)
+    @Query("""
+            select t.taskId, t.plannedEnd
+            from Task t
+            where t.status in (com.rentaltech.techrental.staff.model.TaskStatus.PENDING,
+                               com.rentaltech.techrental.staff.model.TaskStatus.IN_PROGRESS)
+              and t.plannedEnd is not null
+            """)
+    List<Object[]> findOpenTaskDeadlines();
+
+    @Query("""
+            select distinct t
+            from Task t
+            join fetch t.taskCategory
+            left join fetch t.assignedStaff s
+            left join fetch s.account
+            where t.taskId in :taskIds
+            """)
+    List<Task> findWithAssigneesByTaskIdIn(@Param("taskIds") Collection<Long> taskIds);
+
+    // Ghi nhận đã báo quá hạn cho hạn chót hiện tại; trả về 0 nếu node khác đã báo hoặc task không còn quá hạn
+    @Modifying
+    @Query("""
+            update Task t
+            set t.overdueNotifiedAt = :now
+            where t.taskId = :taskId
+              and t.status in :statuses
+              and t.plannedEnd < :now
+              and (t.overdueNotifiedAt is null or t.overdueNotifiedAt < t.plannedEnd)
+            """)
+    int markOverdueNotified(@Param("taskId") Long taskId,
+                            @Param("statuses") Collection<TaskStatus> statuses,
+                            @Param("now") LocalDateTime now);
+
     @Query("""
             select t
             from Task t
@@ -4,7 +4,9 @@ import com.rentaltech.techrental.staff.model.Task;
 import com.rentaltech.techrental.staff.model.TaskCategory;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -16,6 +18,7 @@ public class PreRentalQcTaskCreator {
 
     private final TaskRepository taskRepository;
     private final TaskCategoryRepository taskCategoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public void createIfNeeded(Long orderId) {
         if (orderId == null) {
@@ -37,5 +40,6 @@ public class PreRentalQcTaskCreator {
                 .plannedEnd(now.plusHours(6))
                 .build();
         taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(task));
     }
 }
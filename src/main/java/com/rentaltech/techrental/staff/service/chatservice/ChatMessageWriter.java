@@ -0,0 +1,186 @@
+package com.rentaltech.techrental.staff.service.chatservice;
+
+import com.rentaltech.techrental.staff.model.ChatMessage;
+import com.rentaltech.techrental.staff.model.ChatMessageSenderType;
+import com.rentaltech.techrental.staff.model.dto.ChatMessageResponseDto;
+import com.rentaltech.techrental.staff.repository.ChatMessageRepository;
+import com.rentaltech.techrental.staff.repository.ConversationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi tin nhắn chat theo lô rồi broadcast.
+ * <p>
+ * Tin nhắn được đưa vào hàng đợi có giới hạn; một worker gom lô, insert trong một transaction
+ * (JDBC batch) và cộng bộ đếm chưa đọc theo từng conversation bằng một câu UPDATE.
+ * Sau commit, từng tin được gửi tới {@code /topic/conversation/{id}} kèm messageId để client dedupe/mark-read theo id.
+ * Khi hàng đợi đầy hoặc writer chưa chạy, tin nhắn được ghi ngay trên luồng gọi để không bị mất.
+ */
+@Slf4j
+@Component
+public class ChatMessageWriter {
+
+    private record CounterKey(Long conversationId, ChatMessageSenderType senderType) {
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ConversationRepository conversationRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final BlockingQueue<ChatMessage> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    public ChatMessageWriter(ChatMessageRepository chatMessageRepository,
+                             ConversationRepository conversationRepository,
+                             SimpMessagingTemplate messagingTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${chat.writer.queue-capacity:10000}") int queueCapacity,
+                             @Value("${chat.writer.batch-size:100}") int batchSize) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.conversationRepository = conversationRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    public void submit(ChatMessage message) {
+        if (message == null) {
+            return;
+        }
+        if (!running || !queue.offer(message)) {
+            write(List.of(message));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "chat-message-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Dừng worker rồi ghi nốt phần còn lại trong hàng đợi.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        List<ChatMessage> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            write(remaining);
+            remaining.clear();
+        }
+    }
+
+    int queuedCount() {
+        return queue.size();
+    }
+
+    private void drainLoop() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                ChatMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void write(List<ChatMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            persist(batch);
+            batch.forEach(this::broadcast);
+        } catch (Exception ex) {
+            // Transaction đã rollback nhưng id có thể đã được gán khi persist.
+            batch.forEach(message -> message.setMessageId(null));
+            if (batch.size() == 1) {
+                log.warn("Failed to persist chat message for conversation {}: {}",
+                        conversationIdOf(batch.get(0)), ex.getMessage());
+                return;
+            }
+            // Ghi lẻ từng tin để một tin lỗi (vd. conversation đã bị xóa) không kéo theo cả lô.
+            log.warn("Failed to persist chat batch of {} messages, retrying one by one: {}", batch.size(), ex.getMessage());
+            for (ChatMessage message : batch) {
+                try {
+                    persist(List.of(message));
+                    broadcast(message);
+                } catch (Exception single) {
+                    log.warn("Failed to persist chat message for conversation {}: {}",
+                            conversationIdOf(message), single.getMessage());
+                }
+            }
+        }
+    }
+
+    private void persist(List<ChatMessage> batch) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            Map<CounterKey, Integer> counters = new HashMap<>();
+            for (ChatMessage message : batch) {
+                Long conversationId = conversationIdOf(message);
+                message.setConversation(conversationRepository.getReferenceById(conversationId));
+                counters.merge(new CounterKey(conversationId, message.getSenderType()), 1, Integer::sum);
+            }
+            chatMessageRepository.saveAll(batch);
+            counters.forEach((key, delta) ->
+                    conversationRepository.incrementUnreadForRecipient(key.conversationId(), key.senderType(), delta));
+        });
+    }
+
+    private void broadcast(ChatMessage message) {
+        try {
+            // Gửi đến conversation cụ thể để cả customer và staff đều nhận được
+            messagingTemplate.convertAndSend("/topic/conversation/" + conversationIdOf(message),
+                    ChatMessageResponseDto.from(message));
+        } catch (Exception ex) {
+            log.warn("Failed to broadcast chat message {}: {}", message.getMessageId(), ex.getMessage());
+        }
+    }
+
+    private static Long conversationIdOf(ChatMessage message) {
+        return message.getConversation() != null ? message.getConversation().getConversationId() : null;
+    }
+}
@@ -10,6 +10,10 @@ import org.springframework.data.domain.Pageable;
 public interface ChatService {
     Conversation getOrCreateConversationByCustomer(Long customerId);
     ChatMessage sendMessage(ChatMessageCreateRequestDto request);
+    /**
+     * Kiểm tra và dựng tin nhắn (chưa lưu) để {@link ChatMessageWriter} lưu theo lô rồi broadcast.
+     */
+    ChatMessage prepareMessage(ChatMessageCreateRequestDto request);
     Page<ChatMessage> getMessages(Long conversationId, Pageable pageable);
     void markMessagesAsRead(Long conversationId, Long currentUserId, ChatMessageSenderType currentUserType);
     Long getUnreadCount(Long conversationId, Long currentUserId, ChatMessageSenderType currentUserType);
@@ -12,9 +12,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 @Service
@@ -26,6 +26,7 @@ public class ChatServiceImpl implements ChatService {
     private final ChatMessageRepository chatMessageRepository;
     private final CustomerRepository customerRepository;
     private final StaffRepository staffRepository;
+    private final SupportAssignmentEngine supportAssignmentEngine;
 
     @Override
     public Conversation getOrCreateConversationByCustomer(Long customerId) {
@@ -46,40 +47,37 @@ public class ChatServiceImpl implements ChatService {
     }
 
     private Staff findAvailableSupportStaff() {
-        // Tìm CUSTOMER_SUPPORT_STAFF trước
-        List<Staff> supportStaffs = staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.CUSTOMER_SUPPORT_STAFF);
-        if (!supportStaffs.isEmpty()) {
-            return supportStaffs.get(0); // Lấy staff đầu tiên, có thể random hoặc round-robin
+        Long staffId = supportAssignmentEngine.assign();
+        if (staffId == null) {
+            throw new IllegalStateException("No active staff found in the system");
         }
-        
-        // Nếu không có CUSTOMER_SUPPORT_STAFF, fallback sang ADMIN
-        List<Staff> adminStaffs = staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.ADMIN);
-        if (!adminStaffs.isEmpty()) {
-            return adminStaffs.get(0);
-        }
-        
-        // Nếu không có ADMIN, fallback sang OPERATOR
-        List<Staff> operatorStaffs = staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.OPERATOR);
-        if (!operatorStaffs.isEmpty()) {
-            return operatorStaffs.get(0);
-        }
-        
-        // Nếu vẫn không có, lấy bất kỳ staff active nào
-        List<Staff> anyActiveStaffs = staffRepository.findByIsActiveTrue();
-        if (!anyActiveStaffs.isEmpty()) {
-            return anyActiveStaffs.get(0);
-        }
-        
-        // Cuối cùng mới throw error
-        throw new IllegalStateException("No active staff found in the system");
+        return staffRepository.getReferenceById(staffId);
     }
 
     @Override
     public ChatMessage sendMessage(ChatMessageCreateRequestDto request) {
+        ChatMessage saved = chatMessageRepository.save(prepareMessage(request));
+        conversationRepository.incrementUnreadForRecipient(
+                request.getConversationId(), saved.getSenderType(), 1);
+        return saved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChatMessage prepareMessage(ChatMessageCreateRequestDto request) {
+        if (request == null || request.getConversationId() == null) {
+            throw new IllegalArgumentException("conversationId is required");
+        }
+        if (request.getSenderType() == null || request.getSenderId() == null) {
+            throw new IllegalArgumentException("senderType và senderId là bắt buộc");
+        }
+        if (!StringUtils.hasText(request.getContent())) {
+            throw new IllegalArgumentException("Nội dung tin nhắn không được để trống");
+        }
         Conversation conversation = conversationRepository.findById(request.getConversationId())
                 .orElseThrow(() -> new NoSuchElementException("Conversation not found: " + request.getConversationId()));
 
-        ChatMessage message = ChatMessage.builder()
+        return ChatMessage.builder()
                 .conversation(conversation)
                 .senderType(request.getSenderType())
                 .senderId(request.getSenderId())
@@ -88,8 +86,6 @@ public class ChatServiceImpl implements ChatService {
                 .readAt(null)
                 .sentAt(LocalDateTime.now())
                 .build();
-
-        return chatMessageRepository.save(message);
     }
 
     @Override
@@ -101,30 +97,48 @@ public class ChatServiceImpl implements ChatService {
         return chatMessageRepository.findByConversation_ConversationIdOrderBySentAtDesc(conversationId, pageable);
     }
 
+    /**
+     * Đánh dấu đã đọc bằng một câu UPDATE: mọi tin của phía bên kia có id <= watermark (tin mới nhất hiện tại),
+     * sau đó lưu watermark và trừ đúng số tin vừa đánh dấu khỏi bộ đếm chưa đọc. Không đặt bộ đếm về 0 vì tin mới hơn
+     * watermark có thể đã commit (hoặc được {@link ChatMessageWriter} ghi) giữa hai câu lệnh và đã được cộng vào bộ đếm.
+     * Người đọc được xác định theo phía (CUSTOMER/STAFF) của conversation.
+     */
     @Override
     public void markMessagesAsRead(Long conversationId, Long currentUserId, ChatMessageSenderType currentUserType) {
-        List<ChatMessage> unreadMessages = chatMessageRepository.findByConversation_ConversationIdAndIsReadFalse(conversationId);
-        
-        for (ChatMessage message : unreadMessages) {
-            // Chỉ mark as read nếu message không phải do chính người này gửi
-            if (!message.getSenderId().equals(currentUserId) || 
-                message.getSenderType() != currentUserType) {
-                message.setIsRead(true);
-                message.setReadAt(LocalDateTime.now());
-            }
+        if (currentUserType == null) {
+            throw new IllegalArgumentException("userType is required");
         }
-        
-        chatMessageRepository.saveAll(unreadMessages);
+        Long watermark = chatMessageRepository.findLatestMessageId(conversationId);
+        if (watermark == null) {
+            return;
+        }
+        int read = chatMessageRepository.markReadUpTo(conversationId, counterpart(currentUserType), watermark, LocalDateTime.now());
+        conversationRepository.updateReadState(conversationId, currentUserType, watermark, read);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Long getUnreadCount(Long conversationId, Long currentUserId, ChatMessageSenderType currentUserType) {
-        List<ChatMessage> allUnread = chatMessageRepository.findByConversation_ConversationIdAndIsReadFalse(conversationId);
-        
-        return allUnread.stream()
-                .filter(msg -> !msg.getSenderId().equals(currentUserId) || msg.getSenderType() != currentUserType)
-                .count();
+        if (currentUserType == null) {
+            throw new IllegalArgumentException("userType is required");
+        }
+        Conversation conversation = conversationRepository.findById(conversationId).orElse(null);
+        if (conversation == null) {
+            return 0L;
+        }
+        Integer counter = currentUserType == ChatMessageSenderType.CUSTOMER
+                ? conversation.getCustomerUnreadCount()
+                : conversation.getStaffUnreadCount();
+        if (counter != null) {
+            return Math.max(0, counter.longValue());
+        }
+        // Conversation tạo trước khi có bộ đếm và chưa mark-read lần nào (null): đếm bằng SQL.
+        return chatMessageRepository.countByConversation_ConversationIdAndIsReadFalseAndSenderType(
+                conversationId, counterpart(currentUserType));
+    }
+
+    private static ChatMessageSenderType counterpart(ChatMessageSenderType type) {
+        return type == ChatMessageSenderType.CUSTOMER ? ChatMessageSenderType.STAFF : ChatMessageSenderType.CUSTOMER;
     }
 
     @Override
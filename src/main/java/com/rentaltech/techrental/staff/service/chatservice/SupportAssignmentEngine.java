@@ -0,0 +1,268 @@
+package com.rentaltech.techrental.staff.service.chatservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.repository.ConversationRepository;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.staff.service.staffservice.StaffRoleDirectory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chọn nhân viên cho conversation mới: ưu tiên người đang online và ít conversation nhất.
+ * <p>
+ * Mỗi role trong chuỗi fallback (CSKH → ADMIN → OPERATOR) có một {@link TreeSet} sắp theo (online, số conversation, staffId),
+ * nên chọn và cập nhật đều O(log n). Danh sách nhân viên lấy từ {@link StaffRoleDirectory} (đã cache),
+ * số conversation được nạp bằng một truy vấn GROUP BY và làm mới định kỳ, online lấy từ các session WebSocket
+ * đang subscribe topic thông báo riêng của nhân viên ({@code /topic/staffs/{id}/notifications}).
+ * Trạng thái online chỉ tính session trên node hiện tại.
+ */
+@Slf4j
+@Component
+public class SupportAssignmentEngine {
+
+    static final List<StaffRole> FALLBACK_ROLES = List.of(
+            StaffRole.CUSTOMER_SUPPORT_STAFF, StaffRole.ADMIN, StaffRole.OPERATOR);
+
+    private static final Pattern STAFF_TOPIC = Pattern.compile("^/topic/staffs/(\\d+)/notifications$");
+
+    private record Slot(boolean online, int load, Long staffId) {
+    }
+
+    private static final Comparator<Slot> ORDER = Comparator
+            .comparing((Slot slot) -> !slot.online())
+            .thenComparingInt(Slot::load)
+            .thenComparing(Slot::staffId);
+
+    /**
+     * Hàng đợi ưu tiên của một role, dựng lại khi roster trong {@link StaffRoleDirectory} được làm mới.
+     */
+    private static final class Pool {
+        private final List<StaffRoleDirectory.Recipient> roster;
+        private final TreeSet<Slot> slots = new TreeSet<>(ORDER);
+        private final Map<Long, Slot> byStaff = new HashMap<>();
+
+        private Pool(List<StaffRoleDirectory.Recipient> roster) {
+            this.roster = roster;
+        }
+    }
+
+    private final StaffRoleDirectory staffRoleDirectory;
+    private final ConversationRepository conversationRepository;
+    private final StaffRepository staffRepository;
+    private final long loadRefreshNanos;
+
+    private final Map<StaffRole, Pool> pools = new EnumMap<>(StaffRole.class);
+    private final Map<Long, Integer> loads = new HashMap<>();
+    private final Map<Long, Integer> presence = new HashMap<>();
+    // sessionId -> (subscriptionId -> staffId)
+    private final Map<String, Map<String, Long>> sessions = new HashMap<>();
+    private long loadsLoadedAtNanos;
+    private boolean loadsLoaded;
+
+    public SupportAssignmentEngine(StaffRoleDirectory staffRoleDirectory,
+                                   ConversationRepository conversationRepository,
+                                   StaffRepository staffRepository,
+                                   @Value("${chat.assignment.load-refresh:PT5M}") Duration loadRefresh) {
+        this.staffRoleDirectory = staffRoleDirectory;
+        this.conversationRepository = conversationRepository;
+        this.staffRepository = staffRepository;
+        this.loadRefreshNanos = loadRefresh.toNanos();
+    }
+
+    /**
+     * Chọn nhân viên và tính luôn conversation mới vào tải của người đó.
+     *
+     * @return staffId, hoặc {@code null} nếu hệ thống không còn nhân viên active nào
+     */
+    public synchronized Long assign() {
+        refreshLoadsIfStale();
+        Slot choice = null;
+        // Lượt 1: người online ít việc nhất theo thứ tự role; lượt 2: bỏ qua điều kiện online.
+        for (StaffRole role : FALLBACK_ROLES) {
+            Slot first = firstOf(role);
+            if (first != null && first.online()) {
+                choice = first;
+                break;
+            }
+        }
+        if (choice == null) {
+            for (StaffRole role : FALLBACK_ROLES) {
+                Slot first = firstOf(role);
+                if (first != null) {
+                    choice = first;
+                    break;
+                }
+            }
+        }
+        if (choice != null) {
+            adjustLoad(choice.staffId(), 1);
+            return choice.staffId();
+        }
+        // Không có ai trong các role ưu tiên: lấy bất kỳ nhân viên active nào (hiếm, không cache).
+        return staffRepository.findByIsActiveTrue().stream()
+                .map(Staff::getStaffId)
+                .findFirst()
+                .orElse(null);
+    }
+
+    public synchronized boolean isOnline(Long staffId) {
+        return presence.getOrDefault(staffId, 0) > 0;
+    }
+
+    synchronized int loadOf(Long staffId) {
+        return loads.getOrDefault(staffId, 0);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long staffId = staffIdOf(accessor.getDestination());
+        if (staffId == null || accessor.getSessionId() == null) {
+            return;
+        }
+        subscribed(accessor.getSessionId(), accessor.getSubscriptionId(), staffId);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        unsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnected(event.getSessionId());
+    }
+
+    synchronized void subscribed(String sessionId, String subscriptionId, Long staffId) {
+        Long previous = sessions.computeIfAbsent(sessionId, key -> new HashMap<>())
+                .put(String.valueOf(subscriptionId), staffId);
+        if (previous != null) {
+            adjustPresence(previous, -1);
+        }
+        adjustPresence(staffId, 1);
+    }
+
+    synchronized void unsubscribed(String sessionId, String subscriptionId) {
+        Map<String, Long> subscriptions = sessions.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        Long staffId = subscriptions.remove(String.valueOf(subscriptionId));
+        if (subscriptions.isEmpty()) {
+            sessions.remove(sessionId);
+        }
+        if (staffId != null) {
+            adjustPresence(staffId, -1);
+        }
+    }
+
+    synchronized void disconnected(String sessionId) {
+        Map<String, Long> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(staffId -> adjustPresence(staffId, -1));
+        }
+    }
+
+    private Slot firstOf(StaffRole role) {
+        Pool pool = pool(role);
+        return pool.slots.isEmpty() ? null : pool.slots.first();
+    }
+
+    private Pool pool(StaffRole role) {
+        List<StaffRoleDirectory.Recipient> roster = staffRoleDirectory.recipients(role);
+        Pool pool = pools.get(role);
+        // Directory trả cùng một list cho tới khi hết TTL hoặc bị evict, so sánh tham chiếu là đủ.
+        if (pool != null && pool.roster == roster) {
+            return pool;
+        }
+        pool = new Pool(roster);
+        for (StaffRoleDirectory.Recipient recipient : roster) {
+            Long staffId = recipient.staffId();
+            if (staffId != null && !pool.byStaff.containsKey(staffId)) {
+                Slot slot = new Slot(isOnline(staffId), loads.getOrDefault(staffId, 0), staffId);
+                pool.byStaff.put(staffId, slot);
+                pool.slots.add(slot);
+            }
+        }
+        pools.put(role, pool);
+        return pool;
+    }
+
+    private void refreshLoadsIfStale() {
+        long now = System.nanoTime();
+        if (loadsLoaded && now - loadsLoadedAtNanos < loadRefreshNanos) {
+            return;
+        }
+        try {
+            Map<Long, Integer> fresh = new HashMap<>();
+            for (Object[] row : conversationRepository.countConversationsByStaff()) {
+                if (row[0] instanceof Long staffId && row[1] instanceof Number count) {
+                    fresh.put(staffId, count.intValue());
+                }
+            }
+            loads.clear();
+            loads.putAll(fresh);
+            // Dựng lại toàn bộ pool theo số liệu mới ở lần chọn kế tiếp.
+            pools.clear();
+        } catch (Exception ex) {
+            log.warn("Failed to load conversation counts per staff: {}", ex.getMessage());
+        }
+        loadsLoaded = true;
+        loadsLoadedAtNanos = now;
+    }
+
+    private void adjustLoad(Long staffId, int delta) {
+        loads.merge(staffId, delta, Integer::sum);
+        reslot(staffId);
+    }
+
+    private void adjustPresence(Long staffId, int delta) {
+        int sessionsOpen = presence.getOrDefault(staffId, 0) + delta;
+        if (sessionsOpen > 0) {
+            presence.put(staffId, sessionsOpen);
+        } else {
+            presence.remove(staffId);
+        }
+        reslot(staffId);
+    }
+
+    // Phần tử trong TreeSet bất biến: xóa slot cũ rồi thêm slot mới, O(log n) cho mỗi pool chứa nhân viên.
+    private void reslot(Long staffId) {
+        for (Pool pool : pools.values()) {
+            Slot old = pool.byStaff.get(staffId);
+            if (old == null) {
+                continue;
+            }
+            Slot updated = new Slot(isOnline(staffId), loads.getOrDefault(staffId, 0), staffId);
+            pool.slots.remove(old);
+            pool.slots.add(updated);
+            pool.byStaff.put(staffId, updated);
+        }
+    }
+
+    private static Long staffIdOf(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        Matcher matcher = STAFF_TOPIC.matcher(destination);
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+}
@@ -10,6 +10,7 @@ import com.rentaltech.techrental.device.model.dto.DiscrepancyInlineRequestDto;
 import com.rentaltech.techrental.device.model.dto.DiscrepancyReportRequestDto;
 import com.rentaltech.techrental.device.repository.*;
 import com.rentaltech.techrental.device.service.AllocationSnapshotService;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
 import com.rentaltech.techrental.device.service.DeviceConditionService;
 import com.rentaltech.techrental.device.service.DiscrepancyReportService;
 import com.rentaltech.techrental.rentalorder.model.*;
@@ -23,6 +24,7 @@ import com.rentaltech.techrental.staff.repository.HandoverReportRepository;
 import com.rentaltech.techrental.staff.repository.StaffRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
 import com.rentaltech.techrental.staff.service.settlementservice.SettlementService;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.operator.service.ImageStorageService;
 import jakarta.annotation.PostConstruct;
@@ -31,6 +33,7 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
@@ -72,6 +75,7 @@ public class HandoverReportServiceImpl implements HandoverReportService {
     private final SettlementService settlementService;
     private final RentalOrderExtensionRepository rentalOrderExtensionRepository;
     private final com.rentaltech.techrental.staff.repository.DeviceReplacementReportRepository deviceReplacementReportRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
@@ -636,6 +640,7 @@ public class HandoverReportServiceImpl implements HandoverReportService {
             task.setCompletedAt(LocalDateTime.now());
         }
         taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(task));
     }
 
     private void createSettlementAfterCustomerSigned(HandoverReport report) {
@@ -720,6 +725,7 @@ public class HandoverReportServiceImpl implements HandoverReportService {
         }
         devices.forEach(device -> device.setStatus(DeviceStatus.POST_RENTAL_QC));
         deviceRepository.saveAll(devices);
+        DeviceChangedEvent.saved(devices).forEach(eventPublisher::publishEvent);
     }
 
     private long countDevicesForOrder(RentalOrder rentalOrder) {
@@ -1200,6 +1206,7 @@ public class HandoverReportServiceImpl implements HandoverReportService {
             return;
         }
         deviceRepository.saveAll(devices);
+        DeviceChangedEvent.saved(devices).forEach(eventPublisher::publishEvent);
     }
 
     private static class PinCacheEntry {
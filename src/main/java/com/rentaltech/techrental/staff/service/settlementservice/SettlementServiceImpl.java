@@ -16,7 +16,6 @@ import com.rentaltech.techrental.webapi.customer.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -39,11 +38,9 @@ public class SettlementServiceImpl implements SettlementService {
     private final TaskRepository taskRepository;
     private final TaskCategoryRepository taskCategoryRepository;
     private final NotificationService notificationService;
-    private final SimpMessagingTemplate messagingTemplate;
     private final DiscrepancyReportRepository discrepancyReportRepository;
     private final LateFeeConfigService lateFeeConfigService;
 
-    private static final String STAFF_NOTIFICATION_TOPIC_TEMPLATE = "/topic/staffs/%d/notifications";
 
     @Override
     public Settlement create(SettlementCreateRequestDto request) {
@@ -188,29 +185,17 @@ public class SettlementServiceImpl implements SettlementService {
                 orderId,
                 "Khách chấp nhận hoàn cọc cho đơn #" + orderId + ". Vui lòng hỗ trợ hoàn tất thu hồi."
         );
-        latestTask.getAssignedStaff().stream()
+        List<Staff> supportStaff = latestTask.getAssignedStaff().stream()
                 .filter(Objects::nonNull)
                 .filter(staff -> staff.getStaffRole() == StaffRole.CUSTOMER_SUPPORT_STAFF)
-                .forEach(staff -> {
-                    if (staff.getAccount() != null && staff.getAccount().getAccountId() != null) {
-                        notificationService.notifyAccount(
-                                staff.getAccount().getAccountId(),
-                                NotificationType.ORDER_NEAR_DUE,
-                                "Khách xác nhận hoàn cọc",
-                                payload.message()
-                        );
-                    }
-                    Long staffId = staff.getStaffId();
-                    if (staffId == null) {
-                        return;
-                    }
-                    String destination = String.format(STAFF_NOTIFICATION_TOPIC_TEMPLATE, staffId);
-                    try {
-                        messagingTemplate.convertAndSend(destination, payload);
-                    } catch (Exception ex) {
-                        // only log locally; do not interrupt flow
-                    }
-                });
+                .toList();
+        notificationService.notifyStaff(
+                supportStaff,
+                NotificationType.ORDER_NEAR_DUE,
+                "Khách xác nhận hoàn cọc",
+                payload.message(),
+                payload
+        );
     }
 
     private record SettlementSupportNotification(Long taskId, Long orderId, String message) {}
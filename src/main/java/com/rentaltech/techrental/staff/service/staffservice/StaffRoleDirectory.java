@@ -0,0 +1,80 @@
+package com.rentaltech.techrental.staff.service.staffservice;
+
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Danh sách (staffId, accountId) của nhân viên đang hoạt động theo role, dùng cho thông báo broadcast.
+ * <p>
+ * Cache trong bộ nhớ có TTL; {@link StaffServiceImpl} gọi {@link #evict()} khi thêm nhân viên,
+ * đổi role hoặc đổi trạng thái. TTL giới hạn độ trễ khi thay đổi đến từ node khác.
+ */
+@Component
+public class StaffRoleDirectory {
+
+    public record Recipient(Long staffId, Long accountId) {
+    }
+
+    private record Entry(List<Recipient> recipients, long expiresAtNanos) {
+    }
+
+    private final StaffRepository staffRepository;
+    private final long ttlNanos;
+    private final Map<StaffRole, Entry> entries = new EnumMap<>(StaffRole.class);
+
+    public StaffRoleDirectory(StaffRepository staffRepository,
+                              @Value("${staff.role-directory.ttl:PT5M}") Duration ttl) {
+        this.staffRepository = staffRepository;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public List<Recipient> recipients(StaffRole role) {
+        if (role == null) {
+            return List.of();
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry cached = entries.get(role);
+            if (cached != null && cached.expiresAtNanos() - now > 0) {
+                return cached.recipients();
+            }
+        }
+        List<Recipient> recipients = staffRepository.findActiveRecipientsByRole(role).stream()
+                .map(row -> new Recipient((Long) row[0], (Long) row[1]))
+                .toList();
+        synchronized (entries) {
+            entries.put(role, new Entry(recipients, now + ttlNanos));
+        }
+        return recipients;
+    }
+
+    /**
+     * Xóa cache ngay và thêm lần nữa sau commit, để request đọc lại giữa lúc ghi và commit không giữ dữ liệu cũ.
+     */
+    public void evict() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+}
@@ -37,6 +37,9 @@ public class StaffServiceImpl implements StaffService {
     @Autowired
     private TaskCustomRepository taskCustomRepository;
 
+    @Autowired
+    private StaffRoleDirectory staffRoleDirectory;
+
     @Override
     public List<Staff> getAllStaff() {
         return staffRepository.findAll();
@@ -147,7 +150,9 @@ public class StaffServiceImpl implements StaffService {
                 .staffRole(request.getStaffRole())
                 .build();
 
-        return staffRepository.save(staff);
+        Staff saved = staffRepository.save(staff);
+        staffRoleDirectory.evict();
+        return saved;
     }
 
     @Override
@@ -168,7 +173,9 @@ public class StaffServiceImpl implements StaffService {
                 .staffRole(request.getStaffRole())
                 .isActive(true)
                 .build();
-        return staffRepository.save(staff);
+        Staff savedStaff = staffRepository.save(staff);
+        staffRoleDirectory.evict();
+        return savedStaff;
     }
 
     @Override
@@ -176,7 +183,9 @@ public class StaffServiceImpl implements StaffService {
         Staff staff = staffRepository.findById(staffId)
                 .orElseThrow(() -> new NoSuchElementException("Không tìm thấy nhân viên với id: " + staffId));
         staff.setIsActive(isActive);
-        return staffRepository.save(staff);
+        Staff saved = staffRepository.save(staff);
+        staffRoleDirectory.evict();
+        return saved;
     }
 
     @Override
@@ -194,7 +203,9 @@ public class StaffServiceImpl implements StaffService {
         
         // Lưu cả Staff và Account
         accountService.updateAccount(account);
-        return staffRepository.save(staff);
+        Staff saved = staffRepository.save(staff);
+        staffRoleDirectory.evict();
+        return saved;
     }
     
     /**
@@ -215,5 +226,6 @@ public class StaffServiceImpl implements StaffService {
                 .orElseThrow(() -> new NoSuchElementException("Không tìm thấy nhân viên với id: " + staffId));
         staff.setIsActive(false); // Soft delete
         staffRepository.save(staff);
+        staffRoleDirectory.evict();
     }
 }
@@ -0,0 +1,391 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+import com.rentaltech.techrental.staff.model.dto.TaskResponseDto;
+import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Phát hiện task quá hạn bằng hàng đợi ưu tiên theo hạn chót thay vì quét bảng Task.
+ * <p>
+ * Task PENDING/IN_PROGRESS có plannedEnd được đưa vào {@link PriorityQueue} sau mỗi lần lưu
+ * (qua {@link TaskChangedEvent}, sau commit). Mỗi lượt {@link #poll()} lấy ra các hạn chót đã qua,
+ * chuyển task sang tập quá hạn trong bộ nhớ và gửi TASK_OVERDUE cho nhân viên được gán và role OPERATOR.
+ * Đổi hạn chót chỉ thêm phần tử mới; phần tử cũ bị bỏ qua khi lấy ra (xóa lười).
+ * Lúc khởi động và định kỳ ({@code task.overdue.resync}) trạng thái được dựng lại từ
+ * {@link TaskRepository#findOpenTaskDeadlines()} (partial index idx_task_open_planned_end); dựng lại không gửi thông báo
+ * cho task đã quá hạn từ trước. Thay đổi đến trong lúc đang đọc database được ghi lại và áp dụng lại sau khi nạp xong.
+ * <p>
+ * Mỗi node giữ hàng đợi riêng; trước khi báo, node phải ghi được {@code overdue_notified_at} bằng
+ * {@link TaskRepository#markOverdueNotified} nên mỗi hạn chót chỉ được một node báo.
+ */
+@Slf4j
+@Component
+public class OverdueTaskTracker {
+
+    static final int LOAD_CHUNK_SIZE = 500;
+    private static final Set<TaskStatus> OPEN_STATUSES = EnumSet.of(TaskStatus.PENDING, TaskStatus.IN_PROGRESS);
+
+    /**
+     * Payload WebSocket gửi kèm thông báo quá hạn.
+     */
+    public record OverdueTaskEvent(NotificationType type, List<TaskResponseDto> tasks) {
+    }
+
+    private record Deadline(Long taskId, LocalDateTime plannedEnd) {
+    }
+
+    private record Announcement(TaskResponseDto view, Set<Staff> assignees) {
+    }
+
+    private record Change(Long taskId, LocalDateTime plannedEnd, LocalDateTime at) {
+    }
+
+    private static final Comparator<Deadline> ORDER = Comparator.comparing(Deadline::plannedEnd)
+            .thenComparing(Deadline::taskId);
+
+    private final TaskRepository taskRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate claimTemplate;
+    private final long resyncNanos;
+    private final ReentrantLock resyncLock = new ReentrantLock();
+
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>(ORDER);
+    // Hạn chót hiện hành của task chưa quá hạn; phần tử trong queue không khớp map là bản cũ.
+    private final Map<Long, LocalDateTime> deadlines = new HashMap<>();
+    // Task quá hạn -> dữ liệu trả cho endpoint (null = cần nạp lại từ database).
+    private final Map<Long, TaskResponseDto> overdue = new HashMap<>();
+    // Task vừa quá hạn, chưa gửi thông báo.
+    private final Set<Long> unannounced = new HashSet<>();
+    // Nhật ký thay đổi của các lượt đọc database đang chạy, để áp dụng lại lên dữ liệu vừa nạp.
+    private final List<List<Change>> journals = new ArrayList<>();
+    private volatile boolean loaded;
+    private long loadedAtNanos;
+
+    public OverdueTaskTracker(TaskRepository taskRepository,
+                              NotificationService notificationService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${task.overdue.resync:PT30M}") Duration resync) {
+        this.taskRepository = taskRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.claimTemplate = new TransactionTemplate(transactionManager);
+        this.resyncNanos = resync.toNanos();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChanged(TaskChangedEvent event) {
+        if (event == null || event.taskId() == null) {
+            return;
+        }
+        LocalDateTime plannedEnd = !event.removed() && OPEN_STATUSES.contains(event.status()) ? event.plannedEnd() : null;
+        apply(event.taskId(), plannedEnd, LocalDateTime.now());
+    }
+
+    /**
+     * Task đang quá hạn, hạn chót sớm nhất trước. Chỉ truy vấn theo khóa chính cho task vừa đổi.
+     */
+    public List<TaskResponseDto> overdueTasks() {
+        if (!loaded) {
+            resync();
+        }
+        collectDue(LocalDateTime.now());
+        refreshSnapshots();
+        synchronized (this) {
+            return overdue.values().stream()
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(TaskResponseDto::getPlannedEnd, Comparator.nullsLast(Comparator.naturalOrder()))
+                            .thenComparing(TaskResponseDto::getTaskId))
+                    .toList();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            resync();
+        } catch (Exception ex) {
+            log.warn("Failed to load open task deadlines: {}", ex.getMessage(), ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${task.overdue.poll-delay-ms:30000}",
+            initialDelayString = "${task.overdue.poll-delay-ms:30000}")
+    public void poll() {
+        try {
+            if (!loaded || System.nanoTime() - loadedAtNanos >= resyncNanos) {
+                resync();
+            }
+            collectDue(LocalDateTime.now());
+            Map<Long, Task> refreshed = refreshSnapshots();
+            announce(claim(takeAnnouncements(refreshed)));
+        } catch (Exception ex) {
+            log.warn("Failed to process overdue tasks: {}", ex.getMessage(), ex);
+        }
+    }
+
+    synchronized void apply(Long taskId, LocalDateTime plannedEnd, LocalDateTime now) {
+        Change change = new Change(taskId, plannedEnd, now);
+        journals.forEach(journal -> journal.add(change));
+        applyChange(change);
+    }
+
+    private void applyChange(Change change) {
+        Long taskId = change.taskId();
+        LocalDateTime plannedEnd = change.plannedEnd();
+        if (plannedEnd != null && plannedEnd.isBefore(change.at()) && overdue.containsKey(taskId)) {
+            // Vẫn quá hạn (vd. đổi người làm): chỉ làm mới dữ liệu, không báo lại.
+            overdue.put(taskId, null);
+            return;
+        }
+        deadlines.remove(taskId);
+        overdue.remove(taskId);
+        unannounced.remove(taskId);
+        if (plannedEnd == null) {
+            return;
+        }
+        deadlines.put(taskId, plannedEnd);
+        queue.add(new Deadline(taskId, plannedEnd));
+        if (queue.size() > 2 * deadlines.size() + 1024) {
+            queue.clear();
+            deadlines.forEach((id, end) -> queue.add(new Deadline(id, end)));
+        }
+    }
+
+    synchronized void collectDue(LocalDateTime now) {
+        while (!queue.isEmpty() && queue.peek().plannedEnd().isBefore(now)) {
+            Deadline deadline = queue.poll();
+            if (!deadline.plannedEnd().equals(deadlines.get(deadline.taskId()))) {
+                continue;
+            }
+            deadlines.remove(deadline.taskId());
+            overdue.put(deadline.taskId(), null);
+            unannounced.add(deadline.taskId());
+        }
+    }
+
+    synchronized boolean isOverdue(Long taskId) {
+        return overdue.containsKey(taskId);
+    }
+
+    synchronized int queuedCount() {
+        return queue.size();
+    }
+
+    void resync() {
+        resyncLock.lock();
+        List<Change> journal = openJournal();
+        try {
+            List<Object[]> rows = transactionTemplate.execute(status -> taskRepository.findOpenTaskDeadlines());
+            rebuild(rows, journal, LocalDateTime.now());
+        } finally {
+            closeJournal(journal);
+            resyncLock.unlock();
+        }
+    }
+
+    private synchronized void rebuild(List<Object[]> rows, List<Change> journal, LocalDateTime now) {
+        Set<Long> watching = new HashSet<>(deadlines.keySet());
+        queue.clear();
+        deadlines.clear();
+        overdue.clear();
+        for (Object[] row : rows == null ? List.<Object[]>of() : rows) {
+            Long taskId = (Long) row[0];
+            LocalDateTime plannedEnd = (LocalDateTime) row[1];
+            if (plannedEnd.isBefore(now)) {
+                overdue.put(taskId, null);
+                // Đang chờ hạn chót trong hàng đợi mà chưa kịp lấy ra: vẫn phải báo.
+                if (loaded && watching.contains(taskId)) {
+                    unannounced.add(taskId);
+                }
+            } else {
+                deadlines.put(taskId, plannedEnd);
+                queue.add(new Deadline(taskId, plannedEnd));
+            }
+        }
+        unannounced.retainAll(overdue.keySet());
+        // Thay đổi commit trong lúc đọc có thể chưa có trong kết quả: áp dụng lại theo thứ tự nhận được.
+        journal.forEach(this::applyChange);
+        loaded = true;
+        loadedAtNanos = System.nanoTime();
+    }
+
+    private synchronized List<Change> openJournal() {
+        List<Change> journal = new ArrayList<>();
+        journals.add(journal);
+        return journal;
+    }
+
+    private synchronized void closeJournal(List<Change> journal) {
+        journals.removeIf(open -> open == journal);
+    }
+
+    /**
+     * Nạp dữ liệu hiển thị cho task quá hạn còn thiếu; task không còn mở hoặc đã được dời hạn thì bỏ khỏi tập quá hạn.
+     */
+    private Map<Long, Task> refreshSnapshots() {
+        List<Long> missing;
+        synchronized (this) {
+            missing = overdue.entrySet().stream()
+                    .filter(entry -> entry.getValue() == null)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+        if (missing.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Task> tasks = new HashMap<>();
+        Map<Long, TaskResponseDto> views = new HashMap<>();
+        List<Change> journal = openJournal();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int from = 0; from < missing.size(); from += LOAD_CHUNK_SIZE) {
+                    List<Long> chunk = missing.subList(from, Math.min(from + LOAD_CHUNK_SIZE, missing.size()));
+                    for (Task task : taskRepository.findWithAssigneesByTaskIdIn(chunk)) {
+                        tasks.put(task.getTaskId(), task);
+                        views.put(task.getTaskId(), TaskResponseDto.from(task));
+                    }
+                }
+            });
+        } finally {
+            closeJournal(journal);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            // Task đổi trong lúc nạp: trạng thái trong bộ nhớ (đã áp dụng thay đổi) mới hơn bản vừa đọc.
+            Set<Long> changed = new HashSet<>();
+            journal.forEach(change -> changed.add(change.taskId()));
+            for (Long taskId : missing) {
+                if (changed.contains(taskId) || !overdue.containsKey(taskId) || overdue.get(taskId) != null) {
+                    tasks.remove(taskId);
+                    continue;
+                }
+                Task task = tasks.get(taskId);
+                if (task != null && OPEN_STATUSES.contains(task.getStatus())
+                        && task.getPlannedEnd() != null && task.getPlannedEnd().isBefore(now)) {
+                    overdue.put(taskId, views.get(taskId));
+                    continue;
+                }
+                // Bộ nhớ cũ hơn database (vd. task sửa trên node khác).
+                overdue.remove(taskId);
+                unannounced.remove(taskId);
+                if (task != null && OPEN_STATUSES.contains(task.getStatus()) && task.getPlannedEnd() != null) {
+                    deadlines.put(taskId, task.getPlannedEnd());
+                    queue.add(new Deadline(taskId, task.getPlannedEnd()));
+                }
+            }
+        }
+        return tasks;
+    }
+
+    private synchronized List<Announcement> takeAnnouncements(Map<Long, Task> refreshed) {
+        List<Announcement> announcements = new ArrayList<>();
+        for (Iterator<Long> it = unannounced.iterator(); it.hasNext(); ) {
+            Long taskId = it.next();
+            Task task = refreshed.get(taskId);
+            TaskResponseDto view = overdue.get(taskId);
+            if (task != null && view != null) {
+                announcements.add(new Announcement(view, task.getAssignedStaff()));
+                it.remove();
+            } else if (view != null) {
+                // Dữ liệu được nạp từ luồng khác (endpoint): nạp lại ở lượt sau để có danh sách nhân viên.
+                overdue.put(taskId, null);
+            }
+        }
+        return announcements;
+    }
+
+    /**
+     * Chỉ giữ các task mà node này ghi được {@code overdue_notified_at}; node khác đã báo thì bỏ qua.
+     */
+    private List<Announcement> claim(List<Announcement> announcements) {
+        if (announcements.isEmpty()) {
+            return announcements;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Announcement> claimed = new ArrayList<>();
+        for (Announcement announcement : announcements) {
+            try {
+                Integer updated = claimTemplate.execute(status -> taskRepository.markOverdueNotified(
+                        announcement.view().getTaskId(), OPEN_STATUSES, now));
+                if (updated != null && updated > 0) {
+                    claimed.add(announcement);
+                }
+            } catch (Exception ex) {
+                log.warn("Không thể ghi nhận thông báo quá hạn cho tác vụ {}: {}", announcement.view().getTaskId(), ex.getMessage());
+            }
+        }
+        return claimed;
+    }
+
+    private void announce(List<Announcement> announcements) {
+        if (announcements.isEmpty()) {
+            return;
+        }
+        for (Announcement announcement : announcements) {
+            if (announcement.assignees() == null || announcement.assignees().isEmpty()) {
+                continue;
+            }
+            try {
+                notificationService.notifyStaff(announcement.assignees(),
+                        NotificationType.TASK_OVERDUE,
+                        "Tác vụ quá hạn",
+                        buildMessage(announcement.view()),
+                        new OverdueTaskEvent(NotificationType.TASK_OVERDUE, List.of(announcement.view())));
+            } catch (Exception ex) {
+                log.warn("Không thể gửi thông báo quá hạn cho tác vụ {}: {}", announcement.view().getTaskId(), ex.getMessage());
+            }
+        }
+        List<TaskResponseDto> views = announcements.stream().map(Announcement::view).toList();
+        try {
+            notificationService.notifyRole(StaffRole.OPERATOR,
+                    NotificationType.TASK_OVERDUE,
+                    "Tác vụ quá hạn",
+                    views.size() == 1 ? buildMessage(views.get(0)) : "Có " + views.size() + " tác vụ vừa quá hạn",
+                    new OverdueTaskEvent(NotificationType.TASK_OVERDUE, views));
+        } catch (Exception ex) {
+            log.warn("Không thể gửi thông báo quá hạn cho OPERATOR: {}", ex.getMessage());
+        }
+    }
+
+    private static String buildMessage(TaskResponseDto view) {
+        StringBuilder message = new StringBuilder("Tác vụ #").append(view.getTaskId());
+        if (view.getTaskCategoryName() != null) {
+            message.append(" (").append(view.getTaskCategoryName()).append(")");
+        }
+        if (view.getOrderId() != null) {
+            message.append(" của đơn #").append(view.getOrderId());
+        }
+        return message.append(" đã quá hạn lúc ").append(view.getPlannedEnd()).toString();
+    }
+}
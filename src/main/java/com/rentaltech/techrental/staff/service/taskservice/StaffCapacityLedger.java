@@ -0,0 +1,221 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+import com.rentaltech.techrental.staff.repository.TaskCustomRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sổ công suất trong ngày: số task active theo (staffId, categoryId, ngày).
+ * <p>
+ * Mỗi ngày được nạp lười bằng một truy vấn GROUP BY; sau đó kiểm tra giới hạn chỉ là tra map O(1).
+ * Tạo, sửa, đổi trạng thái và xóa task được ghi nhận qua {@link #recordChange(TaskFootprint, TaskFootprint)}
+ * và áp vào sổ sau khi transaction commit. TTL giới hạn độ trễ khi thay đổi đến từ node khác.
+ * Task active là PENDING/IN_PROGRESS/COMPLETED, ngày tính theo plannedStart (hoặc createdAt nếu chưa có),
+ * giống {@link TaskCustomRepository#countActiveTasksByStaffCategoryAndDate}.
+ */
+@Component
+public class StaffCapacityLedger {
+
+    private static final Set<TaskStatus> ACTIVE_STATUSES = Set.of(TaskStatus.PENDING, TaskStatus.IN_PROGRESS, TaskStatus.COMPLETED);
+
+    /**
+     * Phần đóng góp của một task vào sổ; {@code null} nếu task không được tính (không active, chưa gán ai...).
+     */
+    public record TaskFootprint(Long taskId, LocalDate day, Long categoryId, String categoryName, Map<Long, String> staff) {
+
+        public static TaskFootprint of(Task task) {
+            if (task == null || task.getStatus() == null || !ACTIVE_STATUSES.contains(task.getStatus())) {
+                return null;
+            }
+            TaskCategory category = task.getTaskCategory();
+            Set<Staff> assignees = task.getAssignedStaff();
+            if (category == null || category.getTaskCategoryId() == null || assignees == null || assignees.isEmpty()) {
+                return null;
+            }
+            LocalDate day = task.getPlannedStart() != null
+                    ? task.getPlannedStart().toLocalDate()
+                    : task.getCreatedAt() != null ? task.getCreatedAt().toLocalDate() : LocalDate.now();
+            Map<Long, String> staff = new LinkedHashMap<>();
+            for (Staff member : assignees) {
+                if (member != null && member.getStaffId() != null) {
+                    staff.put(member.getStaffId(), member.getAccount() != null ? member.getAccount().getUsername() : null);
+                }
+            }
+            if (staff.isEmpty()) {
+                return null;
+            }
+            return new TaskFootprint(task.getTaskId(), day, category.getTaskCategoryId(), category.getName(), Collections.unmodifiableMap(staff));
+        }
+
+        public boolean counts(Long staffId, Long categoryId, LocalDate day) {
+            return this.day.equals(day) && this.categoryId.equals(categoryId) && staff.containsKey(staffId);
+        }
+    }
+
+    public record CategoryCount(Long staffId, String staffName, Long categoryId, String categoryName, long count) {
+    }
+
+    private record Key(Long staffId, Long categoryId) {
+    }
+
+    private static final class Day {
+        private final Map<Key, Long> counts = new HashMap<>();
+        private final Map<Long, String> staffNames = new HashMap<>();
+        private final Map<Long, String> categoryNames = new HashMap<>();
+        private final long expiresAtNanos;
+
+        private Day(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private void add(Long staffId, String staffName, Long categoryId, String categoryName, long delta) {
+            Key key = new Key(staffId, categoryId);
+            long value = counts.getOrDefault(key, 0L) + delta;
+            if (value > 0) {
+                counts.put(key, value);
+            } else {
+                counts.remove(key);
+            }
+            if (staffName != null) {
+                staffNames.put(staffId, staffName);
+            }
+            if (categoryName != null) {
+                categoryNames.put(categoryId, categoryName);
+            }
+        }
+    }
+
+    private final TaskCustomRepository taskCustomRepository;
+    private final long ttlNanos;
+    private final Map<LocalDate, Day> days;
+    // Tăng mỗi lần áp thay đổi; lần nạp nào chồng lên một thay đổi thì không được cache.
+    private long modifications;
+
+    public StaffCapacityLedger(TaskCustomRepository taskCustomRepository,
+                               @Value("${task.capacity-ledger.ttl:PT10M}") Duration ttl,
+                               @Value("${task.capacity-ledger.max-days:60}") int maxDays) {
+        this.taskCustomRepository = taskCustomRepository;
+        this.ttlNanos = ttl.toNanos();
+        int capacity = Math.max(1, maxDays);
+        this.days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, Day> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public long count(Long staffId, Long categoryId, LocalDate day) {
+        if (staffId == null || categoryId == null || day == null) {
+            return 0L;
+        }
+        Day ledger = day(day);
+        synchronized (this) {
+            return ledger.counts.getOrDefault(new Key(staffId, categoryId), 0L);
+        }
+    }
+
+    /**
+     * Số task theo category của một nhân viên trong ngày, sắp theo tên category.
+     */
+    public List<CategoryCount> countsForStaff(Long staffId, LocalDate day, Long categoryId) {
+        Day ledger = day(day);
+        List<CategoryCount> result = new ArrayList<>();
+        synchronized (this) {
+            ledger.counts.forEach((key, count) -> {
+                if (key.staffId().equals(staffId) && (categoryId == null || key.categoryId().equals(categoryId))) {
+                    result.add(new CategoryCount(staffId, ledger.staffNames.getOrDefault(staffId, ""),
+                            key.categoryId(), ledger.categoryNames.get(key.categoryId()), count));
+                }
+            });
+        }
+        result.sort(Comparator.comparing(CategoryCount::categoryName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * Ghi nhận thay đổi của một task (before = trạng thái trước khi sửa, after = sau khi lưu; null nếu không tính).
+     * Áp vào sổ sau commit; rollback thì bỏ qua.
+     */
+    public void recordChange(TaskFootprint before, TaskFootprint after) {
+        if (before == null && after == null) {
+            return;
+        }
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(before, after);
+                }
+            });
+        } else {
+            apply(before, after);
+        }
+    }
+
+    public synchronized void evictAll() {
+        days.clear();
+        modifications++;
+    }
+
+    synchronized void apply(TaskFootprint before, TaskFootprint after) {
+        modifications++;
+        adjust(before, -1);
+        adjust(after, 1);
+    }
+
+    private void adjust(TaskFootprint footprint, long delta) {
+        if (footprint == null) {
+            return;
+        }
+        // Ngày chưa nạp thì bỏ qua, lần nạp sau đọc thẳng từ database.
+        Day ledger = days.get(footprint.day());
+        if (ledger == null) {
+            return;
+        }
+        footprint.staff().forEach((staffId, staffName) ->
+                ledger.add(staffId, staffName, footprint.categoryId(), footprint.categoryName(), delta));
+    }
+
+    private Day day(LocalDate day) {
+        long now = System.nanoTime();
+        long seenModifications;
+        synchronized (this) {
+            Day cached = days.get(day);
+            if (cached != null && cached.expiresAtNanos - now > 0) {
+                return cached;
+            }
+            seenModifications = modifications;
+        }
+        Day loaded = new Day(now + ttlNanos);
+        for (Object[] row : taskCustomRepository.countActiveTasksByDateGrouped(day)) {
+            loaded.add((Long) row[0], (String) row[1], (Long) row[2], (String) row[3], ((Number) row[4]).longValue());
+        }
+        synchronized (this) {
+            if (modifications == seenModifications) {
+                days.put(day, loaded);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,337 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskRule;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.staff.service.taskruleservice.TaskRuleService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lập lịch tự động cho task PENDING chưa gán ai (Pre rental QC, giao hàng, thu hồi...) trên các kỹ thuật viên đang active.
+ * <p>
+ * Ràng buộc: không trùng khung giờ với task PENDING/IN_PROGRESS khác của nhân viên và không vượt
+ * {@link TaskRule#getMaxTasksPerDay()} của rule đang áp dụng cho category (cùng rule mà TaskServiceImpl kiểm tra khi gán tay), số đếm hiện có lấy từ
+ * {@link StaffCapacityLedger}. Thuật toán:
+ * <ol>
+ *     <li>Greedy theo hạn chót: task có plannedEnd sớm nhất xếp trước, chọn người ít việc nhất trong ngày còn nhận được.</li>
+ *     <li>Sửa cục bộ: task chưa xếp được thử đẩy đúng một task vừa xếp (đang chặn nó) sang người khác còn trống.</li>
+ * </ol>
+ * Mỗi nhân viên giữ lịch bận theo ngày nên kiểm tra trùng giờ chỉ quét vài khoảng; cả lượt chạy không truy vấn theo từng task.
+ * Task không có plannedEnd được coi là kéo dài {@code task.auto-assign.default-duration}; task không có plannedStart chỉ
+ * bị ràng buộc bởi giới hạn trong ngày.
+ */
+@Component
+public class TaskAutoScheduler {
+
+    static final String REASON_NO_STAFF = "Không có kỹ thuật viên đang hoạt động";
+    static final String REASON_NO_CAPACITY = "Mọi kỹ thuật viên đều trùng lịch hoặc đã đạt giới hạn công việc trong ngày";
+
+    public record Assignment(Task task, Staff staff) {
+    }
+
+    public record Unassigned(Task task, String reason) {
+    }
+
+    public record Plan(List<Assignment> assignments, List<Unassigned> unassigned) {
+    }
+
+    private record CapacityKey(Long categoryId, LocalDate day) {
+    }
+
+    // job == null: task đã có sẵn trong database, không được dời
+    private record Slot(LocalDateTime start, LocalDateTime end, Job job) {
+    }
+
+    private static final class Job {
+        private final Task task;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final CapacityKey key;
+        private final Integer maxPerDay;
+        private Worker worker;
+
+        private Job(Task task, LocalDateTime start, LocalDateTime end, CapacityKey key, Integer maxPerDay) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.maxPerDay = maxPerDay;
+        }
+
+        private LocalDate day() {
+            return key.day();
+        }
+    }
+
+    private final class Worker {
+        private final Staff staff;
+        private final Map<LocalDate, List<Slot>> busy = new HashMap<>();
+        private final Map<CapacityKey, List<Job>> planned = new HashMap<>();
+        private final Map<CapacityKey, Long> baseCounts = new HashMap<>();
+        private final Map<LocalDate, Long> dayLoads = new HashMap<>();
+
+        private Worker(Staff staff) {
+            this.staff = staff;
+        }
+
+        private Long staffId() {
+            return staff.getStaffId();
+        }
+
+        private long used(CapacityKey key) {
+            long base = baseCounts.computeIfAbsent(key,
+                    k -> staffCapacityLedger.count(staffId(), k.categoryId(), k.day()));
+            return base + planned.getOrDefault(key, List.of()).size();
+        }
+
+        private long dayLoad(LocalDate day) {
+            return dayLoads.computeIfAbsent(day, d -> staffCapacityLedger.countsForStaff(staffId(), d, null).stream()
+                    .mapToLong(StaffCapacityLedger.CategoryCount::count)
+                    .sum());
+        }
+
+        private boolean hasRoom(Job job) {
+            return job.maxPerDay == null || used(job.key) < job.maxPerDay;
+        }
+
+        /**
+         * Các slot trùng giờ với job; dừng sớm khi gặp task có sẵn vì không thể dời nó.
+         */
+        private List<Slot> overlapping(Job job) {
+            List<Slot> result = new ArrayList<>();
+            if (job.start == null) {
+                return result;
+            }
+            for (LocalDate day : daysOf(job.start, job.end)) {
+                for (Slot slot : busy.getOrDefault(day, List.of())) {
+                    if (slot.start().isBefore(job.end) && slot.end().isAfter(job.start) && !result.contains(slot)) {
+                        result.add(slot);
+                        if (slot.job() == null) {
+                            return result;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        private boolean fits(Job job) {
+            return hasRoom(job) && overlapping(job).isEmpty();
+        }
+
+        private void addBusy(Slot slot) {
+            for (LocalDate day : daysOf(slot.start(), slot.end())) {
+                busy.computeIfAbsent(day, d -> new ArrayList<>()).add(slot);
+            }
+        }
+
+        private void place(Job job) {
+            job.worker = this;
+            planned.computeIfAbsent(job.key, k -> new ArrayList<>()).add(job);
+            dayLoads.put(job.day(), dayLoad(job.day()) + 1);
+            if (job.start != null) {
+                addBusy(new Slot(job.start, job.end, job));
+            }
+        }
+
+        private void remove(Job job) {
+            job.worker = null;
+            planned.getOrDefault(job.key, new ArrayList<>()).remove(job);
+            dayLoads.put(job.day(), dayLoad(job.day()) - 1);
+            if (job.start != null) {
+                for (LocalDate day : daysOf(job.start, job.end)) {
+                    List<Slot> slots = busy.get(day);
+                    if (slots != null) {
+                        slots.removeIf(slot -> slot.job() == job);
+                    }
+                }
+            }
+        }
+    }
+
+    private final TaskRepository taskRepository;
+    private final StaffRepository staffRepository;
+    private final TaskRuleService taskRuleService;
+    private final StaffCapacityLedger staffCapacityLedger;
+    private final Duration defaultDuration;
+
+    public TaskAutoScheduler(TaskRepository taskRepository,
+                             StaffRepository staffRepository,
+                             TaskRuleService taskRuleService,
+                             StaffCapacityLedger staffCapacityLedger,
+                             @Value("${task.auto-assign.default-duration:PT2H}") Duration defaultDuration) {
+        this.taskRepository = taskRepository;
+        this.staffRepository = staffRepository;
+        this.taskRuleService = taskRuleService;
+        this.staffCapacityLedger = staffCapacityLedger;
+        this.defaultDuration = defaultDuration;
+    }
+
+    /**
+     * Tính phương án gán cho các task chưa gán có ngày (plannedStart, hoặc createdAt) trong [from, to]. Không ghi gì xuống database.
+     */
+    public Plan plan(LocalDate from, LocalDate to) {
+        LocalDateTime startTime = from.atStartOfDay();
+        LocalDateTime endTime = to.plusDays(1).atStartOfDay();
+        List<Task> tasks = taskRepository.findUnassignedPendingTasks(startTime, endTime);
+        if (tasks.isEmpty()) {
+            return new Plan(List.of(), List.of());
+        }
+        List<Staff> technicians = staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.TECHNICIAN);
+        if (technicians.isEmpty()) {
+            return new Plan(List.of(), tasks.stream().map(task -> new Unassigned(task, REASON_NO_STAFF)).toList());
+        }
+
+        Map<Long, Worker> workers = new HashMap<>();
+        for (Staff staff : technicians) {
+            if (staff != null && staff.getStaffId() != null) {
+                workers.putIfAbsent(staff.getStaffId(), new Worker(staff));
+            }
+        }
+        // Task có sẵn kéo dài qua đầu khoảng lập lịch vẫn phải được tính là bận
+        for (Object[] row : taskRepository.findBusyIntervalsForStaff(workers.keySet(), startTime.minus(defaultDuration),
+                endTime.plus(defaultDuration), startTime.minus(defaultDuration))) {
+            Worker worker = workers.get((Long) row[0]);
+            LocalDateTime start = (LocalDateTime) row[2];
+            if (worker != null && start != null) {
+                worker.addBusy(new Slot(start, endOf(start, (LocalDateTime) row[3]), null));
+            }
+        }
+
+        Map<Long, Integer> limits = new HashMap<>();
+        List<Job> jobs = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            jobs.add(toJob(task, limits));
+        }
+        // Hạn chót sớm xếp trước; task không có giờ để sau cùng trong ngày của nó
+        jobs.sort(Comparator.comparing((Job job) -> job.end, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(job -> job.start, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(job -> job.task.getTaskId(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<Worker> pool = workers.values().stream()
+                .sorted(Comparator.comparing(Worker::staffId))
+                .toList();
+        List<Job> pending = new ArrayList<>();
+        for (Job job : jobs) {
+            Worker best = bestFit(pool, job, null);
+            if (best != null) {
+                best.place(job);
+            } else {
+                pending.add(job);
+            }
+        }
+        for (Job job : pending) {
+            repair(pool, job);
+        }
+
+        List<Assignment> assignments = new ArrayList<>();
+        List<Unassigned> unassigned = new ArrayList<>();
+        for (Job job : jobs) {
+            if (job.worker != null) {
+                assignments.add(new Assignment(job.task, job.worker.staff));
+            } else {
+                unassigned.add(new Unassigned(job.task, REASON_NO_CAPACITY));
+            }
+        }
+        return new Plan(assignments, unassigned);
+    }
+
+    private Job toJob(Task task, Map<Long, Integer> limits) {
+        TaskCategory category = task.getTaskCategory();
+        Long categoryId = category != null ? category.getTaskCategoryId() : null;
+        LocalDateTime start = task.getPlannedStart();
+        LocalDate day = start != null
+                ? start.toLocalDate()
+                : task.getCreatedAt() != null ? task.getCreatedAt().toLocalDate() : LocalDate.now();
+        Integer maxPerDay = null;
+        if (categoryId != null) {
+            maxPerDay = limits.computeIfAbsent(categoryId, this::maxTasksPerDay);
+            if (maxPerDay <= 0) {
+                maxPerDay = null;
+            }
+        }
+        LocalDateTime end = start != null ? endOf(start, task.getPlannedEnd()) : null;
+        return new Job(task, start, end, new CapacityKey(categoryId, day), maxPerDay);
+    }
+
+    // 0 = không giới hạn (computeIfAbsent không lưu được null)
+    private int maxTasksPerDay(Long categoryId) {
+        TaskRule rule = taskRuleService.getActiveRuleEntityByCategory(categoryId);
+        return rule != null && rule.getMaxTasksPerDay() != null ? rule.getMaxTasksPerDay() : 0;
+    }
+
+    private Worker bestFit(List<Worker> pool, Job job, Worker excluded) {
+        Worker best = null;
+        for (Worker worker : pool) {
+            if (worker == excluded || !worker.fits(job)) {
+                continue;
+            }
+            if (best == null || worker.dayLoad(job.day()) < best.dayLoad(job.day())) {
+                best = worker;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Thử xếp job bằng cách dời một task vừa xếp đang chặn nó (trùng giờ hoặc chiếm chỗ cuối cùng trong ngày)
+     * sang nhân viên khác.
+     */
+    private void repair(List<Worker> pool, Job job) {
+        for (Worker worker : pool) {
+            for (Job blocker : blockers(worker, job)) {
+                worker.remove(blocker);
+                if (worker.fits(job)) {
+                    Worker other = bestFit(pool, blocker, worker);
+                    if (other != null) {
+                        other.place(blocker);
+                        worker.place(job);
+                        return;
+                    }
+                }
+                worker.place(blocker);
+            }
+        }
+    }
+
+    private List<Job> blockers(Worker worker, Job job) {
+        List<Slot> overlapping = worker.overlapping(job);
+        if (overlapping.size() > 1 || overlapping.stream().anyMatch(slot -> slot.job() == null)) {
+            return List.of();
+        }
+        if (overlapping.size() == 1) {
+            return List.of(overlapping.get(0).job());
+        }
+        if (worker.hasRoom(job)) {
+            return List.of();
+        }
+        return new ArrayList<>(worker.planned.getOrDefault(job.key, List.of()));
+    }
+
+    private LocalDateTime endOf(LocalDateTime start, LocalDateTime plannedEnd) {
+        return plannedEnd != null && plannedEnd.isAfter(start) ? plannedEnd : start.plus(defaultDuration);
+    }
+
+    private static List<LocalDate> daysOf(LocalDateTime start, LocalDateTime end) {
+        List<LocalDate> days = new ArrayList<>();
+        LocalDate last = end.minusNanos(1).toLocalDate();
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+}
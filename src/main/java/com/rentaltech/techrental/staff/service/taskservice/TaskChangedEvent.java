@@ -0,0 +1,21 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Phát sau mỗi lần lưu hoặc xóa {@link Task} (TaskService, QC, bàn giao, khiếu nại, thanh toán, hủy đơn...).
+ * Dữ liệu được chụp lúc phát; bên nghe nhận sau commit qua {@code @TransactionalEventListener}.
+ */
+public record TaskChangedEvent(Long taskId, TaskStatus status, LocalDateTime plannedEnd, boolean removed) {
+
+    public static TaskChangedEvent saved(Task task) {
+        return new TaskChangedEvent(task.getTaskId(), task.getStatus(), task.getPlannedEnd(), false);
+    }
+
+    public static TaskChangedEvent removed(Long taskId) {
+        return new TaskChangedEvent(taskId, null, null, true);
+    }
+}
@@ -6,6 +6,7 @@ import com.rentaltech.techrental.staff.model.dto.TaskUpdateRequestDto;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TaskService {
     Task createTask(TaskCreateRequestDto request, String username);
@@ -15,10 +16,18 @@ public interface TaskService {
     List<Task> getTasksByCategory(Long categoryId);
     List<Task> getTasksByOrder(Long orderId, String username);
     List<Task> getTasks(Long categoryId, Long orderId, Long assignedStaffId, String status, String username);
+    /**
+     * Gọi {@code consumer} lần lượt cho từng task khớp bộ lọc, đọc từ database theo lô (fetch size {@code task.export.fetch-size}).
+     * Bộ lọc được kiểm tra như {@link #getTasks} trước khi đọc task đầu tiên.
+     */
+    void exportTasks(Long categoryId, Long orderId, Long assignedStaffId, String status, String username, Consumer<Task> consumer);
     org.springframework.data.domain.Page<Task> getTasksWithPagination(Long categoryId, Long orderId, Long assignedStaffId, String status, String username, org.springframework.data.domain.Pageable pageable);
     Task updateTask(Long taskId, TaskUpdateRequestDto request, String username);
     void deleteTask(Long taskId, String username);
-    List<Task> getOverdueTasks();
+    /**
+     * Task PENDING/IN_PROGRESS đã qua plannedEnd, đọc từ tập quá hạn trong bộ nhớ của {@link OverdueTaskTracker}.
+     */
+    List<com.rentaltech.techrental.staff.model.dto.TaskResponseDto> getOverdueTasks();
     Task confirmDelivery(Long taskId, String username);
     Task confirmRetrieval(Long taskId, String username);
 
@@ -33,4 +42,12 @@ public interface TaskService {
     com.rentaltech.techrental.staff.model.dto.TaskRuleResponseDto getActiveTaskRule();
 
     List<com.rentaltech.techrental.staff.model.dto.StaffTaskCountByCategoryDto> getStaffTaskCountByCategory(Long staffId, LocalDate targetDate, Long categoryId, String username);
+
+    /**
+     * Gán tự động các task PENDING chưa có người trong khoảng ngày cho kỹ thuật viên; {@code apply = false} chỉ xem trước phương án.
+     */
+    com.rentaltech.techrental.staff.model.dto.TaskAutoAssignmentResponseDto autoAssignTasks(LocalDate fromDate,
+                                                                                          LocalDate toDate,
+                                                                                          boolean apply,
+                                                                                          String username);
 }
@@ -8,30 +8,38 @@ import com.rentaltech.techrental.common.exception.TaskNotFoundException;
 import com.rentaltech.techrental.rentalorder.model.OrderStatus;
 import com.rentaltech.techrental.rentalorder.model.RentalOrder;
 import com.rentaltech.techrental.rentalorder.repository.RentalOrderRepository;
-import com.rentaltech.techrental.security.CustomUserDetails;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.staff.model.*;
+import com.rentaltech.techrental.staff.model.dto.TaskAutoAssignmentResponseDto;
 import com.rentaltech.techrental.staff.model.dto.TaskCreateRequestDto;
+import com.rentaltech.techrental.staff.model.dto.TaskResponseDto;
 import com.rentaltech.techrental.staff.model.dto.TaskUpdateRequestDto;
 import com.rentaltech.techrental.staff.repository.*;
 import com.rentaltech.techrental.staff.service.staffservice.StaffService;
 import com.rentaltech.techrental.staff.service.taskruleservice.TaskRuleService;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
 import com.rentaltech.techrental.webapi.customer.service.NotificationService;
+import jakarta.persistence.criteria.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class TaskServiceImpl implements TaskService {
@@ -72,6 +80,27 @@ public class TaskServiceImpl implements TaskService {
     @Autowired
     private TaskRuleService taskRuleService;
 
+    @Autowired
+    private IdentityContext identityContext;
+
+    @Autowired
+    private StaffCapacityLedger staffCapacityLedger;
+
+    @Autowired
+    private TaskAutoScheduler taskAutoScheduler;
+
+    @Autowired
+    private OverdueTaskTracker overdueTaskTracker;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${task.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    @Value("${task.auto-assign.max-days:31}")
+    private int autoAssignMaxDays;
+
     @Override
     public Task createTask(TaskCreateRequestDto request, String username) {
         AccessContext access = resolveAccessContext(username);
@@ -97,6 +126,8 @@ public class TaskServiceImpl implements TaskService {
                     .build();
 
             Task saved = taskRepository.save(task);
+            staffCapacityLedger.recordChange(null, StaffCapacityLedger.TaskFootprint.of(saved));
+            eventPublisher.publishEvent(TaskChangedEvent.saved(saved));
             
             // Chỉ promote order status và notify customer nếu task gắn với order
             if (saved.getOrderId() != null) {
@@ -169,6 +200,30 @@ public class TaskServiceImpl implements TaskService {
         AccessContext access = resolveAccessContext(username);
         Long effectiveAssignedStaffId = resolveEffectiveAssignedStaff(assignedStaffId, access);
 
+        ensureFilterTargetsExist(categoryId, orderId, effectiveAssignedStaffId);
+
+        TaskStatus taskStatus = status != null ? parseTaskStatus(status) : null;
+        // Nhân viên bị giới hạn đã được ép effectiveAssignedStaffId = chính mình, quyền xem nằm luôn trong predicate.
+        return taskRepository.findAll(buildTaskSpecification(categoryId, orderId, effectiveAssignedStaffId, taskStatus));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportTasks(Long categoryId, Long orderId, Long assignedStaffId, String status, String username, Consumer<Task> consumer) {
+        AccessContext access = resolveAccessContext(username);
+        Long effectiveAssignedStaffId = resolveEffectiveAssignedStaff(assignedStaffId, access);
+        ensureFilterTargetsExist(categoryId, orderId, effectiveAssignedStaffId);
+        TaskStatus taskStatus = status != null ? parseTaskStatus(status) : null;
+        Specification<Task> spec = buildTaskSpecification(categoryId, orderId, effectiveAssignedStaffId, taskStatus);
+        try (Stream<Task> tasks = taskCustomRepository.streamTasks(spec, exportFetchSize)) {
+            tasks.forEach(task -> {
+                consumer.accept(task);
+                taskCustomRepository.detach(task);
+            });
+        }
+    }
+
+    private void ensureFilterTargetsExist(Long categoryId, Long orderId, Long assignedStaffId) {
         if (categoryId != null && !taskCategoryRepository.existsById(categoryId)) {
             throw new NoSuchElementException("Không tìm thấy TaskCategory");
         }
@@ -177,40 +232,41 @@ public class TaskServiceImpl implements TaskService {
             throw new NoSuchElementException("Không tìm thấy đơn hàng");
         }
 
-        if (effectiveAssignedStaffId != null && !staffRepository.existsById(effectiveAssignedStaffId)) {
+        if (assignedStaffId != null && !staffRepository.existsById(assignedStaffId)) {
             throw new NoSuchElementException("Không tìm thấy nhân viên");
         }
+    }
 
-        List<Task> tasks = taskRepository.findAll();
-        if (categoryId != null) {
-            tasks = tasks.stream()
-                    .filter(task -> task.getTaskCategory() != null
-                            && task.getTaskCategory().getTaskCategoryId().equals(categoryId))
-                    .collect(Collectors.toList());
-        }
-        if (orderId != null) {
-            tasks = tasks.stream()
-                    .filter(task -> orderId.equals(task.getOrderId()))
-                    .collect(Collectors.toList());
-        }
-        if (effectiveAssignedStaffId != null) {
-            tasks = tasks.stream()
-                    .filter(task -> isTaskAssignedTo(task, effectiveAssignedStaffId))
-                    .collect(Collectors.toList());
-        }
-        if (status != null) {
-            TaskStatus requestedStatus = parseTaskStatus(status);
-            tasks = tasks.stream()
-                    .filter(task -> task.getStatus() != null && task.getStatus() == requestedStatus)
-                    .collect(Collectors.toList());
-        }
-        return filterTasksForAccess(tasks, access);
+    /**
+     * Chỉ thêm điều kiện cho các bộ lọc được truyền vào, để planner dùng được index
+     * idx_task_order, idx_task_status_planned_start và idx_task_assigned_staff_staff_task.
+     */
+    private Specification<Task> buildTaskSpecification(Long categoryId, Long orderId, Long assignedStaffId, TaskStatus status) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("taskCategory").get("taskCategoryId"), categoryId));
+            }
+            if (orderId != null) {
+                predicates.add(cb.equal(root.get("orderId"), orderId));
+            }
+            if (assignedStaffId != null) {
+                predicates.add(cb.equal(root.join("assignedStaff").get("staffId"), assignedStaffId));
+            }
+            if (status != null) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Task> getTasksWithPagination(Long categoryId, Long orderId, Long assignedStaffId, String status, String username, Pageable pageable) {
         try {
             AccessContext access = resolveAccessContext(username);
+            // Nhân viên bị giới hạn luôn có effectiveAssignedStaffId = staffId của chính mình,
+            // nên quyền xem được áp dụng bằng join assignedStaff trong query, không lọc lại trong Java.
             Long effectiveAssignedStaffId = resolveEffectiveAssignedStaff(assignedStaffId, access);
 
         if (categoryId != null && !taskCategoryRepository.existsById(categoryId)) {
@@ -230,93 +286,14 @@ public class TaskServiceImpl implements TaskService {
             taskStatus = parseTaskStatus(status);
         }
 
-        // Lấy tất cả tasks (không pagination) để sort theo khoảng cách tuyệt đối
-        // Sau đó mới paginate
-        List<Task> allTasks = taskCustomRepository.findTasksWithFilters(
+        // Sắp xếp theo khoảng cách tới plannedEnd và LIMIT/OFFSET đều chạy trong database
+        return taskCustomRepository.findTasksWithFilters(
                 categoryId,
                 orderId,
                 effectiveAssignedStaffId,
                 taskStatus,
-                org.springframework.data.domain.Pageable.unpaged()
-        ).getContent();
-
-        // Filter by access (chỉ lấy tasks mà user có quyền xem)
-        List<Task> filteredTasks = filterTasksForAccess(allTasks != null ? allTasks : new ArrayList<>(), access);
-        
-        // Null safety và tạo mutable list để có thể sort
-        if (filteredTasks == null) {
-            filteredTasks = new ArrayList<>();
-        } else {
-            // Tạo một ArrayList mới từ filteredTasks để có thể sort (tránh UnmodifiableList)
-            filteredTasks = new ArrayList<>(filteredTasks);
-        }
-        
-        // Sort theo khoảng cách tuyệt đối từ plannedEnd đến thời điểm hiện tại (gần nhất lên trước)
-        // Ví dụ: Hôm nay 8/12 10h30, task có plannedEnd = 8/12 10h30 (0 phút) → lên đầu
-        //        Task có plannedEnd = 8/12 11h00 (30 phút) → tiếp theo
-        //        Task có plannedEnd = 8/12 09h00 (1h30) → xa hơn
-        //        Task có plannedEnd = 7/12 10h30 (1 ngày) → xa nhất
-        LocalDateTime now = LocalDateTime.now();
-        filteredTasks.sort((t1, t2) -> {
-            try {
-                // Null safety cho task
-                if (t1 == null && t2 == null) return 0;
-                if (t1 == null) return 1;
-                if (t2 == null) return -1;
-                
-                LocalDateTime end1 = t1.getPlannedEnd();
-                LocalDateTime end2 = t2.getPlannedEnd();
-                
-                // Nếu cả 2 đều null, sort theo createdAt DESC (null-safe)
-                if (end1 == null && end2 == null) {
-                    LocalDateTime created1 = t1.getCreatedAt();
-                    LocalDateTime created2 = t2.getCreatedAt();
-                    if (created1 == null && created2 == null) return 0;
-                    if (created1 == null) return 1;
-                    if (created2 == null) return -1;
-                    return created2.compareTo(created1); // DESC
-                }
-                // Nếu t1 null, đưa xuống cuối
-                if (end1 == null) return 1;
-                // Nếu t2 null, đưa xuống cuối
-                if (end2 == null) return -1;
-                
-                // Tính khoảng cách tuyệt đối (số giây)
-                long distance1 = Math.abs(java.time.Duration.between(now, end1).getSeconds());
-                long distance2 = Math.abs(java.time.Duration.between(now, end2).getSeconds());
-                
-                // Sort theo khoảng cách ASC (gần nhất lên trước)
-                int compare = Long.compare(distance1, distance2);
-                if (compare != 0) {
-                    return compare;
-                }
-                // Nếu cùng khoảng cách, sort theo createdAt DESC (mới tạo lên trước)
-                LocalDateTime created1 = t1.getCreatedAt();
-                LocalDateTime created2 = t2.getCreatedAt();
-                if (created1 == null && created2 == null) return 0;
-                if (created1 == null) return 1;
-                if (created2 == null) return -1;
-                return created2.compareTo(created1); // DESC
-            } catch (Exception e) {
-                // Fallback: sort theo taskId nếu có lỗi
-                Long id1 = t1.getTaskId();
-                Long id2 = t2.getTaskId();
-                if (id1 == null && id2 == null) return 0;
-                if (id1 == null) return 1;
-                if (id2 == null) return -1;
-                return id1.compareTo(id2);
-            }
-        });
-        
-        // Apply pagination sau khi sort
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), filteredTasks.size());
-        List<Task> paginatedContent = start < filteredTasks.size() 
-                ? filteredTasks.subList(start, end) 
-                : new ArrayList<>();
-        
-        // Tạo Page mới với paginated content
-        return new PageImpl<>(paginatedContent, pageable, filteredTasks.size());
+                pageable
+        );
         } catch (Exception e) {
             log.error("Error in getTasksWithPagination: username={}, categoryId={}, orderId={}, assignedStaffId={}, status={}", 
                     username, categoryId, orderId, assignedStaffId, status, e);
@@ -330,6 +307,7 @@ public class TaskServiceImpl implements TaskService {
         ensureCanModify(access);
         Task task = taskRepository.findById(taskId)
                 .orElseThrow(() -> new NoSuchElementException("Không tìm thấy công việc"));
+        StaffCapacityLedger.TaskFootprint before = StaffCapacityLedger.TaskFootprint.of(task);
 
         TaskCategory effectiveCategory = task.getTaskCategory();
         if (request.getTaskCategoryId() != null) {
@@ -343,7 +321,7 @@ public class TaskServiceImpl implements TaskService {
         if (request.getAssignedStaffIds() != null) {
             Set<Staff> staffMembers = resolveStaffMembers(request.getAssignedStaffIds());
             LocalDateTime referenceDateTime = request.getPlannedStart() != null ? request.getPlannedStart() : task.getPlannedStart();
-            enforceDailyCapacity(staffMembers, referenceDateTime, task.getTaskId(), effectiveCategory);
+            enforceDailyCapacity(staffMembers, referenceDateTime, before, effectiveCategory);
             task.setAssignedStaff(staffMembers);
             staffMembersForNotification = staffMembers;
         }
@@ -353,6 +331,8 @@ public class TaskServiceImpl implements TaskService {
         if (request.getStatus() != null) task.setStatus(request.getStatus());
 
         Task saved = taskRepository.save(task);
+        staffCapacityLedger.recordChange(before, StaffCapacityLedger.TaskFootprint.of(saved));
+        eventPublisher.publishEvent(TaskChangedEvent.saved(saved));
         promoteOrderStatusIfNeeded(saved);
         notifyCustomerOrderProcessing(saved);
         notifyAssignedStaffChannels(saved, staffMembersForNotification);
@@ -363,16 +343,18 @@ public class TaskServiceImpl implements TaskService {
     public void deleteTask(Long taskId, String username) {
         AccessContext access = resolveAccessContext(username);
         ensureCanModify(access);
-        if (!taskRepository.existsById(taskId)) {
-            throw new NoSuchElementException("Không tìm thấy công việc");
-        }
+        Task task = taskRepository.findById(taskId)
+                .orElseThrow(() -> new NoSuchElementException("Không tìm thấy công việc"));
+        StaffCapacityLedger.TaskFootprint before = StaffCapacityLedger.TaskFootprint.of(task);
         taskDeliveryConfirmationRepository.deleteByTask_TaskId(taskId);
         taskRepository.deleteById(taskId);
+        staffCapacityLedger.recordChange(before, null);
+        eventPublisher.publishEvent(TaskChangedEvent.removed(taskId));
     }
 
     @Override
-    public List<Task> getOverdueTasks() {
-        return taskCustomRepository.findOverdueTasks(LocalDateTime.now());
+    public List<TaskResponseDto> getOverdueTasks() {
+        return overdueTaskTracker.overdueTasks();
     }
 
     @Override
@@ -397,7 +379,9 @@ public class TaskServiceImpl implements TaskService {
         taskDeliveryConfirmationRepository.save(confirmation);
 
         evaluateDeliveryConfirmation(task);
-        return taskRepository.save(task);
+        Task saved = taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(saved));
+        return saved;
     }
 
     @Override
@@ -422,7 +406,9 @@ public class TaskServiceImpl implements TaskService {
         taskDeliveryConfirmationRepository.save(confirmation);
 
         evaluateRetrievalConfirmation(task);
-        return taskRepository.save(task);
+        Task saved = taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(saved));
+        return saved;
     }
 
     @Override
@@ -469,61 +455,98 @@ public class TaskServiceImpl implements TaskService {
             throw new IllegalArgumentException("Không thể xác định staffId. Vui lòng đăng nhập hoặc cung cấp staffId");
         }
         LocalDate date = targetDate != null ? targetDate : LocalDate.now();
-        List<Object[]> records = taskCustomRepository.countActiveTasksByStaffCategoryAndDateGrouped(effectiveStaffId, date, categoryId);
-        return records.stream()
-                .map(record -> {
-                    Long catId = (Long) record[2];
-                    com.rentaltech.techrental.staff.model.TaskRule rule = taskRuleService.getActiveRuleEntityByCategory(catId);
+        return staffCapacityLedger.countsForStaff(effectiveStaffId, date, categoryId).stream()
+                .map(count -> {
+                    com.rentaltech.techrental.staff.model.TaskRule rule = taskRuleService.getActiveRuleEntityByCategory(count.categoryId());
                     Integer maxTasksPerDay = (rule != null && rule.getMaxTasksPerDay() != null) ? rule.getMaxTasksPerDay() : null;
+                    Object[] record = {count.staffId(), count.staffName(), count.categoryId(), count.categoryName(), count.count()};
                     return com.rentaltech.techrental.staff.model.dto.StaffTaskCountByCategoryDto.from(record, maxTasksPerDay);
                 })
                 .toList();
     }
 
-    private AccessContext resolveAccessContext(String username) {
-        // Tối ưu: Lấy Account từ SecurityContext thay vì query lại database
-        Account account = null;
-        try {
-            org.springframework.security.core.Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            if (auth != null && auth.getPrincipal() instanceof CustomUserDetails) {
-                CustomUserDetails userDetails = (CustomUserDetails) auth.getPrincipal();
-                account = userDetails.getAccount();
+    @Override
+    @Transactional
+    public TaskAutoAssignmentResponseDto autoAssignTasks(LocalDate fromDate, LocalDate toDate, boolean apply, String username) {
+        AccessContext access = resolveAccessContext(username);
+        ensureCanModify(access);
+        LocalDate from = fromDate != null ? fromDate : LocalDate.now();
+        LocalDate to = toDate != null ? toDate : from.plusDays(6);
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("toDate phải sau hoặc bằng fromDate");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= autoAssignMaxDays) {
+            throw new IllegalArgumentException("Chỉ lập lịch tự động tối đa " + autoAssignMaxDays + " ngày mỗi lần");
+        }
+
+        TaskAutoScheduler.Plan plan = taskAutoScheduler.plan(from, to);
+        if (apply) {
+            List<TaskAutoScheduler.Assignment> applied = new ArrayList<>();
+            List<TaskAutoScheduler.Unassigned> unassigned = new ArrayList<>(plan.unassigned());
+            for (TaskAutoScheduler.Assignment assignment : plan.assignments()) {
+                Set<Staff> assignees = new LinkedHashSet<>();
+                assignees.add(assignment.staff());
+                Task task = assignment.task();
+                try {
+                    // Cùng kiểm tra giới hạn như khi gán tay: sổ công suất có thể đã đổi kể từ lúc lập phương án
+                    enforceDailyCapacity(assignees, task.getPlannedStart(), null, task.getTaskCategory());
+                } catch (IllegalStateException ex) {
+                    unassigned.add(new TaskAutoScheduler.Unassigned(task, TaskAutoScheduler.REASON_NO_CAPACITY));
+                    continue;
+                }
+                task.setAssignedStaff(assignees);
+                Task saved = taskRepository.save(task);
+                staffCapacityLedger.recordChange(null, StaffCapacityLedger.TaskFootprint.of(saved));
+                eventPublisher.publishEvent(TaskChangedEvent.saved(saved));
+                promoteOrderStatusIfNeeded(saved);
+                notifyCustomerOrderProcessing(saved);
+                notifyAssignedStaffChannels(saved, assignees);
+                applied.add(assignment);
             }
-        } catch (Exception e) {
-            // Fallback: query từ database nếu không lấy được từ SecurityContext
-            log.debug("Could not get account from SecurityContext, querying database", e);
-        }
-        
-        // Fallback: query từ database nếu không lấy được từ SecurityContext
-        if (account == null) {
+            plan = new TaskAutoScheduler.Plan(applied, unassigned);
+            log.info("Auto-assigned {} task(s) from {} to {} by {}, {} left unassigned",
+                    plan.assignments().size(), from, to, username, plan.unassigned().size());
+        }
+
+        return TaskAutoAssignmentResponseDto.builder()
+                .fromDate(from)
+                .toDate(to)
+                .applied(apply)
+                .assignedCount(plan.assignments().size())
+                .unassignedCount(plan.unassigned().size())
+                .assignments(plan.assignments().stream()
+                        .map(assignment -> TaskAutoAssignmentResponseDto.AssignmentDto.from(assignment.task(), assignment.staff()))
+                        .toList())
+                .unassigned(plan.unassigned().stream()
+                        .map(item -> TaskAutoAssignmentResponseDto.UnassignedTaskDto.from(item.task(), item.reason()))
+                        .toList())
+                .build();
+    }
+
+    private AccessContext resolveAccessContext(String username) {
+        // Danh tính lấy từ IdentityContext (nhớ theo request + cache chung), không query lại Account/Staff mỗi lần gọi
+        IdentityContext.Identity identity = identityContext.current().orElse(null);
+        if (identity == null) {
             if (username == null || username.isEmpty()) {
                 throw new IllegalArgumentException("Username không được để trống");
             }
-            account = accountService.getByUsername(username)
+            identity = identityContext.forUsername(username)
                     .orElseThrow(() -> new NoSuchElementException("Không tìm thấy tài khoản với username: " + username));
         }
-        
-        if (account == null) {
-            throw new NoSuchElementException("Không thể lấy thông tin tài khoản");
-        }
-        
-        Role role = account.getRole();
+
+        Role role = identity.role();
         if (role == null) {
             throw new IllegalStateException("Tài khoản không có role");
         }
-        
+
         if (role == Role.ADMIN || role == Role.OPERATOR) {
             return AccessContext.full(role);
         }
         if (role == Role.TECHNICIAN || role == Role.CUSTOMER_SUPPORT_STAFF) {
-            if (account.getAccountId() == null) {
-                throw new IllegalStateException("Tài khoản không có accountId");
-            }
-            Staff staff = staffService.getStaffByAccountIdOrThrow(account.getAccountId());
-            if (staff == null || staff.getStaffId() == null) {
-                throw new NoSuchElementException("Không tìm thấy nhân viên cho accountId: " + account.getAccountId());
+            if (identity.staffId() == null) {
+                throw new NoSuchElementException("Không tìm thấy nhân viên cho accountId: " + identity.accountId());
             }
-            return AccessContext.restricted(role, staff.getStaffId());
+            return AccessContext.restricted(role, identity.staffId());
         }
         throw new AccessDeniedException("Không có quyền truy cập với role: " + role);
     }
@@ -543,7 +566,11 @@ public class TaskServiceImpl implements TaskService {
         }
     }
 
-    private void enforceDailyCapacity(Set<Staff> staffMembers, LocalDateTime plannedStart, Long excludeTaskId, TaskCategory taskCategory) {
+    /**
+     * Kiểm tra giới hạn task/ngày bằng sổ công suất (O(1) mỗi nhân viên).
+     * {@code existing} là phần đóng góp hiện tại của chính task đang sửa, được trừ ra khỏi số đếm.
+     */
+    private void enforceDailyCapacity(Set<Staff> staffMembers, LocalDateTime plannedStart, StaffCapacityLedger.TaskFootprint existing, TaskCategory taskCategory) {
         if (staffMembers == null || staffMembers.isEmpty()) {
             return;
         }
@@ -565,8 +592,10 @@ public class TaskServiceImpl implements TaskService {
                 continue;
             }
 
-            long currentCount = taskCustomRepository.countActiveTasksByStaffCategoryAndDate(
-                    staff.getStaffId(), categoryId, targetDate, excludeTaskId);
+            long currentCount = staffCapacityLedger.count(staff.getStaffId(), categoryId, targetDate);
+            if (existing != null && existing.counts(staff.getStaffId(), categoryId, targetDate)) {
+                currentCount--;
+            }
             if (currentCount >= maxPerDay) {
                 throw new IllegalStateException("Nhân viên " + staff.getStaffId()
                         + " (category=" + categoryId + ") đã đạt giới hạn " + maxPerDay
@@ -1,7 +1,8 @@
 package com.rentaltech.techrental.webapi.customer.controller;
 
 import com.rentaltech.techrental.common.util.ResponseUtil;
-import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
+import com.rentaltech.techrental.security.IdentityContext;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationCursorPageDto;
 import com.rentaltech.techrental.webapi.customer.service.NotificationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,11 +12,16 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -25,17 +31,20 @@ import java.util.List;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final IdentityContext identityContext;
 
     @GetMapping("/accounts/{accountId}")
     @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
-    @Operation(summary = "Lấy thông báo theo tài khoản", description = "Trả về danh sách thông báo thuộc tài khoản cụ thể")
+    @Operation(summary = "Lấy thông báo theo tài khoản", description = "Trả về thông báo thuộc tài khoản cụ thể, phân trang theo cursor")
     @io.swagger.v3.oas.annotations.responses.ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Trả về danh sách thông báo"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "Không thể truy vấn do lỗi hệ thống")
     })
-    public ResponseEntity<?> getNotificationsByAccountId(@PathVariable Long accountId) {
-        List<NotificationResponseDto> notifications = notificationService.getNotificationsForAccount(accountId);
-        log.info("Fetched {} notifications for accountId {}", notifications.size(), accountId);
+    public ResponseEntity<?> getNotificationsByAccountId(@PathVariable Long accountId,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size) {
+        NotificationCursorPageDto notifications = notificationService.getNotificationsForAccount(accountId, cursor, size);
+        log.info("Fetched {} notifications for accountId {}", notifications.getNumberOfElements(), accountId);
 
         return ResponseUtil.createSuccessResponse(
                 "Lấy thông báo thành công",
@@ -44,4 +53,51 @@ public class NotificationController {
                 HttpStatus.OK
         );
     }
+
+    @GetMapping("/me")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
+    @Operation(summary = "Hộp thư thông báo của tôi", description = "Thông báo của tài khoản đang đăng nhập, phân trang theo cursor")
+    public ResponseEntity<?> getMyNotifications(@RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer size) {
+        NotificationCursorPageDto notifications = notificationService.getNotificationsForAccount(currentAccountId(), cursor, size);
+        return ResponseUtil.createSuccessResponse(
+                "Lấy thông báo thành công",
+                "Hộp thư thông báo của tài khoản hiện tại",
+                notifications,
+                HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/me/unread-count")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
+    @Operation(summary = "Số thông báo chưa đọc", description = "Số thông báo chưa đọc của tài khoản đang đăng nhập")
+    public ResponseEntity<?> getMyUnreadCount() {
+        long unread = notificationService.countUnread(currentAccountId());
+        return ResponseUtil.createSuccessResponse(
+                "Lấy số thông báo chưa đọc thành công",
+                "Số thông báo chưa đọc",
+                Map.of("unreadCount", unread),
+                HttpStatus.OK
+        );
+    }
+
+    @PatchMapping("/me/read")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OPERATOR') or hasRole('TECHNICIAN') or hasRole('CUSTOMER_SUPPORT_STAFF') or hasRole('CUSTOMER')")
+    @Operation(summary = "Đánh dấu đã đọc", description = "Đánh dấu các thông báo được chọn là đã đọc; không truyền danh sách thì đánh dấu tất cả")
+    public ResponseEntity<?> markMyNotificationsRead(@RequestBody(required = false) List<Long> notificationIds) {
+        Long accountId = currentAccountId();
+        int updated = notificationService.markRead(accountId, notificationIds);
+        return ResponseUtil.createSuccessResponse(
+                "Đánh dấu đã đọc thành công",
+                "Số thông báo đã cập nhật: " + updated,
+                Map.of("updated", updated, "unreadCount", notificationService.countUnread(accountId)),
+                HttpStatus.OK
+        );
+    }
+
+    private Long currentAccountId() {
+        return identityContext.current()
+                .map(IdentityContext.Identity::accountId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Không được phép"));
+    }
 }
@@ -7,7 +7,11 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notification")
+@Table(name = "notification", indexes = {
+        @Index(name = "idx_notification_account_created", columnList = "account_id, created_at, notification_id"),
+        @Index(name = "idx_notification_account_read", columnList = "account_id, is_read"),
+        @Index(name = "idx_notification_delivery_created", columnList = "delivery_status, created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -41,4 +45,16 @@ public class Notification {
     @Column(name = "created_at", nullable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status", length = 20)
+    @Builder.Default
+    private NotificationDeliveryStatus deliveryStatus = NotificationDeliveryStatus.PENDING;
+
+    @Column(name = "delivery_attempts")
+    @Builder.Default
+    private Integer deliveryAttempts = 0;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
 }
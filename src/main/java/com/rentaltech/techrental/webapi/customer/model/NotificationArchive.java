@@ -0,0 +1,54 @@
+package com.rentaltech.techrental.webapi.customer.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thông báo cũ được job retention chuyển khỏi bảng {@code notification}; giữ nguyên id và nội dung để tra cứu.
+ */
+@Entity
+@Table(name = "notification_archive", indexes = {
+        @Index(name = "idx_notification_archive_account_created", columnList = "account_id, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationArchive {
+
+    @Id
+    @Column(name = "notification_id")
+    private Long notificationId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "title", nullable = false, length = 200)
+    private String title;
+
+    @Column(name = "message", nullable = false, length = 1000)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 100)
+    private NotificationType type;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean read;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status", length = 20)
+    private NotificationDeliveryStatus deliveryStatus;
+
+    @Column(name = "delivery_attempts")
+    private Integer deliveryAttempts;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
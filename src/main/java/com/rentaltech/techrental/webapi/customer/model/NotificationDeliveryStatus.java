@@ -0,0 +1,12 @@
+package com.rentaltech.techrental.webapi.customer.model;
+
+/**
+ * Trạng thái đẩy thông báo (WebSocket/FCM); bản ghi notification được lưu trước, việc đẩy chạy sau commit.
+ */
+public enum NotificationDeliveryStatus {
+    PENDING,
+    /** Sweeper của một node đã nhận bản ghi để gửi lại; node khác bỏ qua tới khi hết hạn nhận. */
+    DISPATCHING,
+    SENT,
+    FAILED
+}
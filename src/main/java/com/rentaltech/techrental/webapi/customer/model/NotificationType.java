@@ -9,6 +9,7 @@ public enum NotificationType {
     ORDER_ISSUE,
     ORDER_NEAR_DUE,
     TASK_ASSIGNED,
+    TASK_OVERDUE,
     ORDER_COMPLETED,
     SETTLEMENT_CREATED,
     CONTRACT_ANNEX_CREATED,
@@ -0,0 +1,24 @@
+package com.rentaltech.techrental.webapi.customer.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Một trang hộp thư thông báo theo cursor (createdAt, notificationId) giảm dần, kèm số thông báo chưa đọc.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationCursorPageDto {
+    private List<NotificationResponseDto> content;
+    private int size;
+    private int numberOfElements;
+    private boolean hasNext;
+    private String nextCursor;
+    private long unreadCount;
+}
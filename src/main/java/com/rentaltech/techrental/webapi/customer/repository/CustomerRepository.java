@@ -3,9 +3,13 @@ package com.rentaltech.techrental.webapi.customer.repository;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.customer.model.KYCStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +18,19 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByAccount_AccountId(Long accountId);
     Optional<Customer> findByAccount_Username(String username);
     Optional<Customer> findByAccount_Email(String email);
+
+    @Query("SELECT c.customerId FROM Customer c WHERE c.account.accountId = :accountId")
+    Optional<Long> findCustomerIdByAccountId(@Param("accountId") Long accountId);
     boolean existsByAccount_AccountId(Long accountId);
+
+    // Cặp (accountId, fcmToken) cho một lô thông báo, tránh tra từng customer.
+    @Query("SELECT c.account.accountId, c.fcmToken FROM Customer c WHERE c.account.accountId IN :accountIds AND c.fcmToken IS NOT NULL")
+    List<Object[]> findFcmTokensByAccountIds(@Param("accountIds") Collection<Long> accountIds);
+
+    // Token bị FCM báo UNREGISTERED thì bỏ đi để không gửi lại.
+    @Modifying
+    @Query("UPDATE Customer c SET c.fcmToken = NULL WHERE c.fcmToken IN :tokens")
+    int clearFcmTokens(@Param("tokens") Collection<String> tokens);
     
     // KYC queries
     List<Customer> findByKycStatus(KYCStatus kycStatus);
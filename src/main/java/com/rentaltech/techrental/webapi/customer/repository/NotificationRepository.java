@@ -1,12 +1,82 @@
 package com.rentaltech.techrental.webapi.customer.repository;
 
 import com.rentaltech.techrental.webapi.customer.model.Notification;
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
-    List<Notification> findByAccount_AccountIdOrderByCreatedAtDesc(Long accountId);
+    // Hộp thư theo keyset trên index (account_id, created_at, notification_id)
+    @Query("SELECT n FROM Notification n WHERE n.account.accountId = :accountId " +
+            "ORDER BY n.createdAt DESC, n.notificationId DESC")
+    List<Notification> findInbox(@Param("accountId") Long accountId, Pageable pageable);
+
+    @Query("SELECT n FROM Notification n WHERE n.account.accountId = :accountId " +
+            "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.notificationId < :notificationId)) " +
+            "ORDER BY n.createdAt DESC, n.notificationId DESC")
+    List<Notification> findInboxAfter(@Param("accountId") Long accountId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("notificationId") Long notificationId,
+                                      Pageable pageable);
+
+    long countByAccount_AccountIdAndReadFalse(Long accountId);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true WHERE n.account.accountId = :accountId AND n.read = false")
+    int markAllRead(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true " +
+            "WHERE n.account.accountId = :accountId AND n.read = false AND n.notificationId IN :ids")
+    int markRead(@Param("accountId") Long accountId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.deliveryStatus = :status, n.deliveryAttempts = :attempts " +
+            "WHERE n.notificationId IN :ids")
+    int updateDeliveryStatus(@Param("ids") Collection<Long> ids,
+                             @Param("status") NotificationDeliveryStatus status,
+                             @Param("attempts") Integer attempts);
+
+    /**
+     * Khóa (SKIP LOCKED) bản ghi PENDING (không node nào giữ) hoặc DISPATCHING đã hết lease, để chỉ một node nhận gửi lại.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT n.notificationId FROM Notification n " +
+            "WHERE n.deliveryStatus = :pending " +
+            "OR (n.deliveryStatus = :dispatching AND n.claimedAt < :claimedBefore) " +
+            "ORDER BY n.notificationId")
+    List<Long> lockStaleForDispatch(@Param("pending") NotificationDeliveryStatus pending,
+                                    @Param("dispatching") NotificationDeliveryStatus dispatching,
+                                    @Param("claimedBefore") LocalDateTime claimedBefore,
+                                    Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.deliveryStatus = :status, n.claimedAt = :claimedAt WHERE n.notificationId IN :ids")
+    int claimForDispatch(@Param("ids") Collection<Long> ids,
+                         @Param("status") NotificationDeliveryStatus status,
+                         @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.deliveryStatus = :released, n.claimedAt = null " +
+            "WHERE n.notificationId IN :ids AND n.deliveryStatus = :claimed")
+    int releaseClaims(@Param("ids") Collection<Long> ids,
+                      @Param("claimed") NotificationDeliveryStatus claimed,
+                      @Param("released") NotificationDeliveryStatus released);
+
+    @Query("SELECT n FROM Notification n JOIN FETCH n.account WHERE n.notificationId IN :ids ORDER BY n.notificationId")
+    List<Notification> findWithAccountByNotificationIdIn(@Param("ids") Collection<Long> ids);
 }
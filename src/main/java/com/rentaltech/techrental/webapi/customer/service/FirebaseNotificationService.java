@@ -1,111 +1,268 @@
 package com.rentaltech.techrental.webapi.customer.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Client FCM HTTP v1 dùng {@link HttpClient} của JDK (HTTP/2, bất đồng bộ, tự giữ pool kết nối).
+ * <p>
+ * Access token được cache trong một biến volatile và làm mới trước khi hết hạn; chỉ lần làm mới mới phải lấy khóa.
+ * {@link #sendAll(List)} gửi song song tối đa {@code fcm.parallelism} request và trả kết quả theo từng token,
+ * để bên gọi thử lại lỗi tạm thời và dọn token đã bị gỡ (UNREGISTERED).
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FirebaseNotificationService {
 
     private static final String FCM_SCOPE = "https://www.googleapis.com/auth/firebase.messaging";
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    public record FcmMessage(String token, String title, String body, NotificationType type) {
+    }
 
-    @Value("${fcm.api-url:https://fcm.googleapis.com/v1}")
-    private String apiUrl;
+    public enum SendResult {
+        SENT,
+        /** Thiếu cấu hình hoặc token rỗng, không có gì để gửi. */
+        SKIPPED,
+        /** Lỗi tạm thời (mạng, 429, 5xx, token truy cập hết hạn), nên thử lại. */
+        RETRY,
+        /** FCM báo token không còn hiệu lực, cần xóa khỏi customer. */
+        UNREGISTERED,
+        /** FCM từ chối message, thử lại cũng không thành công. */
+        REJECTED
+    }
 
-    @Value("${fcm.project-id:}")
-    private String projectId;
+    private record CachedToken(String value, long refreshAtMillis) {
+    }
 
-    @Value("${fcm.service-account-file:}")
-    private String serviceAccountFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+    private final String apiUrl;
+    private final String projectId;
+    private final String serviceAccountFile;
+    private final int parallelism;
+    private final Duration requestTimeout;
+    private final long tokenRefreshSkewMillis;
+    private final ReentrantLock refreshLock = new ReentrantLock();
 
+    private volatile CachedToken cachedToken;
     private volatile GoogleCredentials cachedCredentials;
 
-    public void sendNotification(String token, String title, String body, NotificationType type) {
-        if (!StringUtils.hasText(projectId)) {
-            log.debug("FCM project id is not configured. Skip sending notification.");
-            return;
-        }
-        if (!StringUtils.hasText(serviceAccountFile)) {
-            log.debug("FCM service account file is not configured. Skip sending notification.");
-            return;
+    public FirebaseNotificationService(@Value("${fcm.api-url:https://fcm.googleapis.com/v1}") String apiUrl,
+                                       @Value("${fcm.project-id:}") String projectId,
+                                       @Value("${fcm.service-account-file:}") String serviceAccountFile,
+                                       @Value("${fcm.parallelism:16}") int parallelism,
+                                       @Value("${fcm.connect-timeout:PT5S}") Duration connectTimeout,
+                                       @Value("${fcm.request-timeout:PT10S}") Duration requestTimeout,
+                                       @Value("${fcm.token-refresh-skew:PT5M}") Duration tokenRefreshSkew) {
+        this.apiUrl = apiUrl;
+        this.projectId = projectId;
+        this.serviceAccountFile = serviceAccountFile;
+        this.parallelism = Math.max(1, parallelism);
+        this.requestTimeout = requestTimeout;
+        this.tokenRefreshSkewMillis = tokenRefreshSkew.toMillis();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Gửi một lô message, song song tối đa {@code fcm.parallelism} request.
+     *
+     * @return kết quả theo đúng thứ tự của {@code messages}
+     */
+    public List<SendResult> sendAll(List<FcmMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return List.of();
         }
-        if (!StringUtils.hasText(token)) {
-            log.debug("FCM token is empty. Skip sending notification.");
-            return;
+        if (!StringUtils.hasText(projectId) || !StringUtils.hasText(serviceAccountFile)) {
+            log.debug("FCM is not configured. Skip sending {} notification(s).", messages.size());
+            return Collections.nCopies(messages.size(), SendResult.SKIPPED);
         }
 
+        String accessToken;
         try {
-            String accessToken = fetchAccessToken();
-            if (!StringUtils.hasText(accessToken)) {
-                log.debug("Unable to obtain FCM access token. Skip sending notification.");
-                return;
-            }
-
-            Map<String, Object> message = new HashMap<>();
-            message.put("token", token);
+            accessToken = accessToken();
+        } catch (Exception ex) {
+            log.warn("Unable to obtain FCM access token: {}", ex.getMessage());
+            accessToken = null;
+        }
+        if (!StringUtils.hasText(accessToken)) {
+            return Collections.nCopies(messages.size(), SendResult.RETRY);
+        }
 
-            Map<String, Object> notification = new HashMap<>();
-            notification.put("title", title);
-            notification.put("body", body);
-            message.put("notification", notification);
+        URI endpoint = URI.create(String.format("%s/projects/%s/messages:send", apiUrl, projectId));
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<SendResult>> futures = new ArrayList<>(messages.size());
+        for (FcmMessage message : messages) {
+            if (message == null || !StringUtils.hasText(message.token())) {
+                futures.add(CompletableFuture.completedFuture(SendResult.SKIPPED));
+                continue;
+            }
+            HttpRequest request;
+            try {
+                request = HttpRequest.newBuilder(endpoint)
+                        .timeout(requestTimeout)
+                        .header("Content-Type", "application/json")
+                        .header("Authorization", "Bearer " + accessToken)
+                        .POST(HttpRequest.BodyPublishers.ofString(payload(message)))
+                        .build();
+            } catch (Exception ex) {
+                log.warn("Failed to build FCM request: {}", ex.getMessage());
+                futures.add(CompletableFuture.completedFuture(SendResult.REJECTED));
+                continue;
+            }
+            permits.acquireUninterruptibly();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, ex) -> classify(response, ex))
+                    .whenComplete((result, ex) -> permits.release()));
+        }
 
-            Map<String, Object> data = new HashMap<>();
-            data.put("type", type.name());
-            data.put("message", body);
-            message.put("data", data);
+        List<SendResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<SendResult> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
 
-            Map<String, Object> payload = Map.of("message", message);
+    /**
+     * Đặt sẵn access token (dùng khi test với server giả lập FCM).
+     */
+    void useAccessToken(String value, Instant expiresAt) {
+        cachedToken = new CachedToken(value, expiresAt.toEpochMilli() - tokenRefreshSkewMillis);
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(accessToken);
+    private SendResult classify(HttpResponse<String> response, Throwable error) {
+        if (error != null || response == null) {
+            log.warn("Failed to send FCM notification: {}", error != null ? error.getMessage() : "no response");
+            return SendResult.RETRY;
+        }
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return SendResult.SENT;
+        }
+        String body = response.body() != null ? response.body() : "";
+        if (isDeadToken(body)) {
+            return SendResult.UNREGISTERED;
+        }
+        if (status == 404) {
+            // 404 không kèm errorCode của FCM thường do sai project-id/api-url: lỗi cấu hình, không phải token chết.
+            log.warn("FCM endpoint returned 404 without a token error, check fcm.project-id/fcm.api-url: {}", body);
+            return SendResult.RETRY;
+        }
+        if (status == 401) {
+            // Token truy cập bị thu hồi sớm; bỏ cache để lần sau lấy token mới.
+            cachedToken = null;
+            return SendResult.RETRY;
+        }
+        if (status == 429 || status >= 500) {
+            return SendResult.RETRY;
+        }
+        log.warn("FCM rejected notification with status {}: {}", status, body);
+        return SendResult.REJECTED;
+    }
 
-            String endpoint = String.format("%s/projects/%s/messages:send", apiUrl, projectId);
-            HttpEntity<String> request = new HttpEntity<>(objectMapper.writeValueAsString(payload), headers);
-            restTemplate.postForEntity(endpoint, request, String.class);
+    /**
+     * Token chỉ bị coi là chết khi FCM trả {@code errorCode} UNREGISTERED, hoặc INVALID_ARGUMENT chỉ đích danh
+     * trường {@code message.token}.
+     */
+    private boolean isDeadToken(String body) {
+        if (!StringUtils.hasText(body)) {
+            return false;
+        }
+        JsonNode error;
+        try {
+            error = objectMapper.readTree(body).path("error");
         } catch (Exception ex) {
-            log.warn("Failed to send FCM notification: {}", ex.getMessage());
+            return false;
+        }
+        boolean invalidArgument = false;
+        boolean tokenViolation = false;
+        for (JsonNode detail : error.path("details")) {
+            String errorCode = detail.path("errorCode").asText("");
+            if ("UNREGISTERED".equals(errorCode)) {
+                return true;
+            }
+            if ("INVALID_ARGUMENT".equals(errorCode)) {
+                invalidArgument = true;
+            }
+            for (JsonNode violation : detail.path("fieldViolations")) {
+                if ("message.token".equals(violation.path("field").asText())) {
+                    tokenViolation = true;
+                }
+            }
         }
+        return invalidArgument
+                && (tokenViolation || error.path("message").asText("").contains("registration token"));
     }
 
-    private String fetchAccessToken() throws IOException {
-        GoogleCredentials credentials = getCredentials();
-        if (credentials == null) {
-            return null;
+    private String payload(FcmMessage message) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode node = root.putObject("message");
+        node.put("token", message.token());
+        ObjectNode notification = node.putObject("notification");
+        notification.put("title", message.title());
+        notification.put("body", message.body());
+        ObjectNode data = node.putObject("data");
+        data.put("type", message.type() != null ? message.type().name() : null);
+        data.put("message", message.body());
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String accessToken() throws IOException {
+        CachedToken current = cachedToken;
+        if (current != null && System.currentTimeMillis() < current.refreshAtMillis()) {
+            return current.value();
         }
-        synchronized (credentials) {
-            credentials.refreshIfExpired();
+        refreshLock.lock();
+        try {
+            current = cachedToken;
+            if (current != null && System.currentTimeMillis() < current.refreshAtMillis()) {
+                return current.value();
+            }
+            GoogleCredentials credentials = getCredentials();
+            if (credentials == null) {
+                return null;
+            }
+            credentials.refresh();
             AccessToken token = credentials.getAccessToken();
             if (token == null) {
-                credentials.refresh();
-                token = credentials.getAccessToken();
+                return null;
             }
-            return token != null ? token.getTokenValue() : null;
+            long expiresAt = token.getExpirationTime() != null
+                    ? token.getExpirationTime().getTime()
+                    : System.currentTimeMillis() + Duration.ofMinutes(30).toMillis();
+            cachedToken = new CachedToken(token.getTokenValue(), expiresAt - tokenRefreshSkewMillis);
+            return token.getTokenValue();
+        } finally {
+            refreshLock.unlock();
         }
     }
 
@@ -0,0 +1,37 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.webapi.customer.model.Notification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Vị trí (createdAt, notificationId) của thông báo cuối trang, mã hóa base64url.
+ */
+record NotificationCursor(LocalDateTime createdAt, Long notificationId) {
+
+    private static final String SEPARATOR = "|";
+
+    static NotificationCursor of(Notification notification) {
+        return new NotificationCursor(notification.getCreatedAt(), notification.getNotificationId());
+    }
+
+    static NotificationCursor decode(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            return new NotificationCursor(LocalDateTime.parse(raw.substring(0, split)), Long.valueOf(raw.substring(split + 1)));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Cursor không hợp lệ: " + value);
+        }
+    }
+
+    String encode() {
+        String raw = createdAt + SEPARATOR + notificationId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
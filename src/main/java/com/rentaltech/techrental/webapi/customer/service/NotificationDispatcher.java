@@ -0,0 +1,431 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.webapi.customer.model.Notification;
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
+import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
+import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Đẩy thông báo (WebSocket + FCM) ngoài transaction của nghiệp vụ.
+ * <p>
+ * Notification được lưu ở trạng thái DISPATCHING kèm {@code claimedAt}: node tạo bản ghi giữ quyền gửi (lease)
+ * và sau commit đưa nó vào hàng đợi có giới hạn; worker gom theo lô, tra FCM token cho cả lô trong một truy vấn
+ * và cập nhật trạng thái theo lô. Gửi FCM lỗi được thử lại với backoff lũy thừa.
+ * <p>
+ * Khi hàng đợi đầy, bản ghi được trả về PENDING (chưa giao kênh nào) để {@link #requeueStalePending()} của bất kỳ node
+ * nào nhận lại và gửi đủ cả WebSocket lẫn FCM. Bản ghi DISPATCHING chỉ được nhận lại khi lease quá
+ * {@code notification.dispatch.claim-lease} (node giữ đã chết hoặc bỏ dở); lease luôn dài hơn thời gian retry,
+ * nên bản ghi còn trong hàng đợi hoặc đang chờ retry của node khác không bị gửi trùng. Lần gửi lại đó chỉ đẩy FCM,
+ * vì WebSocket đã được node trước đảm nhận.
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    static final String TOPIC_TEMPLATE = "/topic/accounts/%d/notifications";
+    static final String STAFF_TOPIC_TEMPLATE = "/topic/staffs/%d/notifications";
+
+    record Delivery(NotificationResponseDto payload, int attempt, boolean websocket) {
+        Delivery(NotificationResponseDto payload, int attempt) {
+            this(payload, attempt, attempt == 0);
+        }
+    }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final FirebaseNotificationService firebaseNotificationService;
+    private final CustomerRepository customerRepository;
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final int workers;
+    private final Duration claimLease;
+
+    private final BlockingQueue<Delivery> queue;
+    // Id đang nằm trong hàng đợi hoặc chờ retry, để sweeper không đẩy trùng.
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    // Id bị từ chối vì hàng đợi đầy, chờ sweeper trả về PENDING.
+    private final Set<Long> overflowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService retryScheduler;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public NotificationDispatcher(SimpMessagingTemplate messagingTemplate,
+                                  FirebaseNotificationService firebaseNotificationService,
+                                  CustomerRepository customerRepository,
+                                  NotificationRepository notificationRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${notification.dispatch.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${notification.dispatch.batch-size:100}") int batchSize,
+                                  @Value("${notification.dispatch.max-attempts:5}") int maxAttempts,
+                                  @Value("${notification.dispatch.retry-backoff-ms:2000}") long retryBackoffMs,
+                                  @Value("${notification.dispatch.workers:2}") int workers,
+                                  @Value("${notification.dispatch.claim-lease:PT10M}") Duration claimLease) {
+        this.messagingTemplate = messagingTemplate;
+        this.firebaseNotificationService = firebaseNotificationService;
+        this.customerRepository = customerRepository;
+        this.notificationRepository = notificationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = Math.max(1, retryBackoffMs);
+        this.workers = Math.max(1, workers);
+        this.claimLease = leaseCoveringRetries(claimLease);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Đưa thông báo đã commit vào hàng đợi; không bao giờ chặn luồng gọi.
+     *
+     * @return {@code false} khi hàng đợi đầy (bản ghi được trả về PENDING, sweeper sẽ gửi sau)
+     */
+    public boolean enqueue(NotificationResponseDto payload) {
+        return offer(payload, true);
+    }
+
+    private boolean offer(NotificationResponseDto payload, boolean websocket) {
+        if (payload == null || payload.getNotificationId() == null) {
+            return false;
+        }
+        if (!inFlight.add(payload.getNotificationId())) {
+            return true;
+        }
+        if (!queue.offer(new Delivery(payload, 0, websocket))) {
+            inFlight.remove(payload.getNotificationId());
+            if (websocket) {
+                // Chưa giao kênh nào: trả lease để lần gửi lại vẫn có WebSocket.
+                overflowed.add(payload.getNotificationId());
+            }
+            log.warn("Notification queue is full, notification {} left pending", payload.getNotificationId());
+            return false;
+        }
+        return true;
+    }
+
+    private Duration leaseCoveringRetries(Duration configured) {
+        long retryWindowMs = 0;
+        for (int attempt = 1; attempt < maxAttempts; attempt++) {
+            retryWindowMs += retryDelayMs(attempt);
+        }
+        // Lease phải dài hơn thời gian chờ trong hàng đợi cộng tổng backoff, nếu không bản ghi còn đang được gửi sẽ bị nhận lại.
+        Duration minimum = Duration.ofMillis(retryWindowMs).plusMinutes(1);
+        if (configured == null || configured.compareTo(minimum) < 0) {
+            log.warn("notification.dispatch.claim-lease {} is shorter than the retry window, using {}", configured, minimum);
+            return minimum;
+        }
+        return configured;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::drainLoop, "notification-dispatcher-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        workerThreads.clear();
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * Lưới an toàn cho bản ghi PENDING (bị trả lại do hàng đợi đầy) và bản ghi DISPATCHING có lease đã hết hạn
+     * (node giữ đã chết hoặc bỏ dở). Bản ghi được chuyển sang DISPATCHING với lease mới trong cùng transaction với
+     * câu khóa SKIP LOCKED, nên các node chạy sweeper cùng lúc không nhận trùng.
+     */
+    @Scheduled(fixedDelayString = "${notification.dispatch.sweep-delay-ms:60000}",
+            initialDelayString = "${notification.dispatch.sweep-delay-ms:60000}")
+    public void requeueStalePending() {
+        List<Long> released = new ArrayList<>(overflowed);
+        int room = queue.remainingCapacity();
+        if (released.isEmpty() && room == 0) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Map<NotificationResponseDto, Boolean> claimed = transactionTemplate.execute(tx -> {
+                if (!released.isEmpty()) {
+                    notificationRepository.releaseClaims(released,
+                            NotificationDeliveryStatus.DISPATCHING, NotificationDeliveryStatus.PENDING);
+                }
+                if (room == 0) {
+                    return Map.of();
+                }
+                List<Long> ids = notificationRepository.lockStaleForDispatch(
+                        NotificationDeliveryStatus.PENDING,
+                        NotificationDeliveryStatus.DISPATCHING, now.minus(claimLease),
+                        PageRequest.of(0, Math.min(room, batchSize * 10)));
+                if (ids.isEmpty()) {
+                    return Map.of();
+                }
+                // Đọc trước khi nhận: PENDING chưa giao kênh nào nên cần cả WebSocket.
+                Map<NotificationResponseDto, Boolean> websocketByPayload = new LinkedHashMap<>();
+                for (Notification notification : notificationRepository.findWithAccountByNotificationIdIn(ids)) {
+                    websocketByPayload.put(NotificationResponseDto.from(notification),
+                            notification.getDeliveryStatus() == NotificationDeliveryStatus.PENDING);
+                }
+                notificationRepository.claimForDispatch(ids, NotificationDeliveryStatus.DISPATCHING, now);
+                return websocketByPayload;
+            });
+            released.forEach(overflowed::remove);
+            if (claimed != null) {
+                claimed.forEach(this::offer);
+            }
+        } catch (Exception ex) {
+            log.warn("Failed to requeue pending notifications: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Gửi cùng một payload tới topic role (nếu có) và topic riêng của từng nhân viên.
+     * Payload chỉ được serialize một lần, các lần gửi sau dùng lại cùng message.
+     */
+    public void broadcast(String roleTopic, Collection<Long> staffIds, Object payload) {
+        if (payload == null) {
+            return;
+        }
+        List<String> destinations = new ArrayList<>();
+        if (StringUtils.hasText(roleTopic)) {
+            destinations.add(roleTopic);
+        }
+        if (staffIds != null) {
+            staffIds.stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .forEach(staffId -> destinations.add(String.format(STAFF_TOPIC_TEMPLATE, staffId)));
+        }
+        Message<?> message = serialize(payload);
+        for (String destination : destinations) {
+            try {
+                if (message != null) {
+                    messagingTemplate.send(destination, message);
+                } else {
+                    messagingTemplate.convertAndSend(destination, payload);
+                }
+            } catch (Exception ex) {
+                log.warn("Failed to broadcast notification to {}: {}", destination, ex.getMessage());
+            }
+        }
+    }
+
+    int queuedCount() {
+        return queue.size();
+    }
+
+    Duration claimLease() {
+        return claimLease;
+    }
+
+    void drainQueued() {
+        List<Delivery> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private void drainLoop() {
+        List<Delivery> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Delivery first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                dispatch(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                // Bản ghi vẫn PENDING, sweeper sẽ thử lại.
+                log.warn("Failed to dispatch notification batch: {}", ex.getMessage(), ex);
+                batch.forEach(delivery -> inFlight.remove(delivery.payload().getNotificationId()));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void dispatch(List<Delivery> batch) {
+        for (Delivery delivery : batch) {
+            // WebSocket chỉ gửi ở lần đầu, các lần retry và bản ghi do sweeper gửi lại chỉ dành cho FCM.
+            if (delivery.websocket()) {
+                sendWebSocket(delivery.payload());
+            }
+        }
+
+        Map<Long, String> tokens = resolveTokens(batch);
+        Map<Integer, List<Long>> sent = new HashMap<>();
+        Map<Integer, List<Long>> failed = new HashMap<>();
+        List<Delivery> pushes = new ArrayList<>();
+        List<FirebaseNotificationService.FcmMessage> messages = new ArrayList<>();
+        for (Delivery delivery : batch) {
+            NotificationResponseDto payload = delivery.payload();
+            String token = tokens.get(payload.getAccountId());
+            if (token == null) {
+                sent.computeIfAbsent(delivery.attempt() + 1, key -> new ArrayList<>()).add(payload.getNotificationId());
+                continue;
+            }
+            pushes.add(delivery);
+            messages.add(new FirebaseNotificationService.FcmMessage(
+                    token, payload.getTitle(), payload.getMessage(), payload.getType()));
+        }
+
+        Set<String> deadTokens = new HashSet<>();
+        List<FirebaseNotificationService.SendResult> results = firebaseNotificationService.sendAll(messages);
+        for (int i = 0; i < pushes.size(); i++) {
+            Delivery delivery = pushes.get(i);
+            Long notificationId = delivery.payload().getNotificationId();
+            int attempts = delivery.attempt() + 1;
+            FirebaseNotificationService.SendResult result = i < results.size()
+                    ? results.get(i)
+                    : FirebaseNotificationService.SendResult.RETRY;
+            switch (result) {
+                case SENT, SKIPPED -> sent.computeIfAbsent(attempts, key -> new ArrayList<>()).add(notificationId);
+                case RETRY -> {
+                    if (attempts < maxAttempts) {
+                        scheduleRetry(new Delivery(delivery.payload(), attempts, false));
+                    } else {
+                        failed.computeIfAbsent(attempts, key -> new ArrayList<>()).add(notificationId);
+                    }
+                }
+                case UNREGISTERED -> {
+                    deadTokens.add(messages.get(i).token());
+                    failed.computeIfAbsent(attempts, key -> new ArrayList<>()).add(notificationId);
+                }
+                case REJECTED -> failed.computeIfAbsent(attempts, key -> new ArrayList<>()).add(notificationId);
+            }
+        }
+
+        persistOutcome(sent, failed, deadTokens);
+    }
+
+    long retryDelayMs(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 16);
+        return retryBackoffMs << shift;
+    }
+
+    private Message<?> serialize(Object payload) {
+        MessageConverter converter = messagingTemplate.getMessageConverter();
+        if (converter == null) {
+            return null;
+        }
+        try {
+            return converter.toMessage(payload, null);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private void sendWebSocket(NotificationResponseDto payload) {
+        try {
+            messagingTemplate.convertAndSend(String.format(TOPIC_TEMPLATE, payload.getAccountId()), payload);
+        } catch (Exception ex) {
+            log.warn("Failed to broadcast notification {}: {}", payload.getNotificationId(), ex.getMessage());
+        }
+    }
+
+    private Map<Long, String> resolveTokens(List<Delivery> batch) {
+        Set<Long> accountIds = batch.stream()
+                .map(delivery -> delivery.payload().getAccountId())
+                .filter(id -> id != null)
+                .collect(Collectors.toSet());
+        if (accountIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, String> tokens = new HashMap<>();
+        for (Object[] row : customerRepository.findFcmTokensByAccountIds(accountIds)) {
+            if (row[0] instanceof Long accountId && row[1] instanceof String token && StringUtils.hasText(token)) {
+                tokens.put(accountId, token);
+            }
+        }
+        return tokens;
+    }
+
+    private void scheduleRetry(Delivery delivery) {
+        Long notificationId = delivery.payload().getNotificationId();
+        try {
+            retryScheduler.schedule(() -> {
+                if (!queue.offer(delivery)) {
+                    inFlight.remove(notificationId);
+                }
+            }, retryDelayMs(delivery.attempt()), TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            inFlight.remove(notificationId);
+        }
+    }
+
+    private void persistOutcome(Map<Integer, List<Long>> sent, Map<Integer, List<Long>> failed, Set<String> deadTokens) {
+        if (sent.isEmpty() && failed.isEmpty() && deadTokens.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                sent.forEach((attempts, ids) ->
+                        notificationRepository.updateDeliveryStatus(ids, NotificationDeliveryStatus.SENT, attempts));
+                failed.forEach((attempts, ids) ->
+                        notificationRepository.updateDeliveryStatus(ids, NotificationDeliveryStatus.FAILED, attempts));
+                if (!deadTokens.isEmpty()) {
+                    customerRepository.clearFcmTokens(deadTokens);
+                }
+            });
+        } catch (Exception ex) {
+            log.warn("Failed to record notification delivery outcome: {}", ex.getMessage());
+        } finally {
+            sent.values().forEach(inFlight::removeAll);
+            failed.values().forEach(inFlight::removeAll);
+        }
+    }
+}
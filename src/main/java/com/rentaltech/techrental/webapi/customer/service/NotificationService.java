@@ -1,9 +1,13 @@
 package com.rentaltech.techrental.webapi.customer.service;
 
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationCursorPageDto;
 import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 public interface NotificationService {
 
@@ -12,5 +16,46 @@ public interface NotificationService {
                                           String title,
                                           String message);
 
-    List<NotificationResponseDto> getNotificationsForAccount(Long accountId);
+    /**
+     * Gửi thông báo cho mọi nhân viên đang hoạt động của role: lưu tất cả bản ghi PENDING trong một câu INSERT,
+     * sau commit gửi {@code staffPayload} một lần tới {@code /topic/roles/{role}} và tới topic riêng của từng nhân viên,
+     * đồng thời đưa từng bản ghi cho dispatcher như {@link #notifyAccount} ({@code /topic/accounts/{id}/notifications}, FCM).
+     *
+     * @return số tài khoản nhận thông báo
+     */
+    int notifyRole(StaffRole role,
+                   NotificationType type,
+                   String title,
+                   String message,
+                   Object staffPayload);
+
+    /**
+     * Như {@link #notifyRole} nhưng cho một nhóm nhân viên cụ thể (vd. nhân viên được gán task), không gửi topic role.
+     */
+    int notifyStaff(Collection<Staff> staff,
+                    NotificationType type,
+                    String title,
+                    String message,
+                    Object staffPayload);
+
+    /**
+     * Hộp thư theo cursor (createdAt, notificationId) giảm dần; {@code cursor} rỗng là trang đầu.
+     */
+    NotificationCursorPageDto getNotificationsForAccount(Long accountId, String cursor, Integer size);
+
+    long countUnread(Long accountId);
+
+    /**
+     * Đánh dấu đã đọc bằng một câu UPDATE; {@code notificationIds} rỗng thì đánh dấu tất cả.
+     *
+     * @return số thông báo vừa chuyển sang đã đọc
+     */
+    int markRead(Long accountId, Collection<Long> notificationIds);
+
+    /**
+     * Chuyển tối đa {@code batchSize} thông báo tạo trước {@code cutoff} sang bảng notification_archive.
+     *
+     * @return số bản ghi đã chuyển
+     */
+    int archiveNotificationsBefore(LocalDateTime cutoff, int batchSize);
 }
@@ -2,20 +2,33 @@ package com.rentaltech.techrental.webapi.customer.service;
 
 import com.rentaltech.techrental.authentication.model.Account;
 import com.rentaltech.techrental.authentication.repository.AccountRepository;
-import com.rentaltech.techrental.webapi.customer.model.Customer;
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.service.staffservice.StaffRoleDirectory;
 import com.rentaltech.techrental.webapi.customer.model.Notification;
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationCursorPageDto;
 import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
-import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
 import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,12 +36,33 @@ import java.util.stream.Collectors;
 public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final CustomerRepository customerRepository;
     private final AccountRepository accountRepository;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final FirebaseNotificationService firebaseNotificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final StaffRoleDirectory staffRoleDirectory;
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationUnreadCounter unreadCounter;
 
-    private static final String TOPIC_TEMPLATE = "/topic/accounts/%d/notifications";
+    private static final String ROLE_TOPIC_TEMPLATE = "/topic/roles/%s";
+    private static final int INSERT_BATCH_SIZE = 500;
+    // Một câu INSERT cho cả lô người nhận, RETURNING id để dispatcher đẩy và đánh dấu SENT như notifyAccount.
+    private static final String BULK_INSERT_SQL = "INSERT INTO notification " +
+            "(account_id, title, message, type, is_read, created_at, delivery_status, delivery_attempts, claimed_at) " +
+            "SELECT recipient.account_id, ?, ?, ?, false, ?, ?, 0, ? FROM unnest(?) AS recipient(account_id) " +
+            "RETURNING notification_id, account_id";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Chuyển và xóa trong một câu lệnh; trả về account có thông báo chưa đọc bị chuyển để làm mới bộ đếm.
+    private static final String ARCHIVE_SQL = "WITH moved AS (" +
+            "DELETE FROM notification WHERE notification_id IN (" +
+            "SELECT notification_id FROM notification WHERE created_at < ? ORDER BY notification_id LIMIT ?) " +
+            "RETURNING notification_id, account_id, title, message, type, is_read, created_at, delivery_status, delivery_attempts), " +
+            "archived AS (" +
+            "INSERT INTO notification_archive (notification_id, account_id, title, message, type, is_read, created_at, " +
+            "delivery_status, delivery_attempts, archived_at) " +
+            "SELECT notification_id, account_id, title, message, type, is_read, created_at, delivery_status, delivery_attempts, ? " +
+            "FROM moved RETURNING notification_id) " +
+            "SELECT (SELECT COUNT(*) FROM archived) AS moved_count, " +
+            "(SELECT ARRAY_AGG(DISTINCT account_id) FROM moved WHERE is_read = false) AS unread_accounts";
 
     @Override
     @Transactional
@@ -44,29 +78,198 @@ public class NotificationServiceImpl implements NotificationService {
                 .title(title)
                 .message(message)
                 .type(type)
+                // Node này giữ lease và tự đẩy sau commit; sweeper chỉ nhận lại khi lease hết hạn.
+                .deliveryStatus(NotificationDeliveryStatus.DISPATCHING)
+                .claimedAt(LocalDateTime.now())
                 .build();
 
         Notification saved = notificationRepository.save(notification);
         NotificationResponseDto dto = NotificationResponseDto.from(saved);
 
-        // WebSocket broadcast
-        messagingTemplate.convertAndSend(String.format(TOPIC_TEMPLATE, accountId), dto);
-
-        // Push via FCM nếu là customer và có token
-        customerRepository.findByAccount_AccountId(accountId)
-                .map(Customer::getFcmToken)
-                .filter(StringUtils::hasText)
-                .ifPresent(token -> firebaseNotificationService.sendNotification(token, title, message, type));
+        // WebSocket/FCM chạy sau commit trên NotificationDispatcher, không giữ transaction của nghiệp vụ.
+        runAfterCommit(() -> {
+            unreadCounter.add(accountId, 1);
+            notificationDispatcher.enqueue(dto);
+        });
 
         return dto;
     }
 
+    @Override
+    @Transactional
+    public int notifyRole(StaffRole role,
+                          NotificationType type,
+                          String title,
+                          String message,
+                          Object staffPayload) {
+        if (role == null) {
+            return 0;
+        }
+        return broadcast(staffRoleDirectory.recipients(role), String.format(ROLE_TOPIC_TEMPLATE, role.name()),
+                type, title, message, staffPayload);
+    }
+
+    @Override
+    @Transactional
+    public int notifyStaff(Collection<Staff> staff,
+                           NotificationType type,
+                           String title,
+                           String message,
+                           Object staffPayload) {
+        if (staff == null || staff.isEmpty()) {
+            return 0;
+        }
+        List<StaffRoleDirectory.Recipient> recipients = staff.stream()
+                .filter(Objects::nonNull)
+                .map(member -> new StaffRoleDirectory.Recipient(
+                        member.getStaffId(),
+                        member.getAccount() != null ? member.getAccount().getAccountId() : null))
+                .toList();
+        return broadcast(recipients, null, type, title, message, staffPayload);
+    }
+
+    private int broadcast(List<StaffRoleDirectory.Recipient> recipients,
+                          String roleTopic,
+                          NotificationType type,
+                          String title,
+                          String message,
+                          Object staffPayload) {
+        if (recipients == null || recipients.isEmpty()) {
+            return 0;
+        }
+        List<Long> accountIds = recipients.stream()
+                .map(StaffRoleDirectory.Recipient::accountId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        List<NotificationResponseDto> inserted = insertForDispatch(accountIds, type, title, message);
+        List<Long> staffIds = recipients.stream()
+                .map(StaffRoleDirectory.Recipient::staffId)
+                .filter(Objects::nonNull)
+                .toList();
+        runAfterCommit(() -> {
+            unreadCounter.increment(accountIds);
+            notificationDispatcher.broadcast(roleTopic, staffIds, staffPayload);
+            // Topic riêng /topic/accounts/{id}/notifications + FCM, dispatcher đánh dấu SENT theo lô.
+            inserted.forEach(notificationDispatcher::enqueue);
+        });
+        return accountIds.size();
+    }
+
+    private List<NotificationResponseDto> insertForDispatch(List<Long> accountIds,
+                                                        NotificationType type,
+                                                        String title,
+                                                        String message) {
+        List<NotificationResponseDto> inserted = new ArrayList<>(accountIds.size());
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int from = 0; from < accountIds.size(); from += INSERT_BATCH_SIZE) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + INSERT_BATCH_SIZE, accountIds.size()));
+            inserted.addAll(jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(BULK_INSERT_SQL);
+                ps.setString(1, title);
+                ps.setString(2, message);
+                ps.setString(3, type.name());
+                ps.setTimestamp(4, Timestamp.valueOf(createdAt));
+                ps.setString(5, NotificationDeliveryStatus.DISPATCHING.name());
+                ps.setTimestamp(6, Timestamp.valueOf(createdAt));
+                ps.setArray(7, connection.createArrayOf("bigint", chunk.toArray()));
+                return ps;
+            }, (rs, rowNum) -> NotificationResponseDto.builder()
+                    .notificationId(rs.getLong("notification_id"))
+                    .accountId(rs.getLong("account_id"))
+                    .title(title)
+                    .message(message)
+                    .type(type)
+                    .read(false)
+                    .createdAt(createdAt)
+                    .build()));
+        }
+        return inserted;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
     @Override
     @Transactional(readOnly = true)
-    public List<NotificationResponseDto> getNotificationsForAccount(Long accountId) {
-        return notificationRepository.findByAccount_AccountIdOrderByCreatedAtDesc(accountId)
-                .stream()
-                .map(NotificationResponseDto::from)
-                .collect(Collectors.toList());
+    public NotificationCursorPageDto getNotificationsForAccount(Long accountId, String cursor, Integer size) {
+        int safeSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        NotificationCursor after = NotificationCursor.decode(cursor);
+        // Lấy dư một bản ghi để biết còn trang sau mà không cần COUNT(*)
+        Pageable limit = PageRequest.of(0, safeSize + 1);
+        List<Notification> rows = after == null
+                ? notificationRepository.findInbox(accountId, limit)
+                : notificationRepository.findInboxAfter(accountId, after.createdAt(), after.notificationId(), limit);
+        boolean hasNext = rows.size() > safeSize;
+        List<Notification> page = hasNext ? rows.subList(0, safeSize) : rows;
+        return NotificationCursorPageDto.builder()
+                .content(page.stream().map(NotificationResponseDto::from).collect(Collectors.toList()))
+                .size(safeSize)
+                .numberOfElements(page.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? NotificationCursor.of(page.get(page.size() - 1)).encode() : null)
+                .unreadCount(unreadCounter.get(accountId))
+                .build();
+    }
+
+    @Override
+    public long countUnread(Long accountId) {
+        return unreadCounter.get(accountId);
+    }
+
+    @Override
+    @Transactional
+    public int markRead(Long accountId, Collection<Long> notificationIds) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId không được để trống");
+        }
+        boolean all = notificationIds == null || notificationIds.isEmpty();
+        int updated = all
+                ? notificationRepository.markAllRead(accountId)
+                : notificationRepository.markRead(accountId, notificationIds);
+        runAfterCommit(() -> {
+            if (all) {
+                unreadCounter.reset(accountId);
+            } else {
+                unreadCounter.add(accountId, -updated);
+            }
+        });
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public int archiveNotificationsBefore(LocalDateTime cutoff, int batchSize) {
+        if (cutoff == null || batchSize <= 0) {
+            return 0;
+        }
+        ArchiveResult result = jdbcTemplate.queryForObject(ARCHIVE_SQL, (rs, rowNum) -> {
+            Array accounts = rs.getArray("unread_accounts");
+            List<Long> accountIds = new ArrayList<>();
+            if (accounts != null) {
+                for (Object id : (Object[]) accounts.getArray()) {
+                    accountIds.add(((Number) id).longValue());
+                }
+            }
+            return new ArchiveResult(rs.getInt("moved_count"), accountIds);
+        }, Timestamp.valueOf(cutoff), batchSize, Timestamp.valueOf(LocalDateTime.now()));
+        if (result == null) {
+            return 0;
+        }
+        runAfterCommit(() -> unreadCounter.evict(result.unreadAccountIds()));
+        return result.moved();
+    }
+
+    private record ArchiveResult(int moved, List<Long> unreadAccountIds) {
     }
 }
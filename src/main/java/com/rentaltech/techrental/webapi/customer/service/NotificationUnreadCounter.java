@@ -0,0 +1,161 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Số thông báo chưa đọc theo tài khoản, để badge không phải COUNT(*) trên bảng notification mỗi lần.
+ * <p>
+ * Có Redis thì đếm trên Redis (dùng chung giữa các instance), không thì đếm trong bộ nhớ. Giá trị được nạp
+ * lười từ DB lần đầu và hết hạn sau {@code notification.unread.ttl} để tự khớp lại nếu có lệch.
+ * <p>
+ * Trên Redis, {@link #add} khi chưa có bộ đếm chỉ tăng một version; lần nạp chỉ ghi số đếm từ DB nếu version
+ * không đổi trong lúc đếm, để số đếm đọc trước khi thông báo mới commit không bị giữ suốt TTL.
+ */
+@Slf4j
+@Component
+public class NotificationUnreadCounter {
+
+    private static final String KEY_PREFIX = "notification:unread:";
+    private static final String VERSION_PREFIX = "notification:unread-version:";
+
+    // KEYS[1] bộ đếm, KEYS[2] version; ARGV[1] delta, ARGV[2] TTL (ms) của version
+    static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then " +
+                    "local value = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+                    "if value < 0 then redis.call('DEL', KEYS[1]) end " +
+                    "return value end " +
+                    "redis.call('INCR', KEYS[2]) " +
+                    "redis.call('PEXPIRE', KEYS[2], ARGV[2]) " +
+                    "return nil",
+            Long.class);
+
+    // KEYS[1] bộ đếm, KEYS[2] version; ARGV[1] version đọc trước khi đếm, ARGV[2] số đếm, ARGV[3] TTL (ms)
+    static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+                    "if redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3], 'NX') then return 1 end " +
+                    "return 0",
+            Long.class);
+
+    private record Local(AtomicLong count, long loadedAtNanos) {
+    }
+
+    private final NotificationRepository notificationRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration ttl;
+    private final Map<Long, Local> local = new ConcurrentHashMap<>();
+
+    public NotificationUnreadCounter(NotificationRepository notificationRepository,
+                                     ObjectProvider<RedisTemplate<String, Object>> redisTemplate,
+                                     @Value("${notification.unread.ttl:PT24H}") Duration ttl) {
+        this.notificationRepository = notificationRepository;
+        this.redisTemplate = redisTemplate.getIfAvailable();
+        this.ttl = ttl;
+    }
+
+    public long get(Long accountId) {
+        if (accountId == null) {
+            return 0;
+        }
+        if (redisTemplate != null) {
+            try {
+                Object cached = redisTemplate.opsForValue().get(KEY_PREFIX + accountId);
+                if (cached instanceof Number number) {
+                    return number.longValue();
+                }
+                Object version = redisTemplate.opsForValue().get(VERSION_PREFIX + accountId);
+                long count = notificationRepository.countByAccount_AccountIdAndReadFalse(accountId);
+                redisTemplate.execute(LOAD_SCRIPT, RedisSerializer.string(), null,
+                        List.of(KEY_PREFIX + accountId, VERSION_PREFIX + accountId),
+                        version != null ? version.toString() : "0",
+                        Long.toString(count),
+                        Long.toString(ttl.toMillis()));
+                return count;
+            } catch (RuntimeException ex) {
+                log.warn("Không thể đọc bộ đếm chưa đọc trên Redis cho account {}: {}", accountId, ex.getMessage());
+            }
+        }
+        long now = System.nanoTime();
+        Local entry = local.get(accountId);
+        if (entry == null || now - entry.loadedAtNanos() > ttl.toNanos()) {
+            entry = new Local(new AtomicLong(notificationRepository.countByAccount_AccountIdAndReadFalse(accountId)), now);
+            local.put(accountId, entry);
+        }
+        return entry.count().get();
+    }
+
+    /**
+     * Cộng/trừ bộ đếm nếu đã được nạp; chưa nạp thì để lần {@link #get} sau đếm từ DB.
+     */
+    public void add(Long accountId, long delta) {
+        if (accountId == null || delta == 0) {
+            return;
+        }
+        if (redisTemplate != null) {
+            try {
+                // Chưa nạp thì chỉ tăng version, làm lần nạp đang chạy (nếu có) bỏ kết quả; bị âm thì xóa để đếm lại.
+                redisTemplate.execute(ADD_SCRIPT, RedisSerializer.string(), null,
+                        List.of(KEY_PREFIX + accountId, VERSION_PREFIX + accountId),
+                        Long.toString(delta),
+                        Long.toString(ttl.toMillis()));
+            } catch (RuntimeException ex) {
+                log.warn("Không thể cập nhật bộ đếm chưa đọc trên Redis cho account {}: {}", accountId, ex.getMessage());
+            }
+            return;
+        }
+        Local entry = local.get(accountId);
+        if (entry != null) {
+            entry.count().updateAndGet(value -> Math.max(0, value + delta));
+        }
+    }
+
+    public void increment(Collection<Long> accountIds) {
+        if (accountIds != null) {
+            accountIds.forEach(accountId -> add(accountId, 1));
+        }
+    }
+
+    public void reset(Long accountId) {
+        if (accountId == null) {
+            return;
+        }
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.opsForValue().set(KEY_PREFIX + accountId, 0L, ttl.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RuntimeException ex) {
+                log.warn("Không thể đặt lại bộ đếm chưa đọc trên Redis cho account {}: {}", accountId, ex.getMessage());
+            }
+            return;
+        }
+        local.put(accountId, new Local(new AtomicLong(), System.nanoTime()));
+    }
+
+    public void evict(Collection<Long> accountIds) {
+        if (accountIds == null || accountIds.isEmpty()) {
+            return;
+        }
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.delete(accountIds.stream().map(accountId -> KEY_PREFIX + accountId).toList());
+            } catch (RuntimeException ex) {
+                log.warn("Không thể xóa bộ đếm chưa đọc trên Redis: {}", ex.getMessage());
+            }
+        }
+        accountIds.forEach(local::remove);
+    }
+}
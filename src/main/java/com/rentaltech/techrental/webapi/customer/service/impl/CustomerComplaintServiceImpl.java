@@ -10,6 +10,7 @@ import com.rentaltech.techrental.device.model.dto.DeviceConditionResponseDto;
 import com.rentaltech.techrental.device.model.dto.DiscrepancyReportResponseDto;
 import com.rentaltech.techrental.device.repository.AllocationRepository;
 import com.rentaltech.techrental.device.repository.DeviceRepository;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
 import com.rentaltech.techrental.device.service.DiscrepancyReportService;
 import com.rentaltech.techrental.rentalorder.model.BookingStatus;
 import com.rentaltech.techrental.rentalorder.model.OrderDetail;
@@ -26,6 +27,7 @@ import com.rentaltech.techrental.staff.model.dto.TaskCreateRequestDto;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
 import com.rentaltech.techrental.staff.service.staffservice.StaffService;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import com.rentaltech.techrental.staff.service.taskservice.TaskService;
 import com.rentaltech.techrental.webapi.customer.model.ComplaintFaultSource;
 import com.rentaltech.techrental.webapi.customer.model.ComplaintStatus;
@@ -39,6 +41,7 @@ import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
 import com.rentaltech.techrental.webapi.customer.service.CustomerComplaintService;
 import com.rentaltech.techrental.webapi.operator.service.ImageStorageService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -71,6 +74,7 @@ public class CustomerComplaintServiceImpl implements CustomerComplaintService {
     private final com.rentaltech.techrental.staff.service.devicereplacement.DeviceReplacementReportService deviceReplacementReportService;
     private final com.rentaltech.techrental.device.service.DeviceConditionService deviceConditionService;
     private final DiscrepancyReportService discrepancyReportService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public CustomerComplaintResponseDto createComplaint(CustomerComplaintRequestDto request, MultipartFile evidenceImage, String username) {
@@ -279,10 +283,12 @@ public class CustomerComplaintServiceImpl implements CustomerComplaintService {
         // Update device cũ: mark as DAMAGED
         brokenDevice.setStatus(DeviceStatus.DAMAGED);
         deviceRepository.save(brokenDevice);
+        eventPublisher.publishEvent(DeviceChangedEvent.saved(brokenDevice));
 
         // Update device mới: mark as PRE_RENTAL_QC (chờ QC check trước khi allocation)
         replacementDevice.setStatus(DeviceStatus.PRE_RENTAL_QC);
         deviceRepository.save(replacementDevice);
+        eventPublisher.publishEvent(DeviceChangedEvent.saved(replacementDevice));
 
         // Tìm hoặc tạo TaskCategory "Pre rental QC"
         TaskCategory qcCategory = taskCategoryRepository.findByName("Pre rental QC")
@@ -438,6 +444,7 @@ public class CustomerComplaintServiceImpl implements CustomerComplaintService {
         
         task.setDescription(finalDescription);
         taskRepository.save(task);
+        eventPublisher.publishEvent(TaskChangedEvent.saved(task));
     }
 
     @Override
@@ -510,6 +517,7 @@ public class CustomerComplaintServiceImpl implements CustomerComplaintService {
             replacementTask.setStatus(TaskStatus.COMPLETED);
             replacementTask.setCompletedAt(LocalDateTime.now());
             taskRepository.save(replacementTask);
+            eventPublisher.publishEvent(TaskChangedEvent.saved(replacementTask));
         }
 
         return buildComplaintResponseDto(saved);
@@ -1,6 +1,7 @@
 package com.rentaltech.techrental.webapi.technician.model.dto;
 
 import com.rentaltech.techrental.device.model.Allocation;
+import com.rentaltech.techrental.device.model.AllocationConditionSnapshot;
 import com.rentaltech.techrental.device.model.AllocationSnapshotSource;
 import com.rentaltech.techrental.device.model.Device;
 import com.rentaltech.techrental.staff.model.dto.DeviceConditionSnapshotDto;
@@ -35,4 +36,24 @@ public class QCReportDeviceConditionResponseDto {
                                 .collect(Collectors.toList()))
                 .build();
     }
+
+    /**
+     * Dùng khi snapshot QC_BEFORE đã được nạp sẵn theo lô, không chạm tới collection lazy của allocation.
+     */
+    public static QCReportDeviceConditionResponseDto fromAllocation(Allocation allocation,
+                                                                    List<AllocationConditionSnapshot> qcSnapshots) {
+        if (allocation == null) {
+            return null;
+        }
+        Device device = allocation.getDevice();
+        return QCReportDeviceConditionResponseDto.builder()
+                .deviceId(device != null ? device.getDeviceId() : null)
+                .deviceSerial(device != null ? device.getSerialNumber() : null)
+                .snapshots(CollectionUtils.isEmpty(qcSnapshots) ? List.of()
+                        : qcSnapshots.stream()
+                                .map(DeviceConditionSnapshotDto::fromEntity)
+                                .filter(Objects::nonNull)
+                                .collect(Collectors.toList()))
+                .build();
+    }
 }
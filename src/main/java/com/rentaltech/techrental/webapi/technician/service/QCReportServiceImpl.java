@@ -9,6 +9,7 @@ import com.rentaltech.techrental.device.model.dto.DiscrepancyInlineRequestDto;
 import com.rentaltech.techrental.device.model.dto.DiscrepancyReportRequestDto;
 import com.rentaltech.techrental.device.repository.*;
 import com.rentaltech.techrental.device.service.AllocationSnapshotService;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
 import com.rentaltech.techrental.device.service.DeviceConditionService;
 import com.rentaltech.techrental.device.service.DiscrepancyReportService;
 import com.rentaltech.techrental.rentalorder.model.OrderDetail;
@@ -24,6 +25,7 @@ import com.rentaltech.techrental.staff.model.TaskStatus;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
 import com.rentaltech.techrental.staff.service.staffservice.StaffService;
 import com.rentaltech.techrental.staff.service.devicereplacement.DeviceReplacementReportService;
+import com.rentaltech.techrental.staff.service.taskservice.TaskChangedEvent;
 import com.rentaltech.techrental.webapi.customer.model.CustomerComplaint;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
 import com.rentaltech.techrental.webapi.customer.repository.CustomerComplaintRepository;
@@ -37,7 +39,7 @@ import com.rentaltech.techrental.webapi.technician.repository.QCReportRepository
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -54,7 +56,6 @@ import java.util.stream.Collectors;
 public class QCReportServiceImpl implements QCReportService {
 
     private static final Logger log = LoggerFactory.getLogger(QCReportServiceImpl.class);
-    private static final String STAFF_NOTIFICATION_TOPIC_TEMPLATE = "/topic/staffs/%d/notifications";
 
     private final QCReportRepository qcReportRepository;
     private final TaskRepository taskRepository;
@@ -72,11 +73,11 @@ public class QCReportServiceImpl implements QCReportService {
     private final com.rentaltech.techrental.rentalorder.service.BookingCalendarService bookingCalendarService;
     private final ReservationService reservationService;
     private final RentalOrderRepository rentalOrderRepository;
-    private final SimpMessagingTemplate messagingTemplate;
     private final DiscrepancyReportService discrepancyReportService;
     private final DiscrepancyReportRepository discrepancyReportRepository;
     private final CustomerComplaintRepository customerComplaintRepository;
     private final DeviceReplacementReportService deviceReplacementReportService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -430,30 +431,17 @@ public class QCReportServiceImpl implements QCReportService {
                 orderId,
                 "QC sau thuê cho đơn #" + (orderId != null ? orderId : "") + " đã hoàn tất. Vui lòng hỗ trợ khách theo quy trình trả hàng."
         );
-        task.getAssignedStaff().stream()
+        List<Staff> supportStaff = task.getAssignedStaff().stream()
                 .filter(Objects::nonNull)
                 .filter(staff -> staff.getStaffRole() == StaffRole.CUSTOMER_SUPPORT_STAFF)
-                .forEach(staff -> {
-                    // Persist notification for staff account
-                    if (staff.getAccount() != null && staff.getAccount().getAccountId() != null) {
-                        notificationService.notifyAccount(
-                                staff.getAccount().getAccountId(),
-                                NotificationType.ORDER_NEAR_DUE,
-                                "Hoàn tất QC sau thuê",
-                                payload.message()
-                        );
-                    }
-                    Long staffId = staff.getStaffId();
-                    if (staffId == null) {
-                        return;
-                    }
-                    String destination = String.format(STAFF_NOTIFICATION_TOPIC_TEMPLATE, staffId);
-                    try {
-                        messagingTemplate.convertAndSend(destination, payload);
-                    } catch (Exception ex) {
-                        log.warn("Không thể gửi thông báo QC sau thuê cho nhân viên hỗ trợ {}: {}", staffId, ex.getMessage());
-                    }
-                });
+                .toList();
+        notificationService.notifyStaff(
+                supportStaff,
+                NotificationType.ORDER_NEAR_DUE,
+                "Hoàn tất QC sau thuê",
+                payload.message(),
+                payload
+        );
     }
 
     private record PostRentalQCNotification(Long taskId, Long orderId, String message) {}
@@ -536,6 +524,7 @@ public class QCReportServiceImpl implements QCReportService {
         }
         deviceRepository.saveAll(devicesToUpdate);
         deviceRepository.flush();
+        DeviceChangedEvent.saved(devicesToUpdate).forEach(eventPublisher::publishEvent);
     }
 
     private void createBaselineSnapshots(List<Allocation> allocations,
@@ -748,6 +737,7 @@ public class QCReportServiceImpl implements QCReportService {
         }
         taskRepository.save(task);
         taskRepository.flush();
+        eventPublisher.publishEvent(TaskChangedEvent.saved(task));
     }
 
     private List<Allocation> createAllocations(QCReport report, Map<OrderDetail, List<String>> orderDetailSerials) {
@@ -783,6 +773,7 @@ public class QCReportServiceImpl implements QCReportService {
         if (!devicesToUpdate.isEmpty()) {
             deviceRepository.saveAll(devicesToUpdate);
             deviceRepository.flush();
+            DeviceChangedEvent.saved(devicesToUpdate).forEach(eventPublisher::publishEvent);
         }
         List<Allocation> persisted = allocationRepository.saveAll(allocations);
         allocationRepository.flush();
@@ -1076,6 +1067,7 @@ public class QCReportServiceImpl implements QCReportService {
                 // Technician đã chọn device khác, reset suggested device về AVAILABLE
                 suggestedDevice.setStatus(DeviceStatus.AVAILABLE);
                 deviceRepository.save(suggestedDevice);
+                eventPublisher.publishEvent(DeviceChangedEvent.saved(suggestedDevice));
                 log.info("Reset suggested device {} về AVAILABLE vì technician đã chọn device khác {} cho complaint #{}",
                         suggestedDevice.getSerialNumber(), newDevice.getSerialNumber(), complaint.getComplaintId());
             }
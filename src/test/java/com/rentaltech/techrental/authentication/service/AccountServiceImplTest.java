@@ -3,7 +3,9 @@ package com.rentaltech.techrental.authentication.service;
 import com.rentaltech.techrental.authentication.model.Account;
 import com.rentaltech.techrental.authentication.model.Role;
 import com.rentaltech.techrental.authentication.repository.AccountRepository;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.security.JwtTokenProvider;
+import com.rentaltech.techrental.security.TokenRevocationService;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.customer.model.CustomerStatus;
 import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
@@ -38,6 +40,10 @@ class AccountServiceImplTest {
     @Mock
     private JwtTokenProvider tokenProvider;
     @Mock
+    private TokenRevocationService tokenRevocationService;
+    @Mock
+    private IdentityContext identityContext;
+    @Mock
     private VerificationEmailService verificationEmailService;
 
     @InjectMocks
@@ -188,6 +194,22 @@ class AccountServiceImplTest {
         verify(passwordEncoder, never()).encode(any());
     }
 
+    @Test
+    void resetPasswordRevokesIssuedTokens() {
+        Account account = Account.builder()
+                .accountId(8L)
+                .email("user@example.com")
+                .resetPasswordExpiry(LocalDateTime.now().plusMinutes(5))
+                .build();
+        when(accountRepository.findByEmailAndResetPasswordCode("user@example.com", "123456"))
+                .thenReturn(account);
+        when(passwordEncoder.encode("newpass")).thenReturn("encoded");
+
+        accountService.resetPassword("user@example.com", "123456", "newpass");
+
+        verify(tokenRevocationService).revokeAccount(8L);
+    }
+
     private Account baseAccount() {
         return Account.builder()
                 .username("user")
@@ -0,0 +1,119 @@
+package com.rentaltech.techrental.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisBrokerRelayTest {
+
+    private static final String CHANNEL = "techrent:stomp";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ObjectProvider<MessageChannel> brokerChannelProvider;
+
+    private RedisBrokerRelay relay;
+    private ExecutorSubscribableChannel brokerChannel;
+    private SimpMessagingTemplate messagingTemplate;
+    private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        relay = new RedisBrokerRelay(redisTemplate, brokerChannelProvider, CHANNEL);
+        brokerChannel = new ExecutorSubscribableChannel();
+        brokerChannel.addInterceptor(relay);
+        brokerChannel.subscribe(delivered::add);
+        messagingTemplate = jsonTemplate(brokerChannel);
+    }
+
+    private static SimpMessagingTemplate jsonTemplate(MessageChannel channel) {
+        // Như brokerMessagingTemplate của Spring: payload được chuyển sang JSON trước khi vào brokerChannel
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        return template;
+    }
+
+    private String publishedEnvelope() {
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), published.capture());
+        return published.getValue();
+    }
+
+    private static DefaultMessage redisMessage(String body) {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void serverMessageIsPublishedToRedisAndDeliveredLocally() {
+        assertThatCode(() -> messagingTemplate.convertAndSend("/topic/roles/OPERATOR", Map.of("a", 1)))
+                .doesNotThrowAnyException();
+
+        publishedEnvelope();
+        assertThat(delivered).hasSize(1);
+        assertThat(SimpMessageHeaderAccessor.getDestination(delivered.get(0).getHeaders())).isEqualTo("/topic/roles/OPERATOR");
+    }
+
+    @Test
+    void publishFailureStillDeliversLocally() {
+        doThrow(new IllegalStateException("down")).when(redisTemplate).convertAndSend(anyString(), anyString());
+
+        assertThatCode(() -> messagingTemplate.convertAndSend("/topic/a", Map.of()))
+                .doesNotThrowAnyException();
+
+        assertThat(delivered).hasSize(1);
+    }
+
+    @Test
+    void ownEnvelopeIsNotDeliveredTwice() {
+        messagingTemplate.convertAndSend("/topic/staffs/15/notifications", Map.of("a", 1));
+
+        relay.onMessage(redisMessage(publishedEnvelope()), null);
+
+        assertThat(delivered).hasSize(1);
+        verifyNoInteractions(brokerChannelProvider);
+    }
+
+    @Test
+    void envelopeFromOtherNodeIsDeliveredToLocalBrokerOnce() {
+        RedisBrokerRelay otherNode = new RedisBrokerRelay(redisTemplate, brokerChannelProvider, CHANNEL);
+        ExecutorSubscribableChannel otherChannel = new ExecutorSubscribableChannel();
+        otherChannel.addInterceptor(otherNode);
+        otherChannel.subscribe(message -> { });
+        jsonTemplate(otherChannel).convertAndSend("/topic/staffs/15/notifications", Map.of("a", 1));
+        when(brokerChannelProvider.getIfAvailable()).thenReturn(brokerChannel);
+
+        relay.onMessage(redisMessage(publishedEnvelope()), null);
+
+        assertThat(delivered).hasSize(1);
+        Message<?> message = delivered.get(0);
+        assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders())).isEqualTo("/topic/staffs/15/notifications");
+        assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"a\":1}");
+        // Message đã relay đi qua interceptor nguyên vẹn, không bị publish lại
+        verify(redisTemplate, times(1)).convertAndSend(anyString(), anyString());
+    }
+}
@@ -14,6 +14,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
@@ -33,6 +34,8 @@ class DeviceConditionServiceImplTest {
     private ConditionDefinitionRepository conditionDefinitionRepository;
     @Mock
     private StaffRepository staffRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private DeviceConditionServiceImpl service;
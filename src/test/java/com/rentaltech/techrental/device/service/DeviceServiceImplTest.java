@@ -10,14 +10,19 @@ import com.rentaltech.techrental.device.repository.AllocationRepository;
 import com.rentaltech.techrental.device.repository.DeviceModelRepository;
 import com.rentaltech.techrental.device.repository.DeviceRepository;
 import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
+import com.rentaltech.techrental.rentalorder.service.AvailabilityResultCache;
+import com.rentaltech.techrental.rentalorder.service.BookingCalendarService;
 import com.rentaltech.techrental.rentalorder.service.ReservationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -47,6 +52,13 @@ class DeviceServiceImplTest {
     @Mock
     private DeviceConditionService deviceConditionService;
 
+    @Spy
+    private AvailabilityResultCache availabilityResultCache = new AvailabilityResultCache(100, Duration.ofSeconds(30));
+    @Mock
+    private BookingCalendarService bookingCalendarService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private DeviceServiceImpl service;
 
@@ -193,6 +205,27 @@ class DeviceServiceImplTest {
         assertThat(result.get(0).getDeviceId()).isEqualTo(1L);
     }
 
+    @Test
+    void findAvailableByModelListsDevicesInIdOrderOnCacheMissAndHit() {
+        Device d3 = Device.builder().deviceId(3L).deviceModel(model).status(DeviceStatus.AVAILABLE).build();
+        Device d1 = Device.builder().deviceId(1L).deviceModel(model).status(DeviceStatus.AVAILABLE).build();
+        when(repository.findByDeviceModel_DeviceModelId(1L)).thenReturn(List.of(d3, d1));
+        when(repository.findAllById(List.of(1L, 3L))).thenReturn(List.of(d3, d1));
+        when(bookingCalendarRepository.findBusyDeviceIdsByModelAndRange(eq(1L), any(), any(), any()))
+                .thenReturn(Set.of());
+        when(reservationService.countActiveReservedQuantity(eq(1L), any(), any())).thenReturn(0L);
+        when(deviceConditionService.getByDeviceIds(any())).thenReturn(Map.of());
+        LocalDateTime start = LocalDateTime.now();
+        LocalDateTime end = start.plusDays(1);
+
+        List<DeviceResponseDto> miss = service.findAvailableByModelWithinRange(1L, start, end);
+        List<DeviceResponseDto> hit = service.findAvailableByModelWithinRange(1L, start, end);
+
+        assertThat(miss).extracting(DeviceResponseDto::getDeviceId).containsExactly(1L, 3L);
+        assertThat(hit).extracting(DeviceResponseDto::getDeviceId).containsExactly(1L, 3L);
+        verify(repository).findAllById(List.of(1L, 3L));
+    }
+
     @Test
     void updateAdjustsAvailabilityBetweenModels() {
         DeviceModel otherModel = DeviceModel.builder().deviceModelId(2L).amountAvailable(0L).build();
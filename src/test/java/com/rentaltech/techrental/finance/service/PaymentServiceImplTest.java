@@ -2,7 +2,7 @@ package com.rentaltech.techrental.finance.service;
 
 import com.rentaltech.techrental.authentication.model.Account;
 import com.rentaltech.techrental.authentication.model.Role;
-import com.rentaltech.techrental.authentication.repository.AccountRepository;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.contract.repository.ContractExtensionAnnexRepository;
 import com.rentaltech.techrental.contract.repository.ContractRepository;
 import com.rentaltech.techrental.device.repository.AllocationRepository;
@@ -22,8 +22,8 @@ import com.rentaltech.techrental.staff.model.*;
 import com.rentaltech.techrental.staff.repository.SettlementRepository;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
-import com.rentaltech.techrental.staff.service.staffservice.StaffService;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
+import com.rentaltech.techrental.webapi.customer.model.NotificationType;
 import com.rentaltech.techrental.webapi.customer.service.NotificationService;
 import com.rentaltech.techrental.webapi.operator.service.ImageStorageService;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,7 +32,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -79,15 +79,13 @@ class PaymentServiceImplTest {
     @Mock
     private AllocationRepository allocationRepository;
     @Mock
-    private AccountRepository accountRepository;
+    private IdentityContext identityContext;
     @Mock
     private SettlementRepository settlementRepository;
     @Mock
-    private StaffService staffService;
-    @Mock
-    private SimpMessagingTemplate messagingTemplate;
-    @Mock
     private ImageStorageService imageStorageService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private PaymentServiceImpl paymentService;
@@ -182,7 +180,7 @@ class PaymentServiceImplTest {
                 .username("owner")
                 .role(Role.CUSTOMER)
                 .build();
-        when(accountRepository.findByUsername("owner")).thenReturn(owner);
+        when(identityContext.forUsername("owner")).thenReturn(Optional.of(identityOf(owner)));
         Invoice invoice = Invoice.builder().invoiceId(1L).build();
         when(invoiceRepository.findByRentalOrder_OrderIdOrderByInvoiceIdDesc(5L)).thenReturn(List.of(invoice));
 
@@ -200,7 +198,7 @@ class PaymentServiceImplTest {
                 .username("other")
                 .role(Role.CUSTOMER)
                 .build();
-        when(accountRepository.findByUsername("other")).thenReturn(other);
+        when(identityContext.forUsername("other")).thenReturn(Optional.of(identityOf(other)));
 
         assertThatThrownBy(() -> paymentService.getInvoiceForCustomer(5L, "other"))
                 .isInstanceOf(AccessDeniedException.class);
@@ -213,7 +211,7 @@ class PaymentServiceImplTest {
                 .username("operator")
                 .role(Role.OPERATOR)
                 .build();
-        when(accountRepository.findByUsername("operator")).thenReturn(operator);
+        when(identityContext.forUsername("operator")).thenReturn(Optional.of(identityOf(operator)));
 
         RentalOrder order = baseOrder(7L);
         Settlement settlement = Settlement.builder()
@@ -232,13 +230,6 @@ class PaymentServiceImplTest {
             invc.setInvoiceId(99L);
             return invc;
         });
-        when(staffService.getStaffByRole(StaffRole.OPERATOR)).thenReturn(List.of(
-                Staff.builder()
-                        .staffId(15L)
-                        .staffRole(StaffRole.OPERATOR)
-                        .account(Account.builder().accountId(77L).username("staff").build())
-                        .build()
-        ));
         TaskCategory qcCategory = TaskCategory.builder().taskCategoryId(22L).name("Post rental QC").build();
         when(taskCategoryRepository.findByNameIgnoreCase("Post rental QC")).thenReturn(Optional.of(qcCategory));
 
@@ -249,6 +240,7 @@ class PaymentServiceImplTest {
         assertThat(response.getInvoiceId()).isEqualTo(99L);
         verify(transactionRepository).save(any(Transaction.class));
         verify(taskRepository).save(any(Task.class));
+        verify(notificationService).notifyRole(eq(StaffRole.OPERATOR), eq(NotificationType.ORDER_COMPLETED), anyString(), anyString(), any());
     }
 
     @Test
@@ -324,6 +316,10 @@ class PaymentServiceImplTest {
         return request;
     }
 
+    private static IdentityContext.Identity identityOf(Account account) {
+        return new IdentityContext.Identity(account.getAccountId(), account.getUsername(), account.getRole(), null, null);
+    }
+
     private RentalOrder baseOrder(long orderId) {
         Account customerAccount = Account.builder()
                 .accountId(orderId * 2)
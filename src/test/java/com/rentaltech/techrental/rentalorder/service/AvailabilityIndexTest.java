@@ -0,0 +1,210 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.device.model.Device;
+import com.rentaltech.techrental.device.model.DeviceModel;
+import com.rentaltech.techrental.device.model.DeviceStatus;
+import com.rentaltech.techrental.device.repository.DeviceRepository;
+import com.rentaltech.techrental.device.service.DeviceChangedEvent;
+import com.rentaltech.techrental.rentalorder.model.*;
+import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
+import com.rentaltech.techrental.rentalorder.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityIndexTest {
+
+    private static final Long MODEL_ID = 5L;
+
+    @Mock
+    private DeviceRepository deviceRepository;
+    @Mock
+    private BookingCalendarRepository bookingCalendarRepository;
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private AvailabilityIndex index;
+    private DeviceModel model;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @BeforeEach
+    void setUp() {
+        index = new AvailabilityIndex(deviceRepository, bookingCalendarRepository, reservationRepository,
+                new AvailabilityResultCache(100, Duration.ofSeconds(30)), Duration.ofMinutes(10), Duration.ofDays(1));
+        model = DeviceModel.builder().deviceModelId(MODEL_ID).build();
+        start = LocalDateTime.now().plusDays(3);
+        end = start.plusDays(2);
+        when(deviceRepository.findStatusesByModelIds(anyCollection())).thenReturn(List.of(
+                new Object[]{1L, MODEL_ID, DeviceStatus.AVAILABLE},
+                new Object[]{2L, MODEL_ID, DeviceStatus.AVAILABLE},
+                new Object[]{3L, MODEL_ID, DeviceStatus.AVAILABLE}));
+    }
+
+    @Test
+    void availableCountExcludesOverlappingBookingsAndServesFromMemory() {
+        List<Object[]> intervals = List.<Object[]>of(new Object[]{100L, 1L, MODEL_ID, 9L, start.minusDays(1), start.plusHours(1)});
+        when(bookingCalendarRepository.findIntervalsByModelIds(anyCollection(), any(), any())).thenReturn(intervals);
+
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(2L);
+        assertThat(index.availableCount(MODEL_ID, end, end.plusDays(1), false)).isEqualTo(3L);
+
+        verify(deviceRepository, times(1)).findStatusesByModelIds(anyCollection());
+        verify(bookingCalendarRepository, times(1)).findIntervalsByModelIds(anyCollection(), any(), any());
+    }
+
+    @Test
+    void bookingMutationsAreAppliedToLoadedModel() {
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+
+        index.onBookingsSaved(List.of(
+                booking(200L, 2L, 20L, start, end),
+                booking(201L, 3L, 20L, start, end)));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(1L);
+
+        index.onBookingsCleared(20L, List.of(MODEL_ID));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+    }
+
+    @Test
+    void reservationsHoldUnitsUntilExpired() {
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+
+        index.onReservationsSaved(List.of(reservation(300L, 2, ReservationStatus.PENDING_REVIEW,
+                LocalDateTime.now().plusMinutes(15))));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(1L);
+        assertThat(index.availableCount(MODEL_ID, start, end, true)).isEqualTo(3L);
+
+        index.onReservationsExpired(LocalDateTime.now().plusMinutes(20));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+    }
+
+    @Test
+    void reservationStatusChangeReplacesExistingEntry() {
+        List<Object[]> entries = List.<Object[]>of(new Object[]{400L, MODEL_ID, 40L, start, end, 1, ReservationStatus.PENDING_REVIEW, null});
+        when(reservationRepository.findEntriesByModelIds(anyCollection(), any())).thenReturn(entries);
+        assertThat(index.availableCount(MODEL_ID, start, end, true)).isEqualTo(3L);
+
+        index.onReservationsSaved(List.of(reservation(400L, 1, ReservationStatus.UNDER_REVIEW, null)));
+        assertThat(index.availableCount(MODEL_ID, start, end, true)).isEqualTo(2L);
+
+        index.onReservationsSaved(List.of(reservation(400L, 1, ReservationStatus.CONFIRMED, null)));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+    }
+
+    @Test
+    void expiredReservationIdsAreRemoved() {
+        List<Object[]> entries = List.<Object[]>of(new Object[]{500L, MODEL_ID, 40L, start, end, 2, ReservationStatus.UNDER_REVIEW, null});
+        when(reservationRepository.findEntriesByModelIds(anyCollection(), any())).thenReturn(entries);
+        assertThat(index.availableCount(MODEL_ID, start, end, true)).isEqualTo(1L);
+
+        index.onReservationsExpired(List.of(500L), List.of(MODEL_ID));
+
+        assertThat(index.availableCount(MODEL_ID, start, end, true)).isEqualTo(3L);
+    }
+
+    @Test
+    void availableCountsLoadsMissingModelsTogether() {
+        when(deviceRepository.findStatusesByModelIds(anyCollection())).thenReturn(List.of(
+                new Object[]{1L, MODEL_ID, DeviceStatus.AVAILABLE},
+                new Object[]{2L, 6L, DeviceStatus.AVAILABLE},
+                new Object[]{3L, 6L, DeviceStatus.LOST}));
+
+        Map<Long, Long> counts = index.availableCounts(List.of(MODEL_ID, 6L, 7L), start, end, false);
+
+        assertThat(counts).containsEntry(MODEL_ID, 1L).containsEntry(6L, 1L).containsEntry(7L, 0L);
+        index.availableCounts(List.of(MODEL_ID, 6L, 7L), start, end, false);
+        verify(deviceRepository, times(1)).findStatusesByModelIds(anyCollection());
+        verify(bookingCalendarRepository, times(1)).findIntervalsByModelIds(anyCollection(), any(), any());
+        verify(reservationRepository, times(1)).findEntriesByModelIds(anyCollection(), any());
+    }
+
+    @Test
+    void availabilityTimelineMatchesPerBucketQueries() {
+        LocalDateTime from = start.toLocalDate().atStartOfDay();
+        List<Object[]> intervals = List.of(
+                new Object[]{500L, 1L, MODEL_ID, 50L, from.plusDays(3), from.plusDays(5)},
+                new Object[]{501L, 1L, MODEL_ID, 51L, from.plusDays(6), from.plusDays(7)},
+                new Object[]{502L, 2L, MODEL_ID, 52L, from.plusDays(12).plusHours(10), from.plusDays(13)});
+        when(bookingCalendarRepository.findIntervalsByModelIds(anyCollection(), any(), any())).thenReturn(intervals);
+        List<Object[]> entries = List.<Object[]>of(
+                new Object[]{600L, MODEL_ID, 60L, from.plusDays(9), from.plusDays(10), 1, ReservationStatus.PENDING_REVIEW, null});
+        when(reservationRepository.findEntriesByModelIds(anyCollection(), any())).thenReturn(entries);
+        Duration margin = Duration.ofDays(2);
+
+        long[] timeline = index.availabilityTimeline(MODEL_ID, from, from.plusDays(20), Duration.ofDays(1), margin, false);
+
+        assertThat(timeline).hasSize(20);
+        for (int day = 0; day < timeline.length; day++) {
+            LocalDateTime bucketStart = from.plusDays(day);
+            long expected = index.availableCount(MODEL_ID, bucketStart.minus(margin), bucketStart.plusDays(1).plus(margin), false);
+            assertThat(timeline[day]).as("day %d", day).isEqualTo(expected);
+        }
+        assertThat(timeline[0]).isEqualTo(3L);
+        assertThat(timeline[4]).isEqualTo(2L);
+    }
+
+    @Test
+    void deviceStatusChangesAreTracked() {
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+
+        index.onDeviceChanged(DeviceChangedEvent.saved(device(1L, DeviceStatus.DAMAGED)));
+        index.onDeviceChanged(DeviceChangedEvent.saved(device(4L, DeviceStatus.AVAILABLE)));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(3L);
+
+        index.onDeviceChanged(DeviceChangedEvent.removed(4L));
+        assertThat(index.availableCount(MODEL_ID, start, end, false)).isEqualTo(2L);
+    }
+
+    @Test
+    void loadsOnlyBookingsEndingWithinLookback() {
+        ArgumentCaptor<LocalDateTime> endAfter = ArgumentCaptor.forClass(LocalDateTime.class);
+        when(bookingCalendarRepository.findIntervalsByModelIds(anyCollection(), any(), endAfter.capture())).thenReturn(List.of());
+
+        index.availableCount(MODEL_ID, start, end, false);
+
+        assertThat(endAfter.getValue()).isBetween(LocalDateTime.now().minusDays(1).minusMinutes(1), LocalDateTime.now().minusDays(1));
+    }
+
+    private Device device(Long id, DeviceStatus status) {
+        return Device.builder().deviceId(id).status(status).deviceModel(model).build();
+    }
+
+    private BookingCalendar booking(Long bookingId, Long deviceId, Long orderId, LocalDateTime from, LocalDateTime to) {
+        return BookingCalendar.builder()
+                .bookingId(bookingId)
+                .device(device(deviceId, DeviceStatus.RESERVED))
+                .rentalOrder(RentalOrder.builder().orderId(orderId).build())
+                .startTime(from)
+                .endTime(to)
+                .status(BookingStatus.BOOKED)
+                .build();
+    }
+
+    private Reservation reservation(Long id, int quantity, ReservationStatus status, LocalDateTime expiration) {
+        return Reservation.builder()
+                .id(id)
+                .deviceModel(model)
+                .orderDetail(OrderDetail.builder().rentalOrder(RentalOrder.builder().orderId(40L).build()).build())
+                .startTime(start)
+                .endTime(end)
+                .reservedQuantity(quantity)
+                .status(status)
+                .expirationTime(expiration)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityResultCacheTest {
+
+    private AvailabilityResultCache cache;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AvailabilityResultCache(2, Duration.ofMinutes(1));
+        start = LocalDateTime.now().plusDays(1);
+        end = start.plusDays(2);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void repeatedLookupIsServedFromCache() {
+        assertThat(count(1L, false)).isEqualTo(1L);
+        assertThat(count(1L, false)).isEqualTo(1L);
+        assertThat(count(1L, true)).isEqualTo(2L);
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.stats().hits()).isEqualTo(1L);
+        assertThat(cache.stats().misses()).isEqualTo(2L);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        count(1L, false);
+        count(2L, false);
+        count(1L, false);
+        count(3L, false);
+
+        count(1L, false);
+        count(2L, false);
+
+        assertThat(loads).hasValue(4);
+        assertThat(cache.stats().evictions()).isGreaterThanOrEqualTo(1L);
+        assertThat(cache.stats().size()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidateModelsDropsOnlyThatModel() {
+        count(1L, false);
+        count(2L, false);
+
+        cache.invalidateModels(Set.of(1L));
+        count(1L, false);
+        count(2L, false);
+
+        assertThat(loads).hasValue(3);
+        assertThat(cache.stats().invalidations()).isEqualTo(1L);
+    }
+
+    @Test
+    void valueLoadedAcrossInvalidationIsNotStored() {
+        cache.get(AvailabilityResultCache.Kind.MODEL_COUNT, 1L, start, end, false, () -> {
+            cache.invalidateModels(Set.of(1L));
+            return 5L;
+        });
+
+        count(1L, false);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void getAllLoadsOnlyMissingModels() {
+        count(1L, false);
+
+        Map<Long, Long> result = cache.getAll(AvailabilityResultCache.Kind.MODEL_COUNT, List.of(1L, 2L), start, end, false,
+                missing -> {
+                    assertThat(missing).containsExactly(2L);
+                    return missing.stream().collect(Collectors.toMap(id -> id, id -> 7L));
+                });
+
+        assertThat(result).containsEntry(1L, 1L).containsEntry(2L, 7L);
+    }
+
+    private long count(Long modelId, boolean technicianView) {
+        return cache.get(AvailabilityResultCache.Kind.MODEL_COUNT, modelId, start, end, technicianView, () -> {
+            loads.incrementAndGet();
+            return technicianView ? 2L : 1L;
+        });
+    }
+}
@@ -7,20 +7,21 @@ import com.rentaltech.techrental.device.model.DeviceStatus;
 import com.rentaltech.techrental.device.repository.DeviceRepository;
 import com.rentaltech.techrental.rentalorder.model.OrderDetail;
 import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
 import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
+import com.rentaltech.techrental.rentalorder.repository.ReservationRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,14 +36,17 @@ class BookingCalendarServiceImplTest {
     @Mock
     private DeviceRepository deviceRepository;
     @Mock
-    private ReservationService reservationService;
+    private ReservationRepository reservationRepository;
 
-    @InjectMocks
     private BookingCalendarServiceImpl service;
 
     @BeforeEach
     void setUp() {
         SecurityContextHolder.clearContext();
+        AvailabilityResultCache resultCache = new AvailabilityResultCache(100, Duration.ofSeconds(30));
+        AvailabilityIndex availabilityIndex = new AvailabilityIndex(
+                deviceRepository, bookingCalendarRepository, reservationRepository, resultCache, Duration.ofMinutes(10), Duration.ofDays(1));
+        service = new BookingCalendarServiceImpl(bookingCalendarRepository, availabilityIndex, resultCache);
     }
 
     @AfterEach
@@ -120,10 +124,9 @@ class BookingCalendarServiceImplTest {
                 .status(DeviceStatus.DAMAGED)
                 .deviceModel(DeviceModel.builder().deviceModelId(5L).build())
                 .build();
-        when(deviceRepository.findByDeviceModel_DeviceModelId(5L)).thenReturn(List.of(available, damaged));
-        when(bookingCalendarRepository.findBusyDeviceIdsByModelAndRange(eq(5L), any(), any(), any()))
-                .thenReturn(Set.of());
-        when(reservationService.countActiveReservedQuantity(eq(5L), any(), any())).thenReturn(0L);
+        when(deviceRepository.findStatusesByModelIds(anyCollection())).thenReturn(List.of(
+                new Object[]{available.getDeviceId(), 5L, available.getStatus()},
+                new Object[]{damaged.getDeviceId(), 5L, damaged.getStatus()}));
 
         long count = service.getAvailableCountByModel(5L,
                 LocalDateTime.now(),
@@ -138,10 +141,11 @@ class BookingCalendarServiceImplTest {
                 .deviceId(3L)
                 .status(DeviceStatus.AVAILABLE)
                 .build();
-        when(deviceRepository.findByDeviceModel_DeviceModelId(7L)).thenReturn(List.of(available));
-        when(bookingCalendarRepository.findBusyDeviceIdsByModelAndRange(eq(7L), any(), any(), any()))
-                .thenReturn(Set.of());
-        when(reservationService.countReservedQuantityByStatus(eq(7L), any(), any(), any())).thenReturn(1L);
+        List<Object[]> devices = List.<Object[]>of(new Object[]{available.getDeviceId(), 7L, available.getStatus()});
+        when(deviceRepository.findStatusesByModelIds(anyCollection())).thenReturn(devices);
+        List<Object[]> reservations = List.<Object[]>of(new Object[]{70L, 7L, 1L,
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(2), 1, ReservationStatus.UNDER_REVIEW, null});
+        when(reservationRepository.findEntriesByModelIds(anyCollection(), any())).thenReturn(reservations);
 
         SecurityContextHolder.getContext().setAuthentication(
                 new TestingAuthenticationToken("tech", "pass", "ROLE_TECHNICIAN")
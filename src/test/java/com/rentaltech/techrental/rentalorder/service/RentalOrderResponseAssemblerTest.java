@@ -0,0 +1,123 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.device.model.*;
+import com.rentaltech.techrental.device.repository.AllocationConditionSnapshotRepository;
+import com.rentaltech.techrental.device.repository.AllocationRepository;
+import com.rentaltech.techrental.device.repository.DiscrepancyReportRepository;
+import com.rentaltech.techrental.rentalorder.model.OrderDetail;
+import com.rentaltech.techrental.rentalorder.model.OrderStatus;
+import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+import com.rentaltech.techrental.rentalorder.model.RentalOrderExtension;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderResponseDto;
+import com.rentaltech.techrental.rentalorder.repository.OrderDetailRepository;
+import com.rentaltech.techrental.rentalorder.repository.RentalOrderExtensionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RentalOrderResponseAssemblerTest {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+    @Mock
+    private AllocationRepository allocationRepository;
+    @Mock
+    private AllocationConditionSnapshotRepository allocationConditionSnapshotRepository;
+    @Mock
+    private DiscrepancyReportRepository discrepancyReportRepository;
+    @Mock
+    private RentalOrderExtensionRepository rentalOrderExtensionRepository;
+
+    @InjectMocks
+    private RentalOrderResponseAssembler assembler;
+
+    @Test
+    void pageIsAssembledWithOneQueryPerChildCollection() {
+        List<RentalOrder> orders = new ArrayList<>();
+        List<OrderDetail> details = new ArrayList<>();
+        List<Allocation> allocations = new ArrayList<>();
+        List<AllocationConditionSnapshot> snapshots = new ArrayList<>();
+        List<DiscrepancyReport> discrepancies = new ArrayList<>();
+        List<RentalOrderExtension> extensions = new ArrayList<>();
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            RentalOrder order = order(id);
+            orders.add(order);
+            OrderDetail detail = OrderDetail.builder().orderDetailId(id * 10).quantity(1L).rentalOrder(order)
+                    .pricePerDay(BigDecimal.ONE).depositAmountPerUnit(BigDecimal.ONE)
+                    .deviceModel(DeviceModel.builder().deviceModelId(5L).build()).build();
+            details.add(detail);
+            Allocation allocation = Allocation.builder().allocationId(id * 100).orderDetail(detail)
+                    .device(Device.builder().deviceId(id * 1000).serialNumber("SN-" + id).build()).build();
+            allocations.add(allocation);
+            snapshots.add(AllocationConditionSnapshot.builder().allocationConditionSnapshotId(id).allocation(allocation)
+                    .snapshotType(AllocationSnapshotType.BASELINE).source(AllocationSnapshotSource.QC_BEFORE).build());
+            discrepancies.add(DiscrepancyReport.builder().discrepancyReportId(id).allocation(allocation).build());
+            extensions.add(RentalOrderExtension.builder().extensionId(id).rentalOrder(order).build());
+        }
+        when(orderDetailRepository.findWithModelByOrderIds(anyCollection())).thenReturn(details);
+        when(allocationRepository.findWithDeviceByOrderIds(anyCollection())).thenReturn(allocations);
+        when(allocationConditionSnapshotRepository.findByAllocationIdsAndTypeAndSource(anyCollection(),
+                eq(AllocationSnapshotType.BASELINE), eq(AllocationSnapshotSource.QC_BEFORE))).thenReturn(snapshots);
+        when(discrepancyReportRepository.findWithDefinitionByOrderIds(anyCollection())).thenReturn(discrepancies);
+        when(rentalOrderExtensionRepository.findByOrderIds(anyCollection())).thenReturn(extensions);
+
+        List<RentalOrderResponseDto> result = assembler.assemble(orders);
+
+        // Số truy vấn cố định cho cả trang, không phụ thuộc số đơn.
+        verify(orderDetailRepository, times(1)).findWithModelByOrderIds(anyCollection());
+        verify(allocationRepository, times(1)).findWithDeviceByOrderIds(anyCollection());
+        verify(allocationConditionSnapshotRepository, times(1)).findByAllocationIdsAndTypeAndSource(anyCollection(), any(), any());
+        verify(discrepancyReportRepository, times(1)).findWithDefinitionByOrderIds(anyCollection());
+        verify(rentalOrderExtensionRepository, times(1)).findByOrderIds(anyCollection());
+        verifyNoMoreInteractions(orderDetailRepository, allocationRepository, allocationConditionSnapshotRepository,
+                discrepancyReportRepository, rentalOrderExtensionRepository);
+
+        assertThat(result).hasSize(PAGE_SIZE);
+        RentalOrderResponseDto third = result.get(2);
+        assertThat(third.getOrderId()).isEqualTo(3L);
+        assertThat(third.getOrderDetails()).hasSize(1);
+        assertThat(third.getAllocatedDevices()).singleElement()
+                .satisfies(device -> assertThat(device.getDeviceId()).isEqualTo(3000L));
+        assertThat(third.getDeviceConditions()).singleElement()
+                .satisfies(condition -> assertThat(condition.getSnapshots()).hasSize(1));
+        assertThat(third.getDiscrepancies()).hasSize(1);
+        assertThat(third.getExtensions()).singleElement()
+                .satisfies(extension -> assertThat(extension.getExtensionId()).isEqualTo(3L));
+    }
+
+    @Test
+    void snapshotQueryIsSkippedWhenNoAllocations() {
+        RentalOrder order = order(1L);
+
+        RentalOrderResponseDto dto = assembler.assemble(order);
+
+        assertThat(dto.getOrderId()).isEqualTo(1L);
+        assertThat(dto.getDeviceConditions()).isEmpty();
+        assertThat(dto.getExtensions()).isEmpty();
+        verifyNoInteractions(allocationConditionSnapshotRepository);
+    }
+
+    private static RentalOrder order(Long id) {
+        return RentalOrder.builder()
+                .orderId(id)
+                .orderStatus(OrderStatus.PENDING)
+                .startDate(LocalDateTime.now())
+                .endDate(LocalDateTime.now().plusDays(2))
+                .build();
+    }
+}
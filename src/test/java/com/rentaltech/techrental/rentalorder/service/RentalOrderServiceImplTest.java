@@ -8,13 +8,16 @@ import com.rentaltech.techrental.device.repository.DiscrepancyReportRepository;
 import com.rentaltech.techrental.device.service.DeviceAllocationQueryService;
 import com.rentaltech.techrental.rentalorder.model.OrderStatus;
 import com.rentaltech.techrental.rentalorder.model.RentalOrder;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderCursorPageDto;
+import com.rentaltech.techrental.rentalorder.model.dto.RentalOrderResponseDto;
 import com.rentaltech.techrental.rentalorder.repository.BookingCalendarRepository;
 import com.rentaltech.techrental.rentalorder.repository.OrderDetailRepository;
 import com.rentaltech.techrental.rentalorder.repository.RentalOrderRepository;
+import com.rentaltech.techrental.security.IdentityContext;
 import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
 import com.rentaltech.techrental.staff.repository.TaskRepository;
 import com.rentaltech.techrental.staff.service.PreRentalQcTaskCreator;
-import com.rentaltech.techrental.staff.service.staffservice.StaffService;
+import com.rentaltech.techrental.staff.service.taskservice.StaffCapacityLedger;
 import com.rentaltech.techrental.webapi.customer.model.Customer;
 import com.rentaltech.techrental.webapi.customer.model.KYCStatus;
 import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
@@ -23,20 +26,29 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class RentalOrderServiceImplTest {
@@ -62,12 +74,8 @@ class RentalOrderServiceImplTest {
     @Mock
     private TaskCategoryRepository taskCategoryRepository;
     @Mock
-    private StaffService staffService;
-    @Mock
     private NotificationService notificationService;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
-    @Mock
     private DeviceAllocationQueryService deviceAllocationQueryService;
     @Mock
     private AllocationRepository allocationRepository;
@@ -75,6 +83,12 @@ class RentalOrderServiceImplTest {
     private AllocationConditionSnapshotRepository allocationConditionSnapshotRepository;
     @Mock
     private DiscrepancyReportRepository discrepancyReportRepository;
+    @Mock
+    private RentalOrderResponseAssembler rentalOrderResponseAssembler;
+    @Mock
+    private IdentityContext identityContext;
+    @Mock
+    private StaffCapacityLedger staffCapacityLedger;
 
     @InjectMocks
     private RentalOrderServiceImpl service;
@@ -93,8 +107,8 @@ class RentalOrderServiceImplTest {
     void findByIdThrowsForDifferentCustomer() {
         RentalOrder order = baseOrder();
         when(rentalOrderRepository.findById(1L)).thenReturn(Optional.of(order));
-        when(customerRepository.findByAccount_Username("customer"))
-                .thenReturn(Optional.of(Customer.builder().customerId(99L).build()));
+        when(identityContext.isCustomer()).thenReturn(true);
+        when(identityContext.currentCustomerId()).thenReturn(Optional.of(99L));
 
         SecurityContextHolder.getContext().setAuthentication(
                 new TestingAuthenticationToken("customer", "pass", "ROLE_CUSTOMER")
@@ -118,6 +132,104 @@ class RentalOrderServiceImplTest {
         assertThat(response.getOrderId()).isEqualTo(order.getOrderId());
     }
 
+    @Test
+    void searchByCursorReadsOneExtraRowInsteadOfCounting() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 1, 9, 30);
+        List<RentalOrder> rows = List.of(
+                RentalOrder.builder().orderId(30L).createdAt(createdAt).build(),
+                RentalOrder.builder().orderId(20L).createdAt(createdAt).build(),
+                RentalOrder.builder().orderId(10L).createdAt(createdAt.minusHours(1)).build());
+        when(rentalOrderRepository.<RentalOrder, List<RentalOrder>>findBy(any(Specification.class), any())).thenReturn(rows);
+        when(rentalOrderResponseAssembler.assemble(anyList()))
+                .thenAnswer(invocation -> invocation.<List<RentalOrder>>getArgument(0).stream()
+                        .map(order -> RentalOrderResponseDto.builder().orderId(order.getOrderId()).build())
+                        .toList());
+
+        RentalOrderCursorPageDto page = service.searchByCursor(null, null, null, null, null, null, null, null, null,
+                null, 2, false);
+
+        assertThat(page.getContent()).extracting(RentalOrderResponseDto::getOrderId).containsExactly(30L, 20L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(RentalOrderCursor.decode(page.getNextCursor())).isEqualTo(new RentalOrderCursor(createdAt, 20L));
+        assertThat(page.getTotalElements()).isNull();
+        verify(rentalOrderRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    void searchByCursorCountsOnlyWhenAskedAndStopsOnLastPage() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 1, 9, 30);
+        String after = new RentalOrderCursor(createdAt, 20L).encode();
+        when(rentalOrderRepository.<RentalOrder, List<RentalOrder>>findBy(any(Specification.class), any()))
+                .thenReturn(List.of(RentalOrder.builder().orderId(10L).createdAt(createdAt).build()));
+        when(rentalOrderResponseAssembler.assemble(anyList())).thenReturn(List.of(RentalOrderResponseDto.builder().orderId(10L).build()));
+        when(rentalOrderRepository.count(any(Specification.class))).thenReturn(3L);
+
+        RentalOrderCursorPageDto page = service.searchByCursor(null, null, null, null, null, null, null, null, null,
+                after, 2, true);
+
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getTotalElements()).isEqualTo(3L);
+    }
+
+    @Test
+    void searchByCursorRejectsMalformedCursor() {
+        assertThatThrownBy(() -> service.searchByCursor(null, null, null, null, null, null, null, null, null,
+                "not-a-cursor", 20, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void findMyOrdersFiltersByCustomerInQuery() {
+        when(identityContext.isCustomer()).thenReturn(true);
+        when(identityContext.currentCustomerId()).thenReturn(Optional.of(7L));
+        when(rentalOrderRepository.findByCustomer_CustomerId(eq(7L), any(Pageable.class)))
+                .thenAnswer(invocation -> new PageImpl<>(List.of(baseOrder()), invocation.getArgument(1), 1));
+        when(rentalOrderResponseAssembler.assemble(anyList())).thenReturn(List.of(RentalOrderResponseDto.builder().orderId(1L).build()));
+
+        Page<RentalOrderResponseDto> page = service.findAll(PageRequest.of(0, 20));
+
+        assertThat(page.getContent()).extracting(RentalOrderResponseDto::getOrderId).containsExactly(1L);
+        verify(rentalOrderRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void findMyOrdersRejectsCustomerWithoutProfile() {
+        when(identityContext.isCustomer()).thenReturn(true);
+        when(identityContext.currentCustomerId()).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.findMyOrders(PageRequest.of(0, 20)))
+                .isInstanceOf(org.springframework.web.server.ResponseStatusException.class);
+        verifyNoInteractions(rentalOrderRepository);
+    }
+
+    @Test
+    void findAllForStaffIsPagedAndBounded() {
+        when(rentalOrderRepository.findAll(any(Pageable.class)))
+                .thenAnswer(invocation -> new PageImpl<>(List.of(), invocation.getArgument(0), 0));
+        when(rentalOrderResponseAssembler.assemble(anyList())).thenReturn(List.of());
+
+        service.findAll(PageRequest.of(2, 5000));
+
+        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+        verify(rentalOrderRepository).findAll(captor.capture());
+        assertThat(captor.getValue().getPageNumber()).isEqualTo(2);
+        assertThat(captor.getValue().getPageSize()).isEqualTo(100);
+        assertThat(captor.getValue().getSort().getOrderFor("createdAt")).isNotNull();
+    }
+
+    @Test
+    void summariesForCustomerUseProjectionWithoutAssemblingDetails() {
+        when(identityContext.isCustomer()).thenReturn(true);
+        when(identityContext.currentCustomerId()).thenReturn(Optional.of(7L));
+        when(rentalOrderRepository.findSummariesByCustomerId(eq(7L), any(Pageable.class))).thenReturn(Page.empty());
+
+        service.findSummaries(PageRequest.of(0, 20));
+
+        verify(rentalOrderRepository, never()).findSummaries(any(Pageable.class));
+        verifyNoInteractions(rentalOrderResponseAssembler, orderDetailRepository, allocationRepository);
+    }
+
     private RentalOrder baseOrder() {
         Account account = Account.builder()
                 .accountId(1L)
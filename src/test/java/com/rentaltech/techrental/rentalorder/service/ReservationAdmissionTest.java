@@ -0,0 +1,199 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationAdmissionTest {
+
+    private static final Long MODEL_ID = 1L;
+    private static final long CAPACITY = 20L;
+
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService executor;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(32);
+        start = LocalDateTime.now().plusDays(1);
+        end = start.plusDays(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void parallelCheckoutsForOneModelNeverOversell() throws Exception {
+        ReservationAdmission admission = new ReservationAdmission(availabilityIndex, null, 64, false, Duration.ofSeconds(30));
+        AtomicLong reserved = new AtomicLong();
+        when(availabilityIndex.availableCountsFromDatabase(anyCollection(), any(), any(), eq(false)))
+                .thenAnswer(invocation -> Map.of(MODEL_ID, CAPACITY - reserved.get()));
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            results.add(executor.submit(() -> inTransaction(() -> {
+                long available = admission.lockAndCountAvailable(Set.of(MODEL_ID), start, end).get(MODEL_ID);
+                if (available < 1) {
+                    return false;
+                }
+                // Khoảng giữa kiểm tra và ghi giữ chỗ, nơi trước đây hai đơn có thể cùng lọt qua.
+                Thread.yield();
+                reserved.incrementAndGet();
+                return true;
+            })));
+        }
+        long admitted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                admitted++;
+            }
+        }
+
+        assertThat(admitted).isEqualTo(CAPACITY);
+        assertThat(reserved).hasValue(CAPACITY);
+    }
+
+    @Test
+    void differentModelsAreNotSerialized() throws Exception {
+        ReservationAdmission admission = new ReservationAdmission(availabilityIndex, null, 64, false, Duration.ofMillis(200));
+        assertThat(admission.stripeOf(1L)).isNotEqualTo(admission.stripeOf(2L));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Boolean> holder = executor.submit(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(1L));
+            holding.countDown();
+            awaitQuietly(release);
+            return true;
+        }));
+        assertThat(holding.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<Boolean> otherModel = executor.submit(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(2L));
+            return true;
+        }));
+        assertThat(otherModel.get(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<Boolean> sameModel = executor.submit(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(1L));
+            return true;
+        }));
+        assertThatThrownBy(() -> sameModel.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(ResponseStatusException.class);
+
+        release.countDown();
+        assertThat(holder.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.submit(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(1L));
+            return true;
+        })).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void advisoryLocksAreTakenInModelOrder() {
+        ReservationAdmission admission = new ReservationAdmission(availabilityIndex, jdbcTemplate, 64, true, Duration.ofSeconds(1));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), any()))
+                .thenReturn(true);
+
+        inTransaction(() -> {
+            admission.lockModels(List.of(9L, 3L, 3L));
+            return true;
+        });
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), eq(3));
+        inOrder.verify(jdbcTemplate).queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), eq(9));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void advisoryLockHeldElsewhereTimesOutAndReleasesStripe() throws Exception {
+        ReservationAdmission admission = new ReservationAdmission(availabilityIndex, jdbcTemplate, 64, true, Duration.ofMillis(100));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), eq(1)))
+                .thenReturn(false, false, true);
+
+        // Node khác giữ khóa advisory ngắn: thử lại tới khi lấy được
+        assertThat(inTransaction(() -> {
+            admission.lockModels(Set.of(MODEL_ID));
+            return true;
+        })).isTrue();
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), eq(1)))
+                .thenReturn(false);
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(MODEL_ID));
+            return true;
+        })).isInstanceOf(ResponseStatusException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+
+        // Dải trong JVM đã được nhả cùng transaction bị hủy (thử từ luồng khác vì ReentrantLock cho phép vào lại)
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq(ReservationAdmission.ADVISORY_LOCK_NAMESPACE), eq(1)))
+                .thenReturn(true);
+        assertThat(executor.submit(() -> inTransaction(() -> {
+            admission.lockModels(Set.of(MODEL_ID));
+            return true;
+        })).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void lockOutsideTransactionIsRejected() {
+        ReservationAdmission admission = new ReservationAdmission(availabilityIndex, null, 64, false, Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> admission.lockModels(Set.of(MODEL_ID)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static <T> T inTransaction(Supplier<T> work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            return work.get();
+        } finally {
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.rentaltech.techrental.rentalorder.service;
+
+import com.rentaltech.techrental.rentalorder.model.Reservation;
+import com.rentaltech.techrental.rentalorder.model.ReservationStatus;
+import com.rentaltech.techrental.rentalorder.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationExpiryWheelTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+    @Mock
+    private ObjectProvider<ReservationService> reservationServiceProvider;
+    @Mock
+    private ReservationService reservationService;
+
+    private ReservationExpiryWheel expiryWheel;
+
+    @BeforeEach
+    void setUp() {
+        expiryWheel = new ReservationExpiryWheel(reservationRepository, reservationServiceProvider,
+                Duration.ofSeconds(1), 2, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void timerWheelFiresEachTimeoutAtItsDeadline() {
+        long start = 1_000_000L;
+        TimerWheel wheel = new TimerWheel(1_000L, 2, 3, start);
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        for (long id = 0; id < 500; id++) {
+            // Bao gồm cả hạn vượt quá tầng cao nhất (4^3 tick) để đi qua hàng đợi tràn.
+            long deadline = start + 1 + random.nextInt(200_000);
+            wheel.add(id, deadline);
+            expected.add(new long[]{id, deadline});
+        }
+
+        List<TimerWheel.Timeout> fired = new ArrayList<>();
+        for (long now = start; now <= start + 201_000L; now += 1_000L) {
+            for (TimerWheel.Timeout timeout : wheel.advanceTo(now)) {
+                assertThat(timeout.deadlineMillis()).isLessThanOrEqualTo(now);
+                assertThat(timeout.deadlineMillis()).isGreaterThan(now - 1_000L);
+                fired.add(timeout);
+            }
+        }
+
+        assertThat(fired).hasSize(expected.size());
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void dueReservationsAreExpiredInBatchesById() {
+        when(reservationServiceProvider.getObject()).thenReturn(reservationService);
+        LocalDateTime expiry = LocalDateTime.now().plusMinutes(15);
+        expiryWheel.schedule(List.of(
+                reservation(3L, ReservationStatus.PENDING_REVIEW, expiry),
+                reservation(1L, ReservationStatus.PENDING_REVIEW, expiry),
+                reservation(2L, ReservationStatus.PENDING_REVIEW, expiry)));
+
+        expiryWheel.tick(millis(expiry.minusSeconds(5)));
+        verifyNoInteractions(reservationService);
+
+        expiryWheel.tick(millis(expiry.plusSeconds(1)));
+        verify(reservationService).expireReservationsByIds(List.of(1L, 2L));
+        verify(reservationService).expireReservationsByIds(List.of(3L));
+        assertThat(expiryWheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void extendedHoldIsReArmedAndOldDeadlineIgnored() {
+        when(reservationServiceProvider.getObject()).thenReturn(reservationService);
+        LocalDateTime initial = LocalDateTime.now().plusMinutes(15);
+        LocalDateTime extended = initial.plusHours(6);
+        expiryWheel.schedule(List.of(reservation(1L, ReservationStatus.PENDING_REVIEW, initial)));
+        expiryWheel.schedule(List.of(reservation(1L, ReservationStatus.UNDER_REVIEW, extended)));
+
+        expiryWheel.tick(millis(initial.plusMinutes(1)));
+        verifyNoInteractions(reservationService);
+
+        expiryWheel.tick(millis(extended.plusSeconds(1)));
+        verify(reservationService).expireReservationsByIds(List.of(1L));
+    }
+
+    @Test
+    void confirmedReservationIsCancelled() {
+        LocalDateTime expiry = LocalDateTime.now().plusMinutes(15);
+        expiryWheel.schedule(List.of(reservation(1L, ReservationStatus.PENDING_REVIEW, expiry)));
+        expiryWheel.schedule(List.of(reservation(1L, ReservationStatus.CONFIRMED, null)));
+
+        expiryWheel.tick(millis(expiry.plusSeconds(1)));
+
+        verify(reservationService, never()).expireReservationsByIds(anyList());
+        assertThat(expiryWheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void failedBatchIsRetried() {
+        when(reservationServiceProvider.getObject()).thenReturn(reservationService);
+        doThrow(new IllegalStateException("db down")).doNothing().when(reservationService).expireReservationsByIds(List.of(1L));
+        LocalDateTime expiry = LocalDateTime.now().plusMinutes(15);
+        expiryWheel.schedule(List.of(reservation(1L, ReservationStatus.PENDING_REVIEW, expiry)));
+
+        expiryWheel.tick(millis(expiry.plusSeconds(1)));
+        assertThat(expiryWheel.pendingCount()).isEqualTo(1);
+
+        expiryWheel.tick(millis(expiry.plusSeconds(40)));
+        verify(reservationService, times(2)).expireReservationsByIds(List.of(1L));
+        assertThat(expiryWheel.pendingCount()).isZero();
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Reservation reservation(Long id, ReservationStatus status, LocalDateTime expiration) {
+        return Reservation.builder().id(id).status(status).expirationTime(expiration).build();
+    }
+}
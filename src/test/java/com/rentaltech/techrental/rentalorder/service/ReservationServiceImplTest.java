@@ -31,6 +31,10 @@ class ReservationServiceImplTest {
 
     @Mock
     private ReservationRepository reservationRepository;
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+    @Mock
+    private ReservationExpiryWheel reservationExpiryWheel;
 
     @InjectMocks
     private ReservationServiceImpl service;
@@ -142,6 +146,58 @@ class ReservationServiceImplTest {
                 eq(ReservationStatus.EXPIRED));
     }
 
+    @Test
+    void expireReservationsByIdsUpdatesOnlyGivenIds() {
+        when(reservationRepository.lockExpirableIds(eq(List.of(7L, 8L)), anySet(), any(LocalDateTime.class)))
+                .thenReturn(List.of(7L, 8L));
+        when(reservationRepository.findDeviceModelIdsByIds(List.of(7L, 8L))).thenReturn(List.of(5L));
+        when(reservationRepository.markExpiredByIds(eq(List.of(7L, 8L)), anySet(), any(LocalDateTime.class),
+                eq(ReservationStatus.EXPIRED))).thenReturn(2);
+
+        service.expireReservationsByIds(List.of(7L, 8L));
+
+        verify(availabilityIndex).onReservationsExpired(List.of(7L, 8L), List.of(5L));
+    }
+
+    @Test
+    void expireReservationsByIdsKeepsExtendedReservationInIndex() {
+        // 8 đã được gia hạn sau khi hẹn giờ: không còn nằm trong tập hết hạn
+        when(reservationRepository.lockExpirableIds(eq(List.of(7L, 8L)), anySet(), any(LocalDateTime.class)))
+                .thenReturn(List.of(7L));
+        when(reservationRepository.findDeviceModelIdsByIds(List.of(7L))).thenReturn(List.of(5L));
+        when(reservationRepository.markExpiredByIds(eq(List.of(7L)), anySet(), any(LocalDateTime.class),
+                eq(ReservationStatus.EXPIRED))).thenReturn(1);
+
+        service.expireReservationsByIds(List.of(7L, 8L));
+
+        verify(availabilityIndex).onReservationsExpired(List.of(7L), List.of(5L));
+    }
+
+    @Test
+    void expireReservationsByIdsSkipsWhenNothingExpired() {
+        when(reservationRepository.lockExpirableIds(eq(List.of(7L)), anySet(), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        service.expireReservationsByIds(List.of(7L));
+
+        verify(reservationRepository, never()).markExpiredByIds(any(), any(), any(), any());
+        verify(availabilityIndex, never()).onReservationsExpired(anyCollection(), any());
+    }
+
+    @Test
+    void moveToUnderReviewReArmsExpiryTimers() {
+        List<Reservation> reloaded = List.of(Reservation.builder().id(7L).status(ReservationStatus.UNDER_REVIEW)
+                .expirationTime(LocalDateTime.now().plusHours(6)).build());
+        when(reservationRepository.updateStatusAndExpiration(eq(1L), anyCollection(), eq(ReservationStatus.UNDER_REVIEW), any()))
+                .thenReturn(1);
+        when(reservationRepository.findByOrderDetail_RentalOrder_OrderId(1L)).thenReturn(reloaded);
+
+        service.moveToUnderReview(1L);
+
+        verify(availabilityIndex).onReservationsSaved(reloaded);
+        verify(reservationExpiryWheel).schedule(reloaded);
+    }
+
     @Test
     void countActiveReservedQuantityReturnsRepositorySum() {
         when(reservationRepository.sumReservedQuantity(anyLong(), any(), any(), anySet(), any())).thenReturn(5L);
@@ -0,0 +1,114 @@
+package com.rentaltech.techrental.security;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.authentication.model.Role;
+import com.rentaltech.techrental.authentication.repository.AccountRepository;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityContextTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private StaffRepository staffRepository;
+
+    private IdentityContext identityContext;
+
+    @BeforeEach
+    void setUp() {
+        identityContext = new IdentityContext(accountRepository, customerRepository, staffRepository, Duration.ofMinutes(5), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void customerIdentityIsResolvedOnceAndSharedAcrossRequests() {
+        authenticate(Account.builder().accountId(3L).username("customer01").role(Role.CUSTOMER).isActive(true).build());
+        when(customerRepository.findCustomerIdByAccountId(3L)).thenReturn(Optional.of(7L));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(identityContext.isCustomer()).isTrue();
+        assertThat(identityContext.currentCustomerId()).contains(7L);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(identityContext.currentCustomerId()).contains(7L);
+
+        verify(customerRepository, times(1)).findCustomerIdByAccountId(3L);
+        verifyNoInteractions(accountRepository, staffRepository);
+    }
+
+    @Test
+    void staffIdentityCarriesStaffIdAndIsEvictedWithAccount() {
+        authenticate(Account.builder().accountId(4L).username("tech0001").role(Role.TECHNICIAN).isActive(true).build());
+        when(staffRepository.findStaffIdByAccountId(4L)).thenReturn(Optional.of(12L));
+
+        assertThat(identityContext.currentStaffId()).contains(12L);
+        identityContext.evictAccount(4L);
+        assertThat(identityContext.currentStaffId()).contains(12L);
+
+        verify(staffRepository, times(2)).findStaffIdByAccountId(4L);
+        verifyNoInteractions(customerRepository);
+    }
+
+    @Test
+    void customerWithoutProfileIsNotCached() {
+        authenticate(Account.builder().accountId(5L).username("newcomer").role(Role.CUSTOMER).isActive(true).build());
+        when(customerRepository.findCustomerIdByAccountId(5L)).thenReturn(Optional.empty(), Optional.of(9L));
+
+        assertThat(identityContext.currentCustomerId()).isEmpty();
+        assertThat(identityContext.currentCustomerId()).contains(9L);
+    }
+
+    @Test
+    void staffWithoutProfileIsNotCached() {
+        authenticate(Account.builder().accountId(7L).username("tech0002").role(Role.TECHNICIAN).isActive(true).build());
+        when(staffRepository.findStaffIdByAccountId(7L)).thenReturn(Optional.empty(), Optional.of(13L));
+
+        assertThat(identityContext.currentStaffId()).isEmpty();
+        assertThat(identityContext.currentStaffId()).contains(13L);
+    }
+
+    @Test
+    void lookupByOtherUsernameLoadsAccount() {
+        when(accountRepository.findByUsername("operator01"))
+                .thenReturn(Account.builder().accountId(6L).username("operator01").role(Role.OPERATOR).build());
+        when(staffRepository.findStaffIdByAccountId(6L)).thenReturn(Optional.of(14L));
+
+        assertThat(identityContext.forUsername("operator01"))
+                .hasValueSatisfying(identity -> assertThat(identity.hasRole(Role.OPERATOR, Role.ADMIN)).isTrue());
+        assertThat(identityContext.forUsername("operator01")).isPresent();
+
+        verify(accountRepository, times(1)).findByUsername("operator01");
+    }
+
+    private static void authenticate(Account account) {
+        CustomUserDetails details = new CustomUserDetails(account);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.rentaltech.techrental.security;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.authentication.model.Role;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "2f3d7c9a0b1e4f6a8c2d5e7f9b1c3d5e7f9a2b4c6d8e0f1a3b5c7d9e1f3a5b7";
+
+    private JwtTokenProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = newProvider(60_000, 2);
+    }
+
+    @Test
+    void repeatedVerificationIsServedFromCache() {
+        String token = tokenFor(provider, "customer01");
+
+        VerifiedToken first = provider.parseAndVerify(token);
+        VerifiedToken second = provider.parseAndVerify(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.subject()).isEqualTo("customer01");
+        assertThat(first.accountId()).isEqualTo(1L);
+        assertThat(first.role()).isEqualTo("ROLE_CUSTOMER");
+        assertThat(provider.getUsernameFromJWT(token)).isEqualTo("customer01");
+        assertThat(provider.cachedClaimsCount()).isEqualTo(1);
+    }
+
+    @Test
+    void cacheIsBounded() {
+        provider.parseAndVerify(tokenFor(provider, "user0001"));
+        provider.parseAndVerify(tokenFor(provider, "user0002"));
+        provider.parseAndVerify(tokenFor(provider, "user0003"));
+
+        assertThat(provider.cachedClaimsCount()).isEqualTo(2);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = tokenFor(provider, "customer01");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> provider.parseAndVerify(tampered)).isInstanceOf(SignatureException.class);
+        assertThat(provider.validateToken(tampered)).isFalse();
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        JwtTokenProvider expiring = newProvider(-1_000, 10);
+        String token = tokenFor(expiring, "customer01");
+
+        assertThatThrownBy(() -> expiring.parseAndVerify(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(expiring.cachedClaimsCount()).isZero();
+    }
+
+    private static JwtTokenProvider newProvider(int expirationMs, int maxEntries) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "jwtExpirationInMs", expirationMs);
+        ReflectionTestUtils.setField(provider, "claimsCacheMaxEntries", maxEntries);
+        provider.init();
+        return provider;
+    }
+
+    private static String tokenFor(JwtTokenProvider provider, String username) {
+        CustomUserDetails userDetails = new CustomUserDetails(Account.builder()
+                .accountId(1L).username(username).role(Role.CUSTOMER).isActive(true).build());
+        return provider.generateToken(new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+}
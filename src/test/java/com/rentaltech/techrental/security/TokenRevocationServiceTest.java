@@ -0,0 +1,69 @@
+package com.rentaltech.techrental.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private ObjectProvider<RedisTemplate<String, Object>> redisTemplateProvider;
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Test
+    void tokensIssuedBeforeRevocationAreRejected() {
+        TokenRevocationService service = new TokenRevocationService(redisTemplateProvider, 60_000L, Duration.ofSeconds(10));
+        Date issuedEarlier = new Date(System.currentTimeMillis() - 5_000);
+
+        assertThat(service.isRevoked(1L, issuedEarlier)).isFalse();
+        service.revokeAccount(1L);
+
+        assertThat(service.isRevoked(1L, issuedEarlier)).isTrue();
+        assertThat(service.isRevoked(2L, issuedEarlier)).isFalse();
+        // Token đăng nhập lại (iat làm tròn theo giây) vẫn hợp lệ.
+        assertThat(service.isRevoked(1L, new Date((System.currentTimeMillis() / 1000) * 1000))).isFalse();
+    }
+
+    @Test
+    void revocationFromAnotherInstanceIsReadFromRedisOncePerRefresh() {
+        when(redisTemplateProvider.getIfAvailable()).thenReturn(redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("auth:revoked-before:1")).thenReturn(System.currentTimeMillis());
+        TokenRevocationService service = new TokenRevocationService(redisTemplateProvider, 60_000L, Duration.ofMinutes(1));
+        Date issuedEarlier = new Date(System.currentTimeMillis() - 5_000);
+
+        assertThat(service.isRevoked(1L, issuedEarlier)).isTrue();
+        assertThat(service.isRevoked(1L, issuedEarlier)).isTrue();
+
+        verify(valueOperations, times(1)).get("auth:revoked-before:1");
+    }
+
+    @Test
+    void marksOlderThanTokenLifetimeAreEvicted() {
+        TokenRevocationService service = new TokenRevocationService(redisTemplateProvider, 60_000L, Duration.ofSeconds(10));
+        service.revokeAccount(1L);
+        service.revokeAccount(2L);
+
+        service.evictExpired(System.currentTimeMillis(), System.nanoTime());
+        assertThat(service.markCount()).isEqualTo(2);
+
+        // Sau thời hạn token, mọi token phát trước mốc đều đã hết hạn nên mốc không còn cần giữ.
+        service.evictExpired(System.currentTimeMillis() + 61_000L, System.nanoTime());
+        assertThat(service.markCount()).isZero();
+        assertThat(service.isRevoked(1L, new Date(System.currentTimeMillis() - 5_000))).isFalse();
+    }
+}
@@ -0,0 +1,129 @@
+package com.rentaltech.techrental.staff.service.chatservice;
+
+import com.rentaltech.techrental.staff.model.ChatMessage;
+import com.rentaltech.techrental.staff.model.ChatMessageSenderType;
+import com.rentaltech.techrental.staff.model.Conversation;
+import com.rentaltech.techrental.staff.model.dto.ChatMessageResponseDto;
+import com.rentaltech.techrental.staff.repository.ChatMessageRepository;
+import com.rentaltech.techrental.staff.repository.ConversationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageWriterTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatMessageWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        lenient().when(conversationRepository.getReferenceById(any()))
+                .thenAnswer(invocation -> Conversation.builder().conversationId(invocation.getArgument(0)).build());
+        writer = new ChatMessageWriter(chatMessageRepository, conversationRepository, messagingTemplate, transactionManager, 10, 50);
+    }
+
+    @Test
+    void writeInsertsBatchAndAggregatesCountersPerConversation() {
+        List<ChatMessage> batch = List.of(
+                message(1L, ChatMessageSenderType.CUSTOMER),
+                message(1L, ChatMessageSenderType.CUSTOMER),
+                message(1L, ChatMessageSenderType.STAFF),
+                message(2L, ChatMessageSenderType.CUSTOMER));
+
+        writer.write(batch);
+
+        verify(chatMessageRepository, times(1)).saveAll(batch);
+        verify(conversationRepository).incrementUnreadForRecipient(1L, ChatMessageSenderType.CUSTOMER, 2);
+        verify(conversationRepository).incrementUnreadForRecipient(1L, ChatMessageSenderType.STAFF, 1);
+        verify(conversationRepository).incrementUnreadForRecipient(2L, ChatMessageSenderType.CUSTOMER, 1);
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOne() {
+        ChatMessage good = message(1L, ChatMessageSenderType.CUSTOMER);
+        ChatMessage bad = message(99L, ChatMessageSenderType.CUSTOMER);
+        when(chatMessageRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> saving = invocation.getArgument(0);
+            if (saving.contains(bad)) {
+                throw new IllegalStateException("conversation 99 missing");
+            }
+            return saving;
+        });
+
+        writer.write(List.of(good, bad));
+
+        verify(chatMessageRepository).saveAll(argThat((List<ChatMessage> list) -> list.size() == 1 && list.get(0) == good));
+        verify(conversationRepository, times(1)).incrementUnreadForRecipient(1L, ChatMessageSenderType.CUSTOMER, 1);
+        verify(conversationRepository, never()).incrementUnreadForRecipient(eq(99L), any(), anyInt());
+        verify(messagingTemplate).convertAndSend(eq("/topic/conversation/1"), any(ChatMessageResponseDto.class));
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/conversation/99"), any(Object.class));
+    }
+
+    @Test
+    void broadcastCarriesMessageIdAfterPersist() {
+        when(chatMessageRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> saving = invocation.getArgument(0);
+            saving.forEach(message -> message.setMessageId(77L));
+            return saving;
+        });
+
+        writer.write(List.of(message(5L, ChatMessageSenderType.CUSTOMER)));
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/conversation/5"),
+                argThat((ChatMessageResponseDto dto) -> Long.valueOf(77L).equals(dto.getMessageId())));
+    }
+
+    @Test
+    void submitWritesInlineWhenWriterNotStarted() {
+        writer.submit(message(3L, ChatMessageSenderType.STAFF));
+
+        assertThat(writer.queuedCount()).isZero();
+        verify(chatMessageRepository).saveAll(anyList());
+        verify(conversationRepository).incrementUnreadForRecipient(3L, ChatMessageSenderType.STAFF, 1);
+    }
+
+    @Test
+    void submitAfterStopWritesInline() {
+        writer.start();
+        writer.stop();
+        writer.submit(message(4L, ChatMessageSenderType.CUSTOMER));
+
+        assertThat(writer.queuedCount()).isZero();
+        verify(conversationRepository).incrementUnreadForRecipient(4L, ChatMessageSenderType.CUSTOMER, 1);
+    }
+
+    private static ChatMessage message(Long conversationId, ChatMessageSenderType senderType) {
+        return ChatMessage.builder()
+                .conversation(Conversation.builder().conversationId(conversationId).build())
+                .senderType(senderType)
+                .senderId(1L)
+                .content("hi")
+                .build();
+    }
+}
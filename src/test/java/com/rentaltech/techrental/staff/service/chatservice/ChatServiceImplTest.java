@@ -14,12 +14,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Collections;
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +35,8 @@ class ChatServiceImplTest {
     private CustomerRepository customerRepository;
     @Mock
     private StaffRepository staffRepository;
+    @Mock
+    private SupportAssignmentEngine supportAssignmentEngine;
 
     @InjectMocks
     private ChatServiceImpl chatService;
@@ -49,7 +53,7 @@ class ChatServiceImplTest {
     }
 
     @Test
-    void getOrCreateConversationCreatesNewWithFallbackStaff() {
+    void getOrCreateConversationCreatesNewWithAssignedStaff() {
         Customer customer = Customer.builder()
                 .customerId(2L)
                 .account(Account.builder().accountId(20L).username("cust").email("cust@example.com").password("secret").role(null).build())
@@ -62,9 +66,8 @@ class ChatServiceImplTest {
 
         when(conversationRepository.findByCustomer_CustomerId(2L)).thenReturn(Optional.empty());
         when(customerRepository.findById(2L)).thenReturn(Optional.of(customer));
-        when(staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.CUSTOMER_SUPPORT_STAFF)).thenReturn(Collections.emptyList());
-        when(staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.ADMIN)).thenReturn(Collections.emptyList());
-        when(staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.OPERATOR)).thenReturn(List.of(operator));
+        when(supportAssignmentEngine.assign()).thenReturn(3L);
+        when(staffRepository.getReferenceById(3L)).thenReturn(operator);
         when(conversationRepository.save(any(Conversation.class))).thenAnswer(invocation -> {
             Conversation saved = invocation.getArgument(0);
             saved.setConversationId(10L);
@@ -76,6 +79,19 @@ class ChatServiceImplTest {
         assertThat(created.getConversationId()).isEqualTo(10L);
         assertThat(created.getStaff()).isEqualTo(operator);
         assertThat(created.getCustomer()).isEqualTo(customer);
+        verify(staffRepository, never()).findByStaffRoleAndIsActiveTrue(any());
+    }
+
+    @Test
+    void getOrCreateConversationFailsWhenNoStaffAvailable() {
+        Customer customer = Customer.builder().customerId(2L).build();
+        when(conversationRepository.findByCustomer_CustomerId(2L)).thenReturn(Optional.empty());
+        when(customerRepository.findById(2L)).thenReturn(Optional.of(customer));
+        when(supportAssignmentEngine.assign()).thenReturn(null);
+
+        assertThatThrownBy(() -> chatService.getOrCreateConversationByCustomer(2L))
+                .isInstanceOf(IllegalStateException.class);
+        verify(conversationRepository, never()).save(any());
     }
 
     @Test
@@ -96,53 +112,90 @@ class ChatServiceImplTest {
         assertThat(message.getConversation()).isEqualTo(conversation);
         assertThat(message.getIsRead()).isFalse();
         assertThat(message.getSentAt()).isNotNull();
+        verify(conversationRepository).incrementUnreadForRecipient(9L, ChatMessageSenderType.CUSTOMER, 1);
     }
 
     @Test
-    void markMessagesAsReadSkipsCurrentUserMessages() {
-        ChatMessage ownMessage = ChatMessage.builder()
-                .messageId(1L)
-                .senderId(11L)
+    void prepareMessageDoesNotPersist() {
+        Conversation conversation = Conversation.builder().conversationId(9L).build();
+        ChatMessageCreateRequestDto request = ChatMessageCreateRequestDto.builder()
+                .conversationId(9L)
+                .senderId(7L)
                 .senderType(ChatMessageSenderType.STAFF)
-                .isRead(false)
+                .content("xin chào")
                 .build();
-        ChatMessage otherMessage = ChatMessage.builder()
-                .messageId(2L)
-                .senderId(99L)
-                .senderType(ChatMessageSenderType.CUSTOMER)
-                .isRead(false)
+        when(conversationRepository.findById(9L)).thenReturn(Optional.of(conversation));
+
+        ChatMessage message = chatService.prepareMessage(request);
+
+        assertThat(message.getMessageId()).isNull();
+        assertThat(message.getConversation()).isEqualTo(conversation);
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void prepareMessageRejectsBlankContent() {
+        ChatMessageCreateRequestDto request = ChatMessageCreateRequestDto.builder()
+                .conversationId(9L)
+                .senderId(7L)
+                .senderType(ChatMessageSenderType.STAFF)
+                .content("  ")
                 .build();
 
-        when(chatMessageRepository.findByConversation_ConversationIdAndIsReadFalse(4L))
-                .thenReturn(List.of(ownMessage, otherMessage));
-        when(chatMessageRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        assertThatThrownBy(() -> chatService.prepareMessage(request))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void markMessagesAsReadUsesWatermarkAndSubtractsMarkedRows() {
+        when(chatMessageRepository.findLatestMessageId(4L)).thenReturn(42L);
+        when(chatMessageRepository.markReadUpTo(eq(4L), eq(ChatMessageSenderType.CUSTOMER), eq(42L), any(LocalDateTime.class)))
+                .thenReturn(3);
 
         chatService.markMessagesAsRead(4L, 11L, ChatMessageSenderType.STAFF);
 
-        assertThat(ownMessage.getIsRead()).isFalse();
-        assertThat(otherMessage.getIsRead()).isTrue();
-        assertThat(otherMessage.getReadAt()).isNotNull();
-        verify(chatMessageRepository).saveAll(any());
+        // Chỉ trừ 3 tin vừa đánh dấu, tin đến sau watermark vẫn còn trong bộ đếm
+        verify(conversationRepository).updateReadState(4L, ChatMessageSenderType.STAFF, 42L, 3);
+        verify(chatMessageRepository, never()).findByConversation_ConversationIdAndIsReadFalse(any());
+        verify(chatMessageRepository, never()).saveAll(any());
     }
 
     @Test
-    void getUnreadCountFiltersBySender() {
-        ChatMessage messageFromCurrent = ChatMessage.builder()
-                .senderId(5L)
-                .senderType(ChatMessageSenderType.CUSTOMER)
-                .isRead(false)
-                .build();
-        ChatMessage messageFromOther = ChatMessage.builder()
-                .senderId(6L)
-                .senderType(ChatMessageSenderType.STAFF)
-                .isRead(false)
+    void markMessagesAsReadSkipsEmptyConversation() {
+        when(chatMessageRepository.findLatestMessageId(4L)).thenReturn(null);
+
+        chatService.markMessagesAsRead(4L, 11L, ChatMessageSenderType.CUSTOMER);
+
+        verify(chatMessageRepository, never()).markReadUpTo(any(), any(), any(), any());
+        verify(conversationRepository, never()).updateReadState(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getUnreadCountReadsParticipantCounter() {
+        Conversation conversation = Conversation.builder()
+                .conversationId(6L)
+                .customerUnreadCount(3)
+                .staffUnreadCount(1)
                 .build();
+        when(conversationRepository.findById(6L)).thenReturn(Optional.of(conversation));
 
-        when(chatMessageRepository.findByConversation_ConversationIdAndIsReadFalse(6L))
-                .thenReturn(List.of(messageFromCurrent, messageFromOther));
+        assertThat(chatService.getUnreadCount(6L, 5L, ChatMessageSenderType.CUSTOMER)).isEqualTo(3L);
+        assertThat(chatService.getUnreadCount(6L, 8L, ChatMessageSenderType.STAFF)).isEqualTo(1L);
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void getUnreadCountFallsBackToSqlCountForLegacyConversation() {
+        Conversation conversation = Conversation.builder()
+                .conversationId(6L)
+                .customerUnreadCount(null)
+                .build();
+        when(conversationRepository.findById(6L)).thenReturn(Optional.of(conversation));
+        when(chatMessageRepository.countByConversation_ConversationIdAndIsReadFalseAndSenderType(6L, ChatMessageSenderType.STAFF))
+                .thenReturn(2L);
 
         long unread = chatService.getUnreadCount(6L, 5L, ChatMessageSenderType.CUSTOMER);
 
-        assertThat(unread).isEqualTo(1L);
+        assertThat(unread).isEqualTo(2L);
     }
 }
@@ -0,0 +1,110 @@
+package com.rentaltech.techrental.staff.service.chatservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.repository.ConversationRepository;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.staff.service.staffservice.StaffRoleDirectory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SupportAssignmentEngineTest {
+
+    @Mock
+    private StaffRoleDirectory staffRoleDirectory;
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private StaffRepository staffRepository;
+
+    private SupportAssignmentEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SupportAssignmentEngine(staffRoleDirectory, conversationRepository, staffRepository, Duration.ofMinutes(5));
+        lenient().when(staffRoleDirectory.recipients(any())).thenReturn(List.of());
+    }
+
+    @Test
+    void assignSpreadsConversationsByLoad() {
+        List<StaffRoleDirectory.Recipient> support = List.of(
+                new StaffRoleDirectory.Recipient(1L, 11L),
+                new StaffRoleDirectory.Recipient(2L, 12L));
+        when(staffRoleDirectory.recipients(StaffRole.CUSTOMER_SUPPORT_STAFF)).thenReturn(support);
+        when(conversationRepository.countConversationsByStaff()).thenReturn(rows(new Object[]{1L, 2L}));
+
+        assertThat(engine.assign()).isEqualTo(2L);
+        assertThat(engine.assign()).isEqualTo(2L);
+        // Hai người bằng tải (2-2), staffId nhỏ hơn thắng.
+        assertThat(engine.assign()).isEqualTo(1L);
+        assertThat(engine.loadOf(1L)).isEqualTo(3);
+        assertThat(engine.loadOf(2L)).isEqualTo(2);
+        verify(conversationRepository, times(1)).countConversationsByStaff();
+    }
+
+    @Test
+    void assignPrefersOnlineAgentEvenWhenBusier() {
+        List<StaffRoleDirectory.Recipient> support = List.of(
+                new StaffRoleDirectory.Recipient(1L, 11L),
+                new StaffRoleDirectory.Recipient(2L, 12L));
+        when(staffRoleDirectory.recipients(StaffRole.CUSTOMER_SUPPORT_STAFF)).thenReturn(support);
+        when(conversationRepository.countConversationsByStaff()).thenReturn(rows(new Object[]{1L, 10L}));
+
+        engine.subscribed("s1", "sub-0", 1L);
+
+        assertThat(engine.isOnline(1L)).isTrue();
+        assertThat(engine.assign()).isEqualTo(1L);
+
+        engine.disconnected("s1");
+
+        assertThat(engine.isOnline(1L)).isFalse();
+        assertThat(engine.assign()).isEqualTo(2L);
+    }
+
+    @Test
+    void assignFallsBackToOnlineAdminBeforeOfflineSupport() {
+        when(staffRoleDirectory.recipients(StaffRole.CUSTOMER_SUPPORT_STAFF))
+                .thenReturn(List.of(new StaffRoleDirectory.Recipient(1L, 11L)));
+        when(staffRoleDirectory.recipients(StaffRole.ADMIN))
+                .thenReturn(List.of(new StaffRoleDirectory.Recipient(5L, 15L)));
+        when(conversationRepository.countConversationsByStaff()).thenReturn(List.of());
+
+        engine.subscribed("s2", "sub-0", 5L);
+        assertThat(engine.assign()).isEqualTo(5L);
+
+        engine.unsubscribed("s2", "sub-0");
+        assertThat(engine.assign()).isEqualTo(1L);
+    }
+
+    @Test
+    void assignUsesAnyActiveStaffWhenRolesAreEmpty() {
+        when(conversationRepository.countConversationsByStaff()).thenReturn(List.of());
+        when(staffRepository.findByIsActiveTrue()).thenReturn(List.of(Staff.builder().staffId(9L).build()));
+
+        assertThat(engine.assign()).isEqualTo(9L);
+    }
+
+    @Test
+    void assignReturnsNullWhenNoStaffAtAll() {
+        when(conversationRepository.countConversationsByStaff()).thenReturn(List.of());
+        when(staffRepository.findByIsActiveTrue()).thenReturn(List.of());
+
+        assertThat(engine.assign()).isNull();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
@@ -19,7 +19,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 
 import java.math.BigDecimal;
@@ -48,8 +47,6 @@ class SettlementServiceImplTest {
     @Mock
     private NotificationService notificationService;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
-    @Mock
     private DiscrepancyReportRepository discrepancyReportRepository;
 
     @InjectMocks
@@ -196,8 +193,7 @@ class SettlementServiceImplTest {
 
         assertThat(result.getState()).isEqualTo(SettlementState.Issued);
         assertThat(result.getIssuedAt()).isNotNull();
-        verify(notificationService).notifyAccount(eq(202L), eq(NotificationType.ORDER_NEAR_DUE), anyString(), anyString());
-        verify(messagingTemplate).convertAndSend(eq("/topic/staffs/101/notifications"), any(Object.class));
+        verify(notificationService).notifyStaff(eq(List.of(supportStaff)), eq(NotificationType.ORDER_NEAR_DUE), anyString(), anyString(), any());
     }
 
     private RentalOrder rentalOrder(Long orderId, Long customerId, Long accountId) {
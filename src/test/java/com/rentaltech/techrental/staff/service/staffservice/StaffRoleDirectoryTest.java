@@ -0,0 +1,55 @@
+package com.rentaltech.techrental.staff.service.staffservice;
+
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaffRoleDirectoryTest {
+
+    @Mock
+    private StaffRepository staffRepository;
+
+    private StaffRoleDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        directory = new StaffRoleDirectory(staffRepository, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void recipientsAreCachedPerRole() {
+        when(staffRepository.findActiveRecipientsByRole(StaffRole.OPERATOR))
+                .thenReturn(List.<Object[]>of(new Object[]{15L, 77L}));
+
+        List<StaffRoleDirectory.Recipient> first = directory.recipients(StaffRole.OPERATOR);
+        List<StaffRoleDirectory.Recipient> second = directory.recipients(StaffRole.OPERATOR);
+
+        assertThat(first).containsExactly(new StaffRoleDirectory.Recipient(15L, 77L));
+        assertThat(second).isSameAs(first);
+        verify(staffRepository, times(1)).findActiveRecipientsByRole(StaffRole.OPERATOR);
+    }
+
+    @Test
+    void evictReloadsRecipients() {
+        when(staffRepository.findActiveRecipientsByRole(StaffRole.OPERATOR))
+                .thenReturn(List.<Object[]>of(new Object[]{15L, 77L}))
+                .thenReturn(List.of());
+
+        directory.recipients(StaffRole.OPERATOR);
+        directory.evict();
+
+        assertThat(directory.recipients(StaffRole.OPERATOR)).isEmpty();
+        verify(staffRepository, times(2)).findActiveRecipientsByRole(StaffRole.OPERATOR);
+    }
+}
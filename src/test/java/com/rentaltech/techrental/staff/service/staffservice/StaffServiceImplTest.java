@@ -40,6 +40,8 @@ class StaffServiceImplTest {
     private TaskRepository taskRepository;
     @Mock
     private TaskCustomRepository taskCustomRepository;
+    @Mock
+    private StaffRoleDirectory staffRoleDirectory;
 
     @InjectMocks
     private StaffServiceImpl staffService;
@@ -0,0 +1,180 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+import com.rentaltech.techrental.staff.model.dto.TaskResponseDto;
+import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OverdueTaskTrackerTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OverdueTaskTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new OverdueTaskTracker(taskRepository, notificationService, transactionManager, Duration.ofMinutes(30));
+    }
+
+    @Test
+    void pollAnnouncesTaskOnceWhenDeadlinePasses() {
+        when(taskRepository.findOpenTaskDeadlines()).thenReturn(List.of());
+        Task task = task(1L, TaskStatus.PENDING, LocalDateTime.now().plusHours(1));
+        tracker.poll();
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+        tracker.poll();
+        verifyNoInteractions(notificationService);
+
+        // Dời hạn chót về quá khứ: phần tử cũ trong hàng đợi bị bỏ qua, phần tử mới được lấy ra
+        task.setPlannedEnd(LocalDateTime.now().minusMinutes(1));
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+        when(taskRepository.findWithAssigneesByTaskIdIn(List.of(1L))).thenReturn(List.of(task));
+        when(taskRepository.markOverdueNotified(eq(1L), any(), any())).thenReturn(1);
+        tracker.poll();
+        tracker.poll();
+
+        verify(notificationService, times(1)).notifyStaff(eq(task.getAssignedStaff()), eq(NotificationType.TASK_OVERDUE),
+                anyString(), anyString(), any());
+        verify(notificationService, times(1)).notifyRole(eq(StaffRole.OPERATOR), eq(NotificationType.TASK_OVERDUE),
+                anyString(), anyString(), any());
+        assertThat(tracker.overdueTasks()).extracting(TaskResponseDto::getTaskId).containsExactly(1L);
+        verify(taskRepository, times(1)).findOpenTaskDeadlines();
+    }
+
+    @Test
+    void completingOverdueTaskRemovesItFromSet() {
+        when(taskRepository.findOpenTaskDeadlines()).thenReturn(List.of());
+        tracker.warmUp();
+        Task task = task(2L, TaskStatus.IN_PROGRESS, LocalDateTime.now().minusHours(2));
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+        tracker.collectDue(LocalDateTime.now());
+        assertThat(tracker.isOverdue(2L)).isTrue();
+
+        task.setStatus(TaskStatus.COMPLETED);
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+
+        assertThat(tracker.isOverdue(2L)).isFalse();
+        assertThat(tracker.overdueTasks()).isEmpty();
+        verify(taskRepository, never()).findWithAssigneesByTaskIdIn(any());
+    }
+
+    @Test
+    void rebuildServesExistingOverdueTasksWithoutAnnouncing() {
+        LocalDateTime past = LocalDateTime.now().minusDays(1);
+        when(taskRepository.findOpenTaskDeadlines()).thenReturn(rows(
+                new Object[]{5L, past},
+                new Object[]{6L, LocalDateTime.now().plusDays(1)}));
+        when(taskRepository.findWithAssigneesByTaskIdIn(List.of(5L))).thenReturn(List.of(task(5L, TaskStatus.PENDING, past)));
+
+        tracker.warmUp();
+        tracker.poll();
+
+        assertThat(tracker.overdueTasks()).extracting(TaskResponseDto::getTaskId).containsExactly(5L);
+        assertThat(tracker.isOverdue(6L)).isFalse();
+        assertThat(tracker.queuedCount()).isEqualTo(1);
+        verifyNoInteractions(notificationService);
+    }
+
+    @Test
+    void staleEntryIsDroppedWhenDatabaseSaysCompleted() {
+        LocalDateTime past = LocalDateTime.now().minusHours(3);
+        when(taskRepository.findOpenTaskDeadlines()).thenReturn(rows(new Object[]{7L, past}));
+        // Task đã hoàn thành trên node khác
+        when(taskRepository.findWithAssigneesByTaskIdIn(List.of(7L))).thenReturn(List.of(task(7L, TaskStatus.COMPLETED, past)));
+
+        tracker.warmUp();
+
+        assertThat(tracker.overdueTasks()).isEmpty();
+        assertThat(tracker.isOverdue(7L)).isFalse();
+    }
+
+    @Test
+    void pollSkipsTaskAlreadyAnnouncedByAnotherNode() {
+        when(taskRepository.findOpenTaskDeadlines()).thenReturn(List.of());
+        tracker.warmUp();
+        Task task = task(3L, TaskStatus.PENDING, LocalDateTime.now().plusHours(1));
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+        task.setPlannedEnd(LocalDateTime.now().minusMinutes(1));
+        tracker.onTaskChanged(TaskChangedEvent.saved(task));
+        when(taskRepository.findWithAssigneesByTaskIdIn(List.of(3L))).thenReturn(List.of(task));
+        // Node khác đã ghi overdue_notified_at cho hạn chót này
+        when(taskRepository.markOverdueNotified(eq(3L), any(), any())).thenReturn(0);
+
+        tracker.poll();
+        tracker.poll();
+
+        verify(taskRepository, times(1)).markOverdueNotified(eq(3L), any(), any());
+        verifyNoInteractions(notificationService);
+        assertThat(tracker.isOverdue(3L)).isTrue();
+    }
+
+    @Test
+    void changeCommittedDuringRebuildIsKept() {
+        LocalDateTime future = LocalDateTime.now().plusHours(2);
+        when(taskRepository.findOpenTaskDeadlines()).thenAnswer(invocation -> {
+            // Task 8 được tạo sau khi câu truy vấn đã đọc xong snapshot
+            tracker.apply(8L, future, LocalDateTime.now());
+            return rows(new Object[]{9L, future});
+        });
+
+        tracker.warmUp();
+
+        assertThat(tracker.queuedCount()).isEqualTo(2);
+        tracker.onTaskChanged(TaskChangedEvent.removed(9L));
+        tracker.collectDue(future.plusMinutes(1));
+        assertThat(tracker.isOverdue(8L)).isTrue();
+        assertThat(tracker.isOverdue(9L)).isFalse();
+    }
+
+    private static Task task(Long id, TaskStatus status, LocalDateTime plannedEnd) {
+        Staff staff = Staff.builder()
+                .staffId(3L)
+                .staffRole(StaffRole.TECHNICIAN)
+                .account(Account.builder().accountId(13L).username("tech").build())
+                .build();
+        return Task.builder()
+                .taskId(id)
+                .orderId(20L)
+                .status(status)
+                .taskCategory(TaskCategory.builder().taskCategoryId(5L).name("Delivery").build())
+                .plannedStart(plannedEnd.minusHours(2))
+                .plannedEnd(plannedEnd)
+                .assignedStaff(new LinkedHashSet<>(Set.of(staff)))
+                .build();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
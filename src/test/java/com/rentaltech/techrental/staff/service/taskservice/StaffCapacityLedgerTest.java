@@ -0,0 +1,129 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+import com.rentaltech.techrental.staff.repository.TaskCustomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaffCapacityLedgerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    @Mock
+    private TaskCustomRepository taskCustomRepository;
+
+    private StaffCapacityLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new StaffCapacityLedger(taskCustomRepository, Duration.ofMinutes(10), 30);
+    }
+
+    @Test
+    void countLoadsDayOnceAndAnswersFromMemory() {
+        when(taskCustomRepository.countActiveTasksByDateGrouped(DAY)).thenReturn(rows(
+                new Object[]{1L, "tech1", 5L, "Delivery", 2L},
+                new Object[]{1L, "tech1", 6L, "Pickup", 1L},
+                new Object[]{2L, "tech2", 5L, "Delivery", 3L}));
+
+        assertThat(ledger.count(1L, 5L, DAY)).isEqualTo(2L);
+        assertThat(ledger.count(2L, 5L, DAY)).isEqualTo(3L);
+        assertThat(ledger.count(2L, 6L, DAY)).isZero();
+        verify(taskCustomRepository, times(1)).countActiveTasksByDateGrouped(DAY);
+    }
+
+    @Test
+    void recordChangeMovesCountsBetweenStaff() {
+        when(taskCustomRepository.countActiveTasksByDateGrouped(DAY)).thenReturn(rows(
+                new Object[]{1L, "tech1", 5L, "Delivery", 1L}));
+        ledger.count(1L, 5L, DAY);
+
+        Task task = task(TaskStatus.PENDING, staff(1L, "tech1"));
+        StaffCapacityLedger.TaskFootprint before = StaffCapacityLedger.TaskFootprint.of(task);
+        task.setAssignedStaff(new LinkedHashSet<>(Set.of(staff(2L, "tech2"))));
+        ledger.recordChange(before, StaffCapacityLedger.TaskFootprint.of(task));
+
+        assertThat(ledger.count(1L, 5L, DAY)).isZero();
+        assertThat(ledger.count(2L, 5L, DAY)).isEqualTo(1L);
+        verify(taskCustomRepository, times(1)).countActiveTasksByDateGrouped(DAY);
+    }
+
+    @Test
+    void cancelledTaskReleasesCapacity() {
+        when(taskCustomRepository.countActiveTasksByDateGrouped(DAY)).thenReturn(rows(
+                new Object[]{1L, "tech1", 5L, "Delivery", 2L}));
+        ledger.count(1L, 5L, DAY);
+
+        Task task = task(TaskStatus.IN_PROGRESS, staff(1L, "tech1"));
+        StaffCapacityLedger.TaskFootprint before = StaffCapacityLedger.TaskFootprint.of(task);
+        task.setStatus(TaskStatus.CANCELLED);
+
+        assertThat(StaffCapacityLedger.TaskFootprint.of(task)).isNull();
+        ledger.recordChange(before, null);
+        assertThat(ledger.count(1L, 5L, DAY)).isEqualTo(1L);
+    }
+
+    @Test
+    void countsForStaffFiltersAndSortsByCategoryName() {
+        when(taskCustomRepository.countActiveTasksByDateGrouped(DAY)).thenReturn(rows(
+                new Object[]{1L, "tech1", 6L, "Pickup", 1L},
+                new Object[]{1L, "tech1", 5L, "Delivery", 2L},
+                new Object[]{2L, "tech2", 5L, "Delivery", 3L}));
+
+        List<StaffCapacityLedger.CategoryCount> counts = ledger.countsForStaff(1L, DAY, null);
+
+        assertThat(counts).extracting(StaffCapacityLedger.CategoryCount::categoryName).containsExactly("Delivery", "Pickup");
+        assertThat(counts).extracting(StaffCapacityLedger.CategoryCount::count).containsExactly(2L, 1L);
+        assertThat(ledger.countsForStaff(1L, DAY, 6L)).hasSize(1);
+    }
+
+    @Test
+    void changeToUnloadedDayIsIgnoredUntilLoad() {
+        Task task = task(TaskStatus.PENDING, staff(1L, "tech1"));
+        ledger.recordChange(null, StaffCapacityLedger.TaskFootprint.of(task));
+        when(taskCustomRepository.countActiveTasksByDateGrouped(DAY)).thenReturn(rows(
+                new Object[]{1L, "tech1", 5L, "Delivery", 1L}));
+
+        // Database đã có task mới, không được cộng hai lần.
+        assertThat(ledger.count(1L, 5L, DAY)).isEqualTo(1L);
+    }
+
+    private static Task task(TaskStatus status, Staff... staff) {
+        return Task.builder()
+                .taskId(100L)
+                .status(status)
+                .taskCategory(TaskCategory.builder().taskCategoryId(5L).name("Delivery").build())
+                .plannedStart(DAY.atTime(9, 0))
+                .assignedStaff(new LinkedHashSet<>(List.of(staff)))
+                .build();
+    }
+
+    private static Staff staff(Long id, String username) {
+        return Staff.builder()
+                .staffId(id)
+                .account(Account.builder().accountId(id + 10).username(username).build())
+                .build();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
@@ -0,0 +1,153 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskRule;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.staff.service.taskruleservice.TaskRuleService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskAutoSchedulerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+    private static final TaskCategory DELIVERY = TaskCategory.builder().taskCategoryId(5L).name("Delivery").build();
+
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private StaffRepository staffRepository;
+    @Mock
+    private TaskRuleService taskRuleService;
+    @Mock
+    private StaffCapacityLedger staffCapacityLedger;
+
+    private TaskAutoScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new TaskAutoScheduler(taskRepository, staffRepository, taskRuleService, staffCapacityLedger, Duration.ofHours(2));
+        lenient().when(staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.TECHNICIAN))
+                .thenReturn(List.of(staff(1L), staff(2L)));
+        lenient().when(taskRepository.findBusyIntervalsForStaff(any(), any(), any(), any())).thenReturn(List.of());
+        lenient().when(staffCapacityLedger.countsForStaff(any(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void planAvoidsOverlapWithExistingAssignments() {
+        Task first = task(10L, 9, 10);
+        Task second = task(11L, 9, 10);
+        when(taskRepository.findUnassignedPendingTasks(any(), any())).thenReturn(List.of(first, second));
+        when(taskRepository.findBusyIntervalsForStaff(any(), any(), any(), any())).thenReturn(rows(
+                new Object[]{1L, 99L, DAY.atTime(8, 0), DAY.atTime(11, 0)}));
+
+        TaskAutoScheduler.Plan plan = scheduler.plan(DAY, DAY);
+
+        assertThat(assigned(plan)).containsExactlyEntriesOf(Map.of(10L, 2L));
+        assertThat(plan.unassigned()).singleElement().satisfies(item -> {
+            assertThat(item.task()).isSameAs(second);
+            assertThat(item.reason()).isEqualTo(TaskAutoScheduler.REASON_NO_CAPACITY);
+        });
+    }
+
+    @Test
+    void planRespectsDailyLimitFromActiveRule() {
+        when(taskRepository.findUnassignedPendingTasks(any(), any())).thenReturn(List.of(task(10L, 9, 10), task(11L, 13, 14)));
+        when(taskRuleService.getActiveRuleEntityByCategory(5L)).thenReturn(TaskRule.builder().maxTasksPerDay(1).build());
+        when(staffCapacityLedger.count(1L, 5L, DAY)).thenReturn(1L);
+
+        TaskAutoScheduler.Plan plan = scheduler.plan(DAY, DAY);
+
+        // Nhân viên 1 đã đủ 1 task trong ngày, nhân viên 2 chỉ nhận thêm được 1
+        assertThat(assigned(plan)).containsExactlyEntriesOf(Map.of(10L, 2L));
+        assertThat(plan.unassigned()).extracting(item -> item.task().getTaskId()).containsExactly(11L);
+        verify(taskRuleService, times(1)).getActiveRuleEntityByCategory(5L);
+    }
+
+    @Test
+    void planBalancesByDailyLoad() {
+        when(taskRepository.findUnassignedPendingTasks(any(), any())).thenReturn(List.of(
+                task(10L, 8, 9), task(11L, 10, 11), task(12L, 12, 13)));
+        when(staffCapacityLedger.countsForStaff(1L, DAY, null)).thenReturn(List.of(
+                new StaffCapacityLedger.CategoryCount(1L, "tech1", 6L, "Pickup", 1L)));
+
+        TaskAutoScheduler.Plan plan = scheduler.plan(DAY, DAY);
+
+        assertThat(assigned(plan)).containsEntry(10L, 2L).containsEntry(11L, 1L).containsEntry(12L, 2L);
+    }
+
+    @Test
+    void planMovesBlockingTaskToFitAnotherOne() {
+        Task early = task(10L, 9, 10);
+        Task late = Task.builder()
+                .taskId(11L)
+                .taskCategory(DELIVERY)
+                .plannedStart(DAY.atTime(9, 30))
+                .plannedEnd(DAY.atTime(11, 0))
+                .build();
+        when(taskRepository.findUnassignedPendingTasks(any(), any())).thenReturn(List.of(late, early));
+        when(taskRepository.findBusyIntervalsForStaff(any(), any(), any(), any())).thenReturn(rows(
+                new Object[]{1L, 99L, DAY.atTime(10, 30), null}));
+        when(staffCapacityLedger.countsForStaff(1L, DAY, null)).thenReturn(List.of(
+                new StaffCapacityLedger.CategoryCount(1L, "tech1", 6L, "Pickup", 3L)));
+
+        TaskAutoScheduler.Plan plan = scheduler.plan(DAY, DAY);
+
+        // Greedy đưa task sớm cho nhân viên 2 (ít việc hơn) rồi dời sang nhân viên 1 để nhận task muộn
+        assertThat(assigned(plan)).containsEntry(10L, 1L).containsEntry(11L, 2L);
+        assertThat(plan.unassigned()).isEmpty();
+    }
+
+    @Test
+    void planReportsAllTasksWhenNoTechnicianIsActive() {
+        when(taskRepository.findUnassignedPendingTasks(any(), any())).thenReturn(List.of(task(10L, 9, 10)));
+        when(staffRepository.findByStaffRoleAndIsActiveTrue(StaffRole.TECHNICIAN)).thenReturn(List.of());
+
+        TaskAutoScheduler.Plan plan = scheduler.plan(DAY, DAY);
+
+        assertThat(plan.assignments()).isEmpty();
+        assertThat(plan.unassigned()).singleElement()
+                .satisfies(item -> assertThat(item.reason()).isEqualTo(TaskAutoScheduler.REASON_NO_STAFF));
+        verify(taskRepository, never()).findBusyIntervalsForStaff(any(), any(), any(), any());
+    }
+
+    private static Map<Long, Long> assigned(TaskAutoScheduler.Plan plan) {
+        return plan.assignments().stream()
+                .collect(Collectors.toMap(a -> a.task().getTaskId(), a -> a.staff().getStaffId()));
+    }
+
+    private static Task task(Long id, int startHour, int endHour) {
+        return Task.builder()
+                .taskId(id)
+                .taskCategory(DELIVERY)
+                .plannedStart(DAY.atTime(startHour, 0))
+                .plannedEnd(DAY.atTime(endHour, 0))
+                .build();
+    }
+
+    private static Staff staff(Long id) {
+        return Staff.builder().staffId(id).staffRole(StaffRole.TECHNICIAN).build();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
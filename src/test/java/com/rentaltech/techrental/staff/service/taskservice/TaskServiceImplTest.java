@@ -0,0 +1,271 @@
+package com.rentaltech.techrental.staff.service.taskservice;
+
+import com.rentaltech.techrental.authentication.model.Role;
+import com.rentaltech.techrental.rentalorder.repository.RentalOrderRepository;
+import com.rentaltech.techrental.security.IdentityContext;
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.Task;
+import com.rentaltech.techrental.staff.model.TaskCategory;
+import com.rentaltech.techrental.staff.model.TaskRule;
+import com.rentaltech.techrental.staff.model.TaskStatus;
+import com.rentaltech.techrental.staff.model.dto.StaffTaskCountByCategoryDto;
+import com.rentaltech.techrental.staff.model.dto.TaskAutoAssignmentResponseDto;
+import com.rentaltech.techrental.staff.model.dto.TaskUpdateRequestDto;
+import com.rentaltech.techrental.staff.repository.StaffRepository;
+import com.rentaltech.techrental.staff.repository.TaskCategoryRepository;
+import com.rentaltech.techrental.staff.repository.TaskCustomRepository;
+import com.rentaltech.techrental.staff.repository.TaskRepository;
+import com.rentaltech.techrental.staff.service.taskruleservice.TaskRuleService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskServiceImplTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private TaskCategoryRepository taskCategoryRepository;
+    @Mock
+    private TaskCustomRepository taskCustomRepository;
+    @Mock
+    private StaffRepository staffRepository;
+    @Mock
+    private RentalOrderRepository rentalOrderRepository;
+    @Mock
+    private IdentityContext identityContext;
+    @Mock
+    private StaffCapacityLedger staffCapacityLedger;
+    @Mock
+    private TaskRuleService taskRuleService;
+    @Mock
+    private TaskAutoScheduler taskAutoScheduler;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private TaskServiceImpl taskService;
+
+    @Test
+    void getTasksWithPaginationPassesPageToDatabase() {
+        Pageable pageable = PageRequest.of(2, 20);
+        Page<Task> page = new PageImpl<>(List.of(Task.builder().taskId(1L).build()), pageable, 41);
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskCustomRepository.findTasksWithFilters(null, null, null, TaskStatus.PENDING, pageable)).thenReturn(page);
+
+        Page<Task> result = taskService.getTasksWithPagination(null, null, null, "pending", "operator", pageable);
+
+        assertThat(result).isSameAs(page);
+        verify(taskRepository, never()).findAll();
+    }
+
+    @Test
+    void getTasksWithPaginationRestrictsTechnicianToOwnTasks() {
+        Pageable pageable = PageRequest.of(0, 10);
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(2L, "tech", Role.TECHNICIAN, null, 7L)));
+        when(staffRepository.existsById(7L)).thenReturn(true);
+        when(taskCustomRepository.findTasksWithFilters(null, null, 7L, null, pageable)).thenReturn(Page.empty(pageable));
+
+        taskService.getTasksWithPagination(null, null, null, null, "tech", pageable);
+
+        verify(taskCustomRepository).findTasksWithFilters(null, null, 7L, null, pageable);
+    }
+
+    @Test
+    void getTasksWithPaginationRejectsOtherStaffForTechnician() {
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(2L, "tech", Role.TECHNICIAN, null, 7L)));
+
+        assertThatThrownBy(() -> taskService.getTasksWithPagination(null, null, 8L, null, "tech", PageRequest.of(0, 10)))
+                .isInstanceOf(RuntimeException.class);
+        verify(taskCustomRepository, never()).findTasksWithFilters(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getTasksQueriesWithSpecificationInsteadOfLoadingAll() {
+        Task task = Task.builder().taskId(3L).build();
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(rentalOrderRepository.existsById(5L)).thenReturn(true);
+        when(taskRepository.findAll(any(Specification.class))).thenReturn(List.of(task));
+
+        List<Task> result = taskService.getTasks(null, 5L, null, "IN_PROGRESS", "operator");
+
+        assertThat(result).containsExactly(task);
+        verify(taskRepository, never()).findAll();
+    }
+
+    @Test
+    void exportTasksStreamsAndDetachesEachTask() {
+        Task first = Task.builder().taskId(1L).build();
+        Task second = Task.builder().taskId(2L).build();
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskCustomRepository.streamTasks(any(), anyInt())).thenReturn(Stream.of(first, second));
+        List<Long> exported = new ArrayList<>();
+
+        taskService.exportTasks(null, null, null, null, "operator", task -> exported.add(task.getTaskId()));
+
+        assertThat(exported).containsExactly(1L, 2L);
+        verify(taskCustomRepository).detach(first);
+        verify(taskCustomRepository).detach(second);
+    }
+
+    @Test
+    void exportTasksRejectsUnknownCategoryBeforeStreaming() {
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskCategoryRepository.existsById(9L)).thenReturn(false);
+
+        assertThatThrownBy(() -> taskService.exportTasks(9L, null, null, null, "operator", task -> { }))
+                .isInstanceOf(NoSuchElementException.class);
+        verify(taskCustomRepository, never()).streamTasks(any(), anyInt());
+    }
+
+    @Test
+    void updateTaskChecksCapacityFromLedgerExcludingItself() {
+        Staff tech = Staff.builder().staffId(7L).build();
+        TaskCategory category = TaskCategory.builder().taskCategoryId(5L).name("Delivery").build();
+        Task task = Task.builder()
+                .taskId(1L)
+                .taskCategory(category)
+                .plannedStart(LocalDateTime.of(2025, 3, 10, 9, 0))
+                .assignedStaff(new LinkedHashSet<>(Set.of(tech)))
+                .build();
+        TaskUpdateRequestDto request = new TaskUpdateRequestDto();
+        request.setAssignedStaffIds(List.of(7L));
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+        when(staffRepository.findById(7L)).thenReturn(Optional.of(tech));
+        when(taskRuleService.getActiveRuleEntityByCategory(5L)).thenReturn(TaskRule.builder().maxTasksPerDay(2).build());
+        // Đã có 2 task trong ngày nhưng một trong số đó chính là task đang sửa.
+        when(staffCapacityLedger.count(7L, 5L, LocalDate.of(2025, 3, 10))).thenReturn(2L);
+        when(taskRepository.save(task)).thenReturn(task);
+
+        taskService.updateTask(1L, request, "operator");
+
+        verify(taskCustomRepository, never()).countActiveTasksByStaffCategoryAndDate(any(), any(), any(), any());
+        verify(staffCapacityLedger).recordChange(any(), any());
+        verify(eventPublisher).publishEvent(TaskChangedEvent.saved(task));
+    }
+
+    @Test
+    void getStaffTaskCountByCategoryReadsLedger() {
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(2L, "tech", Role.TECHNICIAN, null, 7L)));
+        LocalDate day = LocalDate.of(2025, 3, 10);
+        when(staffCapacityLedger.countsForStaff(7L, day, null)).thenReturn(List.of(
+                new StaffCapacityLedger.CategoryCount(7L, "tech", 5L, "Delivery", 3L)));
+        when(taskRuleService.getActiveRuleEntityByCategory(5L)).thenReturn(TaskRule.builder().maxTasksPerDay(4).build());
+
+        List<StaffTaskCountByCategoryDto> result = taskService.getStaffTaskCountByCategory(null, day, null, "tech");
+
+        assertThat(result).singleElement().satisfies(dto -> {
+            assertThat(dto.getTaskCount()).isEqualTo(3L);
+            assertThat(dto.getMaxTasksPerDay()).isEqualTo(4);
+            assertThat(dto.getStaffName()).isEqualTo("tech");
+        });
+        verify(taskCustomRepository, never()).countActiveTasksByStaffCategoryAndDateGrouped(any(), any(), any());
+    }
+
+    @Test
+    void autoAssignPreviewDoesNotSave() {
+        ReflectionTestUtils.setField(taskService, "autoAssignMaxDays", 31);
+        Task task = Task.builder().taskId(1L).build();
+        Staff tech = Staff.builder().staffId(7L).build();
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskAutoScheduler.plan(LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 16))).thenReturn(new TaskAutoScheduler.Plan(
+                List.of(new TaskAutoScheduler.Assignment(task, tech)), List.of()));
+
+        TaskAutoAssignmentResponseDto result = taskService.autoAssignTasks(LocalDate.of(2025, 3, 10), null, false, "operator");
+
+        assertThat(result.isApplied()).isFalse();
+        assertThat(result.getAssignments()).singleElement()
+                .satisfies(item -> assertThat(item.getStaffId()).isEqualTo(7L));
+        assertThat(task.getAssignedStaff()).isEmpty();
+        verify(taskRepository, never()).save(any());
+    }
+
+    @Test
+    void autoAssignApplySavesPlanAndRecordsLedger() {
+        ReflectionTestUtils.setField(taskService, "autoAssignMaxDays", 31);
+        TaskCategory category = TaskCategory.builder().taskCategoryId(5L).name("Delivery").build();
+        Task task = Task.builder().taskId(1L).taskCategory(category).plannedStart(LocalDateTime.of(2025, 3, 10, 9, 0)).build();
+        Staff tech = Staff.builder().staffId(7L).build();
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskAutoScheduler.plan(any(), any())).thenReturn(new TaskAutoScheduler.Plan(
+                List.of(new TaskAutoScheduler.Assignment(task, tech)), List.of()));
+        when(taskRepository.save(task)).thenReturn(task);
+
+        TaskAutoAssignmentResponseDto result = taskService.autoAssignTasks(null, null, true, "operator");
+
+        assertThat(result.isApplied()).isTrue();
+        assertThat(task.getAssignedStaff()).containsExactly(tech);
+        verify(staffCapacityLedger).recordChange(isNull(), any());
+    }
+
+    @Test
+    void autoAssignApplySkipsAssignmentThatNoLongerFitsDailyLimit() {
+        ReflectionTestUtils.setField(taskService, "autoAssignMaxDays", 31);
+        TaskCategory category = TaskCategory.builder().taskCategoryId(5L).name("Delivery").build();
+        Task task = Task.builder().taskId(1L).taskCategory(category).plannedStart(LocalDateTime.of(2025, 3, 10, 9, 0)).build();
+        Staff tech = Staff.builder().staffId(7L).build();
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+        when(taskAutoScheduler.plan(any(), any())).thenReturn(new TaskAutoScheduler.Plan(
+                List.of(new TaskAutoScheduler.Assignment(task, tech)), List.of()));
+        when(taskRuleService.getActiveRuleEntityByCategory(5L)).thenReturn(TaskRule.builder().maxTasksPerDay(2).build());
+        // Nhân viên đã nhận thêm task sau khi phương án được lập
+        when(staffCapacityLedger.count(7L, 5L, LocalDate.of(2025, 3, 10))).thenReturn(2L);
+
+        TaskAutoAssignmentResponseDto result = taskService.autoAssignTasks(null, null, true, "operator");
+
+        assertThat(result.getAssignedCount()).isZero();
+        assertThat(result.getUnassigned()).extracting(TaskAutoAssignmentResponseDto.UnassignedTaskDto::getTaskId)
+                .containsExactly(1L);
+        verify(taskRepository, never()).save(any());
+    }
+
+    @Test
+    void autoAssignRejectsTooLongRange() {
+        ReflectionTestUtils.setField(taskService, "autoAssignMaxDays", 31);
+        when(identityContext.current()).thenReturn(Optional.of(
+                new IdentityContext.Identity(1L, "operator", Role.OPERATOR, null, null)));
+
+        assertThatThrownBy(() -> taskService.autoAssignTasks(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 3, 1), false, "operator"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(taskAutoScheduler);
+    }
+}
@@ -0,0 +1,162 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
+import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
+import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
+import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FirebaseNotificationServiceTest {
+
+    private HttpServer server;
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Server giả lập FCM: token "dead" trả 404 UNREGISTERED, "invalid" trả 400 INVALID_ARGUMENT, "busy" trả 503, còn lại 200.
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/v1/projects/demo/messages:send", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                Thread.sleep(20);
+                int status = 200;
+                String response = "{\"name\":\"projects/demo/messages/1\"}";
+                if (body.contains("\"dead\"")) {
+                    status = 404;
+                    response = "{\"error\":{\"status\":\"NOT_FOUND\",\"details\":[{\"errorCode\":\"UNREGISTERED\"}]}}";
+                } else if (body.contains("\"invalid\"")) {
+                    status = 400;
+                    response = "{\"error\":{\"status\":\"INVALID_ARGUMENT\",\"message\":\"The registration token is not a valid FCM registration token\","
+                            + "\"details\":[{\"errorCode\":\"INVALID_ARGUMENT\"},{\"fieldViolations\":[{\"field\":\"message.token\"}]}]}}";
+                } else if (body.contains("\"busy\"")) {
+                    status = 503;
+                    response = "{\"error\":{\"status\":\"UNAVAILABLE\"}}";
+                }
+                byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private FirebaseNotificationService service(int parallelism) {
+        return service("demo", parallelism);
+    }
+
+    private FirebaseNotificationService service(String projectId, int parallelism) {
+        String apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        FirebaseNotificationService service = new FirebaseNotificationService(apiUrl, projectId, "{}", parallelism,
+                Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofMinutes(5));
+        service.useAccessToken("access-token", Instant.now().plus(Duration.ofHours(1)));
+        return service;
+    }
+
+    private static FirebaseNotificationService.FcmMessage message(String token) {
+        return new FirebaseNotificationService.FcmMessage(token, "title", "body", NotificationType.ORDER_CONFIRMED);
+    }
+
+    @Test
+    void sendAllReportsResultPerTokenInOrder() {
+        List<FirebaseNotificationService.SendResult> results = service(4).sendAll(List.of(
+                message("ok"), message("dead"), message("invalid"), message("busy"), message("")));
+
+        assertThat(results).containsExactly(
+                FirebaseNotificationService.SendResult.SENT,
+                FirebaseNotificationService.SendResult.UNREGISTERED,
+                FirebaseNotificationService.SendResult.UNREGISTERED,
+                FirebaseNotificationService.SendResult.RETRY,
+                FirebaseNotificationService.SendResult.SKIPPED);
+        assertThat(authorizations).hasSize(4).allMatch("Bearer access-token"::equals);
+    }
+
+    @Test
+    void notFoundWithoutFcmErrorKeepsTokens() {
+        // Sai project-id: server trả 404 cho mọi request, không có errorCode UNREGISTERED
+        FirebaseNotificationService service = service("wrong-project", 4);
+        assertThat(service.sendAll(List.of(message("ok"), message("dead"))))
+                .containsOnly(FirebaseNotificationService.SendResult.RETRY);
+
+        CustomerRepository customerRepository = mock(CustomerRepository.class);
+        NotificationRepository notificationRepository = mock(NotificationRepository.class);
+        when(customerRepository.findFcmTokensByAccountIds(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "ok"}));
+        NotificationDispatcher dispatcher = new NotificationDispatcher(mock(SimpMessagingTemplate.class), service,
+                customerRepository, notificationRepository, mock(PlatformTransactionManager.class),
+                10, 100, 1, 10, 1, Duration.ofMinutes(10));
+        NotificationResponseDto payload = NotificationResponseDto.builder()
+                .notificationId(10L)
+                .accountId(1L)
+                .title("title")
+                .message("message")
+                .type(NotificationType.ORDER_CONFIRMED)
+                .build();
+        try {
+            dispatcher.dispatch(List.of(new NotificationDispatcher.Delivery(payload, 0)));
+        } finally {
+            dispatcher.stop();
+        }
+
+        verify(customerRepository, never()).clearFcmTokens(any());
+        verify(notificationRepository).updateDeliveryStatus(List.of(10L), NotificationDeliveryStatus.FAILED, 1);
+    }
+
+    @Test
+    void sendAllRespectsParallelismLimit() {
+        List<FirebaseNotificationService.FcmMessage> messages = java.util.stream.IntStream.range(0, 12)
+                .mapToObj(i -> message("token-" + i))
+                .toList();
+
+        List<FirebaseNotificationService.SendResult> results = service(2).sendAll(messages);
+
+        assertThat(results).hasSize(12).containsOnly(FirebaseNotificationService.SendResult.SENT);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void sendAllSkipsWhenNotConfigured() {
+        FirebaseNotificationService service = new FirebaseNotificationService("http://127.0.0.1:1/v1", "", "", 4,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofMinutes(5));
+
+        assertThat(service.sendAll(List.of(message("ok"))))
+                .containsExactly(FirebaseNotificationService.SendResult.SKIPPED);
+    }
+}
@@ -0,0 +1,256 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.authentication.model.Account;
+import com.rentaltech.techrental.webapi.customer.model.Notification;
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
+import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
+import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
+import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTest {
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    @Mock
+    private FirebaseNotificationService firebaseNotificationService;
+    @Mock
+    private CustomerRepository customerRepository;
+    @Mock
+    private NotificationRepository notificationRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private NotificationDispatcher newDispatcher(int capacity, int maxAttempts) {
+        dispatcher = new NotificationDispatcher(messagingTemplate, firebaseNotificationService, customerRepository,
+                notificationRepository, transactionManager, capacity, 100, maxAttempts, 10, 1, Duration.ofMinutes(10));
+        return dispatcher;
+    }
+
+    private static NotificationResponseDto payload(long notificationId, long accountId) {
+        return NotificationResponseDto.builder()
+                .notificationId(notificationId)
+                .accountId(accountId)
+                .title("title")
+                .message("message")
+                .type(NotificationType.ORDER_CONFIRMED)
+                .build();
+    }
+
+    @Test
+    void dispatchBroadcastsBatchAndResolvesTokensInOneQuery() {
+        newDispatcher(10, 3);
+        when(customerRepository.findFcmTokensByAccountIds(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "token-1"}));
+        when(firebaseNotificationService.sendAll(List.of(new FirebaseNotificationService.FcmMessage(
+                "token-1", "title", "message", NotificationType.ORDER_CONFIRMED))))
+                .thenReturn(List.of(FirebaseNotificationService.SendResult.SENT));
+
+        dispatcher.dispatch(List.of(
+                new NotificationDispatcher.Delivery(payload(10L, 1L), 0),
+                new NotificationDispatcher.Delivery(payload(11L, 2L), 0)));
+
+        verify(messagingTemplate).convertAndSend(eq("/topic/accounts/1/notifications"), any(NotificationResponseDto.class));
+        verify(messagingTemplate).convertAndSend(eq("/topic/accounts/2/notifications"), any(NotificationResponseDto.class));
+        verify(customerRepository, times(1)).findFcmTokensByAccountIds(any());
+        verify(firebaseNotificationService, times(1)).sendAll(any());
+        verify(notificationRepository).updateDeliveryStatus(
+                argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(10L, 11L))),
+                eq(NotificationDeliveryStatus.SENT), eq(1));
+    }
+
+    @Test
+    void failedPushIsRetriedWithoutRebroadcasting() throws InterruptedException {
+        newDispatcher(10, 3);
+        when(customerRepository.findFcmTokensByAccountIds(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "token-1"}));
+        when(firebaseNotificationService.sendAll(any())).thenReturn(List.of(FirebaseNotificationService.SendResult.RETRY));
+
+        dispatcher.dispatch(List.of(new NotificationDispatcher.Delivery(payload(10L, 1L), 1)));
+
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+        verify(notificationRepository, never()).updateDeliveryStatus(any(), any(), anyInt());
+        for (int i = 0; i < 100 && dispatcher.queuedCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(dispatcher.queuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void pushIsMarkedFailedAfterMaxAttempts() {
+        newDispatcher(10, 2);
+        when(customerRepository.findFcmTokensByAccountIds(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "token-1"}));
+        when(firebaseNotificationService.sendAll(any())).thenReturn(List.of(FirebaseNotificationService.SendResult.RETRY));
+
+        dispatcher.dispatch(List.of(new NotificationDispatcher.Delivery(payload(10L, 1L), 1)));
+
+        verify(notificationRepository).updateDeliveryStatus(List.of(10L), NotificationDeliveryStatus.FAILED, 2);
+    }
+
+    @Test
+    void unregisteredTokenIsClearedAndNotRetried() {
+        newDispatcher(10, 3);
+        when(customerRepository.findFcmTokensByAccountIds(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "dead-token"}));
+        when(firebaseNotificationService.sendAll(any()))
+                .thenReturn(List.of(FirebaseNotificationService.SendResult.UNREGISTERED));
+
+        dispatcher.dispatch(List.of(new NotificationDispatcher.Delivery(payload(10L, 1L), 0)));
+
+        verify(customerRepository).clearFcmTokens(Set.of("dead-token"));
+        verify(notificationRepository).updateDeliveryStatus(List.of(10L), NotificationDeliveryStatus.FAILED, 1);
+        assertThat(dispatcher.queuedCount()).isZero();
+    }
+
+    @Test
+    void enqueueRejectsWhenQueueFullAndSkipsDuplicates() {
+        newDispatcher(1, 3);
+
+        assertThat(dispatcher.enqueue(payload(10L, 1L))).isTrue();
+        assertThat(dispatcher.enqueue(payload(10L, 1L))).isTrue();
+        assertThat(dispatcher.enqueue(payload(11L, 1L))).isFalse();
+        assertThat(dispatcher.queuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void broadcastSerializesPayloadOnce() {
+        newDispatcher(10, 3);
+        MessageConverter converter = mock(MessageConverter.class);
+        Message<byte[]> message = MessageBuilder.withPayload(new byte[]{1}).build();
+        when(messagingTemplate.getMessageConverter()).thenReturn(converter);
+        doReturn(message).when(converter).toMessage("payload", null);
+
+        dispatcher.broadcast("/topic/roles/OPERATOR", List.of(15L, 16L), "payload");
+
+        verify(converter, times(1)).toMessage("payload", null);
+        verify(messagingTemplate).send("/topic/roles/OPERATOR", message);
+        verify(messagingTemplate).send("/topic/staffs/15/notifications", message);
+        verify(messagingTemplate).send("/topic/staffs/16/notifications", message);
+    }
+
+    @Test
+    void retryDelayGrowsExponentially() {
+        newDispatcher(10, 5);
+
+        assertThat(dispatcher.retryDelayMs(1)).isEqualTo(10);
+        assertThat(dispatcher.retryDelayMs(2)).isEqualTo(20);
+        assertThat(dispatcher.retryDelayMs(3)).isEqualTo(40);
+    }
+
+    @Test
+    void sweeperReclaimsExpiredLeaseWithoutWebSocket() {
+        newDispatcher(10, 3);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        LocalDateTime before = LocalDateTime.now();
+        when(notificationRepository.lockStaleForDispatch(eq(NotificationDeliveryStatus.PENDING),
+                eq(NotificationDeliveryStatus.DISPATCHING), any(), any(Pageable.class)))
+                .thenReturn(List.of(20L));
+        Notification expired = Notification.builder()
+                .notificationId(20L)
+                .account(Account.builder().accountId(1L).build())
+                .title("t")
+                .deliveryStatus(NotificationDeliveryStatus.DISPATCHING)
+                .build();
+        when(notificationRepository.findWithAccountByNotificationIdIn(List.of(20L))).thenReturn(List.of(expired));
+
+        dispatcher.requeueStalePending();
+
+        // Chỉ lease cũ hơn claim-lease mới bị nhận lại, bản ghi còn trong hàng đợi của node khác thì không.
+        verify(notificationRepository).lockStaleForDispatch(eq(NotificationDeliveryStatus.PENDING),
+                eq(NotificationDeliveryStatus.DISPATCHING),
+                argThat(cutoff -> !cutoff.isBefore(before.minusMinutes(10)) && cutoff.isBefore(before.minusMinutes(9))), any(Pageable.class));
+        verify(notificationRepository).claimForDispatch(eq(List.of(20L)), eq(NotificationDeliveryStatus.DISPATCHING),
+                any(LocalDateTime.class));
+        assertThat(dispatcher.queuedCount()).isEqualTo(1);
+
+        when(customerRepository.findFcmTokensByAccountIds(any())).thenReturn(List.of());
+        dispatcher.drainQueued();
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+    }
+
+    @Test
+    void overflowedNotificationIsReleasedAndResentWithWebSocket() {
+        newDispatcher(1, 3);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        assertThat(dispatcher.enqueue(payload(10L, 1L))).isTrue();
+        assertThat(dispatcher.enqueue(payload(11L, 1L))).isFalse();
+        dispatcher.drainQueued();
+        when(notificationRepository.lockStaleForDispatch(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(11L));
+        Notification released = Notification.builder()
+                .notificationId(11L)
+                .account(Account.builder().accountId(1L).build())
+                .title("t")
+                .deliveryStatus(NotificationDeliveryStatus.PENDING)
+                .build();
+        when(notificationRepository.findWithAccountByNotificationIdIn(List.of(11L))).thenReturn(List.of(released));
+
+        dispatcher.requeueStalePending();
+
+        verify(notificationRepository).releaseClaims(List.of(11L),
+                NotificationDeliveryStatus.DISPATCHING, NotificationDeliveryStatus.PENDING);
+        dispatcher.drainQueued();
+        verify(messagingTemplate).convertAndSend(eq(String.format(NotificationDispatcher.TOPIC_TEMPLATE, 1L)),
+                argThat((Object sent) -> sent instanceof NotificationResponseDto dto && dto.getNotificationId() == 11L));
+
+        dispatcher.requeueStalePending();
+        verify(notificationRepository, times(1)).releaseClaims(any(), any(), any());
+    }
+
+    @Test
+    void claimLeaseIsNeverShorterThanRetryWindow() {
+        dispatcher = new NotificationDispatcher(messagingTemplate, firebaseNotificationService, customerRepository,
+                notificationRepository, transactionManager, 10, 100, 5, 2000, 1, Duration.ofSeconds(5));
+
+        // 2s + 4s + 8s + 16s backoff, cộng một phút cho thời gian chờ trong hàng đợi
+        assertThat(dispatcher.claimLease()).isEqualTo(Duration.ofSeconds(90));
+    }
+
+    @Test
+    void sweeperEnqueuesNothingWhenAnotherNodeHoldsTheRows() {
+        newDispatcher(10, 3);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(notificationRepository.lockStaleForDispatch(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        dispatcher.requeueStalePending();
+
+        verify(notificationRepository, never()).claimForDispatch(any(), any(), any());
+        assertThat(dispatcher.queuedCount()).isZero();
+    }
+}
@@ -2,11 +2,14 @@ package com.rentaltech.techrental.webapi.customer.service;
 
 import com.rentaltech.techrental.authentication.model.Account;
 import com.rentaltech.techrental.authentication.repository.AccountRepository;
-import com.rentaltech.techrental.webapi.customer.model.Customer;
+import com.rentaltech.techrental.staff.model.Staff;
+import com.rentaltech.techrental.staff.model.StaffRole;
+import com.rentaltech.techrental.staff.service.staffservice.StaffRoleDirectory;
 import com.rentaltech.techrental.webapi.customer.model.Notification;
+import com.rentaltech.techrental.webapi.customer.model.NotificationDeliveryStatus;
 import com.rentaltech.techrental.webapi.customer.model.NotificationType;
+import com.rentaltech.techrental.webapi.customer.model.dto.NotificationCursorPageDto;
 import com.rentaltech.techrental.webapi.customer.model.dto.NotificationResponseDto;
-import com.rentaltech.techrental.webapi.customer.repository.CustomerRepository;
 import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,8 +17,14 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,19 +39,21 @@ class NotificationServiceImplTest {
     @Mock
     private NotificationRepository notificationRepository;
     @Mock
-    private CustomerRepository customerRepository;
-    @Mock
     private AccountRepository accountRepository;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private NotificationDispatcher notificationDispatcher;
+    @Mock
+    private StaffRoleDirectory staffRoleDirectory;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
     @Mock
-    private FirebaseNotificationService firebaseNotificationService;
+    private NotificationUnreadCounter unreadCounter;
 
     @InjectMocks
     private NotificationServiceImpl notificationService;
 
     @Test
-    void notifyAccountPersistsBroadcastsAndSendsFcmWhenTokenPresent() {
+    void notifyAccountPersistsPendingAndHandsOffToDispatcher() {
         Account account = Account.builder()
                 .accountId(1L)
                 .username("u")
@@ -55,9 +66,6 @@ class NotificationServiceImplTest {
             notification.setNotificationId(10L);
             return notification;
         });
-        when(customerRepository.findByAccount_AccountId(1L)).thenReturn(Optional.of(
-                Customer.builder().fcmToken("token").build()
-        ));
 
         NotificationResponseDto response = notificationService.notifyAccount(
                 1L, NotificationType.ORDER_CONFIRMED, "title", "message"
@@ -67,13 +75,14 @@ class NotificationServiceImplTest {
         ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
         verify(notificationRepository).save(notificationCaptor.capture());
         assertThat(notificationCaptor.getValue().getAccount()).isEqualTo(account);
+        assertThat(notificationCaptor.getValue().getDeliveryStatus()).isEqualTo(NotificationDeliveryStatus.DISPATCHING);
+        assertThat(notificationCaptor.getValue().getClaimedAt()).isNotNull();
 
-        verify(messagingTemplate).convertAndSend(eq("/topic/accounts/1/notifications"), any(NotificationResponseDto.class));
-        verify(firebaseNotificationService).sendNotification("token", "title", "message", NotificationType.ORDER_CONFIRMED);
+        verify(notificationDispatcher).enqueue(response);
     }
 
     @Test
-    void notifyAccountSkipsFcmWhenCustomerMissing() {
+    void notifyAccountDefersDispatchUntilCommit() {
         Account account = Account.builder()
                 .accountId(2L)
                 .username("u2")
@@ -82,25 +91,106 @@ class NotificationServiceImplTest {
                 .build();
         when(accountRepository.findById(2L)).thenReturn(Optional.of(account));
         when(notificationRepository.save(any(Notification.class))).thenAnswer(invocation -> invocation.getArgument(0));
-        when(customerRepository.findByAccount_AccountId(2L)).thenReturn(Optional.empty());
 
-        notificationService.notifyAccount(2L, NotificationType.ORDER_NEAR_DUE, "title", "body");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            notificationService.notifyAccount(2L, NotificationType.ORDER_NEAR_DUE, "title", "body");
+            verify(notificationDispatcher, never()).enqueue(any());
 
-        verify(firebaseNotificationService, never()).sendNotification(any(), any(), any(), any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(notificationDispatcher).enqueue(any(NotificationResponseDto.class));
     }
 
     @Test
-    void getNotificationsForAccountReturnsDtosOrdered() {
-        Notification notification = Notification.builder()
-                .notificationId(5L)
-                .title("t")
+    @SuppressWarnings("unchecked")
+    void notifyRoleInsertsPendingRowsAndPushesEachAccount() {
+        when(staffRoleDirectory.recipients(StaffRole.OPERATOR)).thenReturn(List.of(
+                new StaffRoleDirectory.Recipient(15L, 77L),
+                new StaffRoleDirectory.Recipient(16L, 78L)));
+        NotificationResponseDto first = NotificationResponseDto.builder().notificationId(1L).accountId(77L).build();
+        NotificationResponseDto second = NotificationResponseDto.builder().notificationId(2L).accountId(78L).build();
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of(first, second));
+        Object payload = new Object();
+
+        int notified = notificationService.notifyRole(StaffRole.OPERATOR, NotificationType.ORDER_ACTIVE, "title", "body", payload);
+
+        assertThat(notified).isEqualTo(2);
+        verify(jdbcTemplate, times(1)).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+        verify(notificationDispatcher).broadcast("/topic/roles/OPERATOR", List.of(15L, 16L), payload);
+        // Topic riêng của từng account vẫn nhận thông báo như trước
+        verify(notificationDispatcher).enqueue(first);
+        verify(notificationDispatcher).enqueue(second);
+        verify(notificationRepository, never()).save(any());
+    }
+
+    @Test
+    void notifyStaffSkipsRoleTopic() {
+        Staff staff = Staff.builder()
+                .staffId(101L)
+                .staffRole(StaffRole.CUSTOMER_SUPPORT_STAFF)
+                .account(Account.builder().accountId(202L).build())
                 .build();
-        when(notificationRepository.findByAccount_AccountIdOrderByCreatedAtDesc(9L))
-                .thenReturn(List.of(notification));
 
-        List<NotificationResponseDto> dtos = notificationService.getNotificationsForAccount(9L);
+        notificationService.notifyStaff(List.of(staff), NotificationType.ORDER_NEAR_DUE, "title", "body", "payload");
+
+        verify(notificationDispatcher).broadcast(null, List.of(101L), "payload");
+        verifyNoInteractions(staffRoleDirectory);
+    }
+
+    @Test
+    void getNotificationsForAccountReturnsFirstPageWithCursor() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> rows = List.of(
+                Notification.builder().notificationId(7L).title("a").createdAt(now).build(),
+                Notification.builder().notificationId(6L).title("b").createdAt(now.minusMinutes(1)).build(),
+                Notification.builder().notificationId(5L).title("c").createdAt(now.minusMinutes(2)).build());
+        when(notificationRepository.findInbox(eq(9L), any(Pageable.class))).thenReturn(rows);
+        when(unreadCounter.get(9L)).thenReturn(4L);
+
+        NotificationCursorPageDto page = notificationService.getNotificationsForAccount(9L, null, 2);
+
+        assertThat(page.getContent()).extracting(NotificationResponseDto::getNotificationId).containsExactly(7L, 6L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getUnreadCount()).isEqualTo(4L);
+        assertThat(NotificationCursor.decode(page.getNextCursor()))
+                .isEqualTo(new NotificationCursor(now.minusMinutes(1), 6L));
+    }
+
+    @Test
+    void getNotificationsForAccountContinuesAfterCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 10, 0);
+        String cursor = new NotificationCursor(createdAt, 6L).encode();
+        when(notificationRepository.findInboxAfter(eq(9L), eq(createdAt), eq(6L), any(Pageable.class)))
+                .thenReturn(List.of(Notification.builder().notificationId(5L).title("c").createdAt(createdAt).build()));
+
+        NotificationCursorPageDto page = notificationService.getNotificationsForAccount(9L, cursor, 2);
+
+        assertThat(page.getNumberOfElements()).isEqualTo(1);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void markReadWithoutIdsUpdatesAllAndResetsCounter() {
+        when(notificationRepository.markAllRead(9L)).thenReturn(3);
+
+        int updated = notificationService.markRead(9L, null);
+
+        assertThat(updated).isEqualTo(3);
+        verify(notificationRepository, never()).markRead(any(), any());
+        verify(unreadCounter).reset(9L);
+    }
+
+    @Test
+    void markReadWithIdsDecrementsCounter() {
+        when(notificationRepository.markRead(9L, List.of(1L, 2L))).thenReturn(2);
+
+        notificationService.markRead(9L, List.of(1L, 2L));
 
-        assertThat(dtos).hasSize(1);
-        assertThat(dtos.get(0).getNotificationId()).isEqualTo(5L);
+        verify(unreadCounter).add(9L, -2);
     }
 }
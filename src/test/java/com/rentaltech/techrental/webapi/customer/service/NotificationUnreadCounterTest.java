@@ -0,0 +1,103 @@
+package com.rentaltech.techrental.webapi.customer.service;
+
+import com.rentaltech.techrental.webapi.customer.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationUnreadCounterTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+    @Mock
+    private ObjectProvider<RedisTemplate<String, Object>> redisProvider;
+
+    private NotificationUnreadCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        when(redisProvider.getIfAvailable()).thenReturn(null);
+        counter = new NotificationUnreadCounter(notificationRepository, redisProvider, Duration.ofHours(1));
+    }
+
+    @Test
+    void countIsLoadedOnceThenMaintainedInMemory() {
+        when(notificationRepository.countByAccount_AccountIdAndReadFalse(1L)).thenReturn(5L);
+
+        assertThat(counter.get(1L)).isEqualTo(5L);
+        counter.add(1L, 1);
+        counter.add(1L, -3);
+
+        assertThat(counter.get(1L)).isEqualTo(3L);
+        verify(notificationRepository, times(1)).countByAccount_AccountIdAndReadFalse(1L);
+    }
+
+    @Test
+    void incrementBeforeLoadDefersToDatabase() {
+        counter.increment(List.of(2L));
+        when(notificationRepository.countByAccount_AccountIdAndReadFalse(2L)).thenReturn(1L);
+
+        assertThat(counter.get(2L)).isEqualTo(1L);
+    }
+
+    @Test
+    void resetAndEvict() {
+        when(notificationRepository.countByAccount_AccountIdAndReadFalse(3L)).thenReturn(4L, 2L);
+        counter.get(3L);
+
+        counter.reset(3L);
+        assertThat(counter.get(3L)).isZero();
+
+        counter.evict(List.of(3L));
+        assertThat(counter.get(3L)).isEqualTo(2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisLoadIsGuardedByVersionReadBeforeCounting() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> values = mock(ValueOperations.class);
+        when(redisProvider.getIfAvailable()).thenReturn(redisTemplate);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.get("notification:unread:4")).thenReturn(null);
+        when(values.get("notification:unread-version:4")).thenReturn(2);
+        when(notificationRepository.countByAccount_AccountIdAndReadFalse(4L)).thenReturn(7L);
+        counter = new NotificationUnreadCounter(notificationRepository, redisProvider, Duration.ofHours(1));
+
+        assertThat(counter.get(4L)).isEqualTo(7L);
+
+        // Script chỉ ghi 7 nếu version vẫn là 2, tức không có add() nào chen vào giữa lúc đếm
+        verify(redisTemplate).execute(eq(NotificationUnreadCounter.LOAD_SCRIPT), any(RedisSerializer.class), eq(null),
+                eq(List.of("notification:unread:4", "notification:unread-version:4")), eq("2"), eq("7"), eq("3600000"));
+        verify(values, never()).setIfAbsent(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisAddGoesThroughScriptInsteadOfCreatingKey() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisProvider.getIfAvailable()).thenReturn(redisTemplate);
+        counter = new NotificationUnreadCounter(notificationRepository, redisProvider, Duration.ofHours(1));
+
+        counter.add(4L, 1);
+
+        verify(redisTemplate).execute(eq(NotificationUnreadCounter.ADD_SCRIPT), any(RedisSerializer.class), eq(null),
+                eq(List.of("notification:unread:4", "notification:unread-version:4")), eq("1"), eq("3600000"));
+        verify(redisTemplate, never()).delete(any(String.class));
+    }
+}
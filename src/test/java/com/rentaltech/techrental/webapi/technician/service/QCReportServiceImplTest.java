@@ -29,7 +29,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.List;
 
@@ -72,8 +72,6 @@ class QCReportServiceImplTest {
     @Mock
     private RentalOrderRepository rentalOrderRepository;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
-    @Mock
     private DiscrepancyReportService discrepancyReportService;
     @Mock
     private DiscrepancyReportRepository discrepancyReportRepository;
@@ -81,6 +79,8 @@ class QCReportServiceImplTest {
     private CustomerComplaintRepository customerComplaintRepository;
     @Mock
     private DeviceReplacementReportService deviceReplacementReportService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private QCReportServiceImpl service;
 
@@ -103,11 +103,11 @@ class QCReportServiceImplTest {
                 bookingCalendarService,
                 reservationService,
                 rentalOrderRepository,
-                messagingTemplate,
                 discrepancyReportService,
                 discrepancyReportRepository,
                 customerComplaintRepository,
-                deviceReplacementReportService
+                deviceReplacementReportService,
+                eventPublisher
         );
     }
 